@@ -2,45 +2,131 @@ package org.pixelito;
 
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
+import org.pixelito.benchmark.BenchmarkConfig;
+import org.pixelito.benchmark.BenchmarkRun;
 import org.pixelito.block.Block;
 import org.pixelito.block.BlockType;
 import org.pixelito.camera.Camera;
+import org.pixelito.graphics.GpuTimer;
+import org.pixelito.graphics.RenderTarget;
+import org.pixelito.graphics.ResolutionScaler;
 import org.pixelito.graphics.ShaderProgram;
 import org.pixelito.graphics.Texture;
+import org.pixelito.input.InputRecorder;
+import org.pixelito.input.InputReplay;
 import org.pixelito.input.KeyCode;
 import org.pixelito.input.Keyboard;
 import org.pixelito.input.Mouse;
-import org.pixelito.render.GreedyMesher;
-import org.pixelito.render.Mesh;
-import org.pixelito.render.VoxelMesher;
+import org.pixelito.net.WorldClient;
+import org.pixelito.physics.PlayerController;
+import org.pixelito.render.ChunkGeometry;
+import org.pixelito.render.ChunkRenderer;
+import org.pixelito.sim.Simulation;
+import org.pixelito.sim.Snapshot;
+import org.pixelito.sim.SnapshotExchange;
 import org.pixelito.util.PerformanceMetrics;
+import org.pixelito.util.RenderStats;
+import org.pixelito.util.ResourceTracker;
+import org.pixelito.window.FramePacer;
+import org.pixelito.window.FramePacing;
 import org.pixelito.window.Window;
+import org.pixelito.world.ChunkNeighborhood;
+import org.pixelito.world.LightEngine;
+import org.pixelito.world.RaycastHit;
+import org.pixelito.world.VoxelRaycast;
+import org.pixelito.world.VoxelStorage;
+import org.pixelito.world.World;
+import org.pixelito.world.WorldGenerator;
+import org.pixelito.world.WorldSnapshot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class Game {
 
     private Window window;
-    private Mesh mesh;
-    private ShaderProgram shader;
+    private World world;
+    private ChunkRenderer chunkRenderer;
+    private ResourceTracker.Resource worldResource;
+    // One shader per chunk geometry, each with its own vertex shader; null if the context cannot run it
+    private final ShaderProgram[] chunkShaders = new ShaderProgram[ChunkGeometry.values().length];
     private Texture blockTexture;
+    // Dynamic resolution: the scene renders offscreen at a scale that keeps the GPU within the budget
+    private RenderTarget renderTarget;
+    private ResolutionScaler resolutionScaler;
+    // Times the GPU work of each frame, for the scaler and the benchmark report
+    private GpuTimer gpuTimer;
     private boolean useGreedyMesher = true; // Toggle to compare meshing algorithms
+    private ChunkGeometry geometry = ChunkGeometry.INDEXED; // Toggle to compare how chunk geometry is stored
     
-    // Camera for first-person navigation
+    // Camera for first-person navigation, moved by the simulation thread
     private Camera camera;
+    // Camera the scene is rendered from, interpolated between simulation ticks
+    private Camera renderCamera;
+    private final Vector3f renderPosition = new Vector3f();
+
+    // Walking player that collides with the terrain; F switches to free flight
+    private PlayerController player;
+    private boolean flying = false;
+    private final Vector3f playerFeet = new Vector3f();
     
     // World dimensions
     private static final int WORLD_SIZE_X = 32;
     private static final int WORLD_SIZE_Y = 8;
     private static final int WORLD_SIZE_Z = 32;
+    private int worldSizeX = WORLD_SIZE_X;
+    private int worldSizeY = WORLD_SIZE_Y;
+    private int worldSizeZ = WORLD_SIZE_Z;
+    private long worldSeed = 0L;
+    private VoxelStorage voxelStorage = VoxelStorage.DENSE;
+    // World snapshot to load instead of generating, and where to save the world on exit
+    private String snapshotPath;
+    private String saveSnapshotPath;
+    private long worldLoadNanos;
+    // World server to download the world from and share edits with, null to play alone
+    private InetSocketAddress serverAddress;
+    private WorldClient worldClient;
+
+    // Block picking and editing
+    private static final float REACH = 8.0f;
+    private final RaycastHit target = new RaycastHit();
+    private BlockType placeBlockType = BlockType.BRICK;
+    private LightEngine lightEngine;
 
     // Mesh statistics for performance comparison
     private int vertexCount;
     private int faceCount;
+    // Faces the benchmark's mesh would have without ambient occlusion, -1 when not counted
+    private int facesWithoutOcclusion = -1;
     
     // Toggle for mouse capture (cursor visibility)
     private boolean mouseCaptured = true;
 
+    // How frames are paced, and the frame rate limit of the limited modes (0 for the display's refresh rate)
+    private FramePacing framePacing = FramePacing.VSYNC;
+    private int targetFps;
+
+    // GPU time budget of a frame in milliseconds, 0 to always render at full resolution
+    private float frameBudgetMs;
+    private float minResolutionScale = 0.5f;
+
+    // Scripted benchmark run, null when playing normally
+    private BenchmarkConfig benchmarkConfig;
+    private BenchmarkRun benchmark;
+
+    // Input session recording and playback
+    private String recordPath;
+    private String replayPath;
+    private InputRecorder inputRecorder;
+    private InputReplay inputReplay;
+
     /**
      * Sets whether to use the optimized greedy meshing algorithm.
      * 
@@ -50,48 +136,303 @@ public class Game {
         this.useGreedyMesher = useGreedyMesher;
     }
 
-    private static final float FIXED_DELTA_TIME = 1.0f / 60.0f; // 60 FPS
-    private float accumulator = 0.0f;
+    /**
+     * Sets how chunk geometry is stored and drawn. Falls back to instanced
+     * faces if the OpenGL context cannot run the chosen geometry.
+     *
+     * @param geometry Chunk geometry to use
+     */
+    public void setGeometry(ChunkGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    /**
+     * Sets how chunks store their blocks.
+     *
+     * @param storage Block storage for the world's chunks
+     */
+    public void setVoxelStorage(VoxelStorage storage) {
+        this.voxelStorage = storage;
+    }
+
+    /**
+     * Records every input event of the session to a file.
+     *
+     * @param path Recording file
+     */
+    public void setInputRecording(String path) {
+        this.recordPath = path;
+    }
+
+    /**
+     * Replays a recorded session instead of reading live input. The game
+     * closes when the recording ends.
+     *
+     * @param path Recording file
+     */
+    public void setInputReplay(String path) {
+        this.replayPath = path;
+    }
+
+    /**
+     * Loads the world from a snapshot instead of generating the test world.
+     *
+     * @param path Snapshot file written by {@link WorldSnapshot}
+     */
+    public void setWorldSnapshot(String path) {
+        this.snapshotPath = path;
+    }
+
+    /**
+     * Saves the world, with the player's edits, to a snapshot on exit.
+     *
+     * @param path Snapshot file to write
+     */
+    public void setWorldSnapshotOutput(String path) {
+        this.saveSnapshotPath = path;
+    }
+
+    /**
+     * Downloads the world from a world server instead of generating it, and
+     * keeps it in sync with the other players' edits.
+     *
+     * @param address Address of a running {@link org.pixelito.net.WorldServer}
+     */
+    public void setServer(InetSocketAddress address) {
+        this.serverAddress = address;
+    }
+
+    /**
+     * Sets how the render loop paces its frames.
+     *
+     * @param pacing Pacing mode
+     * @param fps Frame rate limit for {@link FramePacing#isLimited() limited}
+     *            modes, or 0 to use the display's refresh rate
+     */
+    public void setFramePacing(FramePacing pacing, int fps) {
+        this.framePacing = pacing;
+        this.targetFps = fps;
+    }
+
+    /**
+     * Renders the scene offscreen at a resolution that adapts to hold the
+     * GPU time of each frame within a budget, scaled up to the window.
+     *
+     * @param budgetMs GPU time budget of a frame in milliseconds, or 0 to
+     *                 always render at full resolution
+     * @param minScale Lowest resolution scale per axis, in (0, 1]
+     */
+    public void setDynamicResolution(float budgetMs, float minScale) {
+        this.frameBudgetMs = budgetMs;
+        this.minResolutionScale = minScale;
+    }
+
+    /**
+     * Runs the game as an unattended benchmark: hidden window, seeded world
+     * and a scripted camera path instead of player input, paced as the
+     * config says (uncapped unless asked otherwise).
+     *
+     * @param config Benchmark settings
+     */
+    public void setBenchmark(BenchmarkConfig config) {
+        this.benchmarkConfig = config;
+        this.worldSizeX = config.getWorldSizeX();
+        this.worldSizeY = config.getWorldSizeY();
+        this.worldSizeZ = config.getWorldSizeZ();
+        this.worldSeed = config.getSeed();
+        this.snapshotPath = config.getSnapshotPath();
+        this.voxelStorage = config.getVoxelStorage();
+        this.framePacing = config.getFramePacing();
+        this.targetFps = config.getTargetFps();
+        this.frameBudgetMs = config.getFrameBudgetMs();
+        this.minResolutionScale = config.getMinResolutionScale();
+    }
+
     private long lastFrameTime;
+    private long frameCount;
+
+    // Fixed-rate game logic on its own thread
+    private Simulation simulation;
+    // Work the simulation hands to the render thread, e.g. rebuilding GL resources
+    private final Queue<Runnable> renderTasks = new ConcurrentLinkedQueue<>();
 
+    /**
+     * Runs the game. The calling (main) thread only pumps window events so
+     * input is timestamped the moment it arrives; the game loop and all
+     * OpenGL work run on a separate game thread.
+     */
     public void run() {
         init();
-        lastFrameTime = System.nanoTime();
-        loop();
-        cleanup();
+        window.releaseContext();
+
+        Thread gameThread = new Thread(this::runGameThread, "pixelito-game");
+        gameThread.start();
+        while (gameThread.isAlive()) {
+            window.waitEvents(0.1);
+        }
+
+        window.destroy();
+    }
+
+    private void runGameThread() {
+        try {
+            window.makeContextCurrent();
+            initGraphics();
+            startSimulation();
+            lastFrameTime = System.nanoTime();
+            loop();
+            simulation.stop();
+            if (simulation.isReplayFinished()) {
+                System.out.println("Replay finished after " + inputReplay.getStepCount() + " ticks");
+            }
+            if (benchmark != null) {
+                writeBenchmarkReport();
+            }
+            cleanup();
+        } finally {
+            // The window can only be destroyed once the context is no longer current here
+            window.releaseContext();
+            window.wakeUp();
+        }
     }
 
     private void init() {
-        window = new Window(1280, 720, "Pixelito", true);
+        boolean interactive = benchmarkConfig == null;
+        window = new Window(1280, 720, "Pixelito", framePacing.usesVsync(), interactive);
         window.create();
-        
-        // Create camera with initial position slightly above the ground
-        camera = new Camera(new Vector3f(WORLD_SIZE_X / 2.0f, WORLD_SIZE_Y + 1.0f, WORLD_SIZE_Z / 2.0f));
+
+        initWorld();
+
+        // Create the player on top of the world, it falls onto the terrain from there
+        player = new PlayerController(new Vector3f(worldSizeX / 2.0f, worldSizeY, worldSizeZ / 2.0f));
+
+        // Create camera at the player's eyes
+        camera = new Camera(player.getEyePosition());
         
         // Set appropriate movement speed for world scale
         camera.setMoveSpeed(10.0f);
         
         // Set mouse sensitivity for smoother camera control
         camera.setMouseSensitivity(0.1f);
+
+        renderCamera = new Camera(camera.getPosition());
+
+        initLighting();
         
-        // Capture mouse by default for first-person navigation
-        Mouse.setCaptured(mouseCaptured, window.getId());
-        
-        System.out.println("Camera initialized. Use WASD to move, mouse to look around, and ESC to toggle mouse capture.");
+        if (interactive) {
+            // Capture mouse by default for first-person navigation
+            Mouse.setCaptured(mouseCaptured, window.getId());
+
+            System.out.println("Camera initialized. Use WASD to move, SPACE to jump, F to toggle flying, mouse to look around, left/right click to break/place blocks, 1/2 to pick brick/torch, and ESC to toggle mouse capture.");
+            initInputSession();
+        } else {
+            mouseCaptured = false;
+        }
+    }
+
+    /**
+     * Generates the test world, or loads it from a snapshot or a world
+     * server if one was given.
+     */
+    private void initWorld() {
+        PerformanceMetrics.startMeasurement();
+        long start = System.nanoTime();
+        String operation = "World generation";
+        if (serverAddress != null) {
+            operation = "World download";
+            try {
+                worldClient = WorldClient.connect(serverAddress, voxelStorage);
+                world = worldClient.awaitWorld();
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            worldSizeX = world.getSizeX();
+            worldSizeY = world.getSizeY();
+            worldSizeZ = world.getSizeZ();
+        } else if (snapshotPath != null) {
+            operation = "World snapshot load";
+            try {
+                world = WorldSnapshot.read(Paths.get(snapshotPath), voxelStorage);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            worldSizeX = world.getSizeX();
+            worldSizeY = world.getSizeY();
+            worldSizeZ = world.getSizeZ();
+        } else {
+            world = WorldGenerator.createTestWorld(worldSizeX, worldSizeY, worldSizeZ, worldSeed, voxelStorage);
+        }
+        worldLoadNanos = System.nanoTime() - start;
+        System.out.println(PerformanceMetrics.stopMeasurement(operation,
+                "Size: " + worldSizeX + "x" + worldSizeY + "x" + worldSizeZ + ", Chunks: " + world.getChunkCount()
+                + (worldClient != null ? String.format(", Received: %.1f KB", worldClient.getReceivedBytes() / 1024.0) : "")));
+        worldResource = ResourceTracker.gauge(ResourceTracker.Category.VOXELS, "World", world::estimateBytes);
+    }
+
+    /**
+     * Computes the initial sky and block light of the world.
+     */
+    private void initLighting() {
+        PerformanceMetrics.startMeasurement();
+        lightEngine = new LightEngine(world);
+        lightEngine.initialize();
+        System.out.println(PerformanceMetrics.stopMeasurement("Lighting", "Chunks: " + world.getChunkCount()));
+    }
+
+    /**
+     * Creates the OpenGL resources. Runs on the game thread once the context is current there.
+     */
+    private void initGraphics() {
+        if (benchmarkConfig != null) {
+            benchmark = new BenchmarkRun(benchmarkConfig, world);
+            benchmark.recordWorldLoad(worldLoadNanos);
+            benchmark.putEnvironment("gl.renderer", GL11.glGetString(GL11.GL_RENDERER));
+            benchmark.putEnvironment("gl.version", GL11.glGetString(GL11.GL_VERSION));
+            benchmark.putEnvironment("gl.vendor", GL11.glGetString(GL11.GL_VENDOR));
+            benchmark.putEnvironment("gl.storageBuffers", String.valueOf(window.supportsStorageBuffers()));
+            benchmark.putEnvironment("display.refreshRate", String.valueOf(window.getRefreshRate()));
+            benchmark.probeCameraAllocations();
+            benchmark.probeRaycasts(world);
+            benchmark.probeLightUpdates(world, lightEngine);
+        }
 
         // Load shaders
         try {
-            shader = new ShaderProgram(
-                    "src/main/resources/shaders/block.vert",
-                    "src/main/resources/shaders/block.frag"
-            );
+            for (ChunkGeometry chunkGeometry : ChunkGeometry.values()) {
+                if (isSupported(chunkGeometry)) {
+                    chunkShaders[chunkGeometry.ordinal()] = new ShaderProgram(
+                            "src/main/resources/shaders/" + chunkGeometry.getVertexShader(),
+                            "src/main/resources/shaders/block.frag"
+                    );
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
             System.exit(1);
         }
+        if (!isSupported(geometry)) {
+            System.err.println("Warning: " + geometry.getId() + " geometry needs OpenGL 4.3, using instanced faces");
+            geometry = ChunkGeometry.INSTANCED;
+        }
 
-        // Generate mesh
-        regenerateMesh();
+        // Generate the chunk meshes (several times when benchmarking, to time the builds)
+        chunkRenderer = new ChunkRenderer(world);
+        if (window.supportsBufferStorage()) {
+            chunkRenderer.enableStagedUploads();
+        }
+        // The simulation has not started yet, so nothing changes the world while it is copied
+        ChunkNeighborhood[] neighborhoods = ChunkNeighborhood.captureAll(world);
+        int meshRuns = benchmark != null ? benchmarkConfig.getMeshRuns() : 1;
+        if (benchmark != null) {
+            // Counting means meshing the world again, so only the report pays for it, and only once
+            chunkRenderer.setUseGreedyMesher(useGreedyMesher);
+            facesWithoutOcclusion = chunkRenderer.countFacesWithoutOcclusion(neighborhoods);
+        }
+        for (int i = 0; i < meshRuns; i++) {
+            regenerateMesh(neighborhoods);
+        }
         
         // Load a simple block texture atlas
         try {
@@ -100,182 +441,520 @@ public class Game {
             System.err.println("Warning: Could not load texture: " + e.getMessage());
             // Continue without texture
         }
+
+        if (frameBudgetMs > 0) {
+            renderTarget = new RenderTarget(window.getFramebufferWidth(), window.getFramebufferHeight());
+            resolutionScaler = new ResolutionScaler((long) (frameBudgetMs * 1_000_000L), minResolutionScale);
+        }
+        if (resolutionScaler != null || benchmark != null) {
+            gpuTimer = new GpuTimer();
+        }
+        System.out.println(ResourceTracker.report());
     }
 
     /**
-     * Creates a test world with some interesting features
+     * Starts the simulation thread. From here on the simulation is the only
+     * consumer of input and the only thread moving {@link #camera}.
      */
-    private Block[][][] createTestWorld(int width, int height, int depth) {
-        Block[][][] blocks = new Block[width][height][depth];
-        
-        // Create terrain with some height variation
-        for (int x = 0; x < width; x++) {
-            for (int z = 0; z < depth; z++) {
-                // Generate terrain height using a simple sine wave pattern
-                int terrainHeight = 2 + (int)(Math.sin(x * 0.3) * 1.5 + Math.cos(z * 0.3) * 1.5);
-                
-                // Fill blocks below terrain height
-                for (int y = 0; y < height; y++) {
-                    if (y < terrainHeight - 1) {
-                        blocks[x][y][z] = new Block(BlockType.STONE);
-                    } else if (y < terrainHeight) {
-                        blocks[x][y][z] = new Block(BlockType.DIRT);
-                    } else if (y == terrainHeight) {
-                        blocks[x][y][z] = new Block(BlockType.GRASS);
-                    } else {
-                        // Air (null or transparent)
-                    }
-                }
+    private void startSimulation() {
+        simulation = new Simulation(new Simulation.Step() {
+            @Override
+            public void tick(float deltaTime) {
+                update(deltaTime);
+            }
+
+            @Override
+            public void capture(Snapshot snapshot) {
+                snapshot.position.set(camera.getPosition());
+                snapshot.yaw = camera.getYaw();
+                snapshot.pitch = camera.getPitch();
+                snapshot.cursorX = Mouse.getX();
+                snapshot.cursorY = Mouse.getY();
+                // Replayed look input is not the live cursor, so it cannot be latched ahead
+                boolean live = Mouse.isTracking() && inputReplay == null;
+                snapshot.lookSensitivity = live ? camera.getMouseSensitivity() : 0;
+            }
+        }, window.getInputQueue());
+        simulation.setRecorder(inputRecorder);
+        simulation.setReplay(inputReplay);
+        // A scripted benchmark drives the render camera directly
+        simulation.setDiscardInput(benchmark != null);
+        simulation.start();
+    }
+
+    private void initInputSession() {
+        if (replayPath != null) {
+            try {
+                inputReplay = new InputReplay(Paths.get(replayPath));
+                System.out.println("Replaying input from " + replayPath);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+        } else if (recordPath != null) {
+            try {
+                inputRecorder = new InputRecorder(Paths.get(recordPath));
+                System.out.println("Recording input to " + recordPath);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not start input recording: " + e.getMessage());
             }
         }
-        
-        return blocks;
     }
 
     private void loop() {
-        // Create projection matrix once - doesn't need to be recreated every frame
+        // Projection for the window's aspect ratio, rebuilt when the framebuffer changes size
         Matrix4f projection = new Matrix4f().perspective(
                 (float) Math.toRadians(70.0f),
                 (float) window.getWidth() / window.getHeight(),
                 0.1f,
                 1000.0f
         );
+        // Framebuffer size the projection and render target were last set up for; 0 before the first frame
+        int screenWidth = 0;
+        int screenHeight = 0;
+
+        SnapshotExchange snapshots = simulation.getSnapshots();
+        FramePacer pacer = null;
+        if (framePacing.isLimited()) {
+            pacer = new FramePacer(targetFps > 0 ? targetFps : window.getRefreshRate());
+        }
+        boolean lowLatency = framePacing == FramePacing.LOW_LATENCY;
 
         // Track timing for frame rate control
-        while (!window.shouldClose()) {
+        while (!window.shouldClose() && simulation.isRunning()) {
+            if (pacer != null) {
+                // Wait before anything is sampled, so the frame starts from the freshest state
+                pacer.awaitFrame();
+            }
             long currentTime = System.nanoTime();
-            float deltaTime = (currentTime - lastFrameTime) / 1_000_000_000.0f;
+            long frameNanos = currentTime - lastFrameTime;
             lastFrameTime = currentTime;
-            
-            // Safety cap to avoid spiral of death if game freezes temporarily
-            if (deltaTime > 0.25f) deltaTime = 0.25f;
-            accumulator += deltaTime;
 
-            // Process input every frame (delta-based movement)
-            processInput(deltaTime);
-            
-            // Update camera (handles movement and rotation)
-            camera.update(deltaTime);
-            
-            // If mouse is captured, ensure deltas are consumed each frame
-            // This prevents drift or continuous rotation
-            if (mouseCaptured) {
-                // Force consume any remaining mouse movement
-                Mouse.getDeltaX();
-                Mouse.getDeltaY();
+            if (benchmark != null) {
+                // The previous frame is complete once we get here again
+                if (frameCount > 0) {
+                    benchmark.endFrame(frameNanos);
+                }
+                if (benchmark.isFinished()) {
+                    break;
+                }
+            }
+            frameCount++;
+            RenderStats.beginFrame();
+
+            if (gpuTimer != null) {
+                // Timings arrive a few frames late, once the GPU has caught up
+                long gpuNanos = gpuTimer.poll();
+                if (gpuNanos >= 0) {
+                    if (resolutionScaler != null) {
+                        resolutionScaler.update(gpuNanos);
+                    }
+                    if (benchmark != null) {
+                        benchmark.recordGpuTime(gpuNanos);
+                    }
+                }
+                gpuTimer.begin();
             }
 
-            // Fixed timestep for logic/physics updates
-            while (accumulator >= FIXED_DELTA_TIME) {
-                // update(FIXED_DELTA_TIME); // placeholder for future physics updates
-                accumulator -= FIXED_DELTA_TIME;
+            // Run the GL work requested by the simulation
+            Runnable task;
+            while ((task = renderTasks.poll()) != null) {
+                task.run();
             }
+            // Swap in the chunk meshes rebuilt in the background
+            chunkRenderer.update();
 
-            // Render the scene
+            if (benchmark != null) {
+                // Scripted camera, no player input
+                benchmark.positionCamera(renderCamera);
+            } else {
+                // Blend the last two simulated states, so motion stays smooth at any frame rate
+                snapshots.acquire();
+                Snapshot snapshot = snapshots.front();
+                float alpha = snapshot.alpha(currentTime);
+                renderCamera.setPosition(snapshot.interpolatePosition(alpha, renderPosition));
+                if (lowLatency) {
+                    // Turn the view by the mouse movement the simulation has not consumed yet
+                    renderCamera.setRotation(snapshot.latchYaw(window.getCursorX()),
+                            snapshot.latchPitch(window.getCursorY()));
+                } else {
+                    renderCamera.setRotation(snapshot.interpolateYaw(alpha), snapshot.interpolatePitch(alpha));
+                }
+            }
+
+            // Follow the window's framebuffer; a minimised window has no pixels, so keep the last size
+            int framebufferWidth = window.getFramebufferWidth();
+            int framebufferHeight = window.getFramebufferHeight();
+            if ((framebufferWidth != screenWidth || framebufferHeight != screenHeight)
+                    && framebufferWidth > 0 && framebufferHeight > 0) {
+                screenWidth = framebufferWidth;
+                screenHeight = framebufferHeight;
+                projection.setPerspective((float) Math.toRadians(70.0f), (float) screenWidth / screenHeight,
+                        0.1f, 1000.0f);
+                if (renderTarget != null
+                        && (renderTarget.getWidth() != screenWidth || renderTarget.getHeight() != screenHeight)) {
+                    // Full resolution must fit, and the scaled image must keep the new aspect ratio
+                    renderTarget.destroy();
+                    renderTarget = new RenderTarget(screenWidth, screenHeight);
+                }
+            }
+
+            // Render the scene, at a reduced resolution when it would not fit in the frame budget
+            int renderWidth = screenWidth;
+            int renderHeight = screenHeight;
+            if (renderTarget == null) {
+                GL11.glViewport(0, 0, screenWidth, screenHeight);
+            } else {
+                float scale = resolutionScaler.getScale();
+                renderWidth = Math.max(1, Math.min(renderTarget.getWidth(), Math.round(screenWidth * scale)));
+                renderHeight = Math.max(1, Math.min(renderTarget.getHeight(), Math.round(screenHeight * scale)));
+                renderTarget.bind(renderWidth, renderHeight);
+                if (benchmark != null) {
+                    benchmark.recordResolutionScale(scale);
+                }
+            }
             GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
             
-            shader.bind();
+            // Instanced faces are expanded by their own vertex shader
+            ShaderProgram chunkShader = chunkShaders[chunkRenderer.getGeometry().ordinal()];
+            chunkShader.bind();
             
             // Set uniforms for the shader
-            shader.setUniform("projection", projection);
-            shader.setUniform("view", camera.getViewMatrix());
-            
-            // Create model matrix (identity for world blocks)
-            Matrix4f model = new Matrix4f();
-            shader.setUniform("model", model);
+            chunkShader.setUniform("projection", projection);
+            // Geometry is placed relative to the camera's block, so the view only rotates
+            chunkShader.setUniform("view", renderCamera.getRelativeViewMatrix());
+            Vector3fc eye = renderCamera.getPosition();
+            int eyeX = (int) Math.floor(eye.x());
+            int eyeY = (int) Math.floor(eye.y());
+            int eyeZ = (int) Math.floor(eye.z());
+            chunkShader.setUniform("cameraBlock", eyeX, eyeY, eyeZ);
+            chunkShader.setUniform("cameraFraction", eye.x() - eyeX, eye.y() - eyeY, eye.z() - eyeZ);
             
             // Bind texture if available
             if (blockTexture != null) {
                 GL13.glActiveTexture(GL13.GL_TEXTURE0);
                 GL11.glBindTexture(GL11.GL_TEXTURE_2D, blockTexture.getId());
-                shader.setUniform("textureSampler", 0);
-                shader.setUniform("useTexture", 1);
+                chunkShader.setUniform("textureSampler", 0);
+                chunkShader.setUniform("useTexture", 1);
             } else {
-                shader.setUniform("useTexture", 0);
+                chunkShader.setUniform("useTexture", 0);
             }
             
-            // Render the mesh
-            mesh.render();
+            // Opaque chunks first, without blending so hidden fragments fail the depth test early
+            chunkRenderer.renderOpaque(chunkShader);
+
+            // Translucent chunks blend over them back to front, without writing depth
+            GL11.glEnable(GL11.GL_BLEND);
+            GL11.glDepthMask(false);
+            GL11.glDisable(GL11.GL_CULL_FACE);
+            chunkShader.setUniform("translucent", 1);
+            chunkRenderer.renderTranslucent(chunkShader, renderCamera.getPosition());
+            chunkShader.setUniform("translucent", 0);
+            GL11.glEnable(GL11.GL_CULL_FACE);
+            GL11.glDepthMask(true);
+            GL11.glDisable(GL11.GL_BLEND);
             
             // Unbind resources
             GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
-            shader.unbind();
+            chunkShader.unbind();
+
+            if (renderTarget != null) {
+                renderTarget.blitToScreen(renderWidth, renderHeight, screenWidth, screenHeight);
+            }
+            if (gpuTimer != null) {
+                gpuTimer.end();
+            }
             
             // Update the window (swap buffers, poll events)
             window.update();
+            if (lowLatency) {
+                // Keep the driver from queuing frames ahead, each frame is shown from input sampled just before it
+                GL11.glFinish();
+            }
+        }
+    }
+
+    /**
+     * Runs one simulation tick on the simulation thread. Input state already
+     * holds the events that arrived before the end of the tick.
+     */
+    private void update(float deltaTime) {
+        applyServerChanges();
+        processInput();
+
+        if (flying) {
+            // Update camera (handles movement and rotation)
+            camera.update(deltaTime);
+        } else {
+            // The player collides with the terrain and carries the camera at eye height
+            camera.updateLook();
+            player.update(deltaTime, world, camera.getYaw());
+            camera.setPosition(player.getEyePosition());
+        }
+
+        // If mouse is captured, ensure deltas are consumed each tick
+        // This prevents drift or continuous rotation
+        if (mouseCaptured) {
+            // Force consume any remaining mouse movement
+            Mouse.getDeltaX();
+            Mouse.getDeltaY();
         }
     }
 
-    // Delta-based movement and input
-    private void processInput(float deltaTime) {
-        // Toggle mouse capture with Escape key
+    // Tick-based input handling
+    private void processInput() {
+        // Toggle mouse capture with Escape key (the cursor mode is changed on the main thread)
         if (Keyboard.isKeyPressed(KeyCode.ESCAPE)) {
             mouseCaptured = !mouseCaptured;
-            Mouse.setCaptured(mouseCaptured, window.getId());
+            window.requestCursorCapture(mouseCaptured);
         }
         
         // Toggle between meshing algorithms (for testing/comparison)
         if (Keyboard.isKeyPressed(KeyCode.G)) {
-            useGreedyMesher = !useGreedyMesher;
-            System.out.println("Switched to " + (useGreedyMesher ? "Greedy" : "Simple") + " mesher");
-            // Regenerate the mesh with the new algorithm
-            regenerateMesh();
+            // The mesh lives in GL memory, so the render thread rebuilds it, from copies taken
+            // here while the world is ours
+            ChunkNeighborhood[] neighborhoods = ChunkNeighborhood.captureAll(world);
+            renderTasks.add(() -> {
+                useGreedyMesher = !useGreedyMesher;
+                System.out.println("Switched to " + (useGreedyMesher ? "Greedy" : "Simple") + " mesher");
+                // Regenerate the mesh with the new algorithm
+                regenerateMesh(neighborhoods);
+            });
+        }
+
+        // Cycle through the chunk geometries (for testing/comparison)
+        if (Keyboard.isKeyPressed(KeyCode.I)) {
+            ChunkNeighborhood[] neighborhoods = ChunkNeighborhood.captureAll(world);
+            renderTasks.add(() -> {
+                ChunkGeometry[] geometries = ChunkGeometry.values();
+                do {
+                    geometry = geometries[(geometry.ordinal() + 1) % geometries.length];
+                } while (!isSupported(geometry));
+                System.out.println("Switched to " + geometry.getId() + " geometry");
+                regenerateMesh(neighborhoods);
+            });
         }
         
+        // Toggle between walking and free flight
+        if (Keyboard.isKeyPressed(KeyCode.F)) {
+            flying = !flying;
+            if (!flying) {
+                Vector3fc eye = camera.getPosition();
+                player.setPosition(playerFeet.set(eye.x(), eye.y() - PlayerController.EYE_HEIGHT, eye.z()));
+            }
+            System.out.println(flying ? "Flying" : "Walking");
+        }
+
+        // Choose the block to place
+        if (Keyboard.isKeyPressed(KeyCode.NUM_1)) {
+            placeBlockType = BlockType.BRICK;
+        }
+        if (Keyboard.isKeyPressed(KeyCode.NUM_2)) {
+            placeBlockType = BlockType.TORCH;
+        }
+
+        // Break the targeted block with the left button, place one against it with the right
+        if (mouseCaptured && (Mouse.isButtonPressed(KeyCode.MOUSE_LEFT) || Mouse.isButtonPressed(KeyCode.MOUSE_RIGHT))) {
+            editTargetBlock(Mouse.isButtonPressed(KeyCode.MOUSE_RIGHT));
+        }
+
+        // Print the memory held per resource category with M
+        if (Keyboard.isKeyPressed(KeyCode.M)) {
+            System.out.println(ResourceTracker.report());
+        }
+
         // Print current position with P key (for debugging)
         if (Keyboard.isKeyPressed(KeyCode.P)) {
-            Vector3f pos = camera.getPosition();
-            System.out.printf("Camera position: (%.2f, %.2f, %.2f)%n", pos.x, pos.y, pos.z);
+            Vector3fc pos = camera.getPosition();
+            System.out.printf("Camera position: (%.2f, %.2f, %.2f)%n", pos.x(), pos.y(), pos.z());
         }
     }
 
     /**
-     * Regenerates the mesh using the current meshing algorithm.
-     * This is an optimized implementation that properly cleans up resources.
+     * Breaks or places a block at the one the camera looks at. Runs on the
+     * simulation thread, updates the light around the edit, and has the
+     * render thread rebuild only the chunks whose blocks or light changed.
+     * A chunk being meshed while it is edited is simply rebuilt again by
+     * the task the edit queues.
+     *
+     * @param place true to place a block against the targeted face, false to break the targeted block
      */
-    private void regenerateMesh() {
-        // Clean up old mesh to avoid memory leaks
-        if (mesh != null) {
-            mesh.destroy();
+    private void editTargetBlock(boolean place) {
+        if (!VoxelRaycast.cast(world, camera.getPosition(), camera.getFront(), REACH, target)) {
+            return;
         }
-        
-        // Create blocks world
-        Block[][][] blocks = createTestWorld(WORLD_SIZE_X, WORLD_SIZE_Y, WORLD_SIZE_Z);
-        
+        int x = target.x;
+        int y = target.y;
+        int z = target.z;
+        if (place) {
+            // Starting inside a block leaves no face to place against
+            if (target.face == RaycastHit.FACE_NONE) {
+                return;
+            }
+            x += target.normalX;
+            y += target.normalY;
+            z += target.normalZ;
+            Block existing = world.getBlock(x, y, z);
+            if ((existing != null && existing.isSolid()) || (!flying && player.intersectsBlock(x, y, z))) {
+                return;
+            }
+        }
+        Block block = place ? Block.of(placeBlockType) : null;
+        if (worldClient != null) {
+            // The server sends the edit back once it has applied it, in order with everyone else's
+            worldClient.sendBlock(x, y, z, block);
+        }
+        setBlock(x, y, z, block);
+    }
+
+    /**
+     * Applies the block changes the world server sent since the last tick.
+     */
+    private void applyServerChanges() {
+        if (worldClient == null) {
+            return;
+        }
+        WorldClient.BlockChange change;
+        while ((change = worldClient.pollChange()) != null) {
+            setBlock(change.x, change.y, change.z, change.getBlock());
+        }
+    }
+
+    /**
+     * Changes a block on the simulation thread, updates the light around it
+     * and queues the rebuild of every chunk whose blocks or light changed.
+     *
+     * @param block New block, or null for air
+     */
+    private void setBlock(int x, int y, int z, Block block) {
+        if (!world.contains(x, y, z) || world.getBlock(x, y, z) == block) {
+            // Blocks are shared per type, so this also skips our own edits coming back from the server
+            return;
+        }
+        world.setBlock(x, y, z, block);
+        lightEngine.onBlockChanged(x, y, z);
+
+        // The edited chunk is always among the dirty chunks. They are copied here, while the world
+        // is ours, so the mesher threads never read it while it changes
+        int[] dirtyChunks = new int[lightEngine.getDirtyChunkCount()];
+        ChunkNeighborhood[] neighborhoods = new ChunkNeighborhood[dirtyChunks.length];
+        for (int i = 0; i < dirtyChunks.length; i++) {
+            dirtyChunks[i] = lightEngine.getDirtyChunk(i);
+            neighborhoods[i] = ChunkNeighborhood.capture(world, dirtyChunks[i]);
+        }
+        lightEngine.clearDirtyChunks();
+        renderTasks.add(() -> {
+            for (int i = 0; i < dirtyChunks.length; i++) {
+                chunkRenderer.requestRebuild(dirtyChunks[i], neighborhoods[i]);
+            }
+        });
+    }
+
+    /**
+     * Regenerates the meshes of all chunks using the current meshing algorithm.
+     * This is an optimized implementation that properly cleans up resources.
+     *
+     * @param neighborhoods Copy of every chunk, taken on the simulation thread or before it started
+     */
+    private void regenerateMesh(ChunkNeighborhood[] neighborhoods) {
+        String mesherType = (useGreedyMesher ? "Greedy Mesher (optimized)" : "Simple Mesher (unoptimized)")
+                + ", " + geometry.getId() + " geometry";
+        chunkRenderer.setUseGreedyMesher(useGreedyMesher);
+        chunkRenderer.setGeometry(geometry);
+
         // Start performance measurement
         PerformanceMetrics.startMeasurement();
+        long buildStart = System.nanoTime();
         
-        // Generate mesh using either GreedyMesher or VoxelMesher
-        VoxelMesher.MeshData data;
-        String mesherType;
-        
-        if (useGreedyMesher) {
-            mesherType = "Greedy Mesher (optimized)";
-            data = GreedyMesher.generateMesh(blocks);
-        } else {
-            mesherType = "Simple Mesher (unoptimized)";
-            data = VoxelMesher.generateMesh(blocks);
-        }
-        
-        // Create new mesh with the generated data
-        mesh = new Mesh(data.vertices, data.texCoords, data.indices);
+        // Generate meshes using either GreedyMesher or VoxelMesher
+        chunkRenderer.rebuildAll(neighborhoods);
         
+        long buildNanos = System.nanoTime() - buildStart;
+
         // Calculate mesh statistics
-        vertexCount = data.vertices.length / 3;
-        faceCount = data.indices.length / 6;
+        vertexCount = chunkRenderer.getVertexCount();
+        faceCount = chunkRenderer.getFaceCount();
+        long meshBytes = chunkRenderer.getByteCount();
+        if (benchmark != null) {
+            benchmark.recordMeshBuild(buildNanos, vertexCount, faceCount, facesWithoutOcclusion, meshBytes);
+        }
         
         // Stop performance measurement and report
-        String additionalInfo = "Vertices: " + vertexCount + ", Faces: " + faceCount;
+        String additionalInfo = "Chunks: " + world.getChunkCount() + ", Vertices: " + vertexCount + ", Faces: " + faceCount
+                + String.format(", GPU: %.1f KB (%.1f bytes/face)", meshBytes / 1024.0,
+                        faceCount == 0 ? 0.0 : (double) meshBytes / faceCount)
+                + String.format(", Arena: %.1f MB in %d ranges (%.0f%% fragmented)",
+                        chunkRenderer.getArena().getCapacity() / (1024.0 * 1024.0),
+                        chunkRenderer.getArena().getAllocationCount(), chunkRenderer.getArena().getFragmentation() * 100);
+        if (facesWithoutOcclusion >= 0) {
+            additionalInfo += String.format(", Faces without AO: %d (AO adds %.1f%%)", facesWithoutOcclusion,
+                    facesWithoutOcclusion == 0 ? 0.0 : 100.0 * (faceCount - facesWithoutOcclusion) / facesWithoutOcclusion);
+        }
         String metrics = PerformanceMetrics.stopMeasurement("Mesh Generation (" + mesherType + ")", additionalInfo);
         System.out.println(metrics);
     }
 
+    /**
+     * Checks whether the OpenGL context can draw a chunk geometry.
+     */
+    private boolean isSupported(ChunkGeometry chunkGeometry) {
+        return !chunkGeometry.needsStorageBuffers() || window.supportsStorageBuffers();
+    }
+
+    private void writeBenchmarkReport() {
+        String mesherName = useGreedyMesher ? "greedy" : "simple";
+        try {
+            Path report = benchmark.writeReport(mesherName);
+            System.out.println("Benchmark report written to " + report.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Could not write benchmark report: " + e.getMessage());
+            System.out.println(benchmark.toJson(mesherName));
+        }
+    }
+
     private void cleanup() {
+        if (worldClient != null) {
+            worldClient.close();
+        }
+        if (saveSnapshotPath != null) {
+            try {
+                WorldSnapshot.write(world, Paths.get(saveSnapshotPath));
+                System.out.println("World saved to " + saveSnapshotPath);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not save world snapshot: " + e.getMessage());
+            }
+        }
+        try {
+            if (inputRecorder != null) {
+                inputRecorder.close();
+                System.out.println("Recorded " + inputRecorder.getStepCount() + " ticks to " + recordPath);
+            }
+            if (inputReplay != null) {
+                inputReplay.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not close input session: " + e.getMessage());
+        }
         if (blockTexture != null) {
             blockTexture.destroy();
         }
-        shader.destroy();
-        mesh.destroy();
-        window.destroy();
+        for (ShaderProgram chunkShader : chunkShaders) {
+            if (chunkShader != null) {
+                chunkShader.destroy();
+            }
+        }
+        if (renderTarget != null) {
+            renderTarget.destroy();
+        }
+        if (gpuTimer != null) {
+            gpuTimer.destroy();
+        }
+        chunkRenderer.destroy();
+        if (worldResource != null) {
+            worldResource.release();
+        }
+        // Nothing reads the world any more: the simulation has stopped and meshing works on copies
+        world.close();
+        ResourceTracker.reportLeaks();
     }
 }
@@ -1,5 +1,19 @@
 package org.pixelito;
 
+import org.pixelito.benchmark.BenchmarkConfig;
+import org.pixelito.net.LoadTest;
+import org.pixelito.net.ServerConfig;
+import org.pixelito.net.WorldServer;
+import org.pixelito.render.GreedyMesher;
+import org.pixelito.window.FramePacing;
+import org.pixelito.world.VoxelStorage;
+import org.pixelito.world.World;
+import org.pixelito.world.WorldSnapshot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
 /**
  * The main entry point for the Pixelito application.
  */
@@ -10,6 +24,24 @@ public class Main {
      * @param args Command-line arguments
      */
     public static void main(String[] args) {
+        if (BenchmarkConfig.isRequested(args)) {
+            runBenchmark(BenchmarkConfig.fromArgs(args));
+            return;
+        }
+        if (ServerConfig.isServerRequested(args)) {
+            runServer(ServerConfig.fromArgs(args));
+            return;
+        }
+        if (ServerConfig.isLoadTestRequested(args)) {
+            try {
+                LoadTest.run(ServerConfig.fromArgs(args));
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+
         System.out.println("Iniciando pixelito optimizado...");
         System.out.println("Controls:");
         System.out.println("- WASD: Move the camera");
@@ -18,14 +50,115 @@ public class Main {
         System.out.println("- Shift: Move down");
         System.out.println("- ESC: Toggle mouse capture");
         System.out.println("- G: Toggle between meshing algorithms");
+        System.out.println("- I: Cycle chunk geometry (indexed, instanced, pulled)");
+        System.out.println("- M: Print memory used per resource category");
         System.out.println("- P: Print current camera position");
         
         Game game = new Game();
         
         // Configure options here
         game.setUseGreedyMesher(true); // Use optimized meshing by default
+
+        // Input session recording/replay: --record=file or --replay=file
+        // World snapshots: --snapshot=file loads the world, --save-snapshot=file saves it on exit
+        // Multiplayer: --connect=host:port downloads the world from a world server
+        // Block storage: --storage=dense|sparse|offheap|mapped
+        // Frame pacing: --pacing=vsync|uncapped|limited|low-latency, --fps=N limit (default: display refresh rate)
+        // Dynamic resolution: --frame-budget=ms GPU time per frame, --min-scale=S lowest scale (default 0.5)
+        FramePacing pacing = FramePacing.VSYNC;
+        int fps = 0;
+        float frameBudget = 0;
+        float minScale = 0.5f;
+        for (String arg : args) {
+            if (arg.startsWith("--record=")) {
+                game.setInputRecording(arg.substring("--record=".length()));
+            } else if (arg.startsWith("--replay=")) {
+                game.setInputReplay(arg.substring("--replay=".length()));
+            } else if (arg.startsWith("--snapshot=")) {
+                game.setWorldSnapshot(arg.substring("--snapshot=".length()));
+            } else if (arg.startsWith("--save-snapshot=")) {
+                game.setWorldSnapshotOutput(arg.substring("--save-snapshot=".length()));
+            } else if (arg.startsWith("--connect=")) {
+                game.setServer(ServerConfig.parseAddress(arg.substring("--connect=".length())));
+            } else if (arg.startsWith("--storage=")) {
+                game.setVoxelStorage(VoxelStorage.fromId(arg.substring("--storage=".length())));
+            } else if (arg.startsWith("--pacing=")) {
+                pacing = FramePacing.fromId(arg.substring("--pacing=".length()));
+            } else if (arg.startsWith("--fps=")) {
+                fps = Integer.parseInt(arg.substring("--fps=".length()));
+                if (fps <= 0) {
+                    throw new IllegalArgumentException("--fps= must be positive");
+                }
+            } else if (arg.startsWith("--frame-budget=")) {
+                frameBudget = Float.parseFloat(arg.substring("--frame-budget=".length()));
+                if (!(frameBudget > 0)) {
+                    throw new IllegalArgumentException("--frame-budget= must be positive");
+                }
+            } else if (arg.startsWith("--min-scale=")) {
+                minScale = Float.parseFloat(arg.substring("--min-scale=".length()));
+                if (!(minScale > 0 && minScale <= 1)) {
+                    throw new IllegalArgumentException("--min-scale= must be in (0, 1]");
+                }
+            }
+        }
+        game.setFramePacing(pacing, fps);
+        game.setDynamicResolution(frameBudget, minScale);
         
         // Start the game
         game.run();
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs the scripted benchmark without a visible window or player input.
+     *
+     * @param config Benchmark settings
+     */
+    private static void runBenchmark(BenchmarkConfig config) {
+        System.out.println("Running benchmark: " + config.getFrames() + " frames, seed " + config.getSeed());
+
+        Game game = new Game();
+        game.setUseGreedyMesher(config.isGreedyMesher());
+        game.setGeometry(config.getGeometry());
+        if (!GreedyMesher.setVectorMasks(config.isVectorMasks()) && config.isVectorMasks()) {
+            System.err.println("Warning: Vector API not available (run with --add-modules jdk.incubator.vector), "
+                    + "using scalar face masks");
+        }
+        game.setBenchmark(config);
+        game.run();
+    }
+
+    /**
+     * Runs a headless world server until the process is stopped, then
+     * saves its world if asked to.
+     *
+     * @param config Server settings
+     */
+    private static void runServer(ServerConfig config) {
+        try {
+            World world = config.createWorld();
+            WorldServer server = new WorldServer(world);
+            server.setBandwidth(config.getClientBandwidth(), config.getBandwidth());
+            int port = server.bind(new InetSocketAddress(config.getPort()));
+            System.out.println("Serving " + world.getSizeX() + "x" + world.getSizeY() + "x" + world.getSizeZ()
+                    + " world (" + world.getChunkCount() + " chunks) on port " + port + " with "
+                    + (WorldServer.usesVirtualThreads() ? "virtual" : "platform") + " threads per client");
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                if (config.getSaveSnapshotPath() != null) {
+                    try {
+                        WorldSnapshot.write(world, Paths.get(config.getSaveSnapshotPath()));
+                        System.out.println("World saved to " + config.getSaveSnapshotPath());
+                    } catch (IOException e) {
+                        System.err.println("Warning: Could not save world snapshot: " + e.getMessage());
+                    }
+                }
+                world.close();
+            }, "pixelito-shutdown"));
+            server.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
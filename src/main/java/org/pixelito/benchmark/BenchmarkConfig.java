@@ -0,0 +1,220 @@
+package org.pixelito.benchmark;
+
+import org.pixelito.render.ChunkGeometry;
+import org.pixelito.window.FramePacing;
+import org.pixelito.world.VoxelStorage;
+
+/**
+ * Settings for an unattended benchmark run, parsed from the command line.
+ * <p>
+ * Recognised options:
+ * <ul>
+ *     <li>{@code --benchmark} enables benchmark mode</li>
+ *     <li>{@code --frames=N} number of measured frames (default 2000)</li>
+ *     <li>{@code --warmup=N} frames rendered before measuring starts (default 120)</li>
+ *     <li>{@code --seed=N} world and camera path seed (default 1337)</li>
+ *     <li>{@code --world=XxYxZ} world size in blocks (default 128x32x128)</li>
+ *     <li>{@code --snapshot=path} load the world from a snapshot instead of generating it; its size replaces {@code --world}</li>
+ *     <li>{@code --mesh-runs=N} how many times the mesh is rebuilt for timing (default 5)</li>
+ *     <li>{@code --mesher=greedy|simple} meshing algorithm to measure (default greedy)</li>
+ *     <li>{@code --geometry=indexed|instanced|pulled} how chunk geometry is stored and drawn (default indexed)</li>
+ *     <li>{@code --storage=dense|sparse|offheap|mapped} how chunks store their blocks (default dense)</li>
+ *     <li>{@code --face-masks=vector|scalar} how greedy meshing finds visible faces (default vector,
+ *     which needs {@code --add-modules jdk.incubator.vector})</li>
+ *     <li>{@code --pacing=uncapped|vsync|limited|low-latency} how frames are paced (default uncapped)</li>
+ *     <li>{@code --fps=N} frame rate limit of the limited pacing modes (default the display's refresh rate)</li>
+ *     <li>{@code --frame-budget=ms} GPU time budget per frame for dynamic resolution (default 0, full resolution)</li>
+ *     <li>{@code --min-scale=S} lowest dynamic resolution scale per axis (default 0.5)</li>
+ *     <li>{@code --out=path} where the JSON report is written (default benchmark-report.json)</li>
+ * </ul>
+ */
+public class BenchmarkConfig {
+    private int frames = 2000;
+    private int warmupFrames = 120;
+    private long seed = 1337L;
+    private int worldSizeX = 128;
+    private int worldSizeY = 32;
+    private int worldSizeZ = 128;
+    private int meshRuns = 5;
+    private boolean greedyMesher = true;
+    private ChunkGeometry geometry = ChunkGeometry.INDEXED;
+    private VoxelStorage voxelStorage = VoxelStorage.DENSE;
+    private boolean vectorMasks = true;
+    private FramePacing framePacing = FramePacing.UNCAPPED;
+    // 0 for the display's refresh rate
+    private int targetFps;
+    // 0 renders at full resolution
+    private float frameBudgetMs;
+    private float minResolutionScale = 0.5f;
+    private String outputPath = "benchmark-report.json";
+    private String snapshotPath;
+
+    /**
+     * Checks whether the benchmark flag is present in the arguments.
+     *
+     * @param args Command-line arguments
+     * @return true if {@code --benchmark} was passed
+     */
+    public static boolean isRequested(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--benchmark")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds a configuration from command-line arguments, keeping the defaults
+     * for any option that is not given.
+     *
+     * @param args Command-line arguments
+     * @return The parsed configuration
+     * @throws IllegalArgumentException If an option has an invalid value
+     */
+    public static BenchmarkConfig fromArgs(String[] args) {
+        BenchmarkConfig config = new BenchmarkConfig();
+        for (String arg : args) {
+            if (arg.startsWith("--frames=")) {
+                config.frames = parsePositive(arg, "--frames=");
+            } else if (arg.startsWith("--warmup=")) {
+                config.warmupFrames = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                config.seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--mesh-runs=")) {
+                config.meshRuns = parsePositive(arg, "--mesh-runs=");
+            } else if (arg.startsWith("--mesher=")) {
+                String mesher = arg.substring("--mesher=".length());
+                if (!mesher.equals("greedy") && !mesher.equals("simple")) {
+                    throw new IllegalArgumentException("Unknown mesher: " + mesher);
+                }
+                config.greedyMesher = mesher.equals("greedy");
+            } else if (arg.startsWith("--geometry=")) {
+                config.geometry = ChunkGeometry.fromId(arg.substring("--geometry=".length()));
+            } else if (arg.startsWith("--storage=")) {
+                config.voxelStorage = VoxelStorage.fromId(arg.substring("--storage=".length()));
+            } else if (arg.startsWith("--face-masks=")) {
+                String masks = arg.substring("--face-masks=".length());
+                if (!masks.equals("vector") && !masks.equals("scalar")) {
+                    throw new IllegalArgumentException("Unknown face masks: " + masks);
+                }
+                config.vectorMasks = masks.equals("vector");
+            } else if (arg.startsWith("--pacing=")) {
+                config.framePacing = FramePacing.fromId(arg.substring("--pacing=".length()));
+            } else if (arg.startsWith("--fps=")) {
+                config.targetFps = parsePositive(arg, "--fps=");
+            } else if (arg.startsWith("--frame-budget=")) {
+                config.frameBudgetMs = Float.parseFloat(arg.substring("--frame-budget=".length()));
+                if (!(config.frameBudgetMs > 0)) {
+                    throw new IllegalArgumentException("--frame-budget= must be positive");
+                }
+            } else if (arg.startsWith("--min-scale=")) {
+                config.minResolutionScale = Float.parseFloat(arg.substring("--min-scale=".length()));
+                if (!(config.minResolutionScale > 0 && config.minResolutionScale <= 1)) {
+                    throw new IllegalArgumentException("--min-scale= must be in (0, 1]");
+                }
+            } else if (arg.startsWith("--snapshot=")) {
+                config.snapshotPath = arg.substring("--snapshot=".length());
+            } else if (arg.startsWith("--out=")) {
+                config.outputPath = arg.substring("--out=".length());
+            } else if (arg.startsWith("--world=")) {
+                String[] parts = arg.substring("--world=".length()).split("x");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Expected --world=XxYxZ but got " + arg);
+                }
+                config.worldSizeX = Integer.parseInt(parts[0]);
+                config.worldSizeY = Integer.parseInt(parts[1]);
+                config.worldSizeZ = Integer.parseInt(parts[2]);
+            }
+        }
+        return config;
+    }
+
+    private static int parsePositive(String arg, String prefix) {
+        int value = Integer.parseInt(arg.substring(prefix.length()));
+        if (value <= 0) {
+            throw new IllegalArgumentException(prefix + " must be positive");
+        }
+        return value;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getWarmupFrames() {
+        return warmupFrames;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getWorldSizeX() {
+        return worldSizeX;
+    }
+
+    public int getWorldSizeY() {
+        return worldSizeY;
+    }
+
+    public int getWorldSizeZ() {
+        return worldSizeZ;
+    }
+
+    public int getMeshRuns() {
+        return meshRuns;
+    }
+
+    public boolean isGreedyMesher() {
+        return greedyMesher;
+    }
+
+    public ChunkGeometry getGeometry() {
+        return geometry;
+    }
+
+    public VoxelStorage getVoxelStorage() {
+        return voxelStorage;
+    }
+
+    /**
+     * Checks whether greedy meshing should compute its face masks with the Vector API.
+     */
+    public boolean isVectorMasks() {
+        return vectorMasks;
+    }
+
+    public FramePacing getFramePacing() {
+        return framePacing;
+    }
+
+    /**
+     * Gets the frame rate limit of the limited pacing modes, or 0 for the display's refresh rate.
+     */
+    public int getTargetFps() {
+        return targetFps;
+    }
+
+    /**
+     * Gets the GPU time budget per frame for dynamic resolution, or 0 to render at full resolution.
+     */
+    public float getFrameBudgetMs() {
+        return frameBudgetMs;
+    }
+
+    public float getMinResolutionScale() {
+        return minResolutionScale;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Gets the world snapshot to load, or null to generate the world.
+     */
+    public String getSnapshotPath() {
+        return snapshotPath;
+    }
+}
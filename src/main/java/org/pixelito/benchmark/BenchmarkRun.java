@@ -0,0 +1,545 @@
+package org.pixelito.benchmark;
+
+import org.joml.Vector3f;
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+import org.pixelito.camera.Camera;
+import org.pixelito.camera.CameraAllocations;
+import org.pixelito.render.GreedyMesher;
+import org.pixelito.util.RenderStats;
+import org.pixelito.util.ResourceTracker;
+import org.pixelito.world.LightEngine;
+import org.pixelito.world.RaycastHit;
+import org.pixelito.world.VoxelRaycast;
+import org.pixelito.world.World;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Drives the camera along a scripted path for a fixed number of frames and
+ * collects the numbers needed for a machine-readable benchmark report.
+ */
+public class BenchmarkRun {
+    // How far ahead on the path the camera looks (fraction of the loop)
+    private static final float LOOK_AHEAD = 0.002f;
+    // Reach of the rays timed by probeRaycasts, far beyond the interactive reach
+    private static final float RAYCAST_REACH = 128.0f;
+
+    private final BenchmarkConfig config;
+    private final int worldSizeX;
+    private final int worldSizeY;
+    private final int worldSizeZ;
+    private final CameraPath path;
+    private final int totalFrames;
+
+    private final long[] frameTimes;
+    private final int[] drawCalls;
+    private final long[] triangles;
+    // GPU time of measured frames, in the order the timer delivered them
+    private final long[] gpuTimes;
+    private int gpuTimeCount;
+    // Dynamic resolution over the measured frames; the scale stays 0 when it is off
+    private double scaleTotal;
+    private int scaleFrames;
+    private float lowestScale = 1.0f;
+    private float lastScale;
+    private int scaleChanges;
+    private final List<Long> meshBuildTimes = new ArrayList<>();
+    private final Map<String, String> environment = new LinkedHashMap<>();
+    private int meshVertices;
+    private int meshFaces;
+    private int meshFacesWithoutOcclusion;
+    private long meshBytes;
+    private long worldLoadNanos = -1;
+    private double cameraUpdateBytes = -1;
+    private double raycastNanos = -1;
+    private double raycastHitRate;
+    private double lightUpdateNanos = -1;
+    private long lightUpdateMaxNanos;
+
+    // CPU time used while the measured frames ran, in cores busy on average; -1 when unknown
+    private double gameThreadCpu = -1;
+    private double processCpu = -1;
+    private long cpuStartWall;
+    private long cpuStartThread;
+    private long cpuStartProcess;
+
+    private int frameIndex;
+
+    // Scratch vectors reused every frame
+    private final Vector3f position = new Vector3f();
+    private final Vector3f ahead = new Vector3f();
+
+    /**
+     * Creates a benchmark run for the given configuration.
+     *
+     * @param config Benchmark settings
+     * @param world The world the camera flies over, generated or loaded from a snapshot
+     */
+    public BenchmarkRun(BenchmarkConfig config, World world) {
+        this.config = config;
+        this.worldSizeX = world.getSizeX();
+        this.worldSizeY = world.getSizeY();
+        this.worldSizeZ = world.getSizeZ();
+        this.path = CameraPath.orbit(config.getSeed(), worldSizeX, worldSizeY, worldSizeZ);
+        this.totalFrames = config.getWarmupFrames() + config.getFrames();
+        this.frameTimes = new long[config.getFrames()];
+        this.drawCalls = new int[config.getFrames()];
+        this.triangles = new long[config.getFrames()];
+        this.gpuTimes = new long[config.getFrames()];
+    }
+
+    /**
+     * Places the camera at the path position for the current frame.
+     *
+     * @param camera The camera to move
+     */
+    public void positionCamera(Camera camera) {
+        float t = (float) frameIndex / totalFrames;
+        path.position(t, position);
+        path.position(t + LOOK_AHEAD, ahead);
+        camera.setPosition(position);
+        camera.setRotation(CameraPath.yawTowards(position, ahead), CameraPath.pitch());
+    }
+
+    /**
+     * Records the end of a frame. Warm-up frames are rendered but not recorded.
+     *
+     * @param frameNanos Wall-clock time the frame took, in nanoseconds
+     */
+    public void endFrame(long frameNanos) {
+        int measured = frameIndex - config.getWarmupFrames();
+        if (measured >= 0 && measured < frameTimes.length) {
+            frameTimes[measured] = frameNanos;
+            drawCalls[measured] = RenderStats.getDrawCalls();
+            triangles[measured] = RenderStats.getTriangles();
+        }
+        // CPU usage is taken from the end of the first measured frame to the end of the last
+        if (measured == 0) {
+            cpuStartWall = System.nanoTime();
+            cpuStartThread = threadCpuTime();
+            cpuStartProcess = processCpuTime();
+        } else if (measured == frameTimes.length - 1) {
+            long wall = System.nanoTime() - cpuStartWall;
+            long thread = threadCpuTime();
+            long process = processCpuTime();
+            if (wall > 0 && thread >= 0 && cpuStartThread >= 0) {
+                gameThreadCpu = (double) (thread - cpuStartThread) / wall;
+            }
+            if (wall > 0 && process >= 0 && cpuStartProcess >= 0) {
+                processCpu = (double) (process - cpuStartProcess) / wall;
+            }
+        }
+        frameIndex++;
+    }
+
+    // CPU time of the calling thread, or -1 if the JVM cannot measure it
+    private static long threadCpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    // CPU time of the whole process, or -1 if the JVM cannot measure it
+    private static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Records the GPU time of a frame that finished on the GPU. Only
+     * recorded while the measured frames are being rendered.
+     *
+     * @param nanos GPU time in nanoseconds
+     */
+    public void recordGpuTime(long nanos) {
+        if (isMeasuring() && gpuTimeCount < gpuTimes.length) {
+            gpuTimes[gpuTimeCount++] = nanos;
+        }
+    }
+
+    /**
+     * Records the resolution scale the current frame renders at.
+     *
+     * @param scale Scale per axis, 1 for full resolution
+     */
+    public void recordResolutionScale(float scale) {
+        if (!isMeasuring()) {
+            return;
+        }
+        if (scaleFrames > 0 && scale != lastScale) {
+            scaleChanges++;
+        }
+        scaleTotal += scale;
+        scaleFrames++;
+        lowestScale = Math.min(lowestScale, scale);
+        lastScale = scale;
+    }
+
+    private boolean isMeasuring() {
+        int measured = frameIndex - config.getWarmupFrames();
+        return measured >= 0 && measured < frameTimes.length;
+    }
+
+    /**
+     * Measures how many bytes a camera update plus view matrix rebuild
+     * allocates, so allocation regressions in the per-frame camera path show
+     * up in the report. Reported as -1 when the JVM cannot measure it.
+     */
+    public void probeCameraAllocations() {
+        int calls = 100_000;
+        long bytes = CameraAllocations.measure(calls);
+        if (bytes >= 0) {
+            cameraUpdateBytes = (double) bytes / calls;
+        }
+    }
+
+    /**
+     * Times voxel raycasts from points along the camera path in many
+     * directions, so the cost of block picking at long reach shows up in
+     * the report.
+     *
+     * @param world The world to cast against
+     */
+    public void probeRaycasts(World world) {
+        RaycastHit hit = new RaycastHit();
+        Vector3f direction = new Vector3f();
+        int rays = 20_000;
+        // Warm up first so JIT compilation is not counted
+        castRays(world, rays, direction, hit);
+        long start = System.nanoTime();
+        int hits = castRays(world, rays, direction, hit);
+        raycastNanos = (double) (System.nanoTime() - start) / rays;
+        raycastHitRate = (double) hits / rays;
+    }
+
+    private int castRays(World world, int rays, Vector3f direction, RaycastHit hit) {
+        int hits = 0;
+        for (int i = 0; i < rays; i++) {
+            path.position((float) i / rays, position);
+            // Spread the directions evenly: golden angle around, pitch from level down to steep
+            double yaw = i * 2.399963;
+            double pitch = -Math.toRadians(5 + (i % 16) * 5);
+            direction.set((float) (Math.cos(yaw) * Math.cos(pitch)), (float) Math.sin(pitch),
+                    (float) (Math.sin(yaw) * Math.cos(pitch)));
+            if (VoxelRaycast.cast(world, position, direction, RAYCAST_REACH, hit)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Times incremental light updates by placing and removing a torch at
+     * empty spots along the camera path. The world is left as it was.
+     *
+     * @param world The lit world
+     * @param light The light engine of the world
+     */
+    public void probeLightUpdates(World world, LightEngine light) {
+        Block torch = Block.of(BlockType.TORCH);
+        int spots = 500;
+        // The first pass warms up the JIT, the second is measured
+        for (int pass = 0; pass < 2; pass++) {
+            long total = 0;
+            long max = 0;
+            int updates = 0;
+            for (int i = 0; i < spots; i++) {
+                path.position((float) i / spots, position);
+                int x = (int) Math.floor(position.x);
+                int y = Math.min((int) Math.floor(position.y), world.getSizeY() - 1);
+                int z = (int) Math.floor(position.z);
+                if (!world.contains(x, y, z) || world.getBlock(x, y, z) != null) {
+                    continue;
+                }
+                for (int step = 0; step < 2; step++) {
+                    world.setBlock(x, y, z, step == 0 ? torch : null);
+                    long start = System.nanoTime();
+                    light.onBlockChanged(x, y, z);
+                    long nanos = System.nanoTime() - start;
+                    total += nanos;
+                    max = Math.max(max, nanos);
+                    updates++;
+                }
+            }
+            lightUpdateNanos = updates == 0 ? -1 : (double) total / updates;
+            lightUpdateMaxNanos = max;
+        }
+        light.clearDirtyChunks();
+    }
+
+    /**
+     * Checks whether all warm-up and measured frames have been rendered.
+     */
+    public boolean isFinished() {
+        return frameIndex >= totalFrames;
+    }
+
+    /**
+     * Records the time taken by one mesh build.
+     *
+     * @param nanos Build time in nanoseconds
+     * @param vertices Vertex count of the resulting mesh
+     * @param faces Face count of the resulting mesh
+     * @param facesWithoutOcclusion Face count the same mesh has without ambient occlusion
+     * @param bytes GPU memory taken by the resulting mesh
+     */
+    public void recordMeshBuild(long nanos, int vertices, int faces, int facesWithoutOcclusion, long bytes) {
+        meshBuildTimes.add(nanos);
+        meshVertices = vertices;
+        meshFaces = faces;
+        meshFacesWithoutOcclusion = facesWithoutOcclusion;
+        meshBytes = bytes;
+    }
+
+    /**
+     * Records the time taken to generate the world or load its snapshot.
+     */
+    public void recordWorldLoad(long nanos) {
+        worldLoadNanos = nanos;
+    }
+
+    /**
+     * Adds a free-form entry to the environment section of the report,
+     * such as the OpenGL renderer string.
+     */
+    public void putEnvironment(String key, String value) {
+        environment.put(key, value);
+    }
+
+    /**
+     * Writes the report as JSON to the configured output path.
+     *
+     * @param mesher Name of the meshing algorithm that was used
+     * @return The path the report was written to
+     * @throws IOException If the report cannot be written
+     */
+    public Path writeReport(String mesher) throws IOException {
+        Path out = Paths.get(config.getOutputPath());
+        Files.write(out, toJson(mesher).getBytes(StandardCharsets.UTF_8));
+        return out;
+    }
+
+    /**
+     * Builds the JSON report.
+     *
+     * @param mesher Name of the meshing algorithm that was used
+     * @return The report as a JSON string
+     */
+    public String toJson(String mesher) {
+        int count = Math.min(Math.max(frameIndex - config.getWarmupFrames(), 0), frameTimes.length);
+        long[] sorted = Arrays.copyOf(frameTimes, count);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += frameTimes[i];
+        }
+        // Spread of the frame times around their mean, in ms squared
+        double variance = 0;
+        for (int i = 0; i < count; i++) {
+            double deviation = (frameTimes[i] - (double) total / count) / 1_000_000.0;
+            variance += deviation * deviation;
+        }
+        variance = count == 0 ? 0 : variance / count;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"config\": {")
+                .append("\"frames\": ").append(config.getFrames())
+                .append(", \"warmupFrames\": ").append(config.getWarmupFrames())
+                .append(", \"seed\": ").append(config.getSeed())
+                .append(", \"world\": [").append(worldSizeX).append(", ")
+                .append(worldSizeY).append(", ").append(worldSizeZ).append("]")
+                .append(", \"snapshot\": ").append(quote(config.getSnapshotPath()))
+                .append(", \"mesher\": ").append(quote(mesher))
+                .append(", \"geometry\": ").append(quote(config.getGeometry().getId()))
+                .append(", \"storage\": ").append(quote(config.getVoxelStorage().getId()))
+                .append(", \"faceMasks\": ").append(quote(GreedyMesher.isVectorMasks() ? "vector" : "scalar"))
+                .append(", \"pacing\": ").append(quote(config.getFramePacing().getId()))
+                .append(", \"targetFps\": ").append(config.getTargetFps())
+                .append(", \"frameBudgetMs\": ").append(format(config.getFrameBudgetMs()))
+                .append(", \"minScale\": ").append(format(config.getMinResolutionScale()))
+                .append("},\n");
+
+        sb.append("  \"environment\": {");
+        environment.put("java.version", System.getProperty("java.version"));
+        environment.put("os.name", System.getProperty("os.name"));
+        environment.put("os.arch", System.getProperty("os.arch"));
+        environment.put("cpus", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        boolean first = true;
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            if (!first) sb.append(", ");
+            sb.append(quote(entry.getKey())).append(": ").append(quote(entry.getValue()));
+            first = false;
+        }
+        sb.append("},\n");
+
+        sb.append("  \"frameTime\": {")
+                .append("\"count\": ").append(count)
+                .append(", \"totalMs\": ").append(ms(total))
+                .append(", \"avgMs\": ").append(count == 0 ? "0" : ms(total / count))
+                .append(", \"avgFps\": ").append(count == 0 ? "0" : format(count / (total / 1e9)))
+                .append(", \"minMs\": ").append(count == 0 ? "0" : ms(sorted[0]))
+                .append(", \"maxMs\": ").append(count == 0 ? "0" : ms(sorted[count - 1]))
+                .append(", \"p50Ms\": ").append(ms(percentile(sorted, 50.0)))
+                .append(", \"p90Ms\": ").append(ms(percentile(sorted, 90.0)))
+                .append(", \"p95Ms\": ").append(ms(percentile(sorted, 95.0)))
+                .append(", \"p99Ms\": ").append(ms(percentile(sorted, 99.0)))
+                .append(", \"p999Ms\": ").append(ms(percentile(sorted, 99.9)))
+                .append(", \"stdDevMs\": ").append(format(Math.sqrt(variance)))
+                .append(", \"varianceMs2\": ").append(format(variance))
+                .append("},\n");
+        long[] gpuSorted = Arrays.copyOf(gpuTimes, gpuTimeCount);
+        Arrays.sort(gpuSorted);
+        long gpuTotal = 0;
+        for (long nanos : gpuSorted) {
+            gpuTotal += nanos;
+        }
+        sb.append("  \"gpuTime\": {\"count\": ").append(gpuTimeCount)
+                .append(", \"avgMs\": ").append(gpuTimeCount == 0 ? "0" : ms(gpuTotal / gpuTimeCount))
+                .append(", \"p50Ms\": ").append(ms(percentile(gpuSorted, 50.0)))
+                .append(", \"p99Ms\": ").append(ms(percentile(gpuSorted, 99.0)))
+                .append(", \"maxMs\": ").append(gpuTimeCount == 0 ? "0" : ms(gpuSorted[gpuTimeCount - 1]))
+                .append("},\n");
+        sb.append("  \"resolutionScale\": {\"avg\": ").append(scaleFrames == 0 ? "1.000" : format(scaleTotal / scaleFrames))
+                .append(", \"lowest\": ").append(format(lowestScale))
+                .append(", \"changes\": ").append(scaleChanges).append("},\n");
+        sb.append("  \"cpu\": {\"gameThreadCores\": ").append(format(gameThreadCpu))
+                .append(", \"processCores\": ").append(format(processCpu)).append("},\n");
+
+        long drawCallTotal = 0;
+        int drawCallMax = 0;
+        long triangleTotal = 0;
+        long triangleMax = 0;
+        for (int i = 0; i < count; i++) {
+            drawCallTotal += drawCalls[i];
+            drawCallMax = Math.max(drawCallMax, drawCalls[i]);
+            triangleTotal += triangles[i];
+            triangleMax = Math.max(triangleMax, triangles[i]);
+        }
+        sb.append("  \"drawCalls\": {\"avg\": ").append(count == 0 ? "0" : format((double) drawCallTotal / count))
+                .append(", \"max\": ").append(drawCallMax).append("},\n");
+        sb.append("  \"triangles\": {\"avg\": ").append(count == 0 ? "0" : format((double) triangleTotal / count))
+                .append(", \"max\": ").append(triangleMax).append("},\n");
+
+        sb.append("  \"worldLoadMs\": ").append(worldLoadNanos < 0 ? "-1" : ms(worldLoadNanos)).append(",\n");
+        sb.append("  \"meshBuild\": {\"vertices\": ").append(meshVertices)
+                .append(", \"faces\": ").append(meshFaces)
+                .append(", \"facesWithoutAO\": ").append(meshFacesWithoutOcclusion)
+                .append(", \"bytes\": ").append(meshBytes)
+                .append(", \"runsMs\": [");
+        long buildMin = Long.MAX_VALUE;
+        long buildTotal = 0;
+        for (int i = 0; i < meshBuildTimes.size(); i++) {
+            long nanos = meshBuildTimes.get(i);
+            if (i > 0) sb.append(", ");
+            sb.append(ms(nanos));
+            buildMin = Math.min(buildMin, nanos);
+            buildTotal += nanos;
+        }
+        sb.append("]");
+        if (!meshBuildTimes.isEmpty()) {
+            sb.append(", \"minMs\": ").append(ms(buildMin))
+                    .append(", \"avgMs\": ").append(ms(buildTotal / meshBuildTimes.size()));
+        }
+        sb.append("},\n");
+
+        sb.append("  \"memory\": ").append(memoryJson()).append(",\n");
+        sb.append("  \"resources\": {");
+        for (ResourceTracker.Category category : ResourceTracker.Category.values()) {
+            if (category.ordinal() > 0) sb.append(", ");
+            sb.append(quote(category.getId())).append(": {\"count\": ").append(ResourceTracker.getCount(category))
+                    .append(", \"bytes\": ").append(ResourceTracker.getBytes(category)).append("}");
+        }
+        sb.append("},\n");
+        sb.append("  \"cameraUpdateAllocatedBytesPerCall\": ").append(format(cameraUpdateBytes)).append(",\n");
+        sb.append("  \"raycast\": {\"reach\": ").append(format(RAYCAST_REACH))
+                .append(", \"avgMicros\": ").append(format(raycastNanos < 0 ? -1 : raycastNanos / 1000.0))
+                .append(", \"hitRate\": ").append(format(raycastHitRate)).append("},\n");
+        sb.append("  \"lightUpdate\": {\"avgMicros\": ")
+                .append(format(lightUpdateNanos < 0 ? -1 : lightUpdateNanos / 1000.0))
+                .append(", \"maxMicros\": ").append(format(lightUpdateMaxNanos / 1000.0)).append("},\n");
+
+        sb.append("  \"frameTimesMs\": [");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(ms(frameTimes[i]));
+        }
+        sb.append("]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String memoryJson() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(gc.getCollectionCount(), 0);
+            gcTime += Math.max(gc.getCollectionTime(), 0);
+        }
+        return "{\"heapUsedBytes\": " + heap.getUsed()
+                + ", \"heapCommittedBytes\": " + heap.getCommitted()
+                + ", \"heapMaxBytes\": " + heap.getMax()
+                + ", \"nonHeapUsedBytes\": " + nonHeap.getUsed()
+                + ", \"gcCount\": " + gcCount
+                + ", \"gcTimeMs\": " + gcTime + "}";
+    }
+
+    /**
+     * Nearest-rank percentile of an already sorted array.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(Math.max(rank - 1, 0), sorted.length - 1)];
+    }
+
+    private static String ms(long nanos) {
+        return format(nanos / 1_000_000.0);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
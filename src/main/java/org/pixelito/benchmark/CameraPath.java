@@ -0,0 +1,109 @@
+package org.pixelito.benchmark;
+
+import org.joml.Vector3f;
+
+import java.util.Random;
+
+/**
+ * A closed Catmull-Rom spline used to fly the camera over the world in a
+ * repeatable way. The same seed and world size always produce the same path.
+ */
+public class CameraPath {
+    // Downward tilt so the terrain stays in view while flying over it
+    private static final float VIEW_TILT_DEGREES = -25.0f;
+
+    private final Vector3f[] points;
+
+    /**
+     * Creates a path through the given control points. The path loops back
+     * from the last point to the first one.
+     *
+     * @param points Control points (at least 4)
+     */
+    public CameraPath(Vector3f[] points) {
+        if (points.length < 4) {
+            throw new IllegalArgumentException("A camera path needs at least 4 control points");
+        }
+        this.points = points;
+    }
+
+    /**
+     * Creates a loop around the centre of a world, jittered by the seed.
+     *
+     * @param seed Seed for the control point jitter
+     * @param sizeX World width in blocks
+     * @param sizeY World height in blocks
+     * @param sizeZ World depth in blocks
+     * @return A deterministic camera path
+     */
+    public static CameraPath orbit(long seed, int sizeX, int sizeY, int sizeZ) {
+        Random random = new Random(seed);
+        int count = 8;
+        Vector3f[] points = new Vector3f[count];
+        float centerX = sizeX / 2.0f;
+        float centerZ = sizeZ / 2.0f;
+        for (int i = 0; i < count; i++) {
+            double angle = (Math.PI * 2.0 * i) / count;
+            float radius = 0.25f + random.nextFloat() * 0.15f;
+            float x = centerX + (float) Math.cos(angle) * sizeX * radius;
+            float z = centerZ + (float) Math.sin(angle) * sizeZ * radius;
+            float y = sizeY + 2.0f + random.nextFloat() * 6.0f;
+            points[i] = new Vector3f(x, y, z);
+        }
+        return new CameraPath(points);
+    }
+
+    /**
+     * Evaluates the spline position.
+     *
+     * @param t Position along the loop, wraps around every 1.0
+     * @param dest Vector receiving the position
+     * @return dest
+     */
+    public Vector3f position(float t, Vector3f dest) {
+        float wrapped = t - (float) Math.floor(t);
+        float scaled = wrapped * points.length;
+        int segment = (int) scaled;
+        float local = scaled - segment;
+
+        Vector3f p0 = points[(segment - 1 + points.length) % points.length];
+        Vector3f p1 = points[segment % points.length];
+        Vector3f p2 = points[(segment + 1) % points.length];
+        Vector3f p3 = points[(segment + 2) % points.length];
+
+        dest.x = catmullRom(p0.x, p1.x, p2.x, p3.x, local);
+        dest.y = catmullRom(p0.y, p1.y, p2.y, p3.y, local);
+        dest.z = catmullRom(p0.z, p1.z, p2.z, p3.z, local);
+        return dest;
+    }
+
+    /**
+     * Computes the yaw the camera should use at a point of the path, facing
+     * along the direction of travel.
+     *
+     * @param position Current path position
+     * @param ahead Path position slightly further along
+     * @return Yaw in degrees
+     */
+    public static float yawTowards(Vector3f position, Vector3f ahead) {
+        return (float) Math.toDegrees(Math.atan2(ahead.z - position.z, ahead.x - position.x));
+    }
+
+    /**
+     * Gets the pitch used while following the path.
+     *
+     * @return Pitch in degrees
+     */
+    public static float pitch() {
+        return VIEW_TILT_DEGREES;
+    }
+
+    private static float catmullRom(float p0, float p1, float p2, float p3, float t) {
+        float t2 = t * t;
+        float t3 = t2 * t;
+        return 0.5f * ((2.0f * p1)
+                + (-p0 + p2) * t
+                + (2.0f * p0 - 5.0f * p1 + 4.0f * p2 - p3) * t2
+                + (-p0 + 3.0f * p1 - 3.0f * p2 + p3) * t3);
+    }
+}
@@ -1,8 +1,25 @@
 package org.pixelito.block;
 
 public class Block {
+    // Blocks only hold their type and never change, so one instance per type is enough
+    private static final Block[] SHARED = new Block[BlockType.values().length];
+
+    static {
+        for (BlockType type : BlockType.values()) {
+            SHARED[type.ordinal()] = new Block(type);
+        }
+    }
+
     private final BlockType type;
 
+    /**
+     * Gets the shared block of a type. Prefer this over the constructor so
+     * filling a world creates no objects.
+     */
+    public static Block of(BlockType type) {
+        return SHARED[type.ordinal()];
+    }
+
     public Block(BlockType type) {
         this.type = type;
     }
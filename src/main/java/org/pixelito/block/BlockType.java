@@ -10,13 +10,16 @@ public enum BlockType {
     GRASS(true, 2, 0),
     SAND(true, 3, 0),
     WOOD(true, 0, 1),
-    LEAVES(true, 1, 1),
-    WATER(false, 2, 1),
-    BRICK(true, 3, 1);
+    LEAVES(true, true, 1, 1, 0),
+    WATER(false, true, 2, 1, 0),
+    BRICK(true, 3, 1),
+    TORCH(true, 0, 2, 14);
 
     private final boolean solid;
+    private final boolean translucent; // Drawn blended, after all opaque blocks
     private final int textureX; // X position in texture atlas (0-3)
     private final int textureY; // Y position in texture atlas (0-3)
+    private final int lightEmission; // Block light level emitted (0-15)
 
     /**
      * Creates a new block type with texture coordinates in the texture atlas.
@@ -26,9 +29,36 @@ public enum BlockType {
      * @param textureY Y position in the texture atlas (0-3)
      */
     BlockType(boolean solid, int textureX, int textureY) {
+        this(solid, textureX, textureY, 0);
+    }
+
+    /**
+     * Creates a new block type that emits light.
+     * 
+     * @param solid Whether the block is solid
+     * @param textureX X position in the texture atlas (0-3)
+     * @param textureY Y position in the texture atlas (0-3)
+     * @param lightEmission Block light level emitted (0-15)
+     */
+    BlockType(boolean solid, int textureX, int textureY, int lightEmission) {
+        this(solid, false, textureX, textureY, lightEmission);
+    }
+
+    /**
+     * Creates a new block type that may be see-through.
+     * 
+     * @param solid Whether the block is solid
+     * @param translucent Whether the block is drawn blended, after all opaque blocks
+     * @param textureX X position in the texture atlas (0-3)
+     * @param textureY Y position in the texture atlas (0-3)
+     * @param lightEmission Block light level emitted (0-15)
+     */
+    BlockType(boolean solid, boolean translucent, int textureX, int textureY, int lightEmission) {
         this.solid = solid;
+        this.translucent = translucent;
         this.textureX = textureX;
         this.textureY = textureY;
+        this.lightEmission = lightEmission;
     }
 
     /**
@@ -40,6 +70,24 @@ public enum BlockType {
         return solid;
     }
 
+    /**
+     * Checks if this block type is see-through and drawn in the blended pass.
+     * 
+     * @return true if the block is translucent
+     */
+    public boolean isTranslucent() {
+        return translucent;
+    }
+
+    /**
+     * Gets the block light level this block type emits.
+     * 
+     * @return Light level (0-15), 0 for blocks that do not glow
+     */
+    public int getLightEmission() {
+        return lightEmission;
+    }
+
     /**
      * Gets the X position of this block's texture in the texture atlas.
      * 
@@ -2,6 +2,7 @@ package org.pixelito.camera;
 
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.pixelito.input.KeyCode;
 import org.pixelito.input.Keyboard;
 import org.pixelito.input.Mouse;
@@ -9,6 +10,9 @@ import org.pixelito.input.Mouse;
 /**
  * Camera class that handles 3D perspective and movement.
  * Implements WASD movement and mouse look controls.
+ * <p>
+ * Updating the camera and building its view matrix never allocates; getters
+ * return read-only views of the internal vectors or fill caller-supplied ones.
  */
 public class Camera {
     // Camera position
@@ -31,12 +35,15 @@ public class Camera {
     // View matrix cache
     private final Matrix4f viewMatrix = new Matrix4f();
     private boolean viewMatrixDirty = true;
+    // Rotation-only view matrix cache, only changes when the camera turns
+    private final Matrix4f relativeViewMatrix = new Matrix4f();
+    private boolean relativeViewMatrixDirty = true;
     
     /**
      * Creates a camera at the specified position
      * @param position Initial camera position
      */
-    public Camera(Vector3f position) {
+    public Camera(Vector3fc position) {
         this.position = new Vector3f(position);
         updateCameraVectors();
     }
@@ -60,6 +67,14 @@ public class Camera {
         processMouse();
     }
     
+    /**
+     * Updates only the view direction from mouse input, for when something
+     * else (such as a player controller) moves the camera
+     */
+    public void updateLook() {
+        processMouse();
+    }
+    
     /**
      * Handle keyboard input for camera movement
      */
@@ -67,32 +82,32 @@ public class Camera {
         float velocity = moveSpeed * deltaTime;
         
         if (Keyboard.isKeyDown(KeyCode.W)) {
-            position.add(new Vector3f(front).mul(velocity));
+            position.fma(velocity, front);
             viewMatrixDirty = true;
         }
         
         if (Keyboard.isKeyDown(KeyCode.S)) {
-            position.sub(new Vector3f(front).mul(velocity));
+            position.fma(-velocity, front);
             viewMatrixDirty = true;
         }
         
         if (Keyboard.isKeyDown(KeyCode.A)) {
-            position.sub(new Vector3f(right).mul(velocity));
+            position.fma(-velocity, right);
             viewMatrixDirty = true;
         }
         
         if (Keyboard.isKeyDown(KeyCode.D)) {
-            position.add(new Vector3f(right).mul(velocity));
+            position.fma(velocity, right);
             viewMatrixDirty = true;
         }
         
         if (Keyboard.isKeyDown(KeyCode.SPACE)) {
-            position.add(new Vector3f(up).mul(velocity));
+            position.fma(velocity, up);
             viewMatrixDirty = true;
         }
         
         if (Keyboard.isKeyDown(KeyCode.LEFT_SHIFT)) {
-            position.sub(new Vector3f(up).mul(velocity));
+            position.fma(-velocity, up);
             viewMatrixDirty = true;
         }
     }
@@ -138,6 +153,7 @@ public class Camera {
         // Update camera vectors
         updateCameraVectors();
         viewMatrixDirty = true;
+        relativeViewMatrixDirty = true;
     }
     
     /**
@@ -164,36 +180,111 @@ public class Camera {
      */
     public Matrix4f getViewMatrix() {
         if (viewMatrixDirty) {
-            Vector3f target = new Vector3f(position).add(front);
-            viewMatrix.identity().lookAt(position, target, up);
+            viewMatrix.setLookAt(
+                    position.x, position.y, position.z,
+                    position.x + front.x, position.y + front.y, position.z + front.z,
+                    up.x, up.y, up.z);
             viewMatrixDirty = false;
         }
         return viewMatrix;
     }
+
+    /**
+     * Gets the view matrix with the camera at the origin, for camera-relative
+     * rendering: geometry is positioned relative to the camera before it is
+     * transformed, so this only rotates. It has no large translation that
+     * would cost float precision far from the world's origin.
+     * @return The rotation-only view matrix
+     */
+    public Matrix4f getRelativeViewMatrix() {
+        if (relativeViewMatrixDirty) {
+            relativeViewMatrix.setLookAt(
+                    0.0f, 0.0f, 0.0f,
+                    front.x, front.y, front.z,
+                    up.x, up.y, up.z);
+            relativeViewMatrixDirty = false;
+        }
+        return relativeViewMatrix;
+    }
     
     /**
      * Sets the camera's position
      * @param position New position
      */
-    public void setPosition(Vector3f position) {
+    public void setPosition(Vector3fc position) {
         this.position.set(position);
         viewMatrixDirty = true;
     }
     
+    /**
+     * Sets the camera's orientation directly
+     * @param yaw Horizontal rotation in degrees
+     * @param pitch Vertical rotation in degrees, clamped to [-89, 89]
+     */
+    public void setRotation(float yaw, float pitch) {
+        this.yaw = yaw;
+        this.pitch = Math.max(-89.0f, Math.min(89.0f, pitch));
+        updateCameraVectors();
+        viewMatrixDirty = true;
+        relativeViewMatrixDirty = true;
+    }
+
     /**
      * Gets the camera's position
-     * @return Current position
+     * @return Read-only view of the current position, updated in place as the camera moves
+     */
+    public Vector3fc getPosition() {
+        return position;
+    }
+    
+    /**
+     * Copies the camera's position into a caller-supplied vector
+     * @param dest Vector receiving the position
+     * @return dest
      */
-    public Vector3f getPosition() {
-        return new Vector3f(position);
+    public Vector3f getPosition(Vector3f dest) {
+        return dest.set(position);
     }
     
     /**
      * Gets the camera's front vector (direction it's looking)
-     * @return Front vector
+     * @return Read-only view of the front vector, updated in place as the camera turns
      */
-    public Vector3f getFront() {
-        return new Vector3f(front);
+    public Vector3fc getFront() {
+        return front;
+    }
+    
+    /**
+     * Copies the camera's front vector into a caller-supplied vector
+     * @param dest Vector receiving the front vector
+     * @return dest
+     */
+    public Vector3f getFront(Vector3f dest) {
+        return dest.set(front);
+    }
+    
+    /**
+     * Gets the camera's up vector
+     * @return Read-only view of the up vector
+     */
+    public Vector3fc getUp() {
+        return up;
+    }
+    
+    /**
+     * Gets the horizontal rotation
+     * @return Yaw in degrees
+     */
+    public float getYaw() {
+        return yaw;
+    }
+    
+    /**
+     * Gets the vertical rotation
+     * @return Pitch in degrees
+     */
+    public float getPitch() {
+        return pitch;
     }
     
     /**
@@ -204,6 +295,13 @@ public class Camera {
         this.moveSpeed = speed;
     }
     
+    /**
+     * Gets the mouse sensitivity, in degrees per pixel
+     */
+    public float getMouseSensitivity() {
+        return mouseSensitivity;
+    }
+
     /**
      * Sets the mouse sensitivity
      * @param sensitivity New mouse sensitivity
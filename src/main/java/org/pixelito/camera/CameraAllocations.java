@@ -0,0 +1,75 @@
+package org.pixelito.camera;
+
+import org.pixelito.input.KeyCode;
+import org.pixelito.input.Keyboard;
+import org.pixelito.input.Mouse;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures how many bytes the per-frame camera path allocates: an update
+ * with movement keys held and the mouse turning the camera, followed by
+ * rebuilding both view matrices.
+ * <p>
+ * Drives the shared {@link Keyboard} and {@link Mouse} state, so it must run
+ * on the thread that consumes input, or while nothing else does. The state
+ * it touches is restored afterwards.
+ */
+public final class CameraAllocations {
+    private CameraAllocations() {
+    }
+
+    /**
+     * Measures the camera path on the calling thread.
+     *
+     * @param calls Number of frames to measure, after five times as many to warm up
+     * @return Bytes allocated over all measured frames, or -1 if the JVM cannot measure it
+     */
+    public static long measure(int calls) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        boolean wasCaptured = Mouse.isCaptured();
+        double mouseX = Mouse.getX();
+        double mouseY = Mouse.getY();
+        Camera camera = new Camera();
+        Keyboard.setKey(KeyCode.W, true);
+        Keyboard.setKey(KeyCode.D, true);
+        Mouse.setCapturedState(true);
+        try {
+            // Warm up first so class loading and JIT compilation are not counted
+            for (int i = 0; i < calls * 5; i++) {
+                frame(camera, i);
+            }
+            // The measurement call itself may allocate, measure that too and subtract it
+            long baseline = allocations.getThreadAllocatedBytes(threadId);
+            long before = allocations.getThreadAllocatedBytes(threadId);
+            long overhead = before - baseline;
+            for (int i = 0; i < calls; i++) {
+                frame(camera, i);
+            }
+            long after = allocations.getThreadAllocatedBytes(threadId);
+            return Math.max(0, after - before - overhead);
+        } finally {
+            Keyboard.setKey(KeyCode.W, false);
+            Keyboard.setKey(KeyCode.D, false);
+            Mouse.setCapturedState(wasCaptured);
+            Mouse.init(mouseX, mouseY);
+        }
+    }
+
+    private static void frame(Camera camera, int i) {
+        // Move the cursor every frame so the camera turns, both sideways and up and down
+        Mouse.setPosition(i & 1, (i >> 1) & 1);
+        camera.update(1.0f / 60.0f);
+        camera.getViewMatrix();
+        camera.getRelativeViewMatrix();
+    }
+}
@@ -0,0 +1,83 @@
+package org.pixelito.graphics;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL33;
+
+/**
+ * Measures how long the GPU takes to execute the commands of a frame, with
+ * timer queries.
+ * <p>
+ * A query's result is only known once the GPU has caught up with it, a
+ * frame or more later, and waiting for it would stall the pipeline. The
+ * timer therefore keeps a small ring of queries in flight and hands out
+ * results as they become available. If the GPU falls so far behind that
+ * every query is still pending, frames go untimed until one finishes.
+ */
+public class GpuTimer {
+    private static final int QUERIES = 4;
+
+    private final int[] queries = new int[QUERIES];
+    private final boolean[] pending = new boolean[QUERIES];
+    // The slot the next frame is timed with, which is also the oldest one in flight
+    private int next;
+    private boolean timing;
+
+    /**
+     * Creates the queries. Needs a current OpenGL 3.3 context.
+     */
+    public GpuTimer() {
+        GL15.glGenQueries(queries);
+    }
+
+    /**
+     * Starts timing a frame. Timer queries cannot be nested with other
+     * elapsed-time queries.
+     */
+    public void begin() {
+        timing = !pending[next];
+        if (timing) {
+            GL15.glBeginQuery(GL33.GL_TIME_ELAPSED, queries[next]);
+        }
+    }
+
+    /**
+     * Stops timing the frame started by {@link #begin()}.
+     */
+    public void end() {
+        if (timing) {
+            GL15.glEndQuery(GL33.GL_TIME_ELAPSED);
+            pending[next] = true;
+            next = (next + 1) % QUERIES;
+            timing = false;
+        }
+    }
+
+    /**
+     * Collects the frames the GPU has finished since the last call, without waiting.
+     *
+     * @return GPU time of the newest finished frame in nanoseconds, or -1 if none finished
+     */
+    public long poll() {
+        long newest = -1;
+        // Queries finish in the order they were issued, oldest first
+        for (int i = 0; i < QUERIES; i++) {
+            int slot = (next + i) % QUERIES;
+            if (!pending[slot]) {
+                continue;
+            }
+            if (GL15.glGetQueryObjecti(queries[slot], GL15.GL_QUERY_RESULT_AVAILABLE) == GL15.GL_FALSE) {
+                break;
+            }
+            newest = GL33.glGetQueryObjectui64(queries[slot], GL15.GL_QUERY_RESULT);
+            pending[slot] = false;
+        }
+        return newest;
+    }
+
+    /**
+     * Deletes the queries.
+     */
+    public void destroy() {
+        GL15.glDeleteQueries(queries);
+    }
+}
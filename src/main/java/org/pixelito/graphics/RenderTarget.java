@@ -0,0 +1,112 @@
+package org.pixelito.graphics;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+import org.pixelito.util.ResourceTracker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An offscreen framebuffer with a color texture and a depth buffer, for
+ * rendering the scene at a lower resolution than the window and scaling it
+ * up to the screen.
+ * <p>
+ * The attachments are allocated once at the largest size; a frame renders
+ * into the lower-left corner at whatever size it needs, so changing the
+ * resolution every frame costs nothing. When the window is resized the
+ * target has to be replaced with one of the new size.
+ */
+public class RenderTarget {
+    private final int framebuffer;
+    private final int colorTexture;
+    private final int depthBuffer;
+    private final int width;
+    private final int height;
+    private final ResourceTracker.Resource resource;
+
+    /**
+     * Creates the framebuffer.
+     *
+     * @param width Largest width that will be rendered, in pixels
+     * @param height Largest height that will be rendered, in pixels
+     */
+    public RenderTarget(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        colorTexture = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, colorTexture);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, width, height, 0, GL11.GL_RGBA,
+                GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+
+        depthBuffer = GL30.glGenRenderbuffers();
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, depthBuffer);
+        GL30.glRenderbufferStorage(GL30.GL_RENDERBUFFER, GL30.GL_DEPTH_COMPONENT24, width, height);
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+
+        framebuffer = GL30.glGenFramebuffers();
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, framebuffer);
+        GL30.glFramebufferTexture2D(GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, colorTexture, 0);
+        GL30.glFramebufferRenderbuffer(GL30.GL_FRAMEBUFFER, GL30.GL_DEPTH_ATTACHMENT, GL30.GL_RENDERBUFFER, depthBuffer);
+        int status = GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        if (status != GL30.GL_FRAMEBUFFER_COMPLETE) {
+            GL30.glDeleteFramebuffers(framebuffer);
+            GL30.glDeleteRenderbuffers(depthBuffer);
+            GL11.glDeleteTextures(colorTexture);
+            throw new IllegalStateException("Render target is incomplete: 0x" + Integer.toHexString(status));
+        }
+        // RGBA8 color and 24-bit depth, padded to four bytes
+        resource = ResourceTracker.track(ResourceTracker.Category.TEXTURES, "Render target", (long) width * height * 8);
+    }
+
+    /**
+     * Makes this the target of the following draws, covering the given size.
+     *
+     * @param renderWidth Width to render at, at most {@link #getWidth()}
+     * @param renderHeight Height to render at, at most {@link #getHeight()}
+     */
+    public void bind(int renderWidth, int renderHeight) {
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, framebuffer);
+        GL11.glViewport(0, 0, renderWidth, renderHeight);
+    }
+
+    /**
+     * Scales the rendered area up to fill the window's framebuffer, with
+     * bilinear filtering, and makes the window the draw target again.
+     *
+     * @param renderWidth Width that was rendered
+     * @param renderHeight Height that was rendered
+     * @param screenWidth Width of the window's framebuffer
+     * @param screenHeight Height of the window's framebuffer
+     */
+    public void blitToScreen(int renderWidth, int renderHeight, int screenWidth, int screenHeight) {
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, framebuffer);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, 0);
+        GL30.glBlitFramebuffer(0, 0, renderWidth, renderHeight, 0, 0, screenWidth, screenHeight,
+                GL11.GL_COLOR_BUFFER_BIT, GL11.GL_LINEAR);
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        GL11.glViewport(0, 0, screenWidth, screenHeight);
+    }
+
+    /**
+     * Deletes the framebuffer and its attachments.
+     */
+    public void destroy() {
+        GL30.glDeleteFramebuffers(framebuffer);
+        GL30.glDeleteRenderbuffers(depthBuffer);
+        GL11.glDeleteTextures(colorTexture);
+        resource.release();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,120 @@
+package org.pixelito.graphics;
+
+/**
+ * Picks the resolution scale the scene is rendered at so that the GPU time
+ * of a frame stays within a budget.
+ * <p>
+ * GPU times are smoothed, and the scale only moves in steps of
+ * {@link #STEP}. It drops as soon as the smoothed time is over budget, far
+ * enough that the frame should fit again, assuming the cost follows the
+ * pixel count. It only grows back after the time has stayed well under the
+ * budget for a while, and only if the grown frame is still expected to
+ * fit, so it does not swing back and forth across the budget. After every
+ * change the timings still in flight from the old scale are ignored.
+ */
+public class ResolutionScaler {
+    /** Granularity of the scale */
+    public static final float STEP = 0.05f;
+    // Share of the budget a shrunk frame aims for, and that smoothed time must stay under to grow
+    private static final double HEADROOM = 0.85;
+    // Frames of headroom needed before growing
+    private static final int GROW_FRAMES = 30;
+    // Frames ignored after a change, covering the timer queries still in flight
+    private static final int SETTLE_FRAMES = 8;
+    // Weight of a new sample in the smoothed time
+    private static final double SMOOTHING = 0.2;
+
+    private final long budgetNanos;
+    private final float minScale;
+    private float scale = 1.0f;
+    private double smoothedNanos = -1;
+    private int calmFrames;
+    private int settleFrames;
+    private int changes;
+
+    /**
+     * Creates a scaler starting at full resolution.
+     *
+     * @param budgetNanos GPU time a frame should stay within
+     * @param minScale Lowest scale allowed, in (0, 1]
+     */
+    public ResolutionScaler(long budgetNanos, float minScale) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive");
+        }
+        if (!(minScale > 0 && minScale <= 1)) {
+            throw new IllegalArgumentException("Minimum scale must be in (0, 1]");
+        }
+        this.budgetNanos = budgetNanos;
+        this.minScale = minScale;
+    }
+
+    /**
+     * Feeds the GPU time of a finished frame and updates the scale.
+     *
+     * @param gpuNanos GPU time of the frame
+     * @return The scale to render the next frame at
+     */
+    public float update(long gpuNanos) {
+        if (settleFrames > 0) {
+            settleFrames--;
+            return scale;
+        }
+        smoothedNanos = smoothedNanos < 0 ? gpuNanos : smoothedNanos + (gpuNanos - smoothedNanos) * SMOOTHING;
+
+        if (smoothedNanos > budgetNanos && scale > minScale) {
+            calmFrames = 0;
+            // The pixel count, and so the cost, goes with the square of the scale
+            double fit = scale * Math.sqrt(budgetNanos * HEADROOM / smoothedNanos);
+            setScale(Math.min(quantize(fit), scale - STEP));
+        } else if (smoothedNanos < budgetNanos * HEADROOM && scale < 1.0f) {
+            float grown = Math.min(1.0f, scale + STEP);
+            double expected = smoothedNanos * (grown / scale) * (grown / scale);
+            if (++calmFrames >= GROW_FRAMES && expected < budgetNanos * HEADROOM) {
+                setScale(grown);
+            }
+        } else {
+            calmFrames = 0;
+        }
+        return scale;
+    }
+
+    private void setScale(float newScale) {
+        // Snap to the step grid so that repeated steps do not drift
+        newScale = Math.max(minScale, Math.min(1.0f, Math.round(newScale / STEP) * STEP));
+        if (newScale != scale) {
+            // Start smoothing the new scale's timings from the expected cost rather than from scratch
+            smoothedNanos *= (newScale / scale) * (newScale / scale);
+            scale = newScale;
+            changes++;
+            calmFrames = 0;
+            settleFrames = SETTLE_FRAMES;
+        }
+    }
+
+    // Rounds down to a whole number of steps
+    private static float quantize(double value) {
+        return (float) (Math.floor(value / STEP + 1e-6) * STEP);
+    }
+
+    /**
+     * Gets the current scale of the render resolution, per axis.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets how many times the scale has changed.
+     */
+    public int getChangeCount() {
+        return changes;
+    }
+
+    /**
+     * Gets the GPU time budget of a frame.
+     */
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+}
@@ -10,11 +10,16 @@ import java.nio.file.Paths;
 import java.nio.FloatBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import org.pixelito.util.ResourceTracker;
 
 
 public class ShaderProgram {
     private final int programId;
     private final Map<String, Integer> uniformLocations = new HashMap<>();
+    // Reused for matrix uploads so setting a uniform doesn't allocate every frame
+    private final FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(16);
+    // The driver does not say how much memory a program takes, so only the count is tracked
+    private final ResourceTracker.Resource resource;
 
     public ShaderProgram(String vertexPath, String fragmentPath) throws IOException {
         int vertexShader = loadShader(vertexPath, GL20.GL_VERTEX_SHADER);
@@ -33,6 +38,7 @@ public class ShaderProgram {
         GL20.glDetachShader(programId, fragmentShader);
         GL20.glDeleteShader(vertexShader);
         GL20.glDeleteShader(fragmentShader);
+        resource = ResourceTracker.track(ResourceTracker.Category.SHADERS, "ShaderProgram", 0);
     }
 
     public int getUniformLocation(String name) {
@@ -45,9 +51,8 @@ public class ShaderProgram {
     }
 
     public void setUniform(String name, Matrix4f value) {
-        FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
-        value.get(buffer);
-        GL20.glUniformMatrix4fv(getUniformLocation(name), false, buffer);
+        value.get(matrixBuffer);
+        GL20.glUniformMatrix4fv(getUniformLocation(name), false, matrixBuffer);
     }
     
     /**
@@ -70,6 +75,24 @@ public class ShaderProgram {
         GL20.glUniform1f(getUniformLocation(name), value);
     }
 
+    /**
+     * Sets an ivec3 uniform in the shader.
+     *
+     * @param name The name of the uniform
+     */
+    public void setUniform(String name, int x, int y, int z) {
+        GL20.glUniform3i(getUniformLocation(name), x, y, z);
+    }
+
+    /**
+     * Sets a vec3 uniform in the shader.
+     *
+     * @param name The name of the uniform
+     */
+    public void setUniform(String name, float x, float y, float z) {
+        GL20.glUniform3f(getUniformLocation(name), x, y, z);
+    }
+
     private int loadShader(String path, int type) throws IOException {
         String source = Files.readString(Paths.get(path));
         int shader = GL20.glCreateShader(type);
@@ -96,6 +119,7 @@ public class ShaderProgram {
 
     public void destroy() {
         GL20.glDeleteProgram(programId);
+        resource.release();
     }
 
     public int getId() {
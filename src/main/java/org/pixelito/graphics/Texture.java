@@ -5,6 +5,7 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.system.MemoryStack;
+import org.pixelito.util.ResourceTracker;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -20,6 +21,7 @@ public class Texture {
     private final int id;
     private int width;
     private int height;
+    private ResourceTracker.Resource resource;
 
     /**
      * Creates a texture from an image file.
@@ -69,6 +71,7 @@ public class Texture {
 
         // Unbind the texture
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        track();
     }
 
     /**
@@ -100,6 +103,12 @@ public class Texture {
 
         // Unbind the texture
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        track();
+    }
+
+    // RGBA8 plus a full mipmap chain, which adds a third
+    private void track() {
+        resource = ResourceTracker.track(ResourceTracker.Category.TEXTURES, "Texture", (long) width * height * 4 * 4 / 3);
     }
 
     /**
@@ -121,6 +130,7 @@ public class Texture {
      */
     public void destroy() {
         GL11.glDeleteTextures(id);
+        resource.release();
     }
 
     /**
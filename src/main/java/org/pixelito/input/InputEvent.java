@@ -0,0 +1,39 @@
+package org.pixelito.input;
+
+/**
+ * A single timestamped input event. Instances are mutable holders that are
+ * reused when draining the {@link InputEventQueue}, so reading input never
+ * allocates.
+ */
+public class InputEvent {
+    public static final int KEY = 1;
+    public static final int CURSOR = 2;
+    public static final int BUTTON = 3;
+    public static final int SCROLL = 4;
+    public static final int CAPTURE = 5;
+
+    /** Event type, one of the constants above */
+    public int type;
+    /** Key code or mouse button */
+    public int code;
+    /** Whether the key or button went down, or whether the cursor was captured */
+    public boolean pressed;
+    /** Cursor position or scroll offset */
+    public double x, y;
+    /** Time the event arrived, from {@link System#nanoTime()} */
+    public long time;
+
+    /**
+     * Applies this event to the {@link Keyboard} and {@link Mouse} state.
+     */
+    public void dispatch() {
+        switch (type) {
+            case KEY -> Keyboard.setKey(code, pressed);
+            case CURSOR -> Mouse.setPosition(x, y);
+            case BUTTON -> Mouse.setButton(code, pressed);
+            case SCROLL -> Mouse.setScroll(x, y);
+            case CAPTURE -> Mouse.setCapturedState(pressed);
+            default -> throw new IllegalStateException("Unknown input event type " + type);
+        }
+    }
+}
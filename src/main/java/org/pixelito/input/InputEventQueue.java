@@ -0,0 +1,132 @@
+package org.pixelito.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of timestamped input
+ * events.
+ * <p>
+ * The producer is the thread pumping GLFW events, which stamps every event
+ * the moment its callback fires. The consumer is the simulation thread, which
+ * drains events up to the end time of each simulation tick, so every press,
+ * release and cursor movement is applied in order and at the right step
+ * instead of being collapsed into one per-frame state.
+ * <p>
+ * Events are stored in parallel primitive arrays; neither side allocates.
+ */
+public class InputEventQueue {
+    private final int mask;
+    private final int[] types;
+    private final int[] codes;
+    private final boolean[] pressed;
+    private final double[] xs;
+    private final double[] ys;
+    private final long[] times;
+
+    // Next slot to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // Next slot to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    // Each side caches the other side's index to avoid re-reading it every call
+    private long producerHeadCache;
+    private long consumerTailCache;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a queue.
+     *
+     * @param capacity Maximum number of pending events, rounded up to a power of two
+     */
+    public InputEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        types = new int[size];
+        codes = new int[size];
+        pressed = new boolean[size];
+        xs = new double[size];
+        ys = new double[size];
+        times = new long[size];
+    }
+
+    /**
+     * Adds an event. Must only be called from the producer thread.
+     *
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(int type, int code, boolean down, double x, double y, long time) {
+        long t = tail.getPlain();
+        if (t - producerHeadCache > mask) {
+            producerHeadCache = head.getAcquire();
+            if (t - producerHeadCache > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        int index = (int) (t & mask);
+        types[index] = type;
+        codes[index] = code;
+        pressed[index] = down;
+        xs[index] = x;
+        ys[index] = y;
+        times[index] = time;
+        // Publish the slot contents before the new tail becomes visible
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Takes the oldest event if it happened at or before the deadline.
+     * Must only be called from the consumer thread.
+     *
+     * @param deadline Latest event time to accept, from {@link System#nanoTime()}
+     * @param dest Holder receiving the event
+     * @return true if an event was copied into dest
+     */
+    public boolean poll(long deadline, InputEvent dest) {
+        return poll(deadline, true, dest);
+    }
+
+    /**
+     * Takes the oldest event regardless of its time.
+     * Must only be called from the consumer thread.
+     *
+     * @param dest Holder receiving the event
+     * @return true if an event was copied into dest
+     */
+    public boolean poll(InputEvent dest) {
+        return poll(0, false, dest);
+    }
+
+    private boolean poll(long deadline, boolean checkDeadline, InputEvent dest) {
+        long h = head.getPlain();
+        if (h >= consumerTailCache) {
+            consumerTailCache = tail.getAcquire();
+            if (h >= consumerTailCache) {
+                return false;
+            }
+        }
+        int index = (int) (h & mask);
+        // nanoTime values may wrap, so compare by difference
+        if (checkDeadline && times[index] - deadline > 0) {
+            return false;
+        }
+        dest.type = types[index];
+        dest.code = codes[index];
+        dest.pressed = pressed[index];
+        dest.x = xs[index];
+        dest.y = ys[index];
+        dest.time = times[index];
+        // Hand the slot back to the producer only after it has been read
+        head.setRelease(h + 1);
+        return true;
+    }
+
+    /**
+     * Gets the number of events dropped because the consumer fell behind.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,196 @@
+package org.pixelito.input;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Records raw input events to a compact binary file so a play session can be
+ * replayed exactly with {@link InputReplay}.
+ * <p>
+ * File layout: the magic {@code "PXIR"}, a version byte, then a stream of
+ * records. Every record starts with a type byte and the time since the
+ * previous record in microseconds (zigzag varint, since events are consumed
+ * after the step marker that precedes them), followed by its payload.
+ * Input events carry the time they arrived at, not the time they were consumed:
+ * <ul>
+ *     <li>STEP: no payload. Starts a simulation tick; the events that
+ *     follow were consumed by that tick</li>
+ *     <li>KEY: key code (short), pressed (byte)</li>
+ *     <li>CURSOR_ABS: absolute cursor position (2 doubles), only for the first cursor event</li>
+ *     <li>CURSOR: cursor movement since the previous cursor event (2 floats)</li>
+ *     <li>BUTTON: button (byte), pressed (byte)</li>
+ *     <li>SCROLL: scroll offsets (2 floats)</li>
+ *     <li>CAPTURE: captured (byte)</li>
+ * </ul>
+ */
+public class InputRecorder implements Closeable {
+    static final int MAGIC = 0x50584952; // "PXIR"
+    static final int VERSION = 3;
+
+    static final int KEY = 1;
+    static final int CURSOR_ABS = 2;
+    static final int CURSOR = 3;
+    static final int BUTTON = 4;
+    static final int SCROLL = 5;
+    static final int STEP = 6;
+    static final int CAPTURE = 7;
+
+    private final DataOutputStream out;
+    private long lastEventTime;
+    private boolean hasCursor;
+    private double cursorX, cursorY;
+    private int steps;
+
+    /**
+     * Creates a recorder writing to the given file, replacing it if it exists.
+     *
+     * @param path Output file
+     * @throws IOException If the file cannot be created
+     */
+    public InputRecorder(Path path) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile()), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        lastEventTime = System.nanoTime();
+    }
+
+    /**
+     * Marks the start of a simulation tick.
+     */
+    public void beginStep() {
+        try {
+            writeHeader(STEP, System.nanoTime());
+            steps++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records an event as it is consumed by the simulation.
+     */
+    public void record(InputEvent event) {
+        switch (event.type) {
+            case InputEvent.KEY -> recordKey(event.code, event.pressed, event.time);
+            case InputEvent.CURSOR -> recordCursor(event.x, event.y, event.time);
+            case InputEvent.BUTTON -> recordButton(event.code, event.pressed, event.time);
+            case InputEvent.SCROLL -> recordScroll(event.x, event.y, event.time);
+            case InputEvent.CAPTURE -> recordCapture(event.pressed, event.time);
+            default -> throw new IllegalArgumentException("Unknown input event type " + event.type);
+        }
+    }
+
+    /**
+     * Records a key state change.
+     */
+    private void recordKey(int key, boolean pressed, long time) {
+        try {
+            writeHeader(KEY, time);
+            out.writeShort(key);
+            out.writeBoolean(pressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records a cursor position. Only the movement since the previous cursor
+     * event is stored, except for the very first one.
+     */
+    private void recordCursor(double x, double y, long time) {
+        try {
+            if (!hasCursor) {
+                writeHeader(CURSOR_ABS, time);
+                out.writeDouble(x);
+                out.writeDouble(y);
+                cursorX = x;
+                cursorY = y;
+                hasCursor = true;
+            } else {
+                float dx = (float) (x - cursorX);
+                float dy = (float) (y - cursorY);
+                writeHeader(CURSOR, time);
+                out.writeFloat(dx);
+                out.writeFloat(dy);
+                // Track the position the replay will reconstruct, so rounding never drifts
+                cursorX += dx;
+                cursorY += dy;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records a mouse button state change.
+     */
+    private void recordButton(int button, boolean pressed, long time) {
+        try {
+            writeHeader(BUTTON, time);
+            out.writeByte(button);
+            out.writeBoolean(pressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records a scroll wheel event.
+     */
+    private void recordScroll(double xOffset, double yOffset, long time) {
+        try {
+            writeHeader(SCROLL, time);
+            out.writeFloat((float) xOffset);
+            out.writeFloat((float) yOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records the cursor being captured or released.
+     */
+    private void recordCapture(boolean captured, long time) {
+        try {
+            writeHeader(CAPTURE, time);
+            out.writeBoolean(captured);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the number of simulation ticks recorded so far.
+     */
+    public int getStepCount() {
+        return steps;
+    }
+
+    private void writeHeader(int type, long time) throws IOException {
+        long micros = (time - lastEventTime) / 1000;
+        lastEventTime = time;
+        out.writeByte(type);
+        writeVarLong(out, (micros << 1) ^ (micros >> 63));
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Flushes and closes the recording file.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
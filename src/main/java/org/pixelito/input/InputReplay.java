@@ -0,0 +1,163 @@
+package org.pixelito.input;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Plays back a file written by {@link InputRecorder}. Events are fed through
+ * the same {@link Keyboard} and {@link Mouse} entry points live events are
+ * dispatched to, in the same simulation tick they were consumed in. Ticks
+ * always have the fixed simulation delta, so a session replays the same way
+ * every time regardless of frame timing.
+ */
+public class InputReplay implements Closeable {
+    private final DataInputStream in;
+    private int nextType = -1;
+    private boolean finished;
+    private double cursorX, cursorY;
+    private int steps;
+    private final InputEvent event = new InputEvent();
+
+    /**
+     * Opens a recording for playback.
+     *
+     * @param path Recording file
+     * @throws IOException If the file cannot be read or is not a recording
+     */
+    public InputReplay(Path path) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile()), 1 << 16));
+        if (in.readInt() != InputRecorder.MAGIC) {
+            in.close();
+            throw new IOException("Not an input recording: " + path);
+        }
+        int version = in.readUnsignedByte();
+        if (version != InputRecorder.VERSION) {
+            in.close();
+            throw new IOException("Unsupported input recording version " + version);
+        }
+        readNextType();
+    }
+
+    /**
+     * Starts the next recorded tick and feeds its events into the input
+     * state, in place of the live queue.
+     *
+     * @return false when the recording has ended
+     */
+    public boolean beginStep() {
+        try {
+            if (finished) {
+                return false;
+            }
+            if (nextType != InputRecorder.STEP) {
+                throw new IOException("Corrupt input recording, expected a step marker");
+            }
+            readVarLong();
+            steps++;
+            readNextType();
+            while (!finished && nextType != InputRecorder.STEP) {
+                dispatch(nextType);
+                readNextType();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks whether every recorded tick has been played.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Gets the number of simulation ticks played so far.
+     */
+    public int getStepCount() {
+        return steps;
+    }
+
+    private void dispatch(int type) throws IOException {
+        readVarLong(); // Timestamp, informational only
+        event.time = System.nanoTime();
+        switch (type) {
+            case InputRecorder.KEY -> {
+                event.type = InputEvent.KEY;
+                event.code = in.readShort();
+                event.pressed = in.readBoolean();
+            }
+            case InputRecorder.CURSOR_ABS -> {
+                cursorX = in.readDouble();
+                cursorY = in.readDouble();
+                setCursorEvent();
+            }
+            case InputRecorder.CURSOR -> {
+                cursorX += in.readFloat();
+                cursorY += in.readFloat();
+                setCursorEvent();
+            }
+            case InputRecorder.BUTTON -> {
+                event.type = InputEvent.BUTTON;
+                event.code = in.readUnsignedByte();
+                event.pressed = in.readBoolean();
+            }
+            case InputRecorder.SCROLL -> {
+                event.type = InputEvent.SCROLL;
+                event.x = in.readFloat();
+                event.y = in.readFloat();
+            }
+            case InputRecorder.CAPTURE -> {
+                event.type = InputEvent.CAPTURE;
+                event.pressed = in.readBoolean();
+            }
+            default -> throw new IOException("Corrupt input recording, unknown event type " + type);
+        }
+        event.dispatch();
+    }
+
+    private void setCursorEvent() {
+        event.type = InputEvent.CURSOR;
+        event.x = cursorX;
+        event.y = cursorY;
+    }
+
+    private void readNextType() throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            finished = true;
+        }
+        nextType = type;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated input recording");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Closes the recording file.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
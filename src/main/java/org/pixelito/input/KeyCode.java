@@ -7,9 +7,16 @@ public class KeyCode {
     public static final int S = GLFW_KEY_S;
     public static final int A     = GLFW_KEY_A;
     public static final int D    = GLFW_KEY_D;
+    public static final int F    = GLFW_KEY_F;
     public static final int G    = GLFW_KEY_G;
+    public static final int I    = GLFW_KEY_I;
+    public static final int M    = GLFW_KEY_M;
     public static final int P    = GLFW_KEY_P;
+    public static final int NUM_1 = GLFW_KEY_1;
+    public static final int NUM_2 = GLFW_KEY_2;
     public static final int SPACE     = GLFW_KEY_SPACE;
     public static final int LEFT_SHIFT   = GLFW_KEY_LEFT_SHIFT;
     public static final int ESCAPE   = GLFW_KEY_ESCAPE;
+    public static final int MOUSE_LEFT   = GLFW_MOUSE_BUTTON_LEFT;
+    public static final int MOUSE_RIGHT  = GLFW_MOUSE_BUTTON_RIGHT;
 }
\ No newline at end of file
@@ -6,16 +6,15 @@ public class Keyboard {
 
     private static final boolean[] keys = new boolean[GLFW.GLFW_KEY_LAST];
     private static final boolean[] keysPressed = new boolean[GLFW.GLFW_KEY_LAST];
-    private static final boolean[] previousKeys = new boolean[GLFW.GLFW_KEY_LAST];
 
     public static void setKey(int key, boolean pressed) {
         if (key >= 0 && key < keys.length) {
-            // Store the key's previous state before updating
-            previousKeys[key] = keys[key];
+            // A key is "pressed" when it transitions from released to pressed. The flag is only
+            // cleared by update(), so a press and release within the same step is not lost
+            if (pressed && !keys[key]) {
+                keysPressed[key] = true;
+            }
             keys[key] = pressed;
-            
-            // A key is "pressed" only on the frame it transitions from released to pressed
-            keysPressed[key] = pressed && !previousKeys[key];
         }
     }
 
@@ -30,8 +29,8 @@ public class Keyboard {
     }
     
     /**
-     * Checks if a key was just pressed this frame.
-     * Returns true only on the frame when the key transitions from released to pressed.
+     * Checks if a key was just pressed this step.
+     * Returns true only in the step in which the key transitions from released to pressed.
      * 
      * @param key The key code to check
      * @return true if the key was just pressed
@@ -41,7 +40,7 @@ public class Keyboard {
     }
     
     /**
-     * Called at the end of each frame to reset the "just pressed" state.
+     * Called at the end of each simulation step to reset the "just pressed" state.
      */
     public static void update() {
         for (int i = 0; i < keysPressed.length; i++) {
@@ -17,7 +17,6 @@ public class Mouse {
     // Mouse buttons state
     private static final boolean[] buttons = new boolean[GLFW.GLFW_MOUSE_BUTTON_LAST];
     private static final boolean[] buttonsPressed = new boolean[GLFW.GLFW_MOUSE_BUTTON_LAST];
-    private static final boolean[] previousButtons = new boolean[GLFW.GLFW_MOUSE_BUTTON_LAST];
     
     // Scroll wheel
     private static double scrollX, scrollY;
@@ -77,21 +76,21 @@ public class Mouse {
      */
     public static void setButton(int button, boolean pressed) {
         if (button >= 0 && button < buttons.length) {
-            // Store previous state
-            previousButtons[button] = buttons[button];
+            // A button is "pressed" when it transitions from released to pressed,
+            // and stays flagged until update() so quick clicks are not lost
+            if (pressed && !buttons[button]) {
+                buttonsPressed[button] = true;
+            }
             buttons[button] = pressed;
-            
-            // A button is "pressed" only on the frame it transitions from released to pressed
-            buttonsPressed[button] = pressed && !previousButtons[button];
         }
     }
     
     /**
-     * Sets the scroll wheel offset
+     * Adds a scroll wheel offset (several scroll events can arrive in one step)
      */
     public static void setScroll(double xOffset, double yOffset) {
-        scrollX = xOffset;
-        scrollY = yOffset;
+        scrollX += xOffset;
+        scrollY += yOffset;
     }
     
     /**
@@ -102,7 +101,7 @@ public class Mouse {
     }
     
     /**
-     * Checks if a mouse button was just pressed this frame
+     * Checks if a mouse button was just pressed this step
      */
     public static boolean isButtonPressed(int button) {
         return button >= 0 && button < buttonsPressed.length && buttonsPressed[button];
@@ -155,17 +154,26 @@ public class Mouse {
     }
     
     /**
-     * Set whether the mouse is captured (hidden and locked to window center)
+     * Set whether the mouse is captured (hidden and locked to window center).
+     * Changes both the GLFW cursor mode and the input state, so it must be
+     * called from the main thread while no other thread is reading input.
      */
     public static void setCaptured(boolean capture, long windowHandle) {
-        captured = capture;
-        
+        applyCursorMode(capture, windowHandle);
+        setCapturedState(capture);
+    }
+    
+    /**
+     * Changes the GLFW cursor mode only. Must be called from the main thread.
+     * Raw (unaccelerated) mouse motion is enabled while captured when supported.
+     */
+    public static void applyCursorMode(boolean capture, long windowHandle) {
         if (capture) {
             // Hide cursor and capture it
             GLFW.glfwSetInputMode(windowHandle, GLFW.GLFW_CURSOR, GLFW.GLFW_CURSOR_DISABLED);
-            
-            // Reset first mouse flag to avoid jumps when recapturing
-            firstMouse = true;
+            if (GLFW.glfwRawMouseMotionSupported()) {
+                GLFW.glfwSetInputMode(windowHandle, GLFW.GLFW_RAW_MOUSE_MOTION, GLFW.GLFW_TRUE);
+            }
             
             // Center cursor to the middle of the window
             int[] width = new int[1];
@@ -174,10 +182,32 @@ public class Mouse {
             GLFW.glfwSetCursorPos(windowHandle, width[0] / 2, height[0] / 2);
         } else {
             // Show cursor and release it
+            if (GLFW.glfwRawMouseMotionSupported()) {
+                GLFW.glfwSetInputMode(windowHandle, GLFW.GLFW_RAW_MOUSE_MOTION, GLFW.GLFW_FALSE);
+            }
             GLFW.glfwSetInputMode(windowHandle, GLFW.GLFW_CURSOR, GLFW.GLFW_CURSOR_NORMAL);
         }
     }
     
+    /**
+     * Updates the captured flag on the thread that consumes input
+     */
+    public static void setCapturedState(boolean capture) {
+        captured = capture;
+        if (capture) {
+            // Reset first mouse flag to avoid jumps when recapturing
+            firstMouse = true;
+        }
+    }
+    
+    /**
+     * Checks whether cursor movement currently turns into deltas: the mouse
+     * is captured and its first position since capture has arrived.
+     */
+    public static boolean isTracking() {
+        return captured && !firstMouse;
+    }
+
     /**
      * Check if mouse is currently captured
      */
@@ -186,7 +216,7 @@ public class Mouse {
     }
     
     /**
-     * Reset scroll wheel offsets and button pressed states (call at end of frame)
+     * Reset scroll wheel offsets and button pressed states (call at end of each simulation step)
      */
     public static void update() {
         // Reset scroll offsets
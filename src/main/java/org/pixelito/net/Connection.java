@@ -0,0 +1,152 @@
+package org.pixelito.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * One non-blocking socket speaking the {@link Protocol}: splits incoming
+ * bytes into frames and queues outgoing frames until the socket accepts
+ * them. Belongs to the thread running its selector.
+ * <p>
+ * Outgoing frames are queued as they are, never copied, so one frame
+ * buffer can be sent to many connections as {@link ByteBuffer#duplicate()
+ * duplicates}. How many bytes are still queued is the connection's
+ * backpressure signal.
+ */
+class Connection {
+    // Buffers handed to one gathering write
+    private static final int MAX_GATHER = 64;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(Protocol.READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private long queuedBytes;
+    private long sentBytes;
+    private long receivedBytes;
+
+    /**
+     * Registers a connected channel with a selector, switching it to non-blocking mode.
+     *
+     * @param channel Connected socket
+     * @param selector Selector of the thread that will own the connection
+     * @param attachment Object to attach to the selection key
+     */
+    Connection(SocketChannel channel, Selector selector, Object attachment) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        key = channel.register(selector, SelectionKey.OP_READ, attachment);
+    }
+
+    /**
+     * Queues a frame. The socket is written when the selector reports it writable.
+     *
+     * @param frame Frame positioned at its first byte; must not be changed afterwards
+     */
+    void send(ByteBuffer frame) {
+        out.addLast(frame);
+        queuedBytes += frame.remaining();
+        if (key.isValid()) {
+            key.interestOpsOr(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Writes queued frames until the socket stops accepting bytes.
+     *
+     * @return true if the queue is now empty
+     */
+    boolean flush() throws IOException {
+        while (!out.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer frame : out) {
+                gather[count++] = frame;
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+            long written = channel.write(gather, 0, count);
+            Arrays.fill(gather, 0, count, null);
+            queuedBytes -= written;
+            sentBytes += written;
+            while (!out.isEmpty() && !out.peekFirst().hasRemaining()) {
+                out.removeFirst();
+            }
+            if (written == 0) {
+                break;
+            }
+        }
+        if (out.isEmpty()) {
+            key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads what the socket has and hands every complete frame to the handler.
+     *
+     * @return false once the other side has closed the connection
+     * @throws IOException If reading fails or a frame is malformed
+     */
+    boolean read(Protocol.Handler handler) throws IOException {
+        int read = channel.read(in);
+        if (read < 0) {
+            return false;
+        }
+        receivedBytes += read;
+        in.flip();
+        Protocol.dispatch(in, handler);
+        in.compact();
+        return true;
+    }
+
+    /**
+     * Stops or resumes reading, to push back on a peer that sends faster
+     * than its replies can be delivered.
+     */
+    void setReading(boolean reading) {
+        if (reading) {
+            key.interestOpsOr(SelectionKey.OP_READ);
+        } else {
+            key.interestOpsAnd(~SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Gets the bytes queued but not yet accepted by the socket.
+     */
+    long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    long getSentBytes() {
+        return sentBytes;
+    }
+
+    long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * Closes the socket and drops anything still queued.
+     */
+    void close() {
+        key.cancel();
+        out.clear();
+        queuedBytes = 0;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Closing a socket that already failed; nothing left to do
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package org.pixelito.net;
+
+import org.pixelito.block.BlockType;
+import org.pixelito.world.World;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Load test of the world server: many simulated clients on one selector
+ * thread download the world and then send block changes at a fixed rate,
+ * while the server runs in the same process on the loopback interface
+ * (or elsewhere, with {@code --target}). From the moment they connect the
+ * clients walk random paths and report their position, so the server
+ * keeps re-prioritising the chunks it streams to them.
+ * <p>
+ * Reports how long the downloads took, the download throughput, and the
+ * round trip of block changes: every client times how long each of its
+ * own changes takes to come back from the server. For an in-process
+ * server it also reports the server's tick durations and bandwidth, which
+ * show how many players one machine sustains. Slow clients connect but
+ * never read, to check that they cannot hold up the others.
+ */
+public class LoadTest {
+    private static final long SECOND_NANOS = 1_000_000_000L;
+    // How long all clients may take to download the world before editing starts anyway
+    private static final long DOWNLOAD_TIMEOUT_NANOS = 60 * SECOND_NANOS;
+    // Time after the last edit for the last replies to arrive
+    private static final long DRAIN_NANOS = SECOND_NANOS;
+    private static final BlockType[] EDIT_TYPES = {BlockType.BRICK, BlockType.AIR};
+    // Walking speed of the simulated players in blocks per second
+    private static final float WALK_SPEED = 8.0f;
+    // Largest change of heading per second, in radians
+    private static final float TURN_RATE = 1.5f;
+    private static final long POSITION_INTERVAL_NANOS = 100_000_000L;
+
+    private final ServerConfig config;
+    private final Random random = new Random(1);
+    private final List<SimulatedClient> clients = new ArrayList<>();
+    private Selector selector;
+
+    private long[] downloadNanos = new long[0];
+    private long[] roundTrips = new long[1024];
+    private int roundTripCount;
+    private long editsSent;
+    private long changesReceived;
+    private int failures;
+
+    private class SimulatedClient implements Protocol.Handler {
+        final boolean slow;
+        final long connectTime;
+        Connection connection;
+        int sizeX;
+        int sizeY;
+        int sizeZ;
+        int chunksExpected = -1;
+        BitSet chunks;
+        long downloadTime = -1;
+        long nextEdit;
+        // Walk across the world, known once the WORLD message arrived
+        float x;
+        float z;
+        float heading;
+        long lastMove;
+        long nextPosition;
+        // Send time of each change in flight, by position and type
+        final Map<Long, Long> pending = new HashMap<>();
+
+        SimulatedClient(boolean slow, long connectTime) {
+            this.slow = slow;
+            this.connectTime = connectTime;
+        }
+
+        @Override
+        public void frame(byte type, ByteBuffer payload) throws IOException {
+            if (type == Protocol.WORLD) {
+                sizeX = payload.getInt();
+                sizeY = payload.getInt();
+                sizeZ = payload.getInt();
+                chunksExpected = payload.getInt();
+                chunks = new BitSet(chunksExpected);
+                x = random.nextFloat() * sizeX;
+                z = random.nextFloat() * sizeZ;
+                heading = random.nextFloat() * 2.0f * (float) Math.PI;
+                lastMove = System.nanoTime();
+            } else if (type == Protocol.CHUNK) {
+                int index = payload.getInt();
+                if (chunks == null || index < 0 || index >= chunksExpected || chunks.get(index)) {
+                    throw new IOException("Unexpected chunk " + index);
+                }
+                chunks.set(index);
+            } else if (type == Protocol.WORLD_END) {
+                if (chunks == null || chunks.cardinality() != chunksExpected) {
+                    throw new IOException("World ended before all chunks arrived");
+                }
+                downloadTime = System.nanoTime() - connectTime;
+            } else if (type == Protocol.BLOCK) {
+                changesReceived++;
+                Long sent = pending.remove(key(payload.getInt(), payload.getInt(), payload.getInt(), payload.get()));
+                if (sent != null) {
+                    recordRoundTrip(System.nanoTime() - sent);
+                }
+            } else {
+                throw new IOException("Unexpected message " + type);
+            }
+        }
+
+        /**
+         * Walks on, turning a little at random and bouncing off the world's
+         * borders, and reports the position every {@link #POSITION_INTERVAL_NANOS}.
+         */
+        void move(long now) {
+            float seconds = (now - lastMove) / 1e9f;
+            lastMove = now;
+            heading += (random.nextFloat() * 2.0f - 1.0f) * TURN_RATE * seconds;
+            x += (float) Math.cos(heading) * WALK_SPEED * seconds;
+            z += (float) Math.sin(heading) * WALK_SPEED * seconds;
+            if (x < 0 || x >= sizeX) {
+                x = Math.max(0, Math.min(x, sizeX - 1));
+                heading = (float) Math.PI - heading;
+            }
+            if (z < 0 || z >= sizeZ) {
+                z = Math.max(0, Math.min(z, sizeZ - 1));
+                heading = -heading;
+            }
+            if (now >= nextPosition) {
+                connection.send(Protocol.position(x, sizeY, z));
+                nextPosition = now + POSITION_INTERVAL_NANOS;
+            }
+        }
+
+        void edit(long now) {
+            int x = random.nextInt(sizeX);
+            int y = random.nextInt(sizeY);
+            int z = random.nextInt(sizeZ);
+            BlockType type = EDIT_TYPES[random.nextInt(EDIT_TYPES.length)];
+            pending.put(key(x, y, z, (byte) type.ordinal()), now);
+            connection.send(Protocol.block(Protocol.SET_BLOCK, x, y, z, type));
+            editsSent++;
+        }
+
+        long key(int x, int y, int z, byte type) {
+            return ((((long) x * sizeY + y) * sizeZ + z) << 8) | (type & 0xFF);
+        }
+    }
+
+    private LoadTest(ServerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Runs the load test and prints its report.
+     *
+     * @param config Server, world and client settings
+     * @throws IOException If the server cannot be started or reached
+     */
+    public static void run(ServerConfig config) throws IOException {
+        new LoadTest(config).run();
+    }
+
+    private void run() throws IOException {
+        WorldServer server = null;
+        World world = null;
+        InetSocketAddress address = config.getTarget();
+        if (address == null) {
+            world = config.createWorld();
+            System.out.println("Serving " + world.getSizeX() + "x" + world.getSizeY() + "x" + world.getSizeZ()
+                    + " world (" + world.getChunkCount() + " chunks) on loopback");
+            server = new WorldServer(world);
+            server.setVerbose(false);
+            server.setBandwidth(config.getClientBandwidth(), config.getBandwidth());
+            int port = server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.start();
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        }
+
+        selector = Selector.open();
+        try {
+            long start = System.nanoTime();
+            connect(address);
+            long connected = System.nanoTime();
+            download();
+            long downloaded = System.nanoTime();
+            long receivedBeforeEdits = getReceivedBytes();
+            edit();
+            long end = System.nanoTime();
+            printReport(connected - start, downloaded - start, receivedBeforeEdits, end - start, getReceivedBytes(), server);
+        } finally {
+            closeClients();
+            selector.close();
+            if (server != null) {
+                server.stop();
+                world.close();
+            }
+        }
+    }
+
+    private void closeClients() {
+        for (SimulatedClient client : clients) {
+            if (client.connection != null) {
+                client.connection.close();
+                client.connection = null;
+            }
+        }
+    }
+
+    private void connect(InetSocketAddress address) throws IOException {
+        int total = config.getClients() + config.getSlowClients();
+        for (int i = 0; i < total; i++) {
+            boolean slow = i >= config.getClients();
+            SimulatedClient client = new SimulatedClient(slow, System.nanoTime());
+            client.connection = new Connection(SocketChannel.open(address), selector, client);
+            if (slow) {
+                client.connection.setReading(false);
+            }
+            clients.add(client);
+            // Keep the connected clients reading so the server is never stuck on full sockets
+            poll(0);
+            move(System.nanoTime());
+        }
+    }
+
+    private void download() throws IOException {
+        long deadline = System.nanoTime() + DOWNLOAD_TIMEOUT_NANOS;
+        while (System.nanoTime() < deadline && downloadsPending() > 0) {
+            poll(1);
+            move(System.nanoTime());
+        }
+        if (downloadsPending() > 0) {
+            System.err.println("Warning: " + downloadsPending() + " clients did not finish downloading the world");
+        }
+        downloadNanos = clients.stream()
+                .filter(client -> !client.slow && client.downloadTime >= 0)
+                .mapToLong(client -> client.downloadTime)
+                .sorted()
+                .toArray();
+    }
+
+    private int downloadsPending() {
+        int pending = 0;
+        for (SimulatedClient client : clients) {
+            if (!client.slow && client.connection != null && client.downloadTime < 0) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    private void edit() throws IOException {
+        long interval = config.getEditsPerSecond() > 0 ? SECOND_NANOS / config.getEditsPerSecond() : Long.MAX_VALUE;
+        long start = System.nanoTime();
+        long end = start + config.getDurationSeconds() * SECOND_NANOS;
+        // Spread the clients' first edits over one interval
+        for (SimulatedClient client : clients) {
+            client.nextEdit = interval == Long.MAX_VALUE ? Long.MAX_VALUE : start + random.nextLong(interval);
+        }
+        long now;
+        while ((now = System.nanoTime()) < end + DRAIN_NANOS) {
+            if (now < end) {
+                for (SimulatedClient client : clients) {
+                    if (!client.slow && client.connection != null && client.downloadTime >= 0 && now >= client.nextEdit) {
+                        client.edit(now);
+                        client.nextEdit += interval;
+                    }
+                }
+            }
+            move(now);
+            poll(1);
+        }
+    }
+
+    private void move(long now) {
+        for (SimulatedClient client : clients) {
+            if (!client.slow && client.connection != null && client.chunks != null) {
+                client.move(now);
+            }
+        }
+    }
+
+    // Waits up to the timeout for socket events and handles them; 0 does not wait
+    private void poll(long timeoutMs) throws IOException {
+        if (timeoutMs > 0) {
+            selector.select(timeoutMs);
+        } else {
+            selector.selectNow();
+        }
+        for (SelectionKey key : selector.selectedKeys()) {
+            SimulatedClient client = (SimulatedClient) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable() && !client.connection.read(client)) {
+                    throw new IOException("Server closed the connection");
+                }
+                if (key.isValid() && key.isWritable()) {
+                    client.connection.flush();
+                }
+            } catch (IOException e) {
+                if (failures++ == 0) {
+                    System.err.println("Warning: Simulated client failed: " + e.getMessage());
+                }
+                client.connection.close();
+                client.connection = null;
+            }
+        }
+        selector.selectedKeys().clear();
+    }
+
+    private void recordRoundTrip(long nanos) {
+        if (roundTripCount == roundTrips.length) {
+            roundTrips = Arrays.copyOf(roundTrips, roundTripCount * 2);
+        }
+        roundTrips[roundTripCount++] = nanos;
+    }
+
+    private long getReceivedBytes() {
+        long total = 0;
+        for (SimulatedClient client : clients) {
+            if (client.connection != null) {
+                total += client.connection.getReceivedBytes();
+            }
+        }
+        return total;
+    }
+
+    private void printReport(long connectNanos, long downloadPhaseNanos, long downloadBytes, long runNanos,
+                             long receivedBytes, WorldServer server) {
+        Arrays.sort(roundTrips, 0, roundTripCount);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Network Load Test ===\n");
+        sb.append(String.format("Clients: %d (+%d slow), connected in %.1f ms%n", config.getClients(),
+                config.getSlowClients(), connectNanos / 1e6));
+        sb.append(String.format("World download: %d clients, avg %.1f ms, p95 %.1f ms, max %.1f ms%n",
+                downloadNanos.length, average(downloadNanos, downloadNanos.length) / 1e6,
+                percentile(downloadNanos, downloadNanos.length, 0.95) / 1e6,
+                percentile(downloadNanos, downloadNanos.length, 1.0) / 1e6));
+        sb.append(String.format("Download throughput: %.1f MB in %.1f ms (%.1f MB/s)%n", downloadBytes / (1024.0 * 1024.0),
+                downloadPhaseNanos / 1e6, downloadBytes / (1024.0 * 1024.0) / (downloadPhaseNanos / 1e9)));
+        sb.append(String.format("Edits: %d sent, %d changes received (%.0f per edit)%n", editsSent, changesReceived,
+                editsSent == 0 ? 0.0 : (double) changesReceived / editsSent));
+        sb.append(String.format("Edit round trip: %d samples, avg %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                roundTripCount, average(roundTrips, roundTripCount) / 1e6, percentile(roundTrips, roundTripCount, 0.5) / 1e6,
+                percentile(roundTrips, roundTripCount, 0.95) / 1e6, percentile(roundTrips, roundTripCount, 0.99) / 1e6,
+                percentile(roundTrips, roundTripCount, 1.0) / 1e6));
+        sb.append(String.format("Received: %.1f MB in %.1f s, %.2f MB/s total, %.1f KB/s per client%n",
+                receivedBytes / (1024.0 * 1024.0), runNanos / 1e9, receivedBytes / (1024.0 * 1024.0) / (runNanos / 1e9),
+                receivedBytes / 1024.0 / (runNanos / 1e9) / Math.max(1, config.getClients())));
+        sb.append("Client failures: ").append(failures).append("\n");
+        if (server != null) {
+            sb.append(String.format("Server: %s per client, %.1f MB sent, %d edits applied, %d chunk encodings, %d clients dropped%n",
+                    WorldServer.usesVirtualThreads() ? "virtual threads" : "platform threads",
+                    server.getSentBytes() / (1024.0 * 1024.0), server.getEditCount(), server.getChunkEncodeCount(),
+                    server.getDroppedCount()));
+            sb.append(String.format("Server ticks: %d, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms, %d over %d ms%n",
+                    server.getTickCount(), server.getTickPercentile(0.5) / 1e6, server.getTickPercentile(0.95) / 1e6,
+                    server.getTickPercentile(0.99) / 1e6, server.getMaxTickNanos() / 1e6, server.getSlowTickCount(),
+                    WorldServer.TICK_NANOS / 1_000_000));
+        }
+        sb.append("=========================");
+        System.out.println(sb);
+    }
+
+    private static double average(long[] values, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return sum / count;
+    }
+
+    // Values must be sorted
+    private static long percentile(long[] values, int count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        return values[Math.max(0, Math.min(count - 1, (int) Math.ceil(fraction * count) - 1))];
+    }
+}
@@ -0,0 +1,165 @@
+package org.pixelito.net;
+
+import org.pixelito.block.BlockType;
+import org.pixelito.world.World;
+import org.pixelito.world.WorldSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Messages exchanged between the world server and its clients.
+ * <p>
+ * Every message is a frame, little-endian like world snapshots:
+ * <pre>
+ * int length (of type and payload), byte type, payload
+ * </pre>
+ * Server to client:
+ * <ul>
+ *     <li>{@link #WORLD}: int sizeX, int sizeY, int sizeZ, int chunkCount; sent first</li>
+ *     <li>{@link #CHUNK}: int chunk index, the chunk in the {@link WorldSnapshot} chunk encoding; chunks
+ *     come nearest to the client's position first</li>
+ *     <li>{@link #WORLD_END}: every chunk has been sent</li>
+ *     <li>{@link #BLOCK}: int x, int y, int z, byte {@link BlockType} ordinal; a block changed</li>
+ * </ul>
+ * Client to server:
+ * <ul>
+ *     <li>{@link #SET_BLOCK}: int x, int y, int z, byte {@link BlockType} ordinal; asks to change a block</li>
+ *     <li>{@link #POSITION}: float x, float y, float z; where the player's camera is, which decides the
+ *     order chunks are sent in. Until the first one the server assumes the spawn point above the world's
+ *     center</li>
+ * </ul>
+ * Air is sent as {@link BlockType#AIR}. The server sends block changes to
+ * every client, including the one that asked, in the order it applied them,
+ * so all clients end up with the server's world.
+ */
+public class Protocol {
+    public static final byte WORLD = 1;
+    public static final byte CHUNK = 2;
+    public static final byte WORLD_END = 3;
+    public static final byte BLOCK = 4;
+    public static final byte SET_BLOCK = 5;
+    public static final byte POSITION = 6;
+
+    /** Bytes before the payload: length and type */
+    public static final int HEADER_BYTES = Integer.BYTES + 1;
+    /** Largest payload of any message, a chunk */
+    public static final int MAX_PAYLOAD_BYTES = Integer.BYTES + WorldSnapshot.MAX_CHUNK_BYTES;
+    static final int BLOCK_PAYLOAD_BYTES = 3 * Integer.BYTES + 1;
+    static final int BLOCK_FRAME_BYTES = HEADER_BYTES + BLOCK_PAYLOAD_BYTES;
+    static final int POSITION_PAYLOAD_BYTES = 3 * Float.BYTES;
+    /** Room for two largest frames, so a partial frame never blocks a whole one */
+    static final int READ_BUFFER_BYTES = 2 * (HEADER_BYTES + MAX_PAYLOAD_BYTES);
+
+    /** Port the server listens on by default */
+    public static final int DEFAULT_PORT = 25600;
+
+    /**
+     * Receives complete frames.
+     */
+    interface Handler {
+        /**
+         * Handles one frame.
+         *
+         * @param type Message type
+         * @param payload The payload, only valid until this method returns
+         * @throws IOException If the frame breaks the protocol
+         */
+        void frame(byte type, ByteBuffer payload) throws IOException;
+    }
+
+    private Protocol() {
+    }
+
+    /**
+     * Hands every complete frame in a buffer to a handler, leaving the
+     * buffer positioned at the first incomplete one.
+     *
+     * @param buffer Received bytes, flipped for reading
+     * @param handler Receives the frames
+     * @throws IOException If a frame is malformed or the handler rejects it
+     */
+    static void dispatch(ByteBuffer buffer, Handler handler) throws IOException {
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < 1 || length > 1 + MAX_PAYLOAD_BYTES) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (buffer.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(start + HEADER_BYTES, length - 1).order(ByteOrder.LITTLE_ENDIAN);
+            handler.frame(buffer.get(start + Integer.BYTES), payload);
+            buffer.position(start + Integer.BYTES + length);
+        }
+    }
+
+    /**
+     * Starts a frame in a buffer. Finish it with {@link #end}.
+     *
+     * @return Position of the frame, to pass to {@link #end}
+     */
+    static int begin(ByteBuffer buffer, byte type) {
+        int start = buffer.position();
+        buffer.putInt(0).put(type);
+        return start;
+    }
+
+    /**
+     * Fills in the length of a frame started with {@link #begin}.
+     */
+    static void end(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+    }
+
+    /**
+     * Creates a heap buffer for small frames, in the protocol's byte order.
+     * Chunks, which are large and sent to every client, use direct buffers.
+     */
+    static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static ByteBuffer world(World world) {
+        ByteBuffer buffer = allocate(HEADER_BYTES + 4 * Integer.BYTES);
+        int start = begin(buffer, WORLD);
+        buffer.putInt(world.getSizeX()).putInt(world.getSizeY()).putInt(world.getSizeZ()).putInt(world.getChunkCount());
+        end(buffer, start);
+        return buffer.flip();
+    }
+
+    static ByteBuffer worldEnd() {
+        ByteBuffer buffer = allocate(HEADER_BYTES);
+        end(buffer, begin(buffer, WORLD_END));
+        return buffer.flip();
+    }
+
+    /**
+     * Builds a {@link #BLOCK} or {@link #SET_BLOCK} message.
+     */
+    static ByteBuffer block(byte type, int x, int y, int z, BlockType blockType) {
+        ByteBuffer buffer = allocate(BLOCK_FRAME_BYTES);
+        putBlock(buffer, type, x, y, z, blockType);
+        return buffer.flip();
+    }
+
+    static ByteBuffer position(float x, float y, float z) {
+        ByteBuffer buffer = allocate(HEADER_BYTES + POSITION_PAYLOAD_BYTES);
+        int start = begin(buffer, POSITION);
+        buffer.putFloat(x).putFloat(y).putFloat(z);
+        end(buffer, start);
+        return buffer.flip();
+    }
+
+    /**
+     * Appends a {@link #BLOCK} or {@link #SET_BLOCK} message to a buffer
+     * with at least {@link #BLOCK_FRAME_BYTES} remaining.
+     */
+    static void putBlock(ByteBuffer buffer, byte type, int x, int y, int z, BlockType blockType) {
+        int start = begin(buffer, type);
+        buffer.putInt(x).putInt(y).putInt(z).put((byte) blockType.ordinal());
+        end(buffer, start);
+    }
+}
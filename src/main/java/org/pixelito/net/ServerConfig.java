@@ -0,0 +1,204 @@
+package org.pixelito.net;
+
+import org.pixelito.world.VoxelStorage;
+import org.pixelito.world.World;
+import org.pixelito.world.WorldGenerator;
+import org.pixelito.world.WorldSnapshot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
+/**
+ * Settings for the headless world server and the network load test,
+ * parsed from the command line.
+ * <p>
+ * Recognised options:
+ * <ul>
+ *     <li>{@code --server} runs a world server</li>
+ *     <li>{@code --load-test} runs a server and many simulated clients on localhost</li>
+ *     <li>{@code --port=N} port to listen on (default {@value Protocol#DEFAULT_PORT})</li>
+ *     <li>{@code --world=XxYxZ} world size in blocks (default 256x64x256)</li>
+ *     <li>{@code --seed=N} world seed (default 0)</li>
+ *     <li>{@code --snapshot=path} serve a world snapshot instead of generating the world</li>
+ *     <li>{@code --save-snapshot=path} save the server's world when it stops</li>
+ *     <li>{@code --storage=dense|sparse|offheap|mapped} how the server's chunks store their blocks (default dense)</li>
+ *     <li>{@code --client-bandwidth=N} chunk streaming budget per client in KB/s (default 1024)</li>
+ *     <li>{@code --bandwidth=N} chunk streaming budget of the whole server in MB/s (default 100)</li>
+ *     <li>{@code --clients=N} simulated clients of the load test (default 100)</li>
+ *     <li>{@code --slow-clients=N} extra simulated clients that never read (default 0)</li>
+ *     <li>{@code --edits=N} block changes per second sent by each simulated client (default 5)</li>
+ *     <li>{@code --duration=N} seconds the simulated clients keep editing (default 10)</li>
+ *     <li>{@code --target=host:port} load test an already running server instead of starting one</li>
+ * </ul>
+ */
+public class ServerConfig {
+    private int port = Protocol.DEFAULT_PORT;
+    private int worldSizeX = 256;
+    private int worldSizeY = 64;
+    private int worldSizeZ = 256;
+    private long seed = 0L;
+    private String snapshotPath;
+    private String saveSnapshotPath;
+    private VoxelStorage voxelStorage = VoxelStorage.DENSE;
+    private int clientBandwidthKb = 1024;
+    private int bandwidthMb = 100;
+    private int clients = 100;
+    private int slowClients = 0;
+    private int editsPerSecond = 5;
+    private int durationSeconds = 10;
+    private InetSocketAddress target;
+
+    /**
+     * Checks whether the server flag is present in the arguments.
+     */
+    public static boolean isServerRequested(String[] args) {
+        return hasFlag(args, "--server");
+    }
+
+    /**
+     * Checks whether the load test flag is present in the arguments.
+     */
+    public static boolean isLoadTestRequested(String[] args) {
+        return hasFlag(args, "--load-test");
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds a configuration from command-line arguments, keeping the defaults
+     * for any option that is not given.
+     *
+     * @param args Command-line arguments
+     * @return The parsed configuration
+     * @throws IllegalArgumentException If an option has an invalid value
+     */
+    public static ServerConfig fromArgs(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                config.port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                config.seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--snapshot=")) {
+                config.snapshotPath = arg.substring("--snapshot=".length());
+            } else if (arg.startsWith("--save-snapshot=")) {
+                config.saveSnapshotPath = arg.substring("--save-snapshot=".length());
+            } else if (arg.startsWith("--storage=")) {
+                config.voxelStorage = VoxelStorage.fromId(arg.substring("--storage=".length()));
+            } else if (arg.startsWith("--client-bandwidth=")) {
+                config.clientBandwidthKb = parsePositive(arg, "--client-bandwidth=");
+            } else if (arg.startsWith("--bandwidth=")) {
+                config.bandwidthMb = parsePositive(arg, "--bandwidth=");
+            } else if (arg.startsWith("--clients=")) {
+                config.clients = parsePositive(arg, "--clients=");
+            } else if (arg.startsWith("--slow-clients=")) {
+                config.slowClients = Integer.parseInt(arg.substring("--slow-clients=".length()));
+            } else if (arg.startsWith("--edits=")) {
+                config.editsPerSecond = Integer.parseInt(arg.substring("--edits=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                config.durationSeconds = parsePositive(arg, "--duration=");
+            } else if (arg.startsWith("--target=")) {
+                config.target = parseAddress(arg.substring("--target=".length()));
+            } else if (arg.startsWith("--world=")) {
+                String[] parts = arg.substring("--world=".length()).split("x");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Expected --world=XxYxZ but got " + arg);
+                }
+                config.worldSizeX = Integer.parseInt(parts[0]);
+                config.worldSizeY = Integer.parseInt(parts[1]);
+                config.worldSizeZ = Integer.parseInt(parts[2]);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Parses a server address of the form {@code host:port}, or just
+     * {@code host} for the default port.
+     *
+     * @throws IllegalArgumentException If the port is not a number
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketAddress(address, Protocol.DEFAULT_PORT);
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    private static int parsePositive(String arg, String prefix) {
+        int value = Integer.parseInt(arg.substring(prefix.length()));
+        if (value <= 0) {
+            throw new IllegalArgumentException(prefix + " must be positive");
+        }
+        return value;
+    }
+
+    /**
+     * Loads the snapshot if one was given, otherwise generates the test world.
+     *
+     * @throws IOException If the snapshot cannot be read
+     */
+    public World createWorld() throws IOException {
+        if (snapshotPath != null) {
+            return WorldSnapshot.read(Paths.get(snapshotPath), voxelStorage);
+        }
+        return WorldGenerator.createTestWorld(worldSizeX, worldSizeY, worldSizeZ, seed, voxelStorage);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Gets where to save the world when the server stops, or null to not save it.
+     */
+    public String getSaveSnapshotPath() {
+        return saveSnapshotPath;
+    }
+
+    /**
+     * Gets the chunk bytes per second the server may send one client.
+     */
+    public long getClientBandwidth() {
+        return clientBandwidthKb * 1024L;
+    }
+
+    /**
+     * Gets the chunk bytes per second the server may send all clients together.
+     */
+    public long getBandwidth() {
+        return bandwidthMb * 1024L * 1024L;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public int getSlowClients() {
+        return slowClients;
+    }
+
+    public int getEditsPerSecond() {
+        return editsPerSecond;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Gets the external server to load test, or null to start one in-process.
+     */
+    public InetSocketAddress getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,274 @@
+package org.pixelito.net;
+
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+import org.pixelito.world.VoxelStorage;
+import org.pixelito.world.World;
+import org.pixelito.world.WorldSnapshot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Game side of the {@link Protocol}: downloads the world from a
+ * {@link WorldServer} and then keeps it in sync with the server's block
+ * changes. A network thread owns the socket; until the world is complete
+ * it also owns the world, afterwards block changes are queued for the
+ * simulation thread to apply with {@link #pollChange()}.
+ */
+public class WorldClient {
+    private static final BlockType[] TYPES = BlockType.values();
+
+    /**
+     * A block change made on the server, to apply to the local world.
+     */
+    public static final class BlockChange {
+        public final int x;
+        public final int y;
+        public final int z;
+        public final BlockType type;
+
+        BlockChange(int x, int y, int z, BlockType type) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+        }
+
+        /**
+         * Gets the block to set, or null for air.
+         */
+        public Block getBlock() {
+            return type == BlockType.AIR ? null : Block.of(type);
+        }
+    }
+
+    private final VoxelStorage storage;
+    private final Selector selector;
+    private final Connection connection;
+    private final Thread thread;
+    private final CountDownLatch worldReady = new CountDownLatch(1);
+    private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+    private final Queue<BlockChange> changes = new ConcurrentLinkedQueue<>();
+
+    private World world;
+    private BitSet receivedChunks;
+    private volatile boolean complete;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    private WorldClient(SocketChannel channel, VoxelStorage storage) throws IOException {
+        this.storage = storage;
+        selector = Selector.open();
+        connection = new Connection(channel, selector, this);
+        thread = new Thread(this::loop, "pixelito-net");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Connects to a world server and starts downloading the world.
+     *
+     * @param address Server address
+     * @return The connected client
+     * @throws IOException If the server cannot be reached
+     */
+    public static WorldClient connect(InetSocketAddress address) throws IOException {
+        return connect(address, VoxelStorage.DENSE);
+    }
+
+    /**
+     * Connects to a world server and starts downloading the world into the
+     * given block storage.
+     *
+     * @param storage How the downloaded chunks store their blocks
+     * @see #connect(InetSocketAddress)
+     */
+    public static WorldClient connect(InetSocketAddress address, VoxelStorage storage) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        try {
+            return new WorldClient(channel, storage);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until every chunk has arrived. From then on the world belongs
+     * to the caller and changes arrive through {@link #pollChange()}.
+     *
+     * @return The downloaded world, without light
+     * @throws IOException If the connection failed before the world was complete
+     */
+    public World awaitWorld() throws IOException {
+        try {
+            worldReady.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading the world", e);
+        }
+        if (!complete) {
+            throw new IOException("Could not download the world", failure);
+        }
+        return world;
+    }
+
+    /**
+     * Takes the next block change from the server. Safe to call from any
+     * one thread, normally the simulation thread.
+     *
+     * @return The change, or null if none is waiting
+     */
+    public BlockChange pollChange() {
+        return changes.poll();
+    }
+
+    /**
+     * Asks the server to change a block. The server sends the change back
+     * to every client, this one included, once it has applied it. Safe to
+     * call from any thread.
+     *
+     * @param block New block, or null for air
+     */
+    public void sendBlock(int x, int y, int z, Block block) {
+        if (!running) {
+            return;
+        }
+        outbox.add(Protocol.block(Protocol.SET_BLOCK, x, y, z, block != null ? block.getType() : BlockType.AIR));
+        selector.wakeup();
+    }
+
+    /**
+     * Tells the server where the player's camera is, so the chunks around
+     * it are sent first. Safe to call from any thread.
+     */
+    public void sendPosition(float x, float y, float z) {
+        if (!running) {
+            return;
+        }
+        outbox.add(Protocol.position(x, y, z));
+        selector.wakeup();
+    }
+
+    /**
+     * Checks whether the connection is still open.
+     */
+    public boolean isConnected() {
+        return running;
+    }
+
+    /**
+     * Gets the bytes received from the server so far.
+     */
+    public long getReceivedBytes() {
+        return connection.getReceivedBytes();
+    }
+
+    /**
+     * Closes the connection and stops the network thread.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                selector.select();
+                ByteBuffer frame;
+                while ((frame = outbox.poll()) != null) {
+                    connection.send(frame);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isReadable() && !connection.read(this::handleFrame)) {
+                        throw new IOException("Server closed the connection");
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+            if (complete) {
+                System.err.println("Warning: Lost connection to the world server: " + e.getMessage());
+            }
+        } finally {
+            running = false;
+            connection.close();
+            if (!complete && world != null) {
+                // Never handed out, so nothing else uses it
+                world.close();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // The selector is unused from here on
+            }
+            worldReady.countDown();
+        }
+    }
+
+    private void handleFrame(byte type, ByteBuffer payload) throws IOException {
+        switch (type) {
+            case Protocol.WORLD -> {
+                if (world != null) {
+                    throw new IOException("World sent twice");
+                }
+                world = new World(payload.getInt(), payload.getInt(), payload.getInt(), storage);
+                if (payload.getInt() != world.getChunkCount()) {
+                    throw new IOException("Chunk count does not match the world size");
+                }
+                receivedChunks = new BitSet(world.getChunkCount());
+            }
+            case Protocol.CHUNK -> {
+                int index = payload.getInt();
+                if (world == null || index < 0 || index >= world.getChunkCount() || receivedChunks.get(index)) {
+                    throw new IOException("Unexpected chunk " + index);
+                }
+                WorldSnapshot.decodeChunk(payload, world.getChunk(index));
+                receivedChunks.set(index);
+            }
+            case Protocol.WORLD_END -> {
+                if (world == null || receivedChunks.cardinality() != world.getChunkCount()) {
+                    throw new IOException("World ended before all chunks arrived");
+                }
+                complete = true;
+                worldReady.countDown();
+            }
+            case Protocol.BLOCK -> {
+                int x = payload.getInt();
+                int y = payload.getInt();
+                int z = payload.getInt();
+                int ordinal = payload.get() & 0xFF;
+                if (world == null || ordinal >= TYPES.length || !world.contains(x, y, z)) {
+                    throw new IOException("Invalid block change");
+                }
+                BlockChange change = new BlockChange(x, y, z, TYPES[ordinal]);
+                if (complete) {
+                    changes.add(change);
+                } else {
+                    // Still downloading, so the world is ours to change
+                    world.setBlock(x, y, z, change.getBlock());
+                }
+            }
+            default -> throw new IOException("Unexpected message " + type);
+        }
+    }
+}
@@ -0,0 +1,734 @@
+package org.pixelito.net;
+
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+import org.pixelito.world.Chunk;
+import org.pixelito.world.World;
+import org.pixelito.world.WorldSnapshot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless server that owns the world and streams it to clients over the
+ * {@link Protocol}.
+ * <p>
+ * Every client is served by two threads doing plain blocking I/O: a reader
+ * that parses the client's messages and a writer that drains the client's
+ * send queue. On Java 21 and later these are virtual threads, so thousands
+ * of clients cost thousands of small heap stacks rather than thousands of
+ * OS threads. A single tick thread, {@link #TICK_RATE} times a second, is
+ * the only one touching the world: it applies the edits the readers
+ * queued and decides what every client is sent next.
+ * <p>
+ * Chunks go out nearest to the client's last reported position first.
+ * Each tick a client is sent at most its share of the bandwidth budget,
+ * and all clients together at most the server's budget. Besides the
+ * budgets, the server pushes back in three ways:
+ * <ul>
+ *     <li>Chunks are queued only while less than {@link #STREAM_WINDOW} bytes are waiting.</li>
+ *     <li>A client whose queue passes {@link #HIGH_WATER} is no longer read from until it drains
+ *     below {@link #LOW_WATER}, so its edits cannot outrun its own replies.</li>
+ *     <li>A client that falls more than {@link #MAX_QUEUED} behind on block changes is disconnected.</li>
+ * </ul>
+ * Encoded chunks are cached until an edit changes them, and one encoding
+ * is queued to every client without copying. Block changes are batched
+ * the same way: all changes applied in one tick go out as a single buffer
+ * shared by every client that has the whole world.
+ */
+public class WorldServer {
+    /** Server ticks per second */
+    public static final int TICK_RATE = 20;
+    /** Length of one tick in nanoseconds */
+    public static final long TICK_NANOS = 1_000_000_000L / TICK_RATE;
+    /** Bytes of queued chunks above which streaming waits for the client */
+    public static final int STREAM_WINDOW = 256 * 1024;
+    /** Queued bytes above which the server stops reading a client's edits */
+    public static final int HIGH_WATER = 512 * 1024;
+    /** Queued bytes below which reading resumes */
+    public static final int LOW_WATER = 128 * 1024;
+    /** Queued bytes above which a client is dropped as too slow */
+    public static final int MAX_QUEUED = 8 * 1024 * 1024;
+
+    private static final BlockType[] TYPES = BlockType.values();
+    // Pending connections the OS may queue; with the default of 50 a burst of clients waits for SYN retries
+    private static final int ACCEPT_BACKLOG = 1024;
+    // Clients only send small messages, so their readers need little room
+    private static final int CLIENT_READ_BYTES = 4096;
+    // Buffers handed to one gathering write
+    private static final int MAX_GATHER = 64;
+    private static final long PAUSE_NANOS = 1_000_000L;
+    private static final long STATUS_INTERVAL_NANOS = 10_000_000_000L;
+    // Chunk coordinates are packed into one long, 21 bits each
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+    private static final String CONNECTION_THREAD_NAME = "pixelito-client-";
+    private static final ThreadFactory CONNECTION_THREADS = connectionThreads();
+
+    private final World world;
+    // Encoded CHUNK frames, null until first sent or after an edit
+    private final ByteBuffer[] chunkFrames;
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocateDirect(Protocol.HEADER_BYTES + Protocol.MAX_PAYLOAD_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    // Chunk offsets nearest first, reaching every chunk from any chunk of the world
+    private final int[] orderX;
+    private final int[] orderY;
+    private final int[] orderZ;
+    // Where the game spawns its player, assumed until a client reports its position
+    private final long spawnCenter;
+
+    // Handed from the accepting and reading threads to the tick thread
+    private final Queue<Client> joining = new ConcurrentLinkedQueue<>();
+    private final Queue<Edit> edits = new ConcurrentLinkedQueue<>();
+
+    // Owned by the tick thread
+    private final List<Client> clients = new ArrayList<>();
+    private final List<Edit> tickEdits = new ArrayList<>();
+    // BLOCK frames of the changes applied in the current tick, for the clients that have the whole world
+    private ByteBuffer changes = Protocol.allocate(64 * Protocol.BLOCK_FRAME_BYTES);
+    private int firstClient;
+    private volatile long clientBudget = 1024 * 1024 / TICK_RATE;
+    private volatile long serverBudget = 100L * 1024 * 1024 / TICK_RATE;
+
+    private ServerSocketChannel serverChannel;
+    private Thread acceptThread;
+    private Thread tickThread;
+    private volatile boolean running;
+    private boolean verbose = true;
+
+    // Statistics
+    private final TickTimes tickTimes = new TickTimes();
+    private final TickTimes intervalTickTimes = new TickTimes();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile int clientCount;
+    private volatile long editCount;
+    private volatile long encodeCount;
+
+    /**
+     * A block change sent by a client, applied by the tick thread.
+     */
+    private static final class Edit {
+        final int x;
+        final int y;
+        final int z;
+        final BlockType type;
+        int chunkIndex;
+        // BLOCK frame for clients still downloading, created when first needed
+        ByteBuffer frame;
+
+        Edit(int x, int y, int z, BlockType type) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+        }
+    }
+
+    private class Client {
+        final String name;
+        final SocketChannel channel;
+        final LinkedBlockingQueue<ByteBuffer> outbox = new LinkedBlockingQueue<>();
+        final AtomicLong queued = new AtomicLong();
+        final AtomicBoolean closed = new AtomicBoolean();
+        // Chunk the client's camera is in, written by its reader
+        volatile long center = spawnCenter;
+        volatile String closeReason = "disconnected";
+        Thread writer;
+
+        // Owned by the tick thread
+        final BitSet sent = new BitSet(world.getChunkCount());
+        int sentCount;
+        // Offsets before this one are sent or outside the world, as seen from streamCenter
+        int cursor;
+        long streamCenter = -1;
+        boolean ended;
+        // Had the whole world before the current tick, so it takes the batched changes
+        boolean streamed;
+
+        Client(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.name = String.valueOf(channel.getRemoteAddress());
+        }
+
+        void send(ByteBuffer frame) {
+            queued.addAndGet(frame.remaining());
+            outbox.add(frame);
+        }
+
+        void read() {
+            ByteBuffer in = ByteBuffer.allocateDirect(CLIENT_READ_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                while (!closed.get()) {
+                    if (channel.read(in) < 0) {
+                        break;
+                    }
+                    in.flip();
+                    Protocol.dispatch(in, this::handleFrame);
+                    in.compact();
+                    if (!in.hasRemaining()) {
+                        throw new IOException("Message too large");
+                    }
+                    // Stop reading while the client is far behind on what it has been sent
+                    if (queued.get() > HIGH_WATER) {
+                        while (queued.get() > LOW_WATER && !closed.get()) {
+                            LockSupport.parkNanos(PAUSE_NANOS);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                close();
+            }
+        }
+
+        void write() {
+            ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+            try {
+                while (!closed.get()) {
+                    gather[0] = outbox.take();
+                    int count = 1;
+                    long bytes = gather[0].remaining();
+                    ByteBuffer next;
+                    while (count < MAX_GATHER && (next = outbox.poll()) != null) {
+                        gather[count++] = next;
+                        bytes += next.remaining();
+                    }
+                    for (long written = 0; written < bytes; ) {
+                        written += channel.write(gather, 0, count);
+                    }
+                    Arrays.fill(gather, 0, count, null);
+                    queued.addAndGet(-bytes);
+                    sentBytes.addAndGet(bytes);
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                // Closed while waiting for something to send
+            } finally {
+                close();
+            }
+        }
+
+        private void handleFrame(byte type, ByteBuffer payload) throws IOException {
+            if (type == Protocol.SET_BLOCK && payload.remaining() == Protocol.BLOCK_PAYLOAD_BYTES) {
+                int x = payload.getInt();
+                int y = payload.getInt();
+                int z = payload.getInt();
+                int ordinal = payload.get() & 0xFF;
+                if (ordinal >= TYPES.length || !world.contains(x, y, z)) {
+                    throw new IOException("Invalid block change");
+                }
+                edits.add(new Edit(x, y, z, TYPES[ordinal]));
+            } else if (type == Protocol.POSITION && payload.remaining() == Protocol.POSITION_PAYLOAD_BYTES) {
+                center = chunkCenter(payload.getFloat(), payload.getFloat(), payload.getFloat());
+            } else {
+                throw new IOException("Unexpected message " + type);
+            }
+        }
+
+        private void fail(IOException e) {
+            if (!closed.get()) {
+                closeReason = "dropped: " + e.getMessage();
+                droppedCount.incrementAndGet();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Closing a socket that already failed; nothing left to do
+                }
+                if (writer != null) {
+                    writer.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Histogram of tick durations in steps of {@link #STEP_NANOS}.
+     */
+    private static final class TickTimes {
+        private static final long STEP_NANOS = 50_000L;
+        private final long[] counts = new long[(int) (4 * TICK_NANOS / STEP_NANOS) + 1];
+        private long ticks;
+        private long slowTicks;
+        private long maxNanos;
+
+        synchronized void record(long nanos) {
+            counts[(int) Math.min(nanos / STEP_NANOS, counts.length - 1)]++;
+            ticks++;
+            if (nanos > TICK_NANOS) {
+                slowTicks++;
+            }
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        // Upper edge of the bucket holding the percentile
+        synchronized long percentile(double fraction) {
+            long rank = Math.max(1, (long) Math.ceil(fraction * ticks));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min((i + 1) * STEP_NANOS, maxNanos);
+                }
+            }
+            return 0;
+        }
+
+        synchronized long getTicks() {
+            return ticks;
+        }
+
+        synchronized long getSlowTicks() {
+            return slowTicks;
+        }
+
+        synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        synchronized void reset() {
+            Arrays.fill(counts, 0);
+            ticks = 0;
+            slowTicks = 0;
+            maxNanos = 0;
+        }
+    }
+
+    /**
+     * Creates a server for a world. From {@link #start()} on, the world
+     * belongs to the server's tick thread.
+     *
+     * @param world World to serve
+     */
+    public WorldServer(World world) {
+        this.world = world;
+        this.chunkFrames = new ByteBuffer[world.getChunkCount()];
+
+        int rangeX = world.getChunkCountX() - 1;
+        int rangeY = world.getChunkCountY() - 1;
+        int rangeZ = world.getChunkCountZ() - 1;
+        int sizeY = 2 * rangeY + 1;
+        int sizeZ = 2 * rangeZ + 1;
+        int count = (2 * rangeX + 1) * sizeY * sizeZ;
+        // Squared distance in the high half, offset index in the low half
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int dx = i / (sizeY * sizeZ) - rangeX;
+            int dy = i / sizeZ % sizeY - rangeY;
+            int dz = i % sizeZ - rangeZ;
+            keys[i] = ((long) (dx * dx + dy * dy + dz * dz) << 32) | i;
+        }
+        Arrays.sort(keys);
+        orderX = new int[count];
+        orderY = new int[count];
+        orderZ = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            orderX[i] = index / (sizeY * sizeZ) - rangeX;
+            orderY[i] = index / sizeZ % sizeY - rangeY;
+            orderZ[i] = index % sizeZ - rangeZ;
+        }
+        spawnCenter = chunkCenter(world.getSizeX() / 2.0f, world.getSizeY(), world.getSizeZ() / 2.0f);
+    }
+
+    /**
+     * Logs each client that connects or leaves, and a status line every ten
+     * seconds. On by default; load tests with many clients turn it off.
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Sets the bandwidth budgets of chunk streaming. Block changes are
+     * always sent in full.
+     *
+     * @param clientBytesPerSecond Chunk bytes per second sent to one client
+     * @param serverBytesPerSecond Chunk bytes per second sent to all clients together
+     */
+    public void setBandwidth(long clientBytesPerSecond, long serverBytesPerSecond) {
+        this.clientBudget = Math.max(1, clientBytesPerSecond / TICK_RATE);
+        this.serverBudget = Math.max(1, serverBytesPerSecond / TICK_RATE);
+    }
+
+    /**
+     * Checks whether clients are served by virtual threads, which needs Java 21.
+     */
+    public static boolean usesVirtualThreads() {
+        return CONNECTION_THREADS.newThread(() -> { }).getName().startsWith(CONNECTION_THREAD_NAME);
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @param address Address to listen on; port 0 picks a free port
+     * @return The port the server listens on
+     * @throws IOException If the address cannot be bound
+     */
+    public int bind(InetSocketAddress address) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, ACCEPT_BACKLOG);
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts accepting clients and ticking. Call {@link #bind} first.
+     */
+    public void start() {
+        running = true;
+        tickThread = new Thread(this::tickLoop, "pixelito-server");
+        tickThread.start();
+        acceptThread = new Thread(this::acceptLoop, "pixelito-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Disconnects all clients and stops the server's threads. Afterwards
+     * the world may be used by the calling thread again.
+     */
+    public void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not close server socket: " + e.getMessage());
+        }
+        if (tickThread == null) {
+            return;
+        }
+        try {
+            acceptThread.join();
+            LockSupport.unpark(tickThread);
+            tickThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Client client;
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                client = new Client(channel);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Warning: Could not accept a client: " + e.getMessage());
+                }
+                // Otherwise the server socket was closed by stop()
+                continue;
+            }
+            client.writer = CONNECTION_THREADS.newThread(client::write);
+            joining.add(client);
+            client.writer.start();
+            CONNECTION_THREADS.newThread(client::read).start();
+        }
+    }
+
+    private void tickLoop() {
+        long nextTick = System.nanoTime();
+        long nextStatus = nextTick + STATUS_INTERVAL_NANOS;
+        long statusBytes = 0;
+        while (running) {
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            long start = System.nanoTime();
+            tick();
+            long end = System.nanoTime();
+            tickTimes.record(end - start);
+            intervalTickTimes.record(end - start);
+
+            if (verbose && end >= nextStatus) {
+                long bytes = sentBytes.get();
+                System.out.printf("Clients: %d, tick p50 %.2f ms, p99 %.2f ms, max %.2f ms, sent %.1f MB/s%n", clientCount,
+                        intervalTickTimes.percentile(0.5) / 1e6, intervalTickTimes.percentile(0.99) / 1e6,
+                        intervalTickTimes.getMaxNanos() / 1e6,
+                        (bytes - statusBytes) / (1024.0 * 1024.0) / (STATUS_INTERVAL_NANOS / 1e9));
+                statusBytes = bytes;
+                intervalTickTimes.reset();
+                nextStatus = end + STATUS_INTERVAL_NANOS;
+            }
+            // After an overrun the next tick starts right away, without trying to catch up
+            nextTick = Math.max(nextTick + TICK_NANOS, end - TICK_NANOS);
+        }
+
+        Client client;
+        while ((client = joining.poll()) != null) {
+            clients.add(client);
+        }
+        for (Client c : clients) {
+            c.close();
+        }
+        clients.clear();
+        clientCount = 0;
+    }
+
+    private void tick() {
+        Client client;
+        while ((client = joining.poll()) != null) {
+            clients.add(client);
+            client.send(Protocol.world(world));
+            if (verbose) {
+                System.out.println("Client " + client.name + " connected (" + clients.size() + " clients)");
+            }
+        }
+        applyEdits();
+
+        int chunks = world.getChunkCount();
+        long clientLeft = clientBudget;
+        long serverLeft = serverBudget;
+        int count = clients.size();
+        // Start with a different client every tick so a spent server budget does not always starve the same ones
+        firstClient = count == 0 ? 0 : (firstClient + 1) % count;
+        for (int n = 0; n < count; n++) {
+            client = clients.get((firstClient + n) % count);
+            if (client.closed.get()) {
+                continue;
+            }
+            sendChanges(client);
+            if (!client.ended && serverLeft > 0) {
+                serverLeft -= stream(client, Math.min(clientLeft, serverLeft));
+                if (client.sentCount == chunks) {
+                    client.send(Protocol.worldEnd());
+                    client.ended = true;
+                }
+            }
+        }
+        changes.clear();
+        tickEdits.clear();
+
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            client = clients.get(i);
+            // Clients that got the whole world this tick take the next tick's batch
+            client.streamed = client.ended;
+            if (!client.closed.get() && client.queued.get() > MAX_QUEUED) {
+                client.closeReason = "dropped: " + client.queued.get() / 1024 + " KB behind";
+                droppedCount.incrementAndGet();
+                client.close();
+            }
+            if (client.closed.get()) {
+                clients.remove(i);
+                if (verbose) {
+                    System.out.println("Client " + client.name + " " + client.closeReason + " (" + clients.size() + " clients)");
+                }
+            }
+        }
+        clientCount = clients.size();
+    }
+
+    private void applyEdits() {
+        Edit edit;
+        while ((edit = edits.poll()) != null) {
+            edit.chunkIndex = world.setBlock(edit.x, edit.y, edit.z, edit.type == BlockType.AIR ? null : Block.of(edit.type));
+            chunkFrames[edit.chunkIndex] = null;
+            if (changes.remaining() < Protocol.BLOCK_FRAME_BYTES) {
+                changes = Protocol.allocate(changes.capacity() * 2).put(changes.flip());
+            }
+            Protocol.putBlock(changes, Protocol.BLOCK, edit.x, edit.y, edit.z, edit.type);
+            tickEdits.add(edit);
+            editCount++;
+        }
+        changes.flip();
+    }
+
+    /**
+     * Sends the tick's block changes to a client. A client still
+     * downloading gets only the changes to chunks it already has; the
+     * others arrive with their chunk.
+     */
+    private void sendChanges(Client client) {
+        if (tickEdits.isEmpty()) {
+            return;
+        }
+        if (client.streamed) {
+            client.send(changes.duplicate());
+            return;
+        }
+        for (Edit edit : tickEdits) {
+            if (client.sent.get(edit.chunkIndex)) {
+                if (edit.frame == null) {
+                    edit.frame = Protocol.block(Protocol.BLOCK, edit.x, edit.y, edit.z, edit.type);
+                }
+                client.send(edit.frame.duplicate());
+            }
+        }
+    }
+
+    /**
+     * Queues the client's unsent chunks nearest to it until the budget is
+     * spent. The first chunk of a tick is always sent, so a budget smaller
+     * than a chunk still makes progress.
+     *
+     * @return Bytes queued
+     */
+    private long stream(Client client, long budget) {
+        long center = client.center;
+        if (center != client.streamCenter) {
+            // The client moved to another chunk; everything nearer to it might be unsent
+            client.streamCenter = center;
+            client.cursor = 0;
+        }
+        int centerX = (int) (center >>> (2 * COORDINATE_BITS));
+        int centerY = (int) ((center >>> COORDINATE_BITS) & COORDINATE_MASK);
+        int centerZ = (int) (center & COORDINATE_MASK);
+        long spent = 0;
+        while (client.cursor < orderX.length && spent < budget && client.queued.get() < STREAM_WINDOW) {
+            int x = centerX + orderX[client.cursor];
+            int y = centerY + orderY[client.cursor];
+            int z = centerZ + orderZ[client.cursor];
+            client.cursor++;
+            if (x < 0 || y < 0 || z < 0 || x >= world.getChunkCountX() || y >= world.getChunkCountY()
+                    || z >= world.getChunkCountZ()) {
+                continue;
+            }
+            int index = world.chunkIndex(x, y, z);
+            if (client.sent.get(index)) {
+                continue;
+            }
+            ByteBuffer frame = chunkFrame(index);
+            client.send(frame.duplicate());
+            client.sent.set(index);
+            client.sentCount++;
+            spent += frame.remaining();
+        }
+        return spent;
+    }
+
+    private ByteBuffer chunkFrame(int index) {
+        ByteBuffer frame = chunkFrames[index];
+        if (frame == null) {
+            encodeBuffer.clear();
+            int start = Protocol.begin(encodeBuffer, Protocol.CHUNK);
+            encodeBuffer.putInt(index);
+            WorldSnapshot.encodeChunk(world.getChunk(index), encodeBuffer);
+            Protocol.end(encodeBuffer, start);
+            encodeBuffer.flip();
+            frame = ByteBuffer.allocateDirect(encodeBuffer.remaining()).put(encodeBuffer).flip();
+            chunkFrames[index] = frame;
+            encodeCount++;
+        }
+        return frame;
+    }
+
+    // Packs the chunk containing a position, clamped into the world
+    private long chunkCenter(float x, float y, float z) {
+        long chunkX = clamp((int) Math.floor(x) >> Chunk.SHIFT, world.getChunkCountX());
+        long chunkY = clamp((int) Math.floor(y) >> Chunk.SHIFT, world.getChunkCountY());
+        long chunkZ = clamp((int) Math.floor(z) >> Chunk.SHIFT, world.getChunkCountZ());
+        return (chunkX << (2 * COORDINATE_BITS)) | (chunkY << COORDINATE_BITS) | chunkZ;
+    }
+
+    private static int clamp(int chunk, int count) {
+        return Math.max(0, Math.min(chunk, count - 1));
+    }
+
+    // Virtual threads where the runtime has them (Java 21), daemon platform threads otherwise
+    private static ThreadFactory connectionThreads() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, CONNECTION_THREAD_NAME, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, "pixelito-connection");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Gets the number of connected clients.
+     */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /**
+     * Gets the number of block changes applied.
+     */
+    public long getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * Gets the number of clients disconnected for errors or for falling behind.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Gets how many times a chunk was encoded, which is once per chunk
+     * plus once per edited chunk that was sent again.
+     */
+    public long getChunkEncodeCount() {
+        return encodeCount;
+    }
+
+    /**
+     * Gets the bytes sent to all clients so far.
+     */
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    /**
+     * Gets the number of ticks run so far.
+     */
+    public long getTickCount() {
+        return tickTimes.getTicks();
+    }
+
+    /**
+     * Gets the number of ticks that took longer than {@link #TICK_NANOS}.
+     */
+    public long getSlowTickCount() {
+        return tickTimes.getSlowTicks();
+    }
+
+    /**
+     * Gets a percentile of the tick durations so far, rounded up to 0.05 ms.
+     *
+     * @param fraction Percentile as a fraction, e.g. 0.99
+     * @return Tick duration in nanoseconds
+     */
+    public long getTickPercentile(double fraction) {
+        return tickTimes.percentile(fraction);
+    }
+
+    /**
+     * Gets the longest tick so far, in nanoseconds.
+     */
+    public long getMaxTickNanos() {
+        return tickTimes.getMaxNanos();
+    }
+}
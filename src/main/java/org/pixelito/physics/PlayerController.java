@@ -0,0 +1,247 @@
+package org.pixelito.physics;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.pixelito.input.KeyCode;
+import org.pixelito.input.Keyboard;
+import org.pixelito.world.World;
+
+/**
+ * Walking player with an axis-aligned bounding box that collides with solid
+ * blocks.
+ * <p>
+ * Movement is resolved one axis at a time: the box is swept along the axis
+ * and only the voxels between its leading face and its destination, within
+ * its cross-section, are tested. The cost therefore depends on the box size
+ * and the distance moved, never on the world size, and no speed can skip
+ * over a block because every voxel on the way is visited.
+ */
+public class PlayerController {
+    public static final float WIDTH = 0.6f;
+    public static final float HEIGHT = 1.8f;
+    public static final float EYE_HEIGHT = 1.62f;
+
+    private static final float WALK_SPEED = 4.3f;
+    private static final float JUMP_VELOCITY = 8.5f;
+    private static final float GRAVITY = 28.0f;
+    private static final float TERMINAL_VELOCITY = 60.0f;
+    // Ledges up to this height are climbed without jumping
+    private static final float STEP_HEIGHT = 1.0f;
+    // Falling this far below the world puts the player back at the spawn point
+    private static final float RESPAWN_DEPTH = -32.0f;
+    // Keeps touching faces from counting as overlapping
+    private static final float EPSILON = 1.0e-4f;
+
+    // Feet position: center of the bottom face of the box
+    private final Vector3f position = new Vector3f();
+    private final Vector3f velocity = new Vector3f();
+    private final Vector3f spawn = new Vector3f();
+    private final Vector3f eye = new Vector3f();
+    private boolean onGround;
+
+    // Box bounds, refreshed from the position before every sweep
+    private final float[] min = new float[3];
+    private final float[] max = new float[3];
+
+    /**
+     * Creates a player standing at the given feet position, which also becomes the spawn point.
+     */
+    public PlayerController(Vector3fc feet) {
+        setPosition(feet);
+        spawn.set(feet);
+    }
+
+    /**
+     * Moves the player for one simulation tick, using WASD relative to the
+     * view direction and SPACE to jump.
+     *
+     * @param deltaTime Tick length in seconds
+     * @param world World to collide with
+     * @param yaw Horizontal view direction in degrees
+     */
+    public void update(float deltaTime, World world, float yaw) {
+        float yawRad = (float) Math.toRadians(yaw);
+        float frontX = (float) Math.cos(yawRad);
+        float frontZ = (float) Math.sin(yawRad);
+
+        float moveX = 0.0f;
+        float moveZ = 0.0f;
+        if (Keyboard.isKeyDown(KeyCode.W)) { moveX += frontX; moveZ += frontZ; }
+        if (Keyboard.isKeyDown(KeyCode.S)) { moveX -= frontX; moveZ -= frontZ; }
+        if (Keyboard.isKeyDown(KeyCode.D)) { moveX -= frontZ; moveZ += frontX; }
+        if (Keyboard.isKeyDown(KeyCode.A)) { moveX += frontZ; moveZ -= frontX; }
+        float length = (float) Math.sqrt(moveX * moveX + moveZ * moveZ);
+        if (length > 0.0f) {
+            moveX *= WALK_SPEED / length;
+            moveZ *= WALK_SPEED / length;
+        }
+        velocity.x = moveX;
+        velocity.z = moveZ;
+
+        if (onGround && Keyboard.isKeyDown(KeyCode.SPACE)) {
+            velocity.y = JUMP_VELOCITY;
+            onGround = false;
+        }
+        velocity.y = Math.max(velocity.y - GRAVITY * deltaTime, -TERMINAL_VELOCITY);
+
+        move(world, velocity.x * deltaTime, velocity.y * deltaTime, velocity.z * deltaTime);
+
+        if (position.y < RESPAWN_DEPTH) {
+            position.set(spawn);
+            velocity.zero();
+        }
+    }
+
+    /**
+     * Moves the box by the given amounts, stopping at solid blocks.
+     */
+    private void move(World world, float dx, float dy, float dz) {
+        // Vertical first, so ground contact is known before walking
+        float movedY = sweep(world, 1, dy);
+        position.y += movedY;
+        if (movedY != dy) {
+            onGround = dy < 0.0f;
+            velocity.y = 0.0f;
+        } else {
+            onGround = false;
+        }
+
+        float startX = position.x;
+        float startY = position.y;
+        float startZ = position.z;
+        position.x += sweep(world, 0, dx);
+        position.z += sweep(world, 2, dz);
+        float movedX = position.x - startX;
+        float movedZ = position.z - startZ;
+        if (!onGround || (movedX == dx && movedZ == dz)) {
+            return;
+        }
+
+        // Blocked while walking: try again from STEP_HEIGHT higher and settle back down
+        float walkedX = position.x;
+        float walkedZ = position.z;
+        position.set(startX, startY, startZ);
+        float rise = sweep(world, 1, STEP_HEIGHT);
+        position.y += rise;
+        position.x += sweep(world, 0, dx);
+        position.z += sweep(world, 2, dz);
+        position.y += sweep(world, 1, -rise);
+        float steppedX = position.x - startX;
+        float steppedZ = position.z - startZ;
+        if (steppedX * steppedX + steppedZ * steppedZ <= movedX * movedX + movedZ * movedZ) {
+            position.set(walkedX, startY, walkedZ);
+        }
+    }
+
+    /**
+     * Sweeps the box along one axis.
+     *
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     * @param delta Distance to move
+     * @return The distance the box can move before touching a solid block
+     */
+    private float sweep(World world, int axis, float delta) {
+        if (delta == 0.0f) {
+            return 0.0f;
+        }
+        updateBounds();
+        int axisU = (axis + 1) % 3;
+        int axisV = (axis + 2) % 3;
+        int fromU = (int) Math.floor(min[axisU] + EPSILON);
+        int toU = (int) Math.floor(max[axisU] - EPSILON);
+        int fromV = (int) Math.floor(min[axisV] + EPSILON);
+        int toV = (int) Math.floor(max[axisV] - EPSILON);
+
+        if (delta > 0.0f) {
+            // Layers of voxels ahead of the leading face, nearest first
+            int first = (int) Math.ceil(max[axis] - EPSILON);
+            int last = (int) Math.ceil(max[axis] + delta) - 1;
+            for (int layer = first; layer <= last; layer++) {
+                if (isLayerSolid(world, axis, layer, fromU, toU, fromV, toV)) {
+                    return Math.max(0.0f, layer - max[axis]);
+                }
+            }
+        } else {
+            int first = (int) Math.floor(min[axis] + EPSILON) - 1;
+            int last = (int) Math.floor(min[axis] + delta);
+            for (int layer = first; layer >= last; layer--) {
+                if (isLayerSolid(world, axis, layer, fromU, toU, fromV, toV)) {
+                    return Math.min(0.0f, layer + 1 - min[axis]);
+                }
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Checks the voxels of one layer perpendicular to the sweep axis that the box cross-section covers.
+     */
+    private static boolean isLayerSolid(World world, int axis, int layer,
+                                        int fromU, int toU, int fromV, int toV) {
+        for (int u = fromU; u <= toU; u++) {
+            for (int v = fromV; v <= toV; v++) {
+                int x, y, z;
+                if (axis == 0) {
+                    x = layer; y = u; z = v;
+                } else if (axis == 1) {
+                    x = v; y = layer; z = u;
+                } else {
+                    x = u; y = v; z = layer;
+                }
+                if (world.isSolid(x, y, z)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void updateBounds() {
+        float half = WIDTH * 0.5f;
+        min[0] = position.x - half;
+        max[0] = position.x + half;
+        min[1] = position.y;
+        max[1] = position.y + HEIGHT;
+        min[2] = position.z - half;
+        max[2] = position.z + half;
+    }
+
+    /**
+     * Checks whether the box overlaps a block, e.g. before placing one there.
+     */
+    public boolean intersectsBlock(int x, int y, int z) {
+        updateBounds();
+        return x + 1 > min[0] + EPSILON && x < max[0] - EPSILON
+                && y + 1 > min[1] + EPSILON && y < max[1] - EPSILON
+                && z + 1 > min[2] + EPSILON && z < max[2] - EPSILON;
+    }
+
+    /**
+     * Places the feet at the given position and stops all motion.
+     */
+    public void setPosition(Vector3fc feet) {
+        position.set(feet);
+        velocity.zero();
+        onGround = false;
+    }
+
+    /**
+     * Gets the feet position.
+     * @return Read-only view, updated in place as the player moves
+     */
+    public Vector3fc getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the eye position, where the camera belongs.
+     * @return Read-only view, updated on every call
+     */
+    public Vector3fc getEyePosition() {
+        return eye.set(position.x, position.y + EYE_HEIGHT, position.z);
+    }
+
+    public boolean isOnGround() {
+        return onGround;
+    }
+}
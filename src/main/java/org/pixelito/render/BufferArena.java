@@ -0,0 +1,456 @@
+package org.pixelito.render;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL31;
+import org.pixelito.util.ResourceTracker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sub-allocates ranges of one large GPU buffer, so chunk meshes never create
+ * or delete buffer objects of their own. However many meshes are alive, the
+ * arena is a single buffer; when it runs out of room it doubles, copying
+ * the live ranges on the GPU.
+ * <p>
+ * Free ranges are kept in segregated lists in the style of TLSF: each power
+ * of two is split into four bins, and two bitmaps find a bin whose ranges
+ * all fit a request in constant time. Freed ranges merge with their free
+ * neighbours right away.
+ * <p>
+ * Allocations are handles: {@link #compact(int)} moves live ranges down
+ * into lower holes with {@code glCopyBufferSubData}, a few per frame, and
+ * growing replaces the buffer, so users must read {@link Allocation#offset()}
+ * and {@link #getBufferId()} when they draw rather than keep them.
+ * <p>
+ * Must only be used on the thread that owns the OpenGL context.
+ */
+public class BufferArena {
+    // Offsets and sizes are multiples of this, enough for any vertex or index type
+    private static final int ALIGNMENT = 16;
+    // Each power-of-two size class is split into 2^SL_BITS bins
+    private static final int SL_BITS = 2;
+    private static final int SL_COUNT = 1 << SL_BITS;
+    private static final int FL_COUNT = 31;
+    // Live ranges tried per compaction step, since finding a hole walks the buffer
+    private static final int COMPACT_CANDIDATES = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE & -ALIGNMENT;
+
+    private int bufferId;
+    private int capacity;
+    private final ResourceTracker.Resource resource;
+
+    // Blocks in address order, covering the whole buffer
+    private Block first;
+    private Block last;
+    // Free blocks by bin, with a bit per non-empty bin
+    private final Block[] bins = new Block[FL_COUNT * SL_COUNT];
+    private int flMask;
+    private final int[] slMasks = new int[FL_COUNT];
+
+    private int usedBytes;
+    private int allocationCount;
+    // Where the next compaction step resumes, so ranges that fit no hole are not retried every frame
+    private int compactCursor = Integer.MAX_VALUE;
+
+    private static final class Block {
+        int offset;
+        int size;
+        // Null while the block is free
+        Allocation owner;
+        Block prev;
+        Block next;
+        Block prevFree;
+        Block nextFree;
+
+        Block(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A range of the arena's buffer. Its offset changes when the arena
+     * compacts.
+     */
+    public final class Allocation {
+        private Block block;
+        private final int size;
+
+        private Allocation(Block block, int size) {
+            this.block = block;
+            this.size = size;
+        }
+
+        /**
+         * Gets the current offset in the arena's buffer, in bytes.
+         */
+        public int offset() {
+            return block.offset;
+        }
+
+        /**
+         * Gets the requested size in bytes.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the range to the arena. Does nothing when already freed.
+         */
+        public void free() {
+            if (block != null) {
+                usedBytes -= block.size;
+                allocationCount--;
+                release(block);
+                block = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the arena's buffer.
+     *
+     * @param initialBytes Bytes the buffer holds before it has to grow
+     */
+    public BufferArena(int initialBytes) {
+        capacity = Math.max(align(initialBytes), ALIGNMENT);
+        bufferId = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, bufferId);
+        GL15.glBufferData(GL31.GL_COPY_WRITE_BUFFER, capacity, GL15.GL_DYNAMIC_DRAW);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, 0);
+        first = last = new Block(0, capacity);
+        insertFree(first);
+        resource = ResourceTracker.track(ResourceTracker.Category.GPU_BUFFERS, "BufferArena", capacity);
+    }
+
+    /**
+     * Reserves a range, growing the buffer if nothing fits.
+     *
+     * @param bytes Size in bytes
+     * @return The new range; its contents are undefined
+     */
+    public Allocation allocate(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Allocation size must be positive: " + bytes);
+        }
+        int size = align(bytes);
+        Block block = findFree(size);
+        if (block == null) {
+            grow(size);
+            block = findFree(size);
+        }
+        removeFree(block);
+        split(block, size);
+        Allocation allocation = new Allocation(block, bytes);
+        block.owner = allocation;
+        usedBytes += size;
+        allocationCount++;
+        return allocation;
+    }
+
+    /**
+     * Writes data into a range.
+     *
+     * @param allocation The range to write into
+     * @param offset Offset within the range, in bytes
+     * @param data Data from its position to its limit
+     */
+    public void write(Allocation allocation, long offset, ByteBuffer data) {
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, bufferId);
+        GL15.glBufferSubData(GL31.GL_COPY_WRITE_BUFFER, allocation.offset() + offset, data);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, 0);
+    }
+
+    /**
+     * Copies data from another buffer into a range on the GPU.
+     *
+     * @param sourceBuffer Buffer to copy from
+     * @param sourceOffset Offset in the source buffer, in bytes
+     * @param allocation The range to copy into
+     * @param bytes Bytes to copy
+     */
+    public void copy(int sourceBuffer, long sourceOffset, Allocation allocation, long bytes) {
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, sourceBuffer);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, bufferId);
+        GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, GL31.GL_COPY_WRITE_BUFFER, sourceOffset, allocation.offset(),
+                bytes);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, 0);
+    }
+
+    /**
+     * Moves live ranges from the top of the buffer into the lowest holes
+     * they fit, so free space gathers in one piece at the end. Each call
+     * continues below where the last one stopped; meant to be called once
+     * per frame with a small budget.
+     *
+     * @param maxBytes Bytes to move at most, roughly
+     * @return Bytes moved
+     */
+    public int compact(int maxBytes) {
+        int moved = 0;
+        int candidates = 0;
+        Block candidate = last;
+        while (candidate != null && candidate.offset > compactCursor) {
+            candidate = candidate.prev;
+        }
+        while (candidate != null && moved < maxBytes && candidates < COMPACT_CANDIDATES) {
+            if (candidate.owner == null) {
+                candidate = candidate.prev;
+                continue;
+            }
+            candidates++;
+            Block previous = candidate.prev;
+            Block hole = lowestHole(candidate);
+            if (hole != null) {
+                moved += candidate.size;
+                move(candidate, hole);
+            }
+            candidate = previous;
+        }
+        // Start over from the top once the bottom is reached
+        compactCursor = candidate != null ? candidate.offset : Integer.MAX_VALUE;
+        return moved;
+    }
+
+    // First free block below a live one that can hold it
+    private Block lowestHole(Block block) {
+        for (Block hole = first; hole != block; hole = hole.next) {
+            if (hole.owner == null && hole.size >= block.size) {
+                return hole;
+            }
+        }
+        return null;
+    }
+
+    private void move(Block block, Block hole) {
+        removeFree(hole);
+        split(hole, block.size);
+        // The hole is below the block and free, so the ranges never overlap
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, bufferId);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, bufferId);
+        GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, GL31.GL_COPY_WRITE_BUFFER, block.offset, hole.offset,
+                block.size);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, 0);
+        hole.owner = block.owner;
+        hole.owner.block = hole;
+        release(block);
+    }
+
+    private void grow(int size) {
+        if ((long) capacity + size > MAX_CAPACITY) {
+            throw new IllegalStateException("Buffer arena needs " + ((long) capacity + size) + " bytes");
+        }
+        int newCapacity = (int) Math.min(Math.max((long) capacity * 2, (long) capacity + size), MAX_CAPACITY);
+        int newBuffer = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, newBuffer);
+        GL15.glBufferData(GL31.GL_COPY_WRITE_BUFFER, newCapacity, GL15.GL_DYNAMIC_DRAW);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, bufferId);
+        GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, GL31.GL_COPY_WRITE_BUFFER, 0, 0, capacity);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, 0);
+        GL15.glDeleteBuffers(bufferId);
+        bufferId = newBuffer;
+
+        // The new space joins the last block if that one is free
+        int added = newCapacity - capacity;
+        if (last.owner == null) {
+            removeFree(last);
+            last.size += added;
+            insertFree(last);
+        } else {
+            Block block = new Block(capacity, added);
+            block.prev = last;
+            last.next = block;
+            last = block;
+            insertFree(block);
+        }
+        capacity = newCapacity;
+        resource.resize(capacity);
+    }
+
+    // Cuts a used block down to size, returning the rest as a free block
+    private void split(Block block, int size) {
+        int rest = block.size - size;
+        if (rest == 0) {
+            return;
+        }
+        Block remainder = new Block(block.offset + size, rest);
+        block.size = size;
+        remainder.prev = block;
+        remainder.next = block.next;
+        if (block.next != null) {
+            block.next.prev = remainder;
+        } else {
+            last = remainder;
+        }
+        block.next = remainder;
+        insertFree(remainder);
+    }
+
+    // Frees a block, merging it with free neighbours
+    private void release(Block block) {
+        block.owner = null;
+        Block prev = block.prev;
+        if (prev != null && prev.owner == null) {
+            removeFree(prev);
+            prev.size += block.size;
+            unlink(block);
+            block = prev;
+        }
+        Block next = block.next;
+        if (next != null && next.owner == null) {
+            removeFree(next);
+            block.size += next.size;
+            unlink(next);
+        }
+        insertFree(block);
+    }
+
+    private void unlink(Block block) {
+        if (block.prev != null) {
+            block.prev.next = block.next;
+        } else {
+            first = block.next;
+        }
+        if (block.next != null) {
+            block.next.prev = block.prev;
+        } else {
+            last = block.prev;
+        }
+    }
+
+    private Block findFree(int size) {
+        // Round up to the next bin boundary, so any block in the bin found fits
+        int fl = 31 - Integer.numberOfLeadingZeros(size);
+        int rounded = size + (1 << (fl - SL_BITS)) - 1;
+        int bin = rounded > 0 ? bin(rounded) : bin(size);
+        fl = bin / SL_COUNT;
+        int sl = bin % SL_COUNT;
+        int slMask = fl < FL_COUNT ? slMasks[fl] & (-1 << sl) : 0;
+        if (slMask == 0) {
+            int higher = fl + 1 < FL_COUNT ? flMask & (-1 << (fl + 1)) : 0;
+            if (higher == 0) {
+                return fitInBin(size);
+            }
+            fl = Integer.numberOfTrailingZeros(higher);
+            slMask = slMasks[fl];
+        }
+        return bins[fl * SL_COUNT + Integer.numberOfTrailingZeros(slMask)];
+    }
+
+    // The request's own bin may still hold a big enough block; checked before growing
+    private Block fitInBin(int size) {
+        for (Block block = bins[bin(size)]; block != null; block = block.nextFree) {
+            if (block.size >= size) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    private static int bin(int size) {
+        int fl = 31 - Integer.numberOfLeadingZeros(size);
+        int sl = (size >>> (fl - SL_BITS)) & (SL_COUNT - 1);
+        return fl * SL_COUNT + sl;
+    }
+
+    private void insertFree(Block block) {
+        int bin = bin(block.size);
+        block.prevFree = null;
+        block.nextFree = bins[bin];
+        if (bins[bin] != null) {
+            bins[bin].prevFree = block;
+        }
+        bins[bin] = block;
+        flMask |= 1 << (bin / SL_COUNT);
+        slMasks[bin / SL_COUNT] |= 1 << (bin % SL_COUNT);
+    }
+
+    private void removeFree(Block block) {
+        int bin = bin(block.size);
+        if (block.prevFree != null) {
+            block.prevFree.nextFree = block.nextFree;
+        } else {
+            bins[bin] = block.nextFree;
+        }
+        if (block.nextFree != null) {
+            block.nextFree.prevFree = block.prevFree;
+        }
+        block.prevFree = null;
+        block.nextFree = null;
+        if (bins[bin] == null) {
+            slMasks[bin / SL_COUNT] &= ~(1 << (bin % SL_COUNT));
+            if (slMasks[bin / SL_COUNT] == 0) {
+                flMask &= ~(1 << (bin / SL_COUNT));
+            }
+        }
+    }
+
+    private static int align(int bytes) {
+        return (int) Math.min(((long) bytes + ALIGNMENT - 1) & -ALIGNMENT, MAX_CAPACITY);
+    }
+
+    /**
+     * Gets the buffer holding all ranges. Changes when the arena grows.
+     */
+    public int getBufferId() {
+        return bufferId;
+    }
+
+    /**
+     * Gets the size of the buffer in bytes.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the bytes taken by live ranges, including alignment.
+     */
+    public int getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the number of live ranges.
+     */
+    public int getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Gets the size of the largest free block in bytes.
+     */
+    public int getLargestFreeBlock() {
+        if (flMask == 0) {
+            return 0;
+        }
+        int fl = 31 - Integer.numberOfLeadingZeros(flMask);
+        int largest = 0;
+        for (Block block = bins[fl * SL_COUNT + 31 - Integer.numberOfLeadingZeros(slMasks[fl])]; block != null;
+                block = block.nextFree) {
+            largest = Math.max(largest, block.size);
+        }
+        return largest;
+    }
+
+    /**
+     * Gets how scattered the free space is: 0 when it is one block, close to
+     * 1 when it is many small holes.
+     */
+    public double getFragmentation() {
+        int free = capacity - usedBytes;
+        return free == 0 ? 0.0 : 1.0 - (double) getLargestFreeBlock() / free;
+    }
+
+    /**
+     * Deletes the buffer. Ranges must not be used afterwards.
+     */
+    public void destroy() {
+        GL15.glDeleteBuffers(bufferId);
+        resource.release();
+    }
+}
@@ -0,0 +1,56 @@
+package org.pixelito.render;
+
+/**
+ * How {@link ChunkRenderer} stores and draws chunk geometry.
+ */
+public enum ChunkGeometry {
+    /** Four vertices and six indices per face in per-chunk buffers ({@link Mesh}) */
+    INDEXED("indexed", "block.vert"),
+    /** One packed record per face in per-chunk buffers, drawn instanced ({@link FaceMesh}) */
+    INSTANCED("instanced", "face.vert"),
+    /** One packed record per face in a single shader storage buffer, read by the vertex shader ({@link FaceStorage}) */
+    PULLED("pulled", "pull.vert");
+
+    private final String id;
+    private final String vertexShader;
+
+    ChunkGeometry(String id, String vertexShader) {
+        this.id = id;
+        this.vertexShader = vertexShader;
+    }
+
+    /**
+     * Gets the name used on the command line and in reports.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the file name of the vertex shader that reads this geometry.
+     */
+    public String getVertexShader() {
+        return vertexShader;
+    }
+
+    /**
+     * Checks whether this geometry needs shader storage buffers (OpenGL 4.3).
+     */
+    public boolean needsStorageBuffers() {
+        return this == PULLED;
+    }
+
+    /**
+     * Finds a geometry by its name.
+     *
+     * @throws IllegalArgumentException If no geometry has that name
+     */
+    public static ChunkGeometry fromId(String id) {
+        for (ChunkGeometry geometry : values()) {
+            if (geometry.id.equals(id)) {
+                return geometry;
+            }
+        }
+        throw new IllegalArgumentException("Unknown geometry: " + id);
+    }
+}
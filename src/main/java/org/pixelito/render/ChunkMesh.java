@@ -0,0 +1,17 @@
+package org.pixelito.render;
+
+/**
+ * GPU geometry of one chunk pass, either indexed vertices ({@link Mesh}) or
+ * instanced face records ({@link FaceMesh}).
+ */
+interface ChunkMesh {
+    /**
+     * Draws the geometry with the currently bound shader.
+     */
+    void render();
+
+    /**
+     * Frees the GPU resources.
+     */
+    void destroy();
+}
@@ -0,0 +1,745 @@
+package org.pixelito.render;
+
+import org.joml.Vector3fc;
+import org.pixelito.graphics.ShaderProgram;
+import org.pixelito.util.ResourceTracker;
+import org.pixelito.world.Chunk;
+import org.pixelito.world.ChunkNeighborhood;
+import org.pixelito.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one mesh per world chunk. Chunks are meshed from a
+ * {@link ChunkNeighborhood}, a copy of the chunk with a one-block border
+ * from its neighbours, so faces hidden by a neighbouring chunk are culled
+ * like any other and chunk seams cost nothing. In turn an edit next to a
+ * chunk border also rebuilds the neighbours that see it. Chunks that are all
+ * air, or all opaque and walled in by all-opaque neighbours, have no faces
+ * at all and are not meshed.
+ * <p>
+ * Each chunk has an opaque mesh and a translucent one (water, leaves). The
+ * opaque meshes are drawn first without blending so the depth test rejects
+ * hidden fragments early. Translucent chunks are then drawn back to front,
+ * each with its faces sorted back to front as well. Sorting faces runs on a
+ * worker thread and only when the camera moves into another block, since
+ * the order cannot change while it stays within one.
+ * <p>
+ * Geometry is chunk-local: positions are whole blocks within the chunk and
+ * the shaders add the chunk's origin relative to the camera's block, both
+ * integers, before converting to floats. Vertices next to the camera are
+ * thus exact wherever the camera is in the world.
+ * <p>
+ * Chunks are stored as indexed vertices ({@link Mesh}), as one packed
+ * record per face drawn instanced ({@link FaceMesh}), or as packed records
+ * in one storage buffer shared by all chunks ({@link FaceStorage}), see
+ * {@link ChunkGeometry}. All of them sub-allocate from one
+ * {@link BufferArena}, so the number of buffer objects does not grow with
+ * the number of chunks; {@link #update()} compacts the arena a little every
+ * frame once its free space is scattered.
+ * <p>
+ * Block edits go through {@link #requestRebuild(int, ChunkNeighborhood)}:
+ * the thread that edits the world copies the chunk, and meshing the copy
+ * runs on a pool of worker threads, which write the result straight into a
+ * persistently mapped staging buffer ({@link StagingRing}) when the context
+ * has one. The GL thread then only issues buffer copies in {@link #update()}
+ * and keeps drawing the old mesh until the copies' fence has signalled.
+ * <p>
+ * Must only be used on the thread that owns the OpenGL context.
+ */
+public class ChunkRenderer {
+    private final World world;
+    private final ChunkMesh[] meshes;
+    private final ChunkMesh[] translucentMeshes;
+    private final int[] vertexCounts;
+    private final int[] faceCounts;
+    private final long[] byteCounts;
+    private boolean useGreedyMesher = true;
+    private ChunkGeometry geometry = ChunkGeometry.INDEXED;
+    private final BufferArena arena;
+    private final ResourceTracker.Resource cacheResource;
+    // Compact once this share of the free space is outside the largest free block
+    private static final double COMPACT_FRAGMENTATION = 0.25;
+    private static final int COMPACT_BYTES_PER_FRAME = 1024 * 1024;
+    // Created when the pulled geometry is first used
+    private FaceStorage faceStorage;
+
+    // Translucent geometry kept for sorting: face centers (xyz) and the per-face data as built,
+    // six indices per face for a Mesh or one record per face for a FaceMesh
+    private final float[][] faceCenters;
+    private final int[][] faceData;
+    // Latest build requested per chunk, and the build currently drawn; sort results
+    // and uploads for an older build are dropped
+    private final int[] requests;
+    private final int[] versions;
+
+    // Size of the upload ring, enough for several full chunk meshes in flight
+    private static final int STAGING_BYTES = 16 * 1024 * 1024;
+    // Created when the context supports persistent mapping (OpenGL 4.4)
+    private StagingRing staging;
+    private final ExecutorService mesher = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                Thread thread = new Thread(runnable, "pixelito-mesher");
+                thread.setDaemon(true);
+                return thread;
+            });
+    // Builds finished by the workers, and builds whose copies have not completed yet
+    private final Queue<Build> builds = new ConcurrentLinkedQueue<>();
+    private final List<Build> uploads = new ArrayList<>();
+
+    private final ExecutorService sorter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pixelito-sort");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Queue<SortResult> sortResults = new ConcurrentLinkedQueue<>();
+    // Sorts started for an older camera block skip their work
+    private volatile int sortGeneration;
+    private int cameraX = Integer.MIN_VALUE;
+    private int cameraY = Integer.MIN_VALUE;
+    private int cameraZ = Integer.MIN_VALUE;
+
+    // Chunk draw order for the translucent pass, reused every frame
+    private final long[] drawOrder;
+
+    private record SortResult(int chunkIndex, int version, int[] data) {
+    }
+
+    private static final VoxelMesher.MeshData EMPTY_MESH =
+            new VoxelMesher.MeshData(List.of(), List.of(), List.of(), List.of(), List.of());
+    private static final int[] NO_FACES = new int[0];
+
+    /**
+     * Both meshes of one chunk, built on any thread and uploaded on the GL
+     * thread. The data stays on the heap when it could not be staged.
+     */
+    private static final class Build {
+        final int chunkIndex;
+        final int request;
+        final ChunkGeometry geometry;
+        // Indexed geometry
+        VoxelMesher.MeshData data;
+        VoxelMesher.MeshData translucentData;
+        // Face geometry
+        int[] faces;
+        int[] translucentFaces;
+        float[] centers;
+        StagingRing.Region region;
+        StagingRing.Region translucentRegion;
+        ChunkMesh mesh;
+        ChunkMesh translucentMesh;
+
+        Build(int chunkIndex, int request, ChunkGeometry geometry) {
+            this.chunkIndex = chunkIndex;
+            this.request = request;
+            this.geometry = geometry;
+        }
+
+        boolean isUploaded() {
+            return (region == null || region.isComplete())
+                    && (translucentRegion == null || translucentRegion.isComplete());
+        }
+    }
+
+    /**
+     * Creates a renderer for a world. No meshes are built until
+     * {@link #rebuildAll(ChunkNeighborhood[])} or
+     * {@link #rebuild(int, ChunkNeighborhood)} is called.
+     *
+     * @param world The world to render
+     */
+    public ChunkRenderer(World world) {
+        this.world = world;
+        int chunks = world.getChunkCount();
+        this.meshes = new ChunkMesh[chunks];
+        this.translucentMeshes = new ChunkMesh[chunks];
+        this.vertexCounts = new int[chunks];
+        this.faceCounts = new int[chunks];
+        this.byteCounts = new long[chunks];
+        this.faceCenters = new float[chunks][];
+        this.faceData = new int[chunks][];
+        this.requests = new int[chunks];
+        this.versions = new int[chunks];
+        this.drawOrder = new long[chunks];
+        // Room for the packed faces of every chunk's surface; the arena grows for heavier geometry
+        this.arena = new BufferArena(chunks * Chunk.SIZE * Chunk.SIZE * 2 * FaceMesh.BYTES_PER_FACE);
+        this.cacheResource = ResourceTracker.gauge(ResourceTracker.Category.MESH_CACHES, "ChunkRenderer",
+                this::estimateCacheBytes);
+    }
+
+    /**
+     * Uploads meshes built by {@link #requestRebuild(int, ChunkNeighborhood)} through a
+     * persistently mapped staging buffer. Needs OpenGL 4.4; without it the
+     * workers still build the meshes but the GL thread uploads them from
+     * the heap.
+     */
+    public void enableStagedUploads() {
+        if (staging == null) {
+            staging = new StagingRing(STAGING_BYTES);
+        }
+    }
+
+    /**
+     * Sets the meshing algorithm used by the next rebuilds.
+     *
+     * @param useGreedyMesher true to use greedy meshing, false for simple meshing
+     */
+    public void setUseGreedyMesher(boolean useGreedyMesher) {
+        this.useGreedyMesher = useGreedyMesher;
+    }
+
+    /**
+     * Sets how the next rebuilds store chunk geometry. Until every chunk is
+     * rebuilt the meshes are drawn with mixed shaders, so switching should
+     * be followed by {@link #rebuildAll(ChunkNeighborhood[])}.
+     *
+     * @param geometry Storage for the chunk meshes
+     */
+    public void setGeometry(ChunkGeometry geometry) {
+        this.geometry = geometry;
+        if (geometry == ChunkGeometry.PULLED && faceStorage == null) {
+            faceStorage = new FaceStorage(arena, chunkOrigins());
+        }
+    }
+
+    // The first block of every chunk, four ints per chunk for the pulled geometry's origin buffer
+    private int[] chunkOrigins() {
+        int[] origins = new int[meshes.length * 4];
+        for (int i = 0; i < meshes.length; i++) {
+            Chunk chunk = world.getChunk(i);
+            origins[i * 4] = chunk.getOriginX();
+            origins[i * 4 + 1] = chunk.getOriginY();
+            origins[i * 4 + 2] = chunk.getOriginZ();
+        }
+        return origins;
+    }
+
+    /**
+     * Gets how chunk geometry is stored, which decides the vertex shader to draw it with.
+     */
+    public ChunkGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Rebuilds the meshes of every chunk right away on the calling thread.
+     *
+     * @param neighborhoods Copy of every chunk, indexed like the world's chunks and taken by the
+     *                      thread that changes the world, see {@link ChunkNeighborhood#captureAll}
+     */
+    public void rebuildAll(ChunkNeighborhood[] neighborhoods) {
+        if (neighborhoods.length != meshes.length) {
+            throw new IllegalArgumentException("Expected " + meshes.length + " chunks but got " + neighborhoods.length);
+        }
+        for (int i = 0; i < meshes.length; i++) {
+            rebuild(i, neighborhoods[i]);
+        }
+    }
+
+    /**
+     * Rebuilds the meshes of one chunk, right away on the calling thread.
+     * Builds still in flight for the chunk are dropped.
+     *
+     * @param chunkIndex Index of the chunk in the world
+     * @param neighborhood Copy of the chunk to mesh, taken by the thread that changes the world
+     */
+    public void rebuild(int chunkIndex, ChunkNeighborhood neighborhood) {
+        Build build = build(chunkIndex, neighborhood, ++requests[chunkIndex], geometry, useGreedyMesher, false);
+        upload(build);
+        swap(build);
+    }
+
+    /**
+     * Rebuilds the meshes of one chunk on a worker thread. The current
+     * meshes are drawn until the new ones are uploaded by {@link #update()}.
+     *
+     * @param chunkIndex Index of the chunk in the world
+     * @param neighborhood Copy of the chunk to mesh, taken by the thread that changed it
+     */
+    public void requestRebuild(int chunkIndex, ChunkNeighborhood neighborhood) {
+        int request = ++requests[chunkIndex];
+        ChunkGeometry target = geometry;
+        boolean greedy = useGreedyMesher;
+        boolean stage = staging != null;
+        mesher.execute(() -> builds.add(build(chunkIndex, neighborhood, request, target, greedy, stage)));
+    }
+
+    /**
+     * Uploads the meshes the workers have finished and swaps in the ones
+     * whose copies have completed. Called once per frame; never waits for
+     * the GPU.
+     */
+    public void update() {
+        Build build;
+        while ((build = builds.poll()) != null) {
+            if (build.request != requests[build.chunkIndex] || build.geometry != geometry) {
+                // A newer build of the chunk is on its way, or the geometry changed
+                discard(build);
+                continue;
+            }
+            upload(build);
+            uploads.add(build);
+        }
+        for (Iterator<Build> it = uploads.iterator(); it.hasNext(); ) {
+            Build uploaded = it.next();
+            if (uploaded.isUploaded()) {
+                it.remove();
+                swap(uploaded);
+            }
+        }
+        if (staging != null) {
+            staging.reclaim();
+        }
+        if (arena.getFragmentation() > COMPACT_FRAGMENTATION) {
+            arena.compact(COMPACT_BYTES_PER_FRAME);
+        }
+    }
+
+    /**
+     * Meshes both passes of a chunk. Safe to call from any thread.
+     */
+    private Build build(int chunkIndex, ChunkNeighborhood neighborhood, int request, ChunkGeometry target,
+                        boolean greedy, boolean stage) {
+        Build build = new Build(chunkIndex, request, target);
+        if (target == ChunkGeometry.INDEXED) {
+            build.data = generate(neighborhood, greedy, true, VoxelMesher.OPAQUE);
+            build.translucentData = generate(neighborhood, greedy, true, VoxelMesher.TRANSLUCENT);
+            build.centers = faceCenters(build.translucentData.vertices);
+            if (stage) {
+                build.region = stage(build.data);
+                build.translucentRegion = stage(build.translucentData);
+            }
+        } else {
+            build.faces = generateFaces(neighborhood, greedy, VoxelMesher.OPAQUE);
+            build.translucentFaces = generateFaces(neighborhood, greedy, VoxelMesher.TRANSLUCENT);
+            build.centers = FaceBuffer.centers(build.translucentFaces);
+            if (stage) {
+                build.region = stage(build.faces);
+                build.translucentRegion = stage(build.translucentFaces);
+            }
+        }
+        return build;
+    }
+
+    // Copies mesh data into the staging ring; null keeps it on the heap (empty or ring full)
+    private StagingRing.Region stage(VoxelMesher.MeshData data) {
+        if (data.indices.length == 0) {
+            return null;
+        }
+        StagingRing.Region region = staging.reserve(Mesh.byteSize(data));
+        if (region != null) {
+            Mesh.write(data, region.memory());
+        }
+        return region;
+    }
+
+    private StagingRing.Region stage(int[] faces) {
+        if (faces.length == 0) {
+            return null;
+        }
+        StagingRing.Region region = staging.reserve(faces.length * Integer.BYTES);
+        if (region != null) {
+            region.memory().asIntBuffer().put(faces);
+        }
+        return region;
+    }
+
+    /**
+     * Creates the GPU meshes of a build, copying from the staging ring where
+     * the build was staged. GL thread only.
+     */
+    private void upload(Build build) {
+        if (build.geometry == ChunkGeometry.INDEXED) {
+            build.mesh = createMesh(build.data, build.region);
+            build.translucentMesh = createMesh(build.translucentData, build.translucentRegion);
+        } else {
+            build.mesh = createFaceMesh(build.faces, build.region);
+            build.translucentMesh = createFaceMesh(build.translucentFaces, build.translucentRegion);
+        }
+        if (build.region != null) {
+            build.region.fence();
+        }
+        if (build.translucentRegion != null) {
+            build.translucentRegion.fence();
+        }
+    }
+
+    /**
+     * Replaces the chunk's meshes with an uploaded build, unless a newer
+     * build is already drawn.
+     */
+    private void swap(Build build) {
+        int chunkIndex = build.chunkIndex;
+        if (build.request <= versions[chunkIndex] || build.geometry != geometry) {
+            destroy(build);
+            return;
+        }
+        if (meshes[chunkIndex] != null) {
+            meshes[chunkIndex].destroy();
+        }
+        if (translucentMeshes[chunkIndex] != null) {
+            translucentMeshes[chunkIndex].destroy();
+        }
+        versions[chunkIndex] = build.request;
+        // Empty chunks have no mesh at all
+        meshes[chunkIndex] = build.mesh;
+        translucentMeshes[chunkIndex] = build.translucentMesh;
+
+        if (build.geometry == ChunkGeometry.INDEXED) {
+            int vertices = (build.data.vertices.length + build.translucentData.vertices.length) / 3;
+            int indices = build.data.indices.length + build.translucentData.indices.length;
+            vertexCounts[chunkIndex] = vertices;
+            faceCounts[chunkIndex] = indices / 6;
+            byteCounts[chunkIndex] = (long) vertices * Mesh.BYTES_PER_VERTEX + (long) indices * Integer.BYTES;
+        } else {
+            int count = (build.faces.length + build.translucentFaces.length) / FaceBuffer.INTS_PER_FACE;
+            // The corners are only expanded on the GPU
+            vertexCounts[chunkIndex] = count * 4;
+            faceCounts[chunkIndex] = count;
+            byteCounts[chunkIndex] = (long) count * FaceMesh.BYTES_PER_FACE;
+        }
+
+        boolean hasTranslucent = build.translucentMesh != null;
+        faceCenters[chunkIndex] = hasTranslucent ? build.centers : null;
+        faceData[chunkIndex] = !hasTranslucent ? null
+                : build.geometry == ChunkGeometry.INDEXED ? build.translucentData.indices : build.translucentFaces;
+        if (hasTranslucent && cameraX != Integer.MIN_VALUE) {
+            scheduleSort(chunkIndex, sortGeneration);
+        }
+    }
+
+    // Frees the staging space of a build that will never be uploaded
+    private static void discard(Build build) {
+        if (build.region != null) {
+            build.region.discard();
+        }
+        if (build.translucentRegion != null) {
+            build.translucentRegion.discard();
+        }
+    }
+
+    // Frees the meshes of a build that will never be drawn
+    private static void destroy(Build build) {
+        if (build.mesh != null) {
+            build.mesh.destroy();
+        }
+        if (build.translucentMesh != null) {
+            build.translucentMesh.destroy();
+        }
+    }
+
+    private ChunkMesh createFaceMesh(int[] faces, StagingRing.Region region) {
+        int count = faces.length / FaceBuffer.INTS_PER_FACE;
+        if (count == 0) {
+            return null;
+        }
+        if (geometry == ChunkGeometry.PULLED) {
+            return region != null ? faceStorage.allocate(region, count) : faceStorage.allocate(faces);
+        }
+        return region != null ? new FaceMesh(arena, region, count) : new FaceMesh(arena, faces);
+    }
+
+    private Mesh createMesh(VoxelMesher.MeshData data, StagingRing.Region region) {
+        if (data.indices.length == 0) {
+            return null;
+        }
+        return region != null
+                ? new Mesh(arena, region, data.vertices.length / 3, data.indices.length)
+                : new Mesh(arena, data.vertices, data.texCoords, data.lights, data.occlusion, data.indices);
+    }
+
+    /**
+     * Both meshers emit four consecutive vertices per face.
+     */
+    private static float[] faceCenters(float[] vertices) {
+        int faces = vertices.length / 12;
+        float[] centers = new float[faces * 3];
+        for (int face = 0; face < faces; face++) {
+            for (int axis = 0; axis < 3; axis++) {
+                int v = face * 12 + axis;
+                centers[face * 3 + axis] = (vertices[v] + vertices[v + 3] + vertices[v + 6] + vertices[v + 9]) * 0.25f;
+            }
+        }
+        return centers;
+    }
+
+    /**
+     * Counts the faces all chunks would have without ambient occlusion,
+     * which lets the greedy mesher merge more. Meshes the whole world once
+     * more, so it is meant for reports rather than every rebuild. Builds no
+     * GPU meshes.
+     *
+     * @param neighborhoods Copy of every chunk, see {@link #rebuildAll(ChunkNeighborhood[])}
+     */
+    public int countFacesWithoutOcclusion(ChunkNeighborhood[] neighborhoods) {
+        int total = 0;
+        for (ChunkNeighborhood neighborhood : neighborhoods) {
+            total += generate(neighborhood, useGreedyMesher, false, VoxelMesher.OPAQUE).indices.length / 6;
+            total += generate(neighborhood, useGreedyMesher, false, VoxelMesher.TRANSLUCENT).indices.length / 6;
+        }
+        return total;
+    }
+
+    private static VoxelMesher.MeshData generate(ChunkNeighborhood neighborhood, boolean greedy,
+                                                 boolean ambientOcclusion, int pass) {
+        if (!neighborhood.hasFaces()) {
+            return EMPTY_MESH;
+        }
+        return greedy
+                ? GreedyMesher.generateMesh(neighborhood, ambientOcclusion, pass)
+                : VoxelMesher.generateMesh(neighborhood, ambientOcclusion, pass);
+    }
+
+    private static int[] generateFaces(ChunkNeighborhood neighborhood, boolean greedy, int pass) {
+        if (!neighborhood.hasFaces()) {
+            return NO_FACES;
+        }
+        return greedy
+                ? GreedyMesher.generateFaces(neighborhood, true, pass)
+                : VoxelMesher.generateFaces(neighborhood, true, pass);
+    }
+
+    /**
+     * Draws the opaque mesh of every non-empty chunk.
+     *
+     * @param shader The bound chunk shader, which receives each chunk's {@code chunkOrigin}
+     */
+    public void renderOpaque(ShaderProgram shader) {
+        if (geometry == ChunkGeometry.PULLED) {
+            // Every chunk in one draw call
+            faceStorage.bind();
+            for (ChunkMesh mesh : meshes) {
+                if (mesh instanceof FaceStorage.Range range) {
+                    faceStorage.queue(range);
+                }
+            }
+            faceStorage.drawQueued();
+            faceStorage.unbind();
+            return;
+        }
+        for (int i = 0; i < meshes.length; i++) {
+            if (meshes[i] != null) {
+                render(shader, i, meshes[i]);
+            }
+        }
+    }
+
+    private void render(ShaderProgram shader, int chunkIndex, ChunkMesh mesh) {
+        Chunk chunk = world.getChunk(chunkIndex);
+        shader.setUniform("chunkOrigin", chunk.getOriginX(), chunk.getOriginY(), chunk.getOriginZ());
+        mesh.render();
+    }
+
+    /**
+     * Draws the translucent meshes back to front. Blending and depth writes
+     * are up to the caller.
+     *
+     * @param shader The bound chunk shader, which receives each chunk's {@code chunkOrigin}
+     * @param camera Camera position the faces are sorted for
+     */
+    public void renderTranslucent(ShaderProgram shader, Vector3fc camera) {
+        int x = (int) Math.floor(camera.x());
+        int y = (int) Math.floor(camera.y());
+        int z = (int) Math.floor(camera.z());
+        if (x != cameraX || y != cameraY || z != cameraZ) {
+            cameraX = x;
+            cameraY = y;
+            cameraZ = z;
+            int generation = ++sortGeneration;
+            for (int i = 0; i < translucentMeshes.length; i++) {
+                if (translucentMeshes[i] != null) {
+                    scheduleSort(i, generation);
+                }
+            }
+        }
+
+        // Upload the face orders the worker has finished
+        SortResult result;
+        while ((result = sortResults.poll()) != null) {
+            if (versions[result.chunkIndex()] != result.version()) {
+                continue;
+            }
+            if (translucentMeshes[result.chunkIndex()] instanceof Mesh mesh) {
+                mesh.updateIndices(result.data());
+            } else if (translucentMeshes[result.chunkIndex()] instanceof FaceMesh faces) {
+                faces.updateFaces(result.data());
+            } else if (translucentMeshes[result.chunkIndex()] instanceof FaceStorage.Range range) {
+                range.updateFaces(result.data());
+            }
+        }
+
+        // Farthest chunk first; the key is the squared distance with the chunk index in the low bits
+        int count = 0;
+        float half = Chunk.SIZE * 0.5f;
+        float fractionX = camera.x() - x;
+        float fractionY = camera.y() - y;
+        float fractionZ = camera.z() - z;
+        for (int i = 0; i < translucentMeshes.length; i++) {
+            if (translucentMeshes[i] == null) {
+                continue;
+            }
+            Chunk chunk = world.getChunk(i);
+            float dx = (chunk.getOriginX() - x) + half - fractionX;
+            float dy = (chunk.getOriginY() - y) + half - fractionY;
+            float dz = (chunk.getOriginZ() - z) + half - fractionZ;
+            drawOrder[count++] = ((long) Float.floatToIntBits(dx * dx + dy * dy + dz * dz) << 32) | i;
+        }
+        Arrays.sort(drawOrder, 0, count);
+        if (geometry == ChunkGeometry.PULLED) {
+            // A multi-draw keeps the order its ranges were queued in
+            faceStorage.bind();
+            for (int i = count - 1; i >= 0; i--) {
+                if (translucentMeshes[(int) drawOrder[i]] instanceof FaceStorage.Range range) {
+                    faceStorage.queue(range);
+                }
+            }
+            faceStorage.drawQueued();
+            faceStorage.unbind();
+            return;
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            int chunkIndex = (int) drawOrder[i];
+            render(shader, chunkIndex, translucentMeshes[chunkIndex]);
+        }
+    }
+
+    /**
+     * Sorts a chunk's translucent faces back to front for the center of the
+     * camera's current block, on the worker thread.
+     */
+    private void scheduleSort(int chunkIndex, int generation) {
+        float[] centers = faceCenters[chunkIndex];
+        int[] data = faceData[chunkIndex];
+        int stride = data.length / (centers.length / 3);
+        int version = versions[chunkIndex];
+        // Face centers are chunk-local, so the eye is too
+        Chunk chunk = world.getChunk(chunkIndex);
+        float eyeX = (cameraX - chunk.getOriginX()) + 0.5f;
+        float eyeY = (cameraY - chunk.getOriginY()) + 0.5f;
+        float eyeZ = (cameraZ - chunk.getOriginZ()) + 0.5f;
+        sorter.execute(() -> {
+            if (generation != sortGeneration) {
+                return;
+            }
+            int faces = centers.length / 3;
+            long[] keys = new long[faces];
+            for (int face = 0; face < faces; face++) {
+                float dx = centers[face * 3] - eyeX;
+                float dy = centers[face * 3 + 1] - eyeY;
+                float dz = centers[face * 3 + 2] - eyeZ;
+                keys[face] = ((long) Float.floatToIntBits(dx * dx + dy * dy + dz * dz) << 32) | face;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[data.length];
+            int out = 0;
+            for (int i = faces - 1; i >= 0; i--) {
+                int face = (int) keys[i];
+                System.arraycopy(data, face * stride, sorted, out, stride);
+                out += stride;
+            }
+            sortResults.add(new SortResult(chunkIndex, version, sorted));
+        });
+    }
+
+    /**
+     * Gets the total vertex count of all chunk meshes.
+     */
+    public int getVertexCount() {
+        int total = 0;
+        for (int count : vertexCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the total face count of all chunk meshes.
+     */
+    public int getFaceCount() {
+        int total = 0;
+        for (int count : faceCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the GPU memory taken by all chunk meshes, in bytes.
+     */
+    public long getByteCount() {
+        long total = 0;
+        for (long count : byteCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Estimates the heap memory of the translucent geometry kept for sorting.
+     */
+    private long estimateCacheBytes() {
+        long total = 0;
+        for (int i = 0; i < faceData.length; i++) {
+            float[] centers = faceCenters[i];
+            int[] data = faceData[i];
+            // 16-byte array headers
+            total += centers != null ? 16 + (long) centers.length * Float.BYTES : 0;
+            total += data != null ? 16 + (long) data.length * Integer.BYTES : 0;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the arena holding all chunk geometry.
+     */
+    public BufferArena getArena() {
+        return arena;
+    }
+
+    /**
+     * Destroys all chunk meshes and stops the workers.
+     */
+    public void destroy() {
+        sorter.shutdownNow();
+        mesher.shutdownNow();
+        try {
+            // Workers may still be writing into the staging ring
+            mesher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        builds.clear();
+        for (Build build : uploads) {
+            destroy(build);
+        }
+        uploads.clear();
+        for (int i = 0; i < meshes.length; i++) {
+            if (meshes[i] != null) {
+                meshes[i].destroy();
+                meshes[i] = null;
+            }
+            if (translucentMeshes[i] != null) {
+                translucentMeshes[i].destroy();
+                translucentMeshes[i] = null;
+            }
+        }
+        if (faceStorage != null) {
+            faceStorage.destroy();
+            faceStorage = null;
+        }
+        if (staging != null) {
+            staging.destroy();
+            staging = null;
+        }
+        arena.destroy();
+        cacheResource.release();
+    }
+}
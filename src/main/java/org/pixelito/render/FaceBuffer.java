@@ -0,0 +1,98 @@
+package org.pixelito.render;
+
+import org.pixelito.block.BlockType;
+
+import java.util.Arrays;
+
+/**
+ * Packs the quads a mesher emits into the two-int face records drawn by
+ * {@link FaceMesh}:
+ * <ul>
+ *     <li>word 0: chunk-local X, Y and Z (4 bits each) of the quad's lowest block, then the
+ *     chunk's index in the world (20 bits), which {@code pull.vert} looks the chunk's origin up by</li>
+ *     <li>word 1: face (3 bits), width - 1 (4 bits), height - 1 (4 bits), texture cell X (2 bits)
+ *     and Y (2 bits), packed light (8 bits), ambient occlusion (8 bits)</li>
+ * </ul>
+ * Positions are whole blocks within the chunk, so a record says nothing
+ * about where the chunk is and precision does not depend on it. The index
+ * limit matches the largest world the light engine supports.
+ */
+class FaceBuffer implements QuadSink {
+    static final int INTS_PER_FACE = 2;
+
+    private static final int POSITION_BITS = 4;
+    private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+    private static final int CHUNK_SHIFT = 3 * POSITION_BITS;
+    private static final int MAX_CHUNK = (1 << (32 - CHUNK_SHIFT)) - 1;
+    private static final int MAX_SIZE = 16;
+
+    private final int chunk;
+    private int[] data = new int[256];
+    private int size;
+
+    /**
+     * @param chunkIndex Index in the world of the meshed chunk
+     * @throws IllegalArgumentException If the index does not fit in a record
+     */
+    FaceBuffer(int chunkIndex) {
+        if (chunkIndex < 0 || chunkIndex > MAX_CHUNK) {
+            throw new IllegalArgumentException("Chunk " + chunkIndex + " is outside the packable range");
+        }
+        this.chunk = chunkIndex << CHUNK_SHIFT;
+    }
+
+    @Override
+    public void addQuad(int x, int y, int z, int face, int sizeU, int sizeV, BlockType type, int light, int ao) {
+        if ((x | y | z) >>> POSITION_BITS != 0) {
+            throw new IllegalArgumentException("Face at " + x + ", " + y + ", " + z + " is outside the chunk");
+        }
+        if (sizeU > MAX_SIZE || sizeV > MAX_SIZE) {
+            throw new IllegalArgumentException("Faces can be at most " + MAX_SIZE + " blocks wide, got " + sizeU + "x" + sizeV);
+        }
+        if (size + INTS_PER_FACE > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[size++] = x | y << POSITION_BITS | z << (2 * POSITION_BITS) | chunk;
+        data[size++] = face
+                | (sizeU - 1) << 3
+                | (sizeV - 1) << 7
+                | type.getTextureX() << 11
+                | type.getTextureY() << 13
+                | (light & 0xFF) << 15
+                | (ao & 0xFF) << 23;
+    }
+
+    /**
+     * Gets the packed face records built so far.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Computes the center of every face in a record array, three floats per
+     * face relative to the chunk's first block.
+     */
+    static float[] centers(int[] faces) {
+        int count = faces.length / INTS_PER_FACE;
+        float[] centers = new float[count * 3];
+        for (int i = 0; i < count; i++) {
+            int position = faces[i * INTS_PER_FACE];
+            int info = faces[i * INTS_PER_FACE + 1];
+            int face = info & 7;
+            int sizeU = ((info >> 3) & 15) + 1;
+            int sizeV = ((info >> 7) & 15) + 1;
+            int[] normal = VoxelMesher.FACE_OFFSETS[face];
+            int[] du = GreedyMesher.FACE_ADJACENTS[face][0];
+            int[] dv = GreedyMesher.FACE_ADJACENTS[face][1];
+            int[] block = {position & POSITION_MASK, (position >> POSITION_BITS) & POSITION_MASK,
+                    (position >> (2 * POSITION_BITS)) & POSITION_MASK};
+            for (int axis = 0; axis < 3; axis++) {
+                // Faces pointing along a positive axis lie on the far side of their block
+                centers[i * 3 + axis] = block[axis] + (normal[axis] > 0 ? 1 : 0)
+                        + du[axis] * sizeU * 0.5f + dv[axis] * sizeV * 0.5f;
+            }
+        }
+        return centers;
+    }
+}
@@ -0,0 +1,125 @@
+package org.pixelito.render;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.system.MemoryUtil;
+import org.pixelito.util.RenderStats;
+import org.pixelito.util.ResourceTracker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Chunk geometry stored as one 8-byte record per visible face instead of
+ * four vertices and six indices. All faces are drawn with a single instanced
+ * draw of a 4-vertex triangle strip, and {@code face.vert} expands each
+ * record into its corners from {@code gl_VertexID}.
+ * <p>
+ * The record layout is described in {@link FaceBuffer}; the meshers produce
+ * it with {@code generateFaces}. The records live in a range of a
+ * {@link BufferArena}.
+ */
+public class FaceMesh implements ChunkMesh {
+    /** Bytes of GPU memory per face */
+    public static final int BYTES_PER_FACE = FaceBuffer.INTS_PER_FACE * Integer.BYTES;
+
+    private final BufferArena arena;
+    private final BufferArena.Allocation allocation;
+    private final ResourceTracker.Resource resource;
+    private final int vaoId;
+    private final int faceCount;
+    // Where the vertex array currently points; -1 until first drawn
+    private int boundOffset = -1;
+    private int boundBuffer;
+
+    /**
+     * Uploads packed face records.
+     *
+     * @param arena Arena holding the records
+     * @param faces Two ints per face, as built by the meshers' {@code generateFaces}
+     */
+    public FaceMesh(BufferArena arena, int[] faces) {
+        this(arena, faces.length / FaceBuffer.INTS_PER_FACE);
+        upload(faces);
+    }
+
+    /**
+     * Creates a mesh from face records a meshing thread wrote into the
+     * staging ring. Only issues a GPU copy.
+     *
+     * @param arena Arena holding the records
+     * @param region Staging region holding the records
+     * @param faceCount Number of faces
+     */
+    public FaceMesh(BufferArena arena, StagingRing.Region region, int faceCount) {
+        this(arena, faceCount);
+        arena.copy(region.bufferId(), region.offset(), allocation, (long) faceCount * BYTES_PER_FACE);
+    }
+
+    private FaceMesh(BufferArena arena, int faceCount) {
+        this.arena = arena;
+        this.faceCount = faceCount;
+        allocation = arena.allocate(faceCount * BYTES_PER_FACE);
+        resource = ResourceTracker.track(ResourceTracker.Category.MESHES, "FaceMesh", allocation.size());
+
+        // Face records (location 0), advanced once per instance rather than per vertex
+        vaoId = GL30.glGenVertexArrays();
+        GL30.glBindVertexArray(vaoId);
+        GL20.glEnableVertexAttribArray(0);
+        GL33.glVertexAttribDivisor(0, 1);
+        GL30.glBindVertexArray(0);
+    }
+
+    private void upload(int[] faces) {
+        ByteBuffer faceBuffer = MemoryUtil.memAlloc(faces.length * Integer.BYTES);
+        faceBuffer.asIntBuffer().put(faces);
+        arena.write(allocation, 0, faceBuffer);
+        MemoryUtil.memFree(faceBuffer);
+    }
+
+    /**
+     * Replaces the face records with a reordering of the same faces, e.g.
+     * to draw translucent faces back to front.
+     *
+     * @param faces New face records, the same length as the original
+     */
+    public void updateFaces(int[] faces) {
+        if (faces.length != faceCount * FaceBuffer.INTS_PER_FACE) {
+            throw new IllegalArgumentException("Expected " + faceCount + " faces, got " + faces.length / FaceBuffer.INTS_PER_FACE);
+        }
+        upload(faces);
+    }
+
+    /**
+     * Renders all faces with one instanced draw.
+     */
+    @Override
+    public void render() {
+        GL30.glBindVertexArray(vaoId);
+        if (allocation.offset() != boundOffset || arena.getBufferId() != boundBuffer) {
+            // The arena moved the records or grew into a new buffer
+            boundOffset = allocation.offset();
+            boundBuffer = arena.getBufferId();
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, boundBuffer);
+            GL30.glVertexAttribIPointer(0, FaceBuffer.INTS_PER_FACE, GL11.GL_UNSIGNED_INT, 0, boundOffset);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        }
+        GL31.glDrawArraysInstanced(GL11.GL_TRIANGLE_STRIP, 0, 4, faceCount);
+        GL30.glBindVertexArray(0);
+        RenderStats.recordDraw(faceCount * 2L);
+    }
+
+    /**
+     * Destroys the mesh and returns its range to the arena.
+     */
+    @Override
+    public void destroy() {
+        allocation.free();
+        resource.release();
+        GL30.glBindVertexArray(0);
+        GL30.glDeleteVertexArrays(vaoId);
+    }
+}
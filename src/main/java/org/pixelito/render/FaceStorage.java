@@ -0,0 +1,242 @@
+package org.pixelito.render;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL43;
+import org.lwjgl.system.MemoryUtil;
+import org.pixelito.util.RenderStats;
+import org.pixelito.util.ResourceTracker;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Draws the packed face records of all chunks from one shader storage
+ * buffer. {@code pull.vert} reads a face per six vertices from
+ * {@code gl_VertexID}, so there are no vertex attributes at all: uploading a
+ * chunk is a single write into its range, and a whole pass is drawn with one
+ * {@code glMultiDrawArrays}.
+ * <p>
+ * The storage buffer is the {@link BufferArena}'s, bound whole; each range
+ * is an arena allocation, so ranges move when the arena compacts and are
+ * read at draw time.
+ * <p>
+ * One multi-draw has no per-chunk uniforms, so each face record carries
+ * its chunk's index and the shader looks the chunk's origin up in a second
+ * storage buffer, written once since chunks never move.
+ * <p>
+ * Must only be used on the thread that owns the OpenGL context.
+ */
+public class FaceStorage {
+    // Two triangles per face; the shader maps each vertex to a corner
+    private static final int VERTICES_PER_FACE = 6;
+    // Shader storage binding points of the face buffer and the chunk origins, match pull.vert
+    private static final int BINDING = 0;
+    private static final int ORIGINS_BINDING = 1;
+
+    private final BufferArena arena;
+    private final int originsId;
+    private final ResourceTracker.Resource originsResource;
+    // The core profile needs a bound vertex array even with no attributes
+    private final int vaoId;
+    private final long maxFaces;
+    private int usedFaces;
+
+    // Draw ranges gathered for the next multi-draw
+    private IntBuffer firsts = MemoryUtil.memAllocInt(64);
+    private IntBuffer counts = MemoryUtil.memAllocInt(64);
+    private long queuedFaces;
+
+    /**
+     * A range of faces in the storage buffer, holding one chunk pass.
+     */
+    public class Range implements ChunkMesh {
+        private final BufferArena.Allocation allocation;
+        private final int count;
+        private final ResourceTracker.Resource resource;
+        private boolean released;
+
+        private Range(BufferArena.Allocation allocation, int count) {
+            this.allocation = allocation;
+            this.count = count;
+            resource = ResourceTracker.track(ResourceTracker.Category.MESHES, "FaceStorage.Range", allocation.size());
+        }
+
+        // Arena offsets are 16-byte aligned, so always a whole face
+        private int first() {
+            return allocation.offset() / FaceMesh.BYTES_PER_FACE;
+        }
+
+        /**
+         * Replaces the face records with a reordering of the same faces,
+         * e.g. to draw translucent faces back to front.
+         *
+         * @param faces New face records, the same length as the original
+         */
+        public void updateFaces(int[] faces) {
+            if (faces.length != count * FaceBuffer.INTS_PER_FACE) {
+                throw new IllegalArgumentException("Expected " + count + " faces, got " + faces.length / FaceBuffer.INTS_PER_FACE);
+            }
+            upload(allocation, faces);
+        }
+
+        /**
+         * Draws only this range. Passes of many chunks should use
+         * {@link #queue(Range)} and {@link #drawQueued()} instead.
+         */
+        @Override
+        public void render() {
+            bind();
+            queue(this);
+            drawQueued();
+            unbind();
+        }
+
+        /**
+         * Returns the range to the arena.
+         */
+        @Override
+        public void destroy() {
+            if (!released) {
+                released = true;
+                usedFaces -= count;
+                allocation.free();
+                resource.release();
+            }
+        }
+    }
+
+    /**
+     * Creates the storage on top of an arena.
+     *
+     * @param arena Arena whose buffer holds the faces
+     * @param chunkOrigins World coordinates of each chunk's first block, four ints per chunk
+     *                     (x, y, z and one unused) in the order of the chunk indices
+     */
+    public FaceStorage(BufferArena arena, int[] chunkOrigins) {
+        this.arena = arena;
+        originsId = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL43.GL_SHADER_STORAGE_BUFFER, originsId);
+        GL15.glBufferData(GL43.GL_SHADER_STORAGE_BUFFER, chunkOrigins, GL15.GL_STATIC_DRAW);
+        GL15.glBindBuffer(GL43.GL_SHADER_STORAGE_BUFFER, 0);
+        originsResource = ResourceTracker.track(ResourceTracker.Category.GPU_BUFFERS, "FaceStorage.origins",
+                (long) chunkOrigins.length * Integer.BYTES);
+        vaoId = GL30.glGenVertexArrays();
+        // Limited by the shader's addressable block size and by vertex numbers fitting in an int
+        maxFaces = Math.min(GL32.glGetInteger64(GL43.GL_MAX_SHADER_STORAGE_BLOCK_SIZE) / FaceMesh.BYTES_PER_FACE,
+                Integer.MAX_VALUE / VERTICES_PER_FACE);
+    }
+
+    /**
+     * Stores face records in a new range.
+     *
+     * @param faces Two ints per face, as built by the meshers' {@code generateFaces}
+     * @return The range holding the faces
+     */
+    public Range allocate(int[] faces) {
+        Range range = place(faces.length / FaceBuffer.INTS_PER_FACE);
+        upload(range.allocation, faces);
+        return range;
+    }
+
+    /**
+     * Stores face records a meshing thread wrote into the staging ring in a
+     * new range. Only issues a GPU copy.
+     *
+     * @param region Staging region holding the records
+     * @param count Number of faces
+     * @return The range holding the faces
+     */
+    public Range allocate(StagingRing.Region region, int count) {
+        Range range = place(count);
+        arena.copy(region.bufferId(), region.offset(), range.allocation, (long) count * FaceMesh.BYTES_PER_FACE);
+        return range;
+    }
+
+    private Range place(int count) {
+        BufferArena.Allocation allocation = arena.allocate(count * FaceMesh.BYTES_PER_FACE);
+        // Compaction only moves ranges down, so checking where they start out is enough
+        if ((long) allocation.offset() / FaceMesh.BYTES_PER_FACE + count > maxFaces) {
+            allocation.free();
+            throw new IllegalStateException("Face storage needs " + (allocation.offset() / FaceMesh.BYTES_PER_FACE + count)
+                    + " faces but the shader can address " + maxFaces);
+        }
+        usedFaces += count;
+        return new Range(allocation, count);
+    }
+
+    private void upload(BufferArena.Allocation allocation, int[] faces) {
+        ByteBuffer faceBuffer = MemoryUtil.memAlloc(faces.length * Integer.BYTES);
+        faceBuffer.asIntBuffer().put(faces);
+        arena.write(allocation, 0, faceBuffer);
+        MemoryUtil.memFree(faceBuffer);
+    }
+
+    /**
+     * Binds the storage for drawing with {@code pull.vert}.
+     */
+    public void bind() {
+        GL30.glBindVertexArray(vaoId);
+        GL30.glBindBufferBase(GL43.GL_SHADER_STORAGE_BUFFER, BINDING, arena.getBufferId());
+        GL30.glBindBufferBase(GL43.GL_SHADER_STORAGE_BUFFER, ORIGINS_BINDING, originsId);
+    }
+
+    /**
+     * Unbinds the storage.
+     */
+    public void unbind() {
+        GL30.glBindBufferBase(GL43.GL_SHADER_STORAGE_BUFFER, BINDING, 0);
+        GL30.glBindBufferBase(GL43.GL_SHADER_STORAGE_BUFFER, ORIGINS_BINDING, 0);
+        GL30.glBindVertexArray(0);
+    }
+
+    /**
+     * Adds a range to the next {@link #drawQueued()}. Ranges are drawn in
+     * the order they are queued.
+     */
+    public void queue(Range range) {
+        if (!firsts.hasRemaining()) {
+            firsts = MemoryUtil.memRealloc(firsts, firsts.capacity() * 2);
+            counts = MemoryUtil.memRealloc(counts, counts.capacity() * 2);
+        }
+        firsts.put(range.first() * VERTICES_PER_FACE);
+        counts.put(range.count * VERTICES_PER_FACE);
+        queuedFaces += range.count;
+    }
+
+    /**
+     * Draws all queued ranges with one call. The storage must be bound.
+     */
+    public void drawQueued() {
+        if (firsts.position() > 0) {
+            firsts.flip();
+            counts.flip();
+            GL14.glMultiDrawArrays(GL11.GL_TRIANGLES, firsts, counts);
+            RenderStats.recordDraw(queuedFaces * 2);
+        }
+        firsts.clear();
+        counts.clear();
+        queuedFaces = 0;
+    }
+
+    /**
+     * Gets the number of faces currently stored.
+     */
+    public int getUsedFaces() {
+        return usedFaces;
+    }
+
+    /**
+     * Frees the draw state. The faces stay in the arena until their ranges are destroyed.
+     */
+    public void destroy() {
+        GL30.glDeleteVertexArrays(vaoId);
+        GL15.glDeleteBuffers(originsId);
+        originsResource.release();
+        MemoryUtil.memFree(firsts);
+        MemoryUtil.memFree(counts);
+    }
+}
@@ -2,10 +2,7 @@ package org.pixelito.render;
 
 import org.pixelito.block.Block;
 import org.pixelito.block.BlockType;
-import org.joml.Vector3f;
-
-import java.util.ArrayList;
-import java.util.List;
+import org.pixelito.world.ChunkNeighborhood;
 
 /**
  * Implements the "Greedy Meshing" algorithm for voxel terrain optimization.
@@ -25,7 +22,7 @@ public class GreedyMesher {
 
     // Adjacent axes for each face direction (used for greedy meshing)
     // For example, if we're scanning a front face (Z+), we move along the X and Y axes
-    private static final int[][][] FACE_ADJACENTS = {
+    static final int[][][] FACE_ADJACENTS = {
             {{1, 0, 0}, {0, 1, 0}}, // FRONT: Move along X and Y
             {{1, 0, 0}, {0, 1, 0}}, // BACK: Move along X and Y
             {{0, 0, 1}, {0, 1, 0}}, // LEFT: Move along Z and Y
@@ -34,6 +31,37 @@ public class GreedyMesher {
             {{1, 0, 0}, {0, 0, 1}}  // BOTTOM: Move along X and Z
     };
 
+    // Whether visible-face masks are computed with the Vector API, see VectorMasks
+    private static volatile boolean vectorMasks = VectorMasks.isAvailable();
+
+    /**
+     * Checks whether the Vector API can compute the visible-face masks, which
+     * needs the JVM started with {@code --add-modules jdk.incubator.vector}.
+     */
+    public static boolean isVectorMasksAvailable() {
+        return VectorMasks.isAvailable();
+    }
+
+    /**
+     * Chooses between the Vector API and the scalar loop for the visible-face
+     * masks. Both give the same masks; the Vector API is the default when it
+     * is available and cannot be chosen when it is not.
+     *
+     * @param enabled Whether to use the Vector API
+     * @return Whether the Vector API is now used
+     */
+    public static boolean setVectorMasks(boolean enabled) {
+        vectorMasks = enabled && VectorMasks.isAvailable();
+        return vectorMasks;
+    }
+
+    /**
+     * Checks whether the visible-face masks are computed with the Vector API.
+     */
+    public static boolean isVectorMasks() {
+        return vectorMasks;
+    }
+
     /**
      * Generates an optimized mesh for a given 3D block array using the greedy meshing algorithm.
      *
@@ -41,21 +69,57 @@ public class GreedyMesher {
      * @return MeshData with optimized vertices and indices
      */
     public static VoxelMesher.MeshData generateMesh(Block[][][] blocks) {
-        int width = blocks.length;
-        int height = blocks[0].length;
-        int depth = blocks[0][0].length;
+        return generateMesh(ChunkNeighborhood.of(blocks), true, VoxelMesher.OPAQUE);
+    }
+
+    /**
+     * Generates an optimized mesh for a section of the world, such as a chunk.
+     * Faces against the blocks in the border are culled like any other, so
+     * chunk seams have no hidden faces.
+     *
+     * @param neighborhood Copy of the blocks and light of the section and its border.
+     *                     Only faces with the same light are merged
+     * @param ambientOcclusion Whether to darken vertices in corners. Only faces with
+     *                         the same occlusion at all four corners are merged
+     * @param pass {@link VoxelMesher#OPAQUE} or {@link VoxelMesher#TRANSLUCENT}, the blocks to mesh
+     * @return MeshData with vertices relative to the section's first block
+     */
+    public static VoxelMesher.MeshData generateMesh(ChunkNeighborhood neighborhood, boolean ambientOcclusion,
+                                                    int pass) {
+        QuadBuilder builder = new QuadBuilder();
+        generate(neighborhood, ambientOcclusion, pass, builder);
+        return builder.build();
+    }
 
-        List<Float> vertices = new ArrayList<>();
-        List<Float> texCoords = new ArrayList<>();
-        List<Integer> indices = new ArrayList<>();
-        int vertexCount = 0;
+    /**
+     * Generates one packed record per merged face, for {@link FaceMesh}. Takes the same
+     * arguments as {@link #generateMesh(ChunkNeighborhood, boolean, int)}.
+     *
+     * @return Two ints per face, see {@link FaceMesh}
+     */
+    public static int[] generateFaces(ChunkNeighborhood neighborhood, boolean ambientOcclusion, int pass) {
+        FaceBuffer faces = new FaceBuffer(neighborhood.getChunkIndex());
+        generate(neighborhood, ambientOcclusion, pass, faces);
+        return faces.toArray();
+    }
+
+    private static void generate(ChunkNeighborhood blocks, boolean ambientOcclusion, int pass, QuadSink sink) {
+        int width = blocks.getSizeX();
+        int height = blocks.getSizeY();
+        int depth = blocks.getSizeZ();
+        // One key byte per block, shared by the six directions
+        byte[] keys = vectorMasks ? VectorMasks.keys(blocks) : null;
 
         // For each face direction
         for (int face = 0; face < 6; face++) {
             // The mask marks which blocks have a visible face in the current direction
             boolean[][][] mask = new boolean[width][height][depth];
             // Initialize the mask for this face direction
-            initMask(blocks, mask, face, width, height, depth);
+            if (keys != null) {
+                VectorMasks.fill(keys, mask, FACE_DIRS[face], pass, width, height, depth);
+            } else {
+                initMask(blocks, mask, face, width, height, depth, pass);
+            }
 
             // The direction we're moving in to find adjacent faces of the same type
             int[] dir = FACE_DIRS[face];
@@ -80,9 +144,14 @@ public class GreedyMesher {
                         }
 
                         // Get the block type for this face
-                        Block block = blocks[x][y][z];
+                        Block block = blocks.getBlock(x, y, z);
                         if (block == null) continue;
                         BlockType blockType = block.getType();
+                        // Light is taken from the block the face looks into
+                        int light = blocks.getLight(x + dir[0], y + dir[1], z + dir[2]);
+                        int ao = ambientOcclusion
+                                ? VoxelMesher.faceOcclusion(blocks, x, y, z, face)
+                                : VoxelMesher.NO_OCCLUSION;
 
                         // Expand along U direction as far as possible
                         int uEnd;
@@ -90,8 +159,9 @@ public class GreedyMesher {
                             pos = getBlockPos(uEnd, v, w, face, du, dv, dir);
                             int nx = pos[0], ny = pos[1], nz = pos[2];
                             if (nx < 0 || ny < 0 || nz < 0 || nx >= width || ny >= height || nz >= depth || 
-                                !mask[nx][ny][nz] || blocks[nx][ny][nz] == null || 
-                                blocks[nx][ny][nz].getType() != blockType) {
+                                !mask[nx][ny][nz] || blocks.getBlock(nx, ny, nz).getType() != blockType ||
+                                blocks.getLight(nx + dir[0], ny + dir[1], nz + dir[2]) != light ||
+                                (ambientOcclusion && VoxelMesher.faceOcclusion(blocks, nx, ny, nz, face) != ao)) {
                                 break;
                             }
                         }
@@ -103,8 +173,9 @@ public class GreedyMesher {
                                 pos = getBlockPos(uu, vEnd, w, face, du, dv, dir);
                                 int nx = pos[0], ny = pos[1], nz = pos[2];
                                 if (nx < 0 || ny < 0 || nz < 0 || nx >= width || ny >= height || nz >= depth || 
-                                    !mask[nx][ny][nz] || blocks[nx][ny][nz] == null || 
-                                    blocks[nx][ny][nz].getType() != blockType) {
+                                    !mask[nx][ny][nz] || blocks.getBlock(nx, ny, nz).getType() != blockType ||
+                                    blocks.getLight(nx + dir[0], ny + dir[1], nz + dir[2]) != light ||
+                                    (ambientOcclusion && VoxelMesher.faceOcclusion(blocks, nx, ny, nz, face) != ao)) {
                                     break expandV;
                                 }
                             }
@@ -121,45 +192,35 @@ public class GreedyMesher {
                             }
                         }
 
-                        // Add the quad (two triangles) to the mesh
-                        vertexCount = addGreedyQuad(vertices, texCoords, indices, vertexCount, 
-                                u, v, w, uEnd - u, vEnd - v, face, du, dv, dir, blockType);
+                        // Add the merged quad, starting at its lowest block
+                        sink.addQuad(x, y, z, face, uEnd - u, vEnd - v, blockType, light, ao);
                     }
                 }
             }
         }
-
-        // Create and return the mesh data
-        return new VoxelMesher.MeshData(vertices, texCoords, indices);
     }
 
     /**
-     * Initializes the mask for visible faces in the given direction
+     * Initializes the mask for visible faces in the given direction, one
+     * block at a time. {@link VectorMasks} gives the same result.
      */
-    private static void initMask(Block[][][] blocks, boolean[][][] mask, int face, int width, int height, int depth) {
+    private static void initMask(ChunkNeighborhood blocks, boolean[][][] mask, int face, int width, int height,
+                                 int depth, int pass) {
         int[] dir = FACE_DIRS[face];
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 for (int z = 0; z < depth; z++) {
-                    Block block = blocks[x][y][z];
-                    if (block == null || !block.isSolid()) {
+                    Block block = blocks.getBlock(x, y, z);
+                    if (!VoxelMesher.isInPass(block, pass)) {
                         mask[x][y][z] = false;
                         continue;
                     }
 
-                    int nx = x + dir[0];
-                    int ny = y + dir[1];
-                    int nz = z + dir[2];
-
-                    // Check if the neighbor is solid
-                    boolean neighborSolid = nx >= 0 && nx < width && 
-                                          ny >= 0 && ny < height && 
-                                          nz >= 0 && nz < depth && 
-                                          blocks[nx][ny][nz] != null && 
-                                          blocks[nx][ny][nz].isSolid();
+                    // Check if the neighbor covers the face, which may be in the border
+                    Block neighbor = blocks.getBlock(x + dir[0], y + dir[1], z + dir[2]);
 
-                    // Face is visible if the neighbor is not solid
-                    mask[x][y][z] = !neighborSolid;
+                    // Face is visible if the neighbor does not cover it
+                    mask[x][y][z] = !VoxelMesher.hidesFace(block, neighbor);
                 }
             }
         }
@@ -175,85 +236,4 @@ public class GreedyMesher {
         int z = w * dir[2] + u * du[2] + v * dv[2];
         return new int[]{x, y, z};
     }
-
-    /**
-     * Adds a greedy mesh quad (merged face) to the mesh data
-     */
-    private static int addGreedyQuad(List<Float> vertices, List<Float> texCoords, List<Integer> indices, 
-                                   int vertexCount, int u, int v, int w, int sizeU, int sizeV, 
-                                   int face, int[] du, int[] dv, int[] dir, BlockType blockType) {
-        // Calculate the positions of the quad corners
-        float[] positions = new float[12]; // 4 vertices * 3 components (x,y,z)
-        int[] quadPos = getBlockPos(u, v, w, face, du, dv, dir);
-        int x = quadPos[0], y = quadPos[1], z = quadPos[2];
-
-        // Determine the vertices based on the face and the size of the quad
-        float x1 = x;
-        float y1 = y;
-        float z1 = z;
-        float x2 = x + du[0] * sizeU + dv[0] * sizeV;
-        float y2 = y + du[1] * sizeU + dv[1] * sizeV;
-        float z2 = z + du[2] * sizeU + dv[2] * sizeV;
-
-        // Adjust corners for different face orientations
-        if (face == 0) { // FRONT
-            positions[0] = x1; positions[1] = y1; positions[2] = z1 + 1; // Bottom-left
-            positions[3] = x2; positions[4] = y1; positions[5] = z1 + 1; // Bottom-right
-            positions[6] = x2; positions[7] = y2; positions[8] = z1 + 1; // Top-right
-            positions[9] = x1; positions[10] = y2; positions[11] = z1 + 1; // Top-left
-        } else if (face == 1) { // BACK
-            positions[0] = x2; positions[1] = y1; positions[2] = z1; // Bottom-left
-            positions[3] = x1; positions[4] = y1; positions[5] = z1; // Bottom-right
-            positions[6] = x1; positions[7] = y2; positions[8] = z1; // Top-right
-            positions[9] = x2; positions[10] = y2; positions[11] = z1; // Top-left
-        } else if (face == 2) { // LEFT
-            positions[0] = x1; positions[1] = y1; positions[2] = z1; // Bottom-left
-            positions[3] = x1; positions[4] = y1; positions[5] = z2; // Bottom-right
-            positions[6] = x1; positions[7] = y2; positions[8] = z2; // Top-right
-            positions[9] = x1; positions[10] = y2; positions[11] = z1; // Top-left
-        } else if (face == 3) { // RIGHT
-            positions[0] = x1 + 1; positions[1] = y1; positions[2] = z2; // Bottom-left
-            positions[3] = x1 + 1; positions[4] = y1; positions[5] = z1; // Bottom-right
-            positions[6] = x1 + 1; positions[7] = y2; positions[8] = z1; // Top-right
-            positions[9] = x1 + 1; positions[10] = y2; positions[11] = z2; // Top-left
-        } else if (face == 4) { // TOP
-            positions[0] = x1; positions[1] = y1 + 1; positions[2] = z2; // Bottom-left
-            positions[3] = x2; positions[4] = y1 + 1; positions[5] = z2; // Bottom-right
-            positions[6] = x2; positions[7] = y1 + 1; positions[8] = z1; // Top-right
-            positions[9] = x1; positions[10] = y1 + 1; positions[11] = z1; // Top-left
-        } else if (face == 5) { // BOTTOM
-            positions[0] = x1; positions[1] = y1; positions[2] = z1; // Bottom-left
-            positions[3] = x2; positions[4] = y1; positions[5] = z1; // Bottom-right
-            positions[6] = x2; positions[7] = y1; positions[8] = z2; // Top-right
-            positions[9] = x1; positions[10] = y1; positions[11] = z2; // Top-left
-        }
-
-        // Add the vertices to the list
-        for (float pos : positions) {
-            vertices.add(pos);
-        }
-
-        // Add texture coordinates based on the size of the quad and block type
-        // For now, we'll use simple coordinates based on the block type
-        float uMin = blockType.getTextureU();
-        float vMin = blockType.getTextureV();
-        float uMax = uMin + 0.25f * sizeU;
-        float vMax = vMin + 0.25f * sizeV;
-
-        texCoords.add(uMin); texCoords.add(vMax); // Bottom-left
-        texCoords.add(uMax); texCoords.add(vMax); // Bottom-right
-        texCoords.add(uMax); texCoords.add(vMin); // Top-right
-        texCoords.add(uMin); texCoords.add(vMin); // Top-left
-
-        // Add the indices for two triangles
-        indices.add(vertexCount);
-        indices.add(vertexCount + 1);
-        indices.add(vertexCount + 2);
-        indices.add(vertexCount + 2);
-        indices.add(vertexCount + 3);
-        indices.add(vertexCount);
-
-        // Return the new vertex count
-        return vertexCount + 4;
-    }
 }
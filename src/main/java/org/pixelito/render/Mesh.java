@@ -5,79 +5,171 @@ import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL11;
 
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import org.lwjgl.system.MemoryUtil;
+import org.pixelito.util.RenderStats;
+import org.pixelito.util.ResourceTracker;
 
 /**
- * Represents a 3D mesh with vertex positions, texture coordinates, and indices.
+ * Represents a 3D mesh with vertex positions, texture coordinates, light, ambient occlusion, and indices.
+ * <p>
+ * The data lives in one range of a {@link BufferArena}, one attribute after
+ * another followed by the indices, so a mesh owns no buffer objects. The
+ * vertex array points into the range and is re-pointed when the arena moves it.
+ * <p>
+ * Positions are relative to the chunk the mesh belongs to, whole numbers
+ * from 0 to {@link org.pixelito.world.Chunk#SIZE}, and are stored as one
+ * unsigned byte per axis (plus one of padding) instead of three floats; the
+ * shader adds the chunk's origin.
  */
-public class Mesh {
+public class Mesh implements ChunkMesh {
+    /** Bytes of GPU memory per vertex: packed position, then texture coordinates, light and occlusion floats */
+    public static final int BYTES_PER_VERTEX = 4 + (2 + 2 + 1) * Float.BYTES;
 
+    private final BufferArena arena;
+    private final BufferArena.Allocation allocation;
+    private final ResourceTracker.Resource resource;
     private final int vaoId;
-    private final int posVboId;
-    private final int texCoordsVboId;
-    private final int iboId;
+    private final int vertices;
     private final int vertexCount;
+    // Where the vertex array currently points; -1 until first drawn
+    private int boundOffset = -1;
+    private int boundBuffer;
 
     /**
-     * Creates a mesh with vertices, texture coordinates, and indices.
+     * Creates a mesh with vertices, texture coordinates, and indices, in full sky light.
      * 
-     * @param vertices Position data for the mesh (x,y,z triplets)
+     * @param arena Arena holding the mesh data
+     * @param vertices Chunk-local position data for the mesh (x,y,z triplets, whole numbers from 0 to 255)
      * @param texCoords Texture coordinate data (u,v pairs)
      * @param indices Index data for the triangles
      */
-    public Mesh(float[] vertices, float[] texCoords, int[] indices) {
-        vertexCount = indices.length;
+    public Mesh(BufferArena arena, float[] vertices, float[] texCoords, int[] indices) {
+        this(arena, vertices, texCoords, fullLight(vertices.length / 3), noOcclusion(vertices.length / 3), indices);
+    }
+
+    /**
+     * Creates a lit mesh.
+     * 
+     * @param arena Arena holding the mesh data
+     * @param vertices Chunk-local position data for the mesh (x,y,z triplets, whole numbers from 0 to 255)
+     * @param texCoords Texture coordinate data (u,v pairs)
+     * @param lights Light data (sky,block pairs, 0-1)
+     * @param occlusion Ambient occlusion per vertex (0 enclosed, 1 open)
+     * @param indices Index data for the triangles
+     */
+    public Mesh(BufferArena arena, float[] vertices, float[] texCoords, float[] lights, float[] occlusion, int[] indices) {
+        this(arena, vertices.length / 3, indices.length);
+        ByteBuffer buffer = MemoryUtil.memAlloc(allocation.size());
+        write(buffer, vertices, texCoords, lights, occlusion, indices);
+        arena.write(allocation, 0, buffer);
+        MemoryUtil.memFree(buffer);
+    }
 
-        // Create VAO
+    /**
+     * Creates a lit mesh from data a meshing thread wrote into the staging
+     * ring with {@link #write}. Only issues a GPU copy: the region can be
+     * reused once the copy is fenced and complete.
+     *
+     * @param arena Arena holding the mesh data
+     * @param region Staging region holding the data
+     * @param vertexCount Number of vertices
+     * @param indexCount Number of indices
+     */
+    public Mesh(BufferArena arena, StagingRing.Region region, int vertexCount, int indexCount) {
+        this(arena, vertexCount, indexCount);
+        arena.copy(region.bufferId(), region.offset(), allocation, allocation.size());
+    }
+
+    private Mesh(BufferArena arena, int vertices, int indices) {
+        this.arena = arena;
+        this.vertices = vertices;
+        this.vertexCount = indices;
+        allocation = arena.allocate(byteSize(vertices, indices));
+        resource = ResourceTracker.track(ResourceTracker.Category.MESHES, "Mesh", allocation.size());
+
+        // Position (location 0), texture coordinates (1), light (2) and ambient occlusion (3)
         vaoId = GL30.glGenVertexArrays();
         GL30.glBindVertexArray(vaoId);
-
-        // Create position VBO (location 0)
-        posVboId = GL15.glGenBuffers();
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, posVboId);
-        FloatBuffer vertexBuffer = MemoryUtil.memAllocFloat(vertices.length);
-        vertexBuffer.put(vertices).flip();
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertexBuffer, GL15.GL_STATIC_DRAW);
         GL20.glEnableVertexAttribArray(0);
-        GL20.glVertexAttribPointer(0, 3, GL15.GL_FLOAT, false, 0, 0);
-
-        // Create texture coordinates VBO (location 1)
-        texCoordsVboId = GL15.glGenBuffers();
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, texCoordsVboId);
-        FloatBuffer texCoordsBuffer = MemoryUtil.memAllocFloat(texCoords.length);
-        texCoordsBuffer.put(texCoords).flip();
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, texCoordsBuffer, GL15.GL_STATIC_DRAW);
         GL20.glEnableVertexAttribArray(1);
-        GL20.glVertexAttribPointer(1, 2, GL15.GL_FLOAT, false, 0, 0);
-
-        // Create index buffer
-        iboId = GL15.glGenBuffers();
-        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, iboId);
-        IntBuffer indexBuffer = MemoryUtil.memAllocInt(indices.length);
-        indexBuffer.put(indices).flip();
-        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer, GL15.GL_STATIC_DRAW);
-
-        // Unbind everything
+        GL20.glEnableVertexAttribArray(2);
+        GL20.glEnableVertexAttribArray(3);
         GL30.glBindVertexArray(0);
+    }
+
+    // Points the vertex array at the mesh's current range
+    private void bindRange() {
+        int buffer = arena.getBufferId();
+        long offset = allocation.offset();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffer);
+        // Unsigned bytes, converted to floats without normalizing
+        GL20.glVertexAttribPointer(0, 3, GL11.GL_UNSIGNED_BYTE, false, 4, offset);
+        offset += (long) vertices * 4;
+        GL20.glVertexAttribPointer(1, 2, GL15.GL_FLOAT, false, 0, offset);
+        offset += (long) vertices * 2 * Float.BYTES;
+        GL20.glVertexAttribPointer(2, 2, GL15.GL_FLOAT, false, 0, offset);
+        offset += (long) vertices * 2 * Float.BYTES;
+        GL20.glVertexAttribPointer(3, 1, GL15.GL_FLOAT, false, 0, offset);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        // The index buffer binding is part of the VAO state
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffer);
+        boundOffset = allocation.offset();
+        boundBuffer = buffer;
+    }
 
-        // Free buffers
-        MemoryUtil.memFree(vertexBuffer);
-        MemoryUtil.memFree(texCoordsBuffer);
-        MemoryUtil.memFree(indexBuffer);
+    // Offset of the indices within the range
+    private long indexOffset() {
+        return (long) vertices * BYTES_PER_VERTEX;
+    }
+
+    private static int byteSize(int vertices, int indices) {
+        return vertices * BYTES_PER_VERTEX + indices * Integer.BYTES;
+    }
+
+    /**
+     * Gets the bytes {@link #write} writes for some mesh data.
+     */
+    static int byteSize(VoxelMesher.MeshData data) {
+        return byteSize(data.vertices.length / 3, data.indices.length);
+    }
+
+    /**
+     * Writes mesh data in the layout meshes keep in the arena: packed
+     * positions, texture coordinates, light, occlusion, then indices. Safe
+     * to call from any thread.
+     */
+    static void write(VoxelMesher.MeshData data, ByteBuffer target) {
+        write(target, data.vertices, data.texCoords, data.lights, data.occlusion, data.indices);
+    }
+
+    private static void write(ByteBuffer target, float[] vertices, float[] texCoords, float[] lights, float[] occlusion,
+            int[] indices) {
+        target.order(ByteOrder.nativeOrder());
+        for (int i = 0; i < vertices.length; i += 3) {
+            target.put((byte) vertices[i]).put((byte) vertices[i + 1]).put((byte) vertices[i + 2]).put((byte) 0);
+        }
+        target.asFloatBuffer()
+                .put(texCoords)
+                .put(lights)
+                .put(occlusion);
+        target.position(target.position() + (texCoords.length + lights.length + occlusion.length) * Float.BYTES);
+        target.asIntBuffer().put(indices);
+        target.position(0);
     }
 
     /**
      * Legacy constructor for meshes without texture coordinates.
      * 
+     * @param arena Arena holding the mesh data
      * @param vertices Position data for the mesh
      * @param indices Index data for the triangles
      */
-    public Mesh(float[] vertices, int[] indices) {
-        this(vertices, createEmptyTexCoords(vertices.length / 3), indices);
+    public Mesh(BufferArena arena, float[] vertices, int[] indices) {
+        this(arena, vertices, createEmptyTexCoords(vertices.length / 3), indices);
     }
 
     /**
@@ -92,27 +184,61 @@ public class Mesh {
         return texCoords;
     }
 
+    /**
+     * Creates light data for vertices in full sky light and no block light.
+     */
+    static float[] fullLight(int vertexCount) {
+        float[] lights = new float[vertexCount * 2];
+        for (int i = 0; i < vertexCount; i++) {
+            lights[i * 2] = 1.0f;
+        }
+        return lights;
+    }
+
+    /**
+     * Creates ambient occlusion data for vertices with nothing around them.
+     */
+    static float[] noOcclusion(int vertexCount) {
+        float[] occlusion = new float[vertexCount];
+        Arrays.fill(occlusion, 1.0f);
+        return occlusion;
+    }
+
+    /**
+     * Replaces the index data with a reordering of the same triangles, e.g.
+     * to draw translucent faces back to front.
+     *
+     * @param indices New index data, the same length as the original
+     */
+    public void updateIndices(int[] indices) {
+        if (indices.length != vertexCount) {
+            throw new IllegalArgumentException("Expected " + vertexCount + " indices, got " + indices.length);
+        }
+        ByteBuffer indexBuffer = MemoryUtil.memAlloc(indices.length * Integer.BYTES);
+        indexBuffer.asIntBuffer().put(indices);
+        arena.write(allocation, indexOffset(), indexBuffer);
+        MemoryUtil.memFree(indexBuffer);
+    }
+
     /**
      * Renders the mesh.
      */
     public void render() {
         GL30.glBindVertexArray(vaoId);
-        GL11.glDrawElements(GL11.GL_TRIANGLES, vertexCount, GL11.GL_UNSIGNED_INT, 0);
+        if (allocation.offset() != boundOffset || arena.getBufferId() != boundBuffer) {
+            bindRange();
+        }
+        GL11.glDrawElements(GL11.GL_TRIANGLES, vertexCount, GL11.GL_UNSIGNED_INT, allocation.offset() + indexOffset());
         GL30.glBindVertexArray(0);
+        RenderStats.recordDraw(vertexCount / 3);
     }
 
     /**
-     * Destroys the mesh and frees all resources.
+     * Destroys the mesh and returns its range to the arena.
      */
     public void destroy() {
-        GL20.glDisableVertexAttribArray(0);
-        GL20.glDisableVertexAttribArray(1);
-
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-        GL15.glDeleteBuffers(posVboId);
-        GL15.glDeleteBuffers(texCoordsVboId);
-        GL15.glDeleteBuffers(iboId);
-
+        allocation.free();
+        resource.release();
         GL30.glBindVertexArray(0);
         GL30.glDeleteVertexArrays(vaoId);
     }
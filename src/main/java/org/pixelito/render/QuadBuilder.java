@@ -0,0 +1,83 @@
+package org.pixelito.render;
+
+import org.pixelito.block.BlockType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds indexed vertex data from the quads a mesher emits: four vertices
+ * and two triangles per quad. Positions are relative to the meshed
+ * section's first block, whole numbers from 0 to its size; the chunk's
+ * origin is added when it is drawn.
+ */
+class QuadBuilder implements QuadSink {
+    // Texture coordinates of the four corners, in quad sizes
+    private static final float[][] CORNER_TEXCOORDS = {
+            {0, 1}, {1, 1}, {1, 0}, {0, 0}
+    };
+
+    // Índices para formar triángulos por cara
+    private static final int[] QUAD_INDICES = {
+            0, 1, 2, 2, 3, 0
+    };
+
+    // Same quad split along the other diagonal, used when ambient occlusion would make the first one look wrong
+    private static final int[] QUAD_INDICES_FLIPPED = {
+            1, 2, 3, 3, 0, 1
+    };
+
+    private final List<Float> vertices = new ArrayList<>();
+    private final List<Float> texCoords = new ArrayList<>();
+    private final List<Float> lights = new ArrayList<>();
+    private final List<Float> occlusion = new ArrayList<>();
+    private final List<Integer> indices = new ArrayList<>();
+    private int vertexCount;
+
+    @Override
+    public void addQuad(int x, int y, int z, int face, int sizeU, int sizeV, BlockType type, int light, int ao) {
+        int[] du = GreedyMesher.FACE_ADJACENTS[face][0];
+        int[] dv = GreedyMesher.FACE_ADJACENTS[face][1];
+
+        // The unit face corners, stretched along the quad's axes
+        for (int i = 0; i < 4; i++) {
+            float[] corner = VoxelMesher.FACE_VERTICES[face * 4 + i];
+            vertices.add(x + corner[0] * size(0, du, dv, sizeU, sizeV));
+            vertices.add(y + corner[1] * size(1, du, dv, sizeU, sizeV));
+            vertices.add(z + corner[2] * size(2, du, dv, sizeU, sizeV));
+        }
+
+        float uMin = type.getTextureU();
+        float vMin = type.getTextureV();
+        for (int i = 0; i < 4; i++) {
+            texCoords.add(uMin + CORNER_TEXCOORDS[i][0] * 0.25f * sizeU);
+            texCoords.add(vMin + CORNER_TEXCOORDS[i][1] * 0.25f * sizeV);
+        }
+
+        for (int i = 0; i < 4; i++) {
+            VoxelMesher.addLight(lights, light);
+        }
+        VoxelMesher.addOcclusion(occlusion, ao);
+
+        int[] quadIndices = VoxelMesher.isFlipped(ao) ? QUAD_INDICES_FLIPPED : QUAD_INDICES;
+        for (int index : quadIndices) {
+            indices.add(vertexCount + index);
+        }
+        vertexCount += 4;
+    }
+
+    /**
+     * Gets the quad's extent along one axis: its width or height along the
+     * face's axes, one block along the normal.
+     */
+    private static int size(int axis, int[] du, int[] dv, int sizeU, int sizeV) {
+        return du[axis] != 0 ? sizeU : dv[axis] != 0 ? sizeV : 1;
+    }
+
+    /**
+     * Gets the vertex data built so far.
+     */
+    VoxelMesher.MeshData build() {
+        return new VoxelMesher.MeshData(vertices, texCoords, lights, occlusion, indices);
+    }
+}
@@ -0,0 +1,26 @@
+package org.pixelito.render;
+
+import org.pixelito.block.BlockType;
+
+/**
+ * Receives the quads a mesher emits. The meshers decide which faces are
+ * visible and how they merge; a sink decides how a quad is stored, either
+ * as indexed vertices ({@link QuadBuilder}) or as one packed record per
+ * face ({@link FaceBuffer}).
+ */
+interface QuadSink {
+    /**
+     * Adds one quad.
+     *
+     * @param x Block X coordinate of the quad's lowest corner block, within the meshed section
+     * @param y Block Y coordinate of the quad's lowest corner block, within the meshed section
+     * @param z Block Z coordinate of the quad's lowest corner block, within the meshed section
+     * @param face Face direction, an index into {@link VoxelMesher#FACE_OFFSETS}
+     * @param sizeU Quad width in blocks, along the face's first axis
+     * @param sizeV Quad height in blocks, along the face's second axis
+     * @param type Block type the quad is textured with
+     * @param light Packed light the quad receives, sky light in the high nibble
+     * @param ao Ambient occlusion of the four corners, see {@link VoxelMesher#faceOcclusion}
+     */
+    void addQuad(int x, int y, int z, int face, int sizeU, int sizeV, BlockType type, int light, int ao);
+}
@@ -0,0 +1,195 @@
+package org.pixelito.render;
+
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.system.MemoryUtil;
+import org.pixelito.util.ResourceTracker;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * A persistently mapped upload buffer used as a ring. Meshing threads
+ * reserve a region and write mesh data straight into the mapped memory;
+ * the GL thread only issues {@code glCopyBufferSubData} from the region
+ * into the mesh's buffers and fences the copies. A region is reused once
+ * its fence has signalled, so neither side ever waits for the other.
+ * <p>
+ * Needs OpenGL 4.4 for {@code glBufferStorage}. {@link #reserve(int)} is
+ * safe to call from any thread; everything else belongs to the GL thread.
+ */
+public class StagingRing {
+    // Copy sources must be aligned for every element type written into them
+    private static final int ALIGNMENT = 16;
+
+    private final int bufferId;
+    private final long address;
+    private final int capacity;
+    private final ResourceTracker.Resource resource;
+
+    // Regions in reservation order, the oldest is freed first
+    private final ArrayDeque<Region> regions = new ArrayDeque<>();
+    // Next free byte; the free space runs from here to the oldest region
+    private int head;
+    private int used;
+
+    /**
+     * Part of the ring reserved for one upload.
+     */
+    public class Region {
+        private final int offset;
+        private final int size;
+        private final int span;
+        private long fence;
+        private boolean complete;
+
+        private Region(int offset, int size, int span) {
+            this.offset = offset;
+            this.size = size;
+            this.span = span;
+        }
+
+        /**
+         * Gets the region's mapped memory, for writing from any thread.
+         */
+        public ByteBuffer memory() {
+            return MemoryUtil.memByteBuffer(address + offset, size).order(ByteOrder.nativeOrder());
+        }
+
+        /**
+         * Gets the region's offset in the staging buffer, the source of copies.
+         */
+        public long offset() {
+            return offset;
+        }
+
+        /**
+         * Gets the buffer to copy from.
+         */
+        public int bufferId() {
+            return bufferId;
+        }
+
+        /**
+         * Fences the copies issued from this region so far. The region is
+         * free again once the GPU has passed the fence.
+         */
+        public void fence() {
+            fence = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        }
+
+        /**
+         * Frees the region without copying from it, e.g. for a stale mesh.
+         */
+        public void discard() {
+            synchronized (StagingRing.this) {
+                complete = true;
+            }
+        }
+
+        /**
+         * Checks whether the fenced copies have finished. Never blocks.
+         */
+        public boolean isComplete() {
+            synchronized (StagingRing.this) {
+                if (!complete && fence != 0) {
+                    int status = GL32.glClientWaitSync(fence, 0, 0);
+                    complete = status == GL32.GL_ALREADY_SIGNALED || status == GL32.GL_CONDITION_SATISFIED;
+                }
+                return complete;
+            }
+        }
+    }
+
+    /**
+     * Creates and maps the staging buffer.
+     *
+     * @param capacity Size in bytes
+     */
+    public StagingRing(int capacity) {
+        this.capacity = capacity;
+        int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+        bufferId = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, bufferId);
+        GL44.glBufferStorage(GL31.GL_COPY_READ_BUFFER, capacity, flags);
+        ByteBuffer mapped = GL30.glMapBufferRange(GL31.GL_COPY_READ_BUFFER, 0, capacity, flags);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+        if (mapped == null) {
+            GL15.glDeleteBuffers(bufferId);
+            throw new IllegalStateException("Could not map the staging buffer");
+        }
+        address = MemoryUtil.memAddress(mapped);
+        resource = ResourceTracker.track(ResourceTracker.Category.GPU_BUFFERS, "StagingRing", capacity);
+    }
+
+    /**
+     * Reserves a region. Safe to call from any thread.
+     *
+     * @param size Bytes needed
+     * @return The region, or null if the ring is too full right now
+     */
+    public synchronized Region reserve(int size) {
+        int aligned = (size + ALIGNMENT - 1) & -ALIGNMENT;
+        int offset = head;
+        int span = aligned;
+        if (offset + aligned > capacity) {
+            // Skip the end of the buffer and start over at the beginning
+            span += capacity - offset;
+            offset = 0;
+        }
+        if (aligned == 0 || used + span > capacity) {
+            return null;
+        }
+        head = (offset + aligned) % capacity;
+        used += span;
+        Region region = new Region(offset, size, span);
+        regions.addLast(region);
+        return region;
+    }
+
+    /**
+     * Frees the oldest regions whose copies have finished. GL thread only.
+     */
+    public synchronized void reclaim() {
+        while (!regions.isEmpty() && regions.peekFirst().isComplete()) {
+            Region region = regions.removeFirst();
+            if (region.fence != 0) {
+                GL32.glDeleteSync(region.fence);
+                region.fence = 0;
+            }
+            used -= region.span;
+        }
+        if (used == 0) {
+            // Start over at the beginning so the next regions do not wrap
+            head = 0;
+        }
+    }
+
+    /**
+     * Gets the bytes currently reserved.
+     */
+    public synchronized int getUsed() {
+        return used;
+    }
+
+    /**
+     * Unmaps and deletes the staging buffer.
+     */
+    public synchronized void destroy() {
+        for (Region region : regions) {
+            if (region.fence != 0) {
+                GL32.glDeleteSync(region.fence);
+            }
+        }
+        regions.clear();
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, bufferId);
+        GL15.glUnmapBuffer(GL31.GL_COPY_READ_BUFFER);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+        GL15.glDeleteBuffers(bufferId);
+        resource.release();
+    }
+}
@@ -0,0 +1,128 @@
+package org.pixelito.render;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+import org.pixelito.world.ChunkNeighborhood;
+
+/**
+ * Computes {@link GreedyMesher}'s visible-face masks sixteen blocks at a
+ * time with the incubating Vector API. Only touch this class when
+ * {@link #isAvailable()} says the {@code jdk.incubator.vector} module is
+ * there; the JVM needs {@code --add-modules jdk.incubator.vector}.
+ * <p>
+ * The blocks are first turned into one key byte each, the type's ordinal
+ * with two flags in the low bits, laid out flat like the neighbourhood:
+ * [x][y][z] with Z fastest and a one-block border. A row of a chunk is then
+ * one 16-lane vector, and the row of neighbours in any face direction is
+ * the same load at a fixed offset. Equal keys mean equal types, so the
+ * rules of {@link VoxelMesher#isInPass} and {@link VoxelMesher#hidesFace}
+ * become a few lane-wise ANDs and compares.
+ */
+final class VectorMasks {
+    // Opaque blocks are in the opaque pass and cover any face next to them
+    private static final int OPAQUE = 1;
+    // Translucent blocks are in the translucent pass and only cover their own kind
+    private static final int TRANSLUCENT = 2;
+    private static final int TYPE_SHIFT = 2;
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && BlockType.values().length <= 0xFF >> TYPE_SHIFT;
+
+    // The key of every block type, by ordinal; air is 0 like an empty cell
+    private static final byte[] KEYS = new byte[BlockType.values().length];
+    static {
+        for (BlockType type : BlockType.values()) {
+            int flags = type.isTranslucent() ? TRANSLUCENT : type.isSolid() ? OPAQUE : 0;
+            KEYS[type.ordinal()] = (byte) (type.ordinal() << TYPE_SHIFT | flags);
+        }
+    }
+
+    private VectorMasks() {
+    }
+
+    /**
+     * Checks whether the Vector API module is loaded, so this class can be used.
+     */
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Turns the blocks of a neighbourhood, border included, into key bytes
+     * for {@link #fill}.
+     */
+    static byte[] keys(ChunkNeighborhood blocks) {
+        int width = blocks.getSizeX(), height = blocks.getSizeY(), depth = blocks.getSizeZ();
+        byte[] keys = new byte[(width + 2) * (height + 2) * (depth + 2)];
+        int index = 0;
+        for (int x = -1; x <= width; x++) {
+            for (int y = -1; y <= height; y++) {
+                for (int z = -1; z <= depth; z++) {
+                    Block block = blocks.getBlock(x, y, z);
+                    keys[index++] = block == null ? 0 : KEYS[block.getType().ordinal()];
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Marks the blocks of a pass that have a visible face in one direction.
+     *
+     * @param keys Key bytes from {@link #keys}
+     * @param mask Receives the visibility of every block, indexed [x][y][z]
+     * @param dir Unit vector the faces point along
+     * @param pass {@link VoxelMesher#OPAQUE} or {@link VoxelMesher#TRANSLUCENT}
+     */
+    static void fill(byte[] keys, boolean[][][] mask, int[] dir, int pass, int width, int height, int depth) {
+        Kernel.fill(keys, mask, dir, pass, width, height, depth);
+    }
+
+    // Holds the species so that it is only created once the module is known to be there
+    private static final class Kernel {
+        private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+
+        static void fill(byte[] keys, boolean[][][] mask, int[] dir, int pass, int width, int height, int depth) {
+            int strideY = depth + 2;
+            int strideX = (height + 2) * strideY;
+            int offset = dir[0] * strideX + dir[1] * strideY + dir[2];
+            byte passFlag = (byte) (pass == VoxelMesher.TRANSLUCENT ? TRANSLUCENT : OPAQUE);
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    boolean[] row = mask[x][y];
+                    int start = (x + 1) * strideX + (y + 1) * strideY + 1;
+                    int z = 0;
+                    // Whole vectors, a full chunk row at a time
+                    for (; z + SPECIES.length() <= depth; z += SPECIES.length()) {
+                        ByteVector block = ByteVector.fromArray(SPECIES, keys, start + z);
+                        ByteVector neighbor = ByteVector.fromArray(SPECIES, keys, start + z + offset);
+                        visible(block, neighbor, passFlag).intoArray(row, z);
+                    }
+                    // The rest of a shorter row, such as a stand-alone block array
+                    if (z < depth) {
+                        VectorMask<Byte> lanes = SPECIES.indexInRange(z, depth);
+                        ByteVector block = ByteVector.fromArray(SPECIES, keys, start + z, lanes);
+                        ByteVector neighbor = ByteVector.fromArray(SPECIES, keys, start + z + offset, lanes);
+                        VectorMask<Byte> visible = visible(block, neighbor, passFlag);
+                        for (int lane = 0; z + lane < depth; lane++) {
+                            row[z + lane] = visible.laneIsSet(lane);
+                        }
+                    }
+                }
+            }
+        }
+
+        private static VectorMask<Byte> visible(ByteVector block, ByteVector neighbor, byte passFlag) {
+            VectorMask<Byte> inPass = block.and(passFlag).compare(VectorOperators.NE, 0);
+            // Opaque neighbours cover every face, translucent ones only faces of their own type
+            VectorMask<Byte> covered = neighbor.and((byte) OPAQUE).compare(VectorOperators.NE, 0)
+                    .or(neighbor.and((byte) TRANSLUCENT).compare(VectorOperators.NE, 0)
+                            .and(neighbor.compare(VectorOperators.EQ, block)));
+            return inPass.andNot(covered);
+        }
+    }
+}
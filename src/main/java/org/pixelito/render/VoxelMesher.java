@@ -2,15 +2,20 @@ package org.pixelito.render;
 
 import org.pixelito.block.Block;
 import org.pixelito.block.BlockType;
-import org.joml.Vector3f;
+import org.pixelito.world.ChunkNeighborhood;
+import org.pixelito.world.LightEngine;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class VoxelMesher {
 
+    /** Mesh pass with the opaque blocks, drawn first without blending */
+    public static final int OPAQUE = 0;
+    /** Mesh pass with the translucent blocks, drawn blended after the opaque pass */
+    public static final int TRANSLUCENT = 1;
+
     // Posiciones de los vértices de un cubo (caras unitarias)
-    private static final float[][] FACE_VERTICES = {
+    static final float[][] FACE_VERTICES = {
             // FRONT
             {0, 0, 1}, {1, 0, 1}, {1, 1, 1}, {0, 1, 1},
             // BACK
@@ -25,30 +30,8 @@ public class VoxelMesher {
             {0, 0, 0}, {1, 0, 0}, {1, 0, 1}, {0, 0, 1},
     };
 
-    // Texture coordinates for each vertex of a cube face
-    private static final float[][] FACE_TEXCOORDS = {
-            // For each face, we define UV coordinates for each vertex
-            // FRONT
-            {0, 1}, {1, 1}, {1, 0}, {0, 0},
-            // BACK
-            {0, 1}, {1, 1}, {1, 0}, {0, 0},
-            // LEFT
-            {0, 1}, {1, 1}, {1, 0}, {0, 0},
-            // RIGHT
-            {0, 1}, {1, 1}, {1, 0}, {0, 0},
-            // TOP
-            {0, 1}, {1, 1}, {1, 0}, {0, 0},
-            // BOTTOM
-            {0, 1}, {1, 1}, {1, 0}, {0, 0},
-    };
-
-    // Índices para formar triángulos por cara
-    private static final int[] FACE_INDICES = {
-            0, 1, 2, 2, 3, 0
-    };
-
     // Orden de caras: FRONT, BACK, LEFT, RIGHT, TOP, BOTTOM
-    private static final int[][] FACE_OFFSETS = {
+    static final int[][] FACE_OFFSETS = {
             {0, 0, 1},   // FRONT
             {0, 0, -1},  // BACK
             {-1, 0, 0},  // LEFT
@@ -65,68 +48,174 @@ public class VoxelMesher {
      * @return MeshData with vertices, texture coordinates, and indices
      */
     public static MeshData generateMesh(Block[][][] blocks) {
-        int width = blocks.length;
-        int height = blocks[0].length;
-        int depth = blocks[0][0].length;
+        return generateMesh(ChunkNeighborhood.of(blocks), true, OPAQUE);
+    }
+
+    /**
+     * Generate a simple mesh for a section of the world, such as a chunk.
+     * Faces against the blocks in the border are culled like any other, so
+     * chunk seams have no hidden faces.
+     *
+     * @param neighborhood Copy of the blocks and light of the section and its border
+     * @param ambientOcclusion Whether to darken vertices in corners
+     * @param pass {@link #OPAQUE} or {@link #TRANSLUCENT}, the blocks to mesh
+     * @return MeshData with vertices relative to the section's first block
+     */
+    public static MeshData generateMesh(ChunkNeighborhood neighborhood, boolean ambientOcclusion, int pass) {
+        QuadBuilder builder = new QuadBuilder();
+        generate(neighborhood, ambientOcclusion, pass, builder);
+        return builder.build();
+    }
+
+    /**
+     * Generate one packed record per visible block face, for {@link FaceMesh}.
+     * Takes the same arguments as {@link #generateMesh(ChunkNeighborhood, boolean, int)}.
+     *
+     * @return Two ints per face, see {@link FaceMesh}
+     */
+    public static int[] generateFaces(ChunkNeighborhood neighborhood, boolean ambientOcclusion, int pass) {
+        FaceBuffer faces = new FaceBuffer(neighborhood.getChunkIndex());
+        generate(neighborhood, ambientOcclusion, pass, faces);
+        return faces.toArray();
+    }
 
-        List<Float> vertices = new ArrayList<>();
-        List<Float> texCoords = new ArrayList<>();
-        List<Integer> indices = new ArrayList<>();
-        int indexOffset = 0;
+    private static void generate(ChunkNeighborhood blocks, boolean ambientOcclusion, int pass, QuadSink sink) {
+        int width = blocks.getSizeX();
+        int height = blocks.getSizeY();
+        int depth = blocks.getSizeZ();
 
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 for (int z = 0; z < depth; z++) {
-                    Block block = blocks[x][y][z];
-                    if (block == null || !block.isSolid()) continue;
+                    Block block = blocks.getBlock(x, y, z);
+                    if (!isInPass(block, pass)) continue;
 
                     for (int face = 0; face < 6; face++) {
                         int nx = x + FACE_OFFSETS[face][0];
                         int ny = y + FACE_OFFSETS[face][1];
                         int nz = z + FACE_OFFSETS[face][2];
 
-                        boolean neighborSolid =
-                                nx >= 0 && nx < width &&
-                                        ny >= 0 && ny < height &&
-                                        nz >= 0 && nz < depth &&
-                                        blocks[nx][ny][nz] != null &&
-                                        blocks[nx][ny][nz].isSolid();
-
-                        if (!neighborSolid) {
-                            int baseIndex = face * 4;
-                            
-                            // Add vertices
-                            for (int i = 0; i < 4; i++) {
-                                float[] vertex = FACE_VERTICES[baseIndex + i];
-                                vertices.add(x + vertex[0]);
-                                vertices.add(y + vertex[1]);
-                                vertices.add(z + vertex[2]);
-                            }
-
-                            // Add texture coordinates
-                            BlockType blockType = block.getType();
-                            float uMin = blockType.getTextureU();
-                            float vMin = blockType.getTextureV();
-                            
-                            for (int i = 0; i < 4; i++) {
-                                float[] texCoord = FACE_TEXCOORDS[baseIndex + i];
-                                texCoords.add(uMin + texCoord[0] * 0.25f);
-                                texCoords.add(vMin + texCoord[1] * 0.25f);
-                            }
-
-                            // Add indices
-                            for (int i = 0; i < FACE_INDICES.length; i++) {
-                                indices.add(indexOffset + FACE_INDICES[i]);
-                            }
-
-                            indexOffset += 4;
+                        // The neighbour may be in the border
+                        Block neighbor = blocks.getBlock(nx, ny, nz);
+
+                        if (!hidesFace(block, neighbor)) {
+                            // Light is taken from the block the face looks into
+                            int light = blocks.getLight(nx, ny, nz);
+                            int ao = ambientOcclusion
+                                    ? faceOcclusion(blocks, x, y, z, face)
+                                    : NO_OCCLUSION;
+                            sink.addQuad(x, y, z, face, 1, 1, block.getType(), light, ao);
                         }
                     }
                 }
             }
         }
+    }
+
+    // Packed ambient occlusion of a face with all four corners fully open
+    static final int NO_OCCLUSION = 0xFF;
 
-        return new MeshData(vertices, texCoords, indices);
+    /**
+     * Computes the ambient occlusion of the four corners of a block face, in
+     * the vertex order of {@link #FACE_VERTICES}. Each corner looks at the
+     * two blocks beside it and the one diagonal to it, in the layer the face
+     * looks into: 3 is fully open, 0 is a corner enclosed on both sides.
+     * All of those blocks lie within the neighbourhood's border.
+     *
+     * @param x Block X coordinate within blocks
+     * @param y Block Y coordinate within blocks
+     * @param z Block Z coordinate within blocks
+     * @return Four 2-bit values, corner 0 in the lowest bits
+     */
+    static int faceOcclusion(ChunkNeighborhood blocks, int x, int y, int z, int face) {
+        int[] normal = FACE_OFFSETS[face];
+        int px = x + normal[0];
+        int py = y + normal[1];
+        int pz = z + normal[2];
+        int packed = 0;
+        for (int i = 0; i < 4; i++) {
+            float[] corner = FACE_VERTICES[face * 4 + i];
+            // Direction of the corner within the face plane, zero along the normal
+            int cx = normal[0] != 0 ? 0 : (corner[0] > 0 ? 1 : -1);
+            int cy = normal[1] != 0 ? 0 : (corner[1] > 0 ? 1 : -1);
+            int cz = normal[2] != 0 ? 0 : (corner[2] > 0 ? 1 : -1);
+            boolean side1;
+            boolean side2;
+            if (normal[0] != 0) {
+                side1 = blocks.isSolid(px, py + cy, pz);
+                side2 = blocks.isSolid(px, py, pz + cz);
+            } else if (normal[1] != 0) {
+                side1 = blocks.isSolid(px + cx, py, pz);
+                side2 = blocks.isSolid(px, py, pz + cz);
+            } else {
+                side1 = blocks.isSolid(px + cx, py, pz);
+                side2 = blocks.isSolid(px, py + cy, pz);
+            }
+            int ao;
+            if (side1 && side2) {
+                ao = 0;
+            } else {
+                boolean diagonal = blocks.isSolid(px + cx, py + cy, pz + cz);
+                ao = 3 - (side1 ? 1 : 0) - (side2 ? 1 : 0) - (diagonal ? 1 : 0);
+            }
+            packed |= ao << (i * 2);
+        }
+        return packed;
+    }
+
+    /**
+     * Checks whether the quad should be split along the 1-3 diagonal instead
+     * of 0-2, so the interpolated shading follows the darker corners evenly
+     * instead of depending on the triangle orientation.
+     */
+    static boolean isFlipped(int ao) {
+        int ao0 = ao & 3, ao1 = (ao >> 2) & 3, ao2 = (ao >> 4) & 3, ao3 = (ao >> 6) & 3;
+        return ao0 + ao2 < ao1 + ao3;
+    }
+
+    /**
+     * Adds the four vertices' ambient occlusion, scaled to 0-1.
+     */
+    static void addOcclusion(List<Float> occlusion, int ao) {
+        for (int i = 0; i < 4; i++) {
+            occlusion.add(((ao >> (i * 2)) & 3) / 3.0f);
+        }
+    }
+
+    /**
+     * Checks whether a block belongs to a mesh pass.
+     */
+    static boolean isInPass(Block block, int pass) {
+        if (block == null) {
+            return false;
+        }
+        if (pass == TRANSLUCENT) {
+            return block.getType().isTranslucent();
+        }
+        return block.isSolid() && !block.getType().isTranslucent();
+    }
+
+    /**
+     * Checks whether a neighbouring block covers a block's face. Opaque
+     * blocks cover everything; translucent blocks only cover their own kind,
+     * so water shows no inner faces but the ground under it stays visible.
+     */
+    static boolean hidesFace(Block block, Block neighbor) {
+        if (neighbor == null) {
+            return false;
+        }
+        if (neighbor.getType().isTranslucent()) {
+            return neighbor.getType() == block.getType();
+        }
+        return neighbor.isSolid();
+    }
+
+    /**
+     * Adds one vertex's light: sky light then block light, both scaled to 0-1.
+     */
+    static void addLight(List<Float> lights, int light) {
+        lights.add(((light >> 4) & 0xF) / (float) LightEngine.MAX_LIGHT);
+        lights.add((light & 0xF) / (float) LightEngine.MAX_LIGHT);
     }
 
     /**
@@ -135,18 +224,38 @@ public class VoxelMesher {
     public static class MeshData {
         public final float[] vertices;
         public final float[] texCoords;
+        public final float[] lights;
+        public final float[] occlusion;
         public final int[] indices;
 
         /**
          * Constructor for MeshData that takes Lists of Floats and Integers
          */
         public MeshData(List<Float> verts, List<Float> texs, List<Integer> inds) {
+            this(verts, texs, null, null, inds);
+        }
+
+        /**
+         * Constructor for lit mesh data
+         *
+         * @param lits Sky and block light per vertex (0-1 pairs), or null for full sky light
+         * @param aos Ambient occlusion per vertex (0-1), or null for none
+         */
+        public MeshData(List<Float> verts, List<Float> texs, List<Float> lits, List<Float> aos, List<Integer> inds) {
             this.vertices = new float[verts.size()];
             this.texCoords = new float[texs.size()];
+            this.lights = lits != null ? new float[lits.size()] : Mesh.fullLight(verts.size() / 3);
+            this.occlusion = aos != null ? new float[aos.size()] : Mesh.noOcclusion(verts.size() / 3);
             this.indices = new int[inds.size()];
             
             for (int i = 0; i < verts.size(); i++) this.vertices[i] = verts.get(i);
             for (int i = 0; i < texs.size(); i++) this.texCoords[i] = texs.get(i);
+            if (lits != null) {
+                for (int i = 0; i < lits.size(); i++) this.lights[i] = lits.get(i);
+            }
+            if (aos != null) {
+                for (int i = 0; i < aos.size(); i++) this.occlusion[i] = aos.get(i);
+            }
             for (int i = 0; i < inds.size(); i++) this.indices[i] = inds.get(i);
         }
 
@@ -159,6 +268,8 @@ public class VoxelMesher {
             
             // Create empty texture coordinates for compatibility
             this.texCoords = new float[verts.size() / 3 * 2];
+            this.lights = Mesh.fullLight(verts.size() / 3);
+            this.occlusion = Mesh.noOcclusion(verts.size() / 3);
             
             for (int i = 0; i < verts.size(); i++) this.vertices[i] = verts.get(i);
             for (int i = 0; i < inds.size(); i++) this.indices[i] = inds.get(i);
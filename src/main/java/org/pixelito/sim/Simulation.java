@@ -0,0 +1,221 @@
+package org.pixelito.sim;
+
+import org.pixelito.input.InputEvent;
+import org.pixelito.input.InputEventQueue;
+import org.pixelito.input.InputRecorder;
+import org.pixelito.input.InputReplay;
+import org.pixelito.input.Keyboard;
+import org.pixelito.input.Mouse;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the game simulation on its own thread at a fixed tick rate.
+ * <p>
+ * Each tick consumes the input events that arrived before the tick's end
+ * time, runs the game's {@link Step}, and publishes a {@link Snapshot} that
+ * the render thread interpolates. Rendering faster or slower never changes
+ * how often the simulation ticks, and a slow tick never blocks a frame.
+ */
+public class Simulation {
+    /** Simulation ticks per second */
+    public static final int TICK_RATE = 60;
+    public static final float TICK_SECONDS = 1.0f / TICK_RATE;
+    public static final long TICK_NANOS = 1_000_000_000L / TICK_RATE;
+
+    // If the simulation falls further behind than this it skips ahead instead of catching up
+    private static final long MAX_LAG_NANOS = 250_000_000L;
+
+    /**
+     * Game logic run by the simulation thread.
+     */
+    public interface Step {
+        /**
+         * Advances the game by one tick. Input state has already been updated
+         * with the events of this tick.
+         *
+         * @param deltaTime Tick length in seconds
+         */
+        void tick(float deltaTime);
+
+        /**
+         * Copies the state the render thread needs into a snapshot.
+         * The previous-state fields are filled by the simulation.
+         */
+        void capture(Snapshot snapshot);
+    }
+
+    private final Step step;
+    private final InputEventQueue inputQueue;
+    private final SnapshotExchange snapshots = new SnapshotExchange();
+    private final InputEvent inputEvent = new InputEvent();
+
+    private InputRecorder recorder;
+    private InputReplay replay;
+    private boolean discardInput;
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile boolean replayFinished;
+    private long tick;
+
+    // Last published state, copied into the "previous" fields of the next snapshot
+    private final Snapshot last = new Snapshot();
+
+    /**
+     * Creates a simulation.
+     *
+     * @param step Game logic to run every tick
+     * @param inputQueue Queue of input events, this simulation becomes its only consumer
+     */
+    public Simulation(Step step, InputEventQueue inputQueue) {
+        this.step = step;
+        this.inputQueue = inputQueue;
+    }
+
+    /**
+     * Records every input event consumed by the simulation.
+     */
+    public void setRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Replays recorded input instead of live input, one recorded step per tick.
+     */
+    public void setReplay(InputReplay replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Drops all live input, e.g. while a scripted benchmark drives the camera.
+     */
+    public void setDiscardInput(boolean discardInput) {
+        this.discardInput = discardInput;
+    }
+
+    /**
+     * Publishes the initial state and starts the simulation thread.
+     */
+    public void start() {
+        Snapshot initial = snapshots.back();
+        step.capture(initial);
+        initial.previousPosition.set(initial.position);
+        initial.previousYaw = initial.yaw;
+        initial.previousPitch = initial.pitch;
+        initial.tick = 0;
+        initial.time = System.nanoTime();
+        initial.tickNanos = TICK_NANOS;
+        copyState(initial, last);
+        snapshots.publish();
+
+        running = true;
+        thread = new Thread(this::run, "pixelito-simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits for the current tick to finish.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the exchange the render thread reads snapshots from.
+     */
+    public SnapshotExchange getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Checks whether a replayed session has run out of recorded steps.
+     */
+    public boolean isReplayFinished() {
+        return replayFinished;
+    }
+
+    /**
+     * Checks whether the simulation thread is still running.
+     */
+    public boolean isRunning() {
+        return running && thread != null && thread.isAlive();
+    }
+
+    private void run() {
+        long tickEnd = System.nanoTime() + TICK_NANOS;
+        while (running) {
+            long now = System.nanoTime();
+            long wait = tickEnd - now;
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            if (-wait > MAX_LAG_NANOS) {
+                // Too far behind (debugger, long stall): drop the backlog instead of fast-forwarding
+                tickEnd = now;
+            }
+            if (!runTick(tickEnd)) {
+                break;
+            }
+            tickEnd += TICK_NANOS;
+        }
+        running = false;
+    }
+
+    private boolean runTick(long tickEnd) {
+        if (replay != null) {
+            // Live events are discarded, the recording supplies this tick's input
+            while (inputQueue.poll(inputEvent)) { }
+            if (!replay.beginStep()) {
+                replayFinished = true;
+                return false;
+            }
+        } else if (discardInput) {
+            while (inputQueue.poll(inputEvent)) { }
+        } else {
+            if (recorder != null) {
+                recorder.beginStep();
+            }
+            while (inputQueue.poll(tickEnd, inputEvent)) {
+                if (recorder != null) {
+                    recorder.record(inputEvent);
+                }
+                inputEvent.dispatch();
+            }
+        }
+
+        step.tick(TICK_SECONDS);
+
+        // Reset the per-tick input state
+        Keyboard.update();
+        Mouse.update();
+
+        Snapshot snapshot = snapshots.back();
+        step.capture(snapshot);
+        snapshot.previousPosition.set(last.position);
+        snapshot.previousYaw = last.yaw;
+        snapshot.previousPitch = last.pitch;
+        snapshot.tick = ++tick;
+        snapshot.time = tickEnd;
+        snapshot.tickNanos = TICK_NANOS;
+        copyState(snapshot, last);
+        snapshots.publish();
+        return true;
+    }
+
+    private static void copyState(Snapshot from, Snapshot to) {
+        to.position.set(from.position);
+        to.yaw = from.yaw;
+        to.pitch = from.pitch;
+    }
+}
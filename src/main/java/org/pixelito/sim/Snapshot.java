@@ -0,0 +1,83 @@
+package org.pixelito.sim;
+
+import org.joml.Vector3f;
+
+/**
+ * State published by the simulation after a tick, holding both the state
+ * before and after the tick so the render thread can interpolate between
+ * them from a single consistent snapshot.
+ */
+public class Snapshot {
+    /** Tick number, starting at 1 for the first simulated tick */
+    public long tick;
+    /** End time of the tick on the {@link System#nanoTime()} clock */
+    public long time;
+    /** Length of a tick in nanoseconds */
+    public long tickNanos;
+
+    public final Vector3f previousPosition = new Vector3f();
+    public final Vector3f position = new Vector3f();
+    public float previousYaw, yaw;
+    public float previousPitch, pitch;
+    /** Cursor position the yaw and pitch include all mouse movement up to */
+    public double cursorX, cursorY;
+    /** Degrees of rotation per pixel of cursor movement, or 0 while the mouse does not turn the view */
+    public float lookSensitivity;
+
+    /**
+     * Computes how far between the previous and the current state the
+     * render thread should be. Rendering lags the simulation by one tick so
+     * both states are always known.
+     *
+     * @param now Current time from {@link System#nanoTime()}
+     * @return Interpolation factor in [0, 1]
+     */
+    public float alpha(long now) {
+        if (tickNanos <= 0) {
+            return 1.0f;
+        }
+        float alpha = (float) (now - time) / tickNanos;
+        return Math.max(0.0f, Math.min(1.0f, alpha));
+    }
+
+    /**
+     * Interpolates the position.
+     *
+     * @param alpha Interpolation factor from {@link #alpha(long)}
+     * @param dest Vector receiving the position
+     * @return dest
+     */
+    public Vector3f interpolatePosition(float alpha, Vector3f dest) {
+        return previousPosition.lerp(position, alpha, dest);
+    }
+
+    public float interpolateYaw(float alpha) {
+        return previousYaw + (yaw - previousYaw) * alpha;
+    }
+
+    public float interpolatePitch(float alpha) {
+        return previousPitch + (pitch - previousPitch) * alpha;
+    }
+
+    /**
+     * Gets the yaw with the mouse movement that arrived after the tick
+     * already applied, so the view turns without waiting for the next tick
+     * or for interpolation to catch up.
+     *
+     * @param newestCursorX Cursor X position as of now
+     */
+    public float latchYaw(double newestCursorX) {
+        return yaw + (float) (newestCursorX - cursorX) * lookSensitivity;
+    }
+
+    /**
+     * Gets the pitch with the newest mouse movement applied, see {@link #latchYaw}.
+     * Not clamped.
+     *
+     * @param newestCursorY Cursor Y position as of now
+     */
+    public float latchPitch(double newestCursorY) {
+        // Screen Y grows downwards
+        return pitch + (float) (cursorY - newestCursorY) * lookSensitivity;
+    }
+}
@@ -0,0 +1,63 @@
+package org.pixelito.sim;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free hand-over of snapshots from the simulation thread to the render
+ * thread.
+ * <p>
+ * Three preallocated snapshots rotate between the writer's back buffer, a
+ * shared middle slot and the reader's front buffer. Publishing swaps the back
+ * buffer into the middle slot, acquiring swaps the middle slot into the front
+ * buffer, so neither side ever sees a snapshot the other one is writing and
+ * neither side waits or allocates.
+ */
+public class SnapshotExchange {
+    private static final int INDEX_MASK = 0b011;
+    private static final int FRESH = 0b100;
+
+    private final Snapshot[] slots = {new Snapshot(), new Snapshot(), new Snapshot()};
+
+    // Index of the middle slot, plus the FRESH bit while it holds an unread snapshot
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    // Only touched by the writer
+    private int back = 2;
+    // Only touched by the reader
+    private int front = 0;
+
+    /**
+     * Gets the snapshot the writer fills next. Writer thread only.
+     */
+    public Snapshot back() {
+        return slots[back];
+    }
+
+    /**
+     * Publishes the back snapshot. Writer thread only.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Takes the most recently published snapshot, if there is a new one.
+     * Reader thread only.
+     *
+     * @return true if {@link #front()} changed
+     */
+    public boolean acquire() {
+        if ((middle.get() & FRESH) == 0) {
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * Gets the latest snapshot taken by {@link #acquire()}. Reader thread only.
+     */
+    public Snapshot front() {
+        return slots[front];
+    }
+}
@@ -0,0 +1,42 @@
+package org.pixelito.util;
+
+/**
+ * Per-frame counters for draw calls and triangles submitted to the GPU.
+ * Reset once per frame by the game loop and incremented by the renderers.
+ */
+public class RenderStats {
+    private static int drawCalls;
+    private static long triangles;
+
+    /**
+     * Resets the counters at the start of a frame.
+     */
+    public static void beginFrame() {
+        drawCalls = 0;
+        triangles = 0;
+    }
+
+    /**
+     * Records one draw call.
+     *
+     * @param triangleCount Number of triangles drawn by the call
+     */
+    public static void recordDraw(long triangleCount) {
+        drawCalls++;
+        triangles += triangleCount;
+    }
+
+    /**
+     * Gets the number of draw calls issued this frame.
+     */
+    public static int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Gets the number of triangles submitted this frame.
+     */
+    public static long getTriangles() {
+        return triangles;
+    }
+}
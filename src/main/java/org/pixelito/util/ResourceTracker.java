@@ -0,0 +1,215 @@
+package org.pixelito.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the memory held by the game's resources, per category. GPU
+ * objects report into it when they are created and destroyed, which also
+ * gives leak detection: anything on the GPU still registered at shutdown
+ * was never destroyed. CPU-side storage is measured on demand by gauges,
+ * so hot paths such as setting blocks never touch the registry.
+ * <p>
+ * All methods are safe to call from any thread.
+ */
+public class ResourceTracker {
+    /**
+     * What a resource is, and whether it lives on the GPU.
+     */
+    public enum Category {
+        /** Vertex and face data of chunk meshes, inside the buffer arena */
+        MESHES("meshes", true),
+        /** Buffers that hold other data: the mesh arena and the upload ring */
+        GPU_BUFFERS("gpuBuffers", true),
+        TEXTURES("textures", true),
+        SHADERS("shaders", true),
+        /** Blocks and light of the world's chunks */
+        VOXELS("voxels", false),
+        /** Heap copies of mesh data kept for sorting and in-flight builds */
+        MESH_CACHES("meshCaches", false);
+
+        private final String id;
+        private final boolean gpu;
+
+        Category(String id, boolean gpu) {
+            this.id = id;
+            this.gpu = gpu;
+        }
+
+        /**
+         * Gets the name used in reports.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Checks whether resources of this category live in GPU memory.
+         */
+        public boolean isGpu() {
+            return gpu;
+        }
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final AtomicLong[] bytes = new AtomicLong[CATEGORIES.length];
+    private static final AtomicInteger[] counts = new AtomicInteger[CATEGORIES.length];
+    private static final Set<Resource> live = ConcurrentHashMap.newKeySet();
+
+    static {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            bytes[i] = new AtomicLong();
+            counts[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * A registered resource, released when its owner frees it.
+     */
+    public static final class Resource {
+        private final Category category;
+        private final String name;
+        private final LongSupplier gauge;
+        private long size;
+        private boolean released;
+
+        private Resource(Category category, String name, long size, LongSupplier gauge) {
+            this.category = category;
+            this.name = name;
+            this.size = size;
+            this.gauge = gauge;
+        }
+
+        /**
+         * Changes the size of the resource, e.g. after a buffer grew.
+         */
+        public synchronized void resize(long newSize) {
+            if (!released) {
+                bytes[category.ordinal()].addAndGet(newSize - size);
+                size = newSize;
+            }
+        }
+
+        /**
+         * Unregisters the resource. Does nothing when already released.
+         */
+        public synchronized void release() {
+            if (!released) {
+                released = true;
+                live.remove(this);
+                bytes[category.ordinal()].addAndGet(-size);
+                counts[category.ordinal()].decrementAndGet();
+            }
+        }
+
+        long bytes() {
+            return gauge != null ? gauge.getAsLong() : size;
+        }
+    }
+
+    /**
+     * Registers a resource of a fixed size.
+     *
+     * @param category What the resource is
+     * @param name Kind of object, shown in leak reports
+     * @param size Bytes it holds
+     * @return The handle to resize or release it with
+     */
+    public static Resource track(Category category, String name, long size) {
+        Resource resource = new Resource(category, name, size, null);
+        bytes[category.ordinal()].addAndGet(size);
+        counts[category.ordinal()].incrementAndGet();
+        live.add(resource);
+        return resource;
+    }
+
+    /**
+     * Registers a resource whose size is measured only when a report asks
+     * for it. Meant for CPU-side storage that changes too often to track.
+     *
+     * @param category What the resource is
+     * @param name Kind of storage, shown in reports
+     * @param size Measures the bytes held; may run on any thread
+     * @return The handle to release it with
+     */
+    public static Resource gauge(Category category, String name, LongSupplier size) {
+        Resource resource = new Resource(category, name, 0, size);
+        counts[category.ordinal()].incrementAndGet();
+        live.add(resource);
+        return resource;
+    }
+
+    /**
+     * Gets the bytes currently held by a category, measuring its gauges.
+     */
+    public static long getBytes(Category category) {
+        long total = bytes[category.ordinal()].get();
+        for (Resource resource : live) {
+            if (resource.category == category && resource.gauge != null) {
+                total += resource.bytes();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of live resources in a category.
+     */
+    public static int getCount(Category category) {
+        return counts[category.ordinal()].get();
+    }
+
+    /**
+     * Builds a readable summary of all categories.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Resources ===\n");
+        long gpuTotal = 0;
+        long cpuTotal = 0;
+        for (Category category : CATEGORIES) {
+            long size = getBytes(category);
+            sb.append(String.format("%-12s %6d objects %10.1f KB%s%n", category.getId(), getCount(category), size / 1024.0,
+                    category.isGpu() ? " (GPU)" : ""));
+            if (category == Category.MESHES) {
+                // Mesh data is part of the arena, which GPU_BUFFERS already counts
+                continue;
+            }
+            if (category.isGpu()) {
+                gpuTotal += size;
+            } else {
+                cpuTotal += size;
+            }
+        }
+        sb.append(String.format("GPU total: %.1f MB, CPU total: %.1f MB%n", gpuTotal / (1024.0 * 1024.0),
+                cpuTotal / (1024.0 * 1024.0)));
+        sb.append("=================");
+        return sb.toString();
+    }
+
+    /**
+     * Prints a warning for every GPU resource still registered, grouped by
+     * kind. Meant to run at shutdown after everything has been destroyed.
+     *
+     * @return Number of leaked resources
+     */
+    public static int reportLeaks() {
+        Map<String, int[]> leaks = new TreeMap<>();
+        for (Resource resource : live) {
+            if (resource.category.isGpu()) {
+                leaks.computeIfAbsent(resource.name, name -> new int[1])[0]++;
+            }
+        }
+        int total = 0;
+        for (Map.Entry<String, int[]> leak : leaks.entrySet()) {
+            System.err.println("Warning: " + leak.getValue()[0] + " " + leak.getKey() + " never destroyed");
+            total += leak.getValue()[0];
+        }
+        return total;
+    }
+}
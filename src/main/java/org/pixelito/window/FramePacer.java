@@ -0,0 +1,73 @@
+package org.pixelito.window;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds the render loop to a target frame rate, for {@link FramePacing#LIMITED}
+ * and {@link FramePacing#LOW_LATENCY}.
+ * <p>
+ * Sleeping alone is too coarse: the OS wakes a parked thread anywhere from
+ * tens of microseconds to a few milliseconds late. Spinning alone is exact
+ * but burns a core. The pacer parks until the frame is nearly due, then
+ * spins for the rest. How early it stops parking follows the oversleep it
+ * has actually seen, so on a precise OS it spins for very little.
+ * <p>
+ * Frames are scheduled on a fixed grid, so one late frame does not shift
+ * the ones after it. A frame more than a whole period late restarts the
+ * grid instead of letting several frames run back to back to catch up.
+ */
+public class FramePacer {
+    // Bounds of the time left to spin after parking
+    private static final long MIN_SPIN_NANOS = 100_000L;
+    private static final long MAX_SPIN_NANOS = 4_000_000L;
+
+    private final long periodNanos;
+    private long spinNanos = 1_000_000L;
+    // When the next frame may start; 0 before the first frame
+    private long nextFrame;
+
+    /**
+     * Creates a pacer.
+     *
+     * @param framesPerSecond Target frame rate
+     */
+    public FramePacer(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+        this.periodNanos = 1_000_000_000L / framesPerSecond;
+    }
+
+    /**
+     * Waits until the next frame is due. Call once per frame, before the
+     * frame samples its input.
+     */
+    public void awaitFrame() {
+        long now = System.nanoTime();
+        if (nextFrame == 0 || now - nextFrame > periodNanos) {
+            nextFrame = now;
+        }
+        long remaining;
+        while ((remaining = nextFrame - now) > spinNanos) {
+            long wake = nextFrame - spinNanos;
+            LockSupport.parkNanos(wake - now);
+            now = System.nanoTime();
+            // Spin at least as long as the worst recent oversleep, letting the margin shrink slowly
+            long oversleep = now - wake;
+            spinNanos = Math.max(MIN_SPIN_NANOS, Math.min(MAX_SPIN_NANOS,
+                    Math.max(oversleep + oversleep / 2, spinNanos - spinNanos / 64)));
+        }
+        while (remaining > 0) {
+            Thread.onSpinWait();
+            remaining = nextFrame - System.nanoTime();
+        }
+        nextFrame += periodNanos;
+    }
+
+    /**
+     * Gets the time between frames.
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+}
@@ -0,0 +1,60 @@
+package org.pixelito.window;
+
+/**
+ * How the render loop paces its frames.
+ */
+public enum FramePacing {
+    /** Wait for vertical sync in the buffer swap; no tearing, up to a refresh of latency */
+    VSYNC("vsync"),
+    /** Render as fast as possible; for benchmarks, keeps one core busy */
+    UNCAPPED("uncapped"),
+    /** Limit to a target frame rate without vsync, sleeping and then spinning until each frame is due */
+    LIMITED("limited"),
+    /**
+     * Like {@link #LIMITED}, and also keeps the driver from queuing frames
+     * ahead and applies the newest mouse movement to the view just before
+     * drawing, instead of waiting for the simulation tick to consume it
+     */
+    LOW_LATENCY("low-latency");
+
+    private final String id;
+
+    FramePacing(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the name used on the command line and in reports.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Checks whether buffer swaps wait for vertical sync.
+     */
+    public boolean usesVsync() {
+        return this == VSYNC;
+    }
+
+    /**
+     * Checks whether frames are limited to a target rate by a {@link FramePacer}.
+     */
+    public boolean isLimited() {
+        return this == LIMITED || this == LOW_LATENCY;
+    }
+
+    /**
+     * Finds a pacing mode by its name.
+     *
+     * @throws IllegalArgumentException If no mode has that name
+     */
+    public static FramePacing fromId(String id) {
+        for (FramePacing pacing : values()) {
+            if (pacing.id.equals(id)) {
+                return pacing;
+            }
+        }
+        throw new IllegalArgumentException("Unknown frame pacing: " + id);
+    }
+}
@@ -3,8 +3,10 @@ package org.pixelito.window;
 import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.system.MemoryUtil;
-import org.pixelito.input.Keyboard;
+import org.pixelito.input.InputEvent;
+import org.pixelito.input.InputEventQueue;
 import org.pixelito.input.Mouse;
 
 public class Window {
@@ -14,6 +16,20 @@ public class Window {
     private final String title;
     private boolean resized = false;
     private boolean vSync;
+    private final boolean visible;
+    private boolean storageBuffers;
+    private boolean bufferStorage;
+    private int refreshRate = 60;
+    // Size of the default framebuffer in pixels, which differs from the window size on high-DPI screens
+    private volatile int framebufferWidth;
+    private volatile int framebufferHeight;
+
+    // Newest cursor position, readable without waiting for the simulation to consume the events
+    private volatile double cursorX;
+    private volatile double cursorY;
+
+    // Context versions to try, newest first: 4.5 for shader storage buffers, 3.3 as the minimum
+    private static final int[][] CONTEXT_VERSIONS = {{4, 5}, {3, 3}};
 
     private GLFWErrorCallback errorCallback;
     private GLFWKeyCallback keyCallback;
@@ -21,11 +37,27 @@ public class Window {
     private GLFWMouseButtonCallback mouseButtonCallback;
     private GLFWScrollCallback scrollCallback;
 
+    // Input events travel from the GLFW callbacks (main thread) to the game loop through this queue
+    private final InputEventQueue inputQueue = new InputEventQueue(4096);
+
+    // Cursor capture change requested by the game thread, applied on the main thread
+    private static final int NO_REQUEST = -1;
+    private volatile int captureRequest = NO_REQUEST;
+
     public Window(int width, int height, String title, boolean vSync) {
+        this(width, height, title, vSync, true);
+    }
+
+    /**
+     * Creates a window that can optionally stay hidden, e.g. for headless benchmarks.
+     * A hidden window still owns a default framebuffer that can be rendered to.
+     */
+    public Window(int width, int height, String title, boolean vSync, boolean visible) {
         this.width = width;
         this.height = height;
         this.title = title;
         this.vSync = vSync;
+        this.visible = visible;
     }
 
     public void create() {
@@ -42,26 +74,41 @@ public class Window {
         GLFW.glfwDefaultWindowHints();
         GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE); // ventana oculta hasta que esté lista
         GLFW.glfwWindowHint(GLFW.GLFW_RESIZABLE, GLFW.GLFW_TRUE);
-        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, 3);
-        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, 3);
         GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_PROFILE, GLFW.GLFW_OPENGL_CORE_PROFILE);
         GLFW.glfwWindowHint(GLFW.GLFW_FOCUSED, GLFW.GLFW_TRUE); // Start focused
         GLFW.glfwWindowHint(GLFW.GLFW_FOCUS_ON_SHOW, GLFW.GLFW_TRUE); // Focus when shown
 
-        // Crear ventana
-        windowHandle = GLFW.glfwCreateWindow(width, height, title, MemoryUtil.NULL, MemoryUtil.NULL);
+        // Crear ventana, con el contexto más nuevo que el driver soporte
+        for (int i = 0; i < CONTEXT_VERSIONS.length && windowHandle == MemoryUtil.NULL; i++) {
+            boolean last = i == CONTEXT_VERSIONS.length - 1;
+            GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, CONTEXT_VERSIONS[i][0]);
+            GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, CONTEXT_VERSIONS[i][1]);
+            // A newer version being unavailable is expected, only the last attempt reports errors
+            GLFW.glfwSetErrorCallback(last ? errorCallback : null);
+            windowHandle = GLFW.glfwCreateWindow(width, height, title, MemoryUtil.NULL, MemoryUtil.NULL);
+        }
+        GLFW.glfwSetErrorCallback(errorCallback);
         if (windowHandle == MemoryUtil.NULL) {
             throw new RuntimeException("No se pudo crear la ventana GLFW.");
         }
 
         // Callback de resize
-        GLFW.glfwSetFramebufferSizeCallback(windowHandle, (window, w, h) -> resized = true);
+        GLFW.glfwSetFramebufferSizeCallback(windowHandle, (window, w, h) -> {
+            framebufferWidth = w;
+            framebufferHeight = h;
+            resized = true;
+        });
+        int[] fbWidth = new int[1];
+        int[] fbHeight = new int[1];
+        GLFW.glfwGetFramebufferSize(windowHandle, fbWidth, fbHeight);
+        framebufferWidth = fbWidth[0];
+        framebufferHeight = fbHeight[0];
 
         // Set up keyboard callback
         keyCallback = new GLFWKeyCallback() {
             @Override
             public void invoke(long window, int key, int scancode, int action, int mods) {
-                Keyboard.setKey(key, action != GLFW.GLFW_RELEASE);
+                inputQueue.offer(InputEvent.KEY, key, action != GLFW.GLFW_RELEASE, 0, 0, System.nanoTime());
             }
         };
         GLFW.glfwSetKeyCallback(windowHandle, keyCallback);
@@ -70,7 +117,9 @@ public class Window {
         cursorPosCallback = new GLFWCursorPosCallback() {
             @Override
             public void invoke(long window, double xpos, double ypos) {
-                Mouse.setPosition(xpos, ypos);
+                cursorX = xpos;
+                cursorY = ypos;
+                inputQueue.offer(InputEvent.CURSOR, 0, false, xpos, ypos, System.nanoTime());
             }
         };
         GLFW.glfwSetCursorPosCallback(windowHandle, cursorPosCallback);
@@ -79,7 +128,7 @@ public class Window {
         mouseButtonCallback = new GLFWMouseButtonCallback() {
             @Override
             public void invoke(long window, int button, int action, int mods) {
-                Mouse.setButton(button, action != GLFW.GLFW_RELEASE);
+                inputQueue.offer(InputEvent.BUTTON, button, action != GLFW.GLFW_RELEASE, 0, 0, System.nanoTime());
             }
         };
         GLFW.glfwSetMouseButtonCallback(windowHandle, mouseButtonCallback);
@@ -88,7 +137,7 @@ public class Window {
         scrollCallback = new GLFWScrollCallback() {
             @Override
             public void invoke(long window, double xoffset, double yoffset) {
-                Mouse.setScroll(xoffset, yoffset);
+                inputQueue.offer(InputEvent.SCROLL, 0, false, xoffset, yoffset, System.nanoTime());
             }
         };
         GLFW.glfwSetScrollCallback(windowHandle, scrollCallback);
@@ -98,10 +147,15 @@ public class Window {
         double[] yPos = new double[1];
         GLFW.glfwGetCursorPos(windowHandle, xPos, yPos);
         Mouse.init(xPos[0], yPos[0]);
+        cursorX = xPos[0];
+        cursorY = yPos[0];
 
         // Centrar la ventana
         GLFWVidMode vidmode = GLFW.glfwGetVideoMode(GLFW.glfwGetPrimaryMonitor());
         if (vidmode != null) {
+            if (vidmode.refreshRate() > 0) {
+                refreshRate = vidmode.refreshRate();
+            }
             GLFW.glfwSetWindowPos(
                     windowHandle,
                     (vidmode.width() - width) / 2,
@@ -112,19 +166,21 @@ public class Window {
         // Hacer contexto actual
         GLFW.glfwMakeContextCurrent(windowHandle);
 
-        // Sincronización vertical
-        if (vSync) {
-            GLFW.glfwSwapInterval(1);
-        }
+        // Sincronización vertical (0 explícito para que el driver no la fuerce)
+        GLFW.glfwSwapInterval(vSync ? 1 : 0);
 
-        // Mostrar ventana
-        GLFW.glfwShowWindow(windowHandle);
-        
-        // Ensure the window is focused
-        GLFW.glfwFocusWindow(windowHandle);
+        if (visible) {
+            // Mostrar ventana
+            GLFW.glfwShowWindow(windowHandle);
+
+            // Ensure the window is focused
+            GLFW.glfwFocusWindow(windowHandle);
+        }
 
         // Cargar capacidades OpenGL
-        GL.createCapabilities();
+        GLCapabilities capabilities = GL.createCapabilities();
+        storageBuffers = capabilities.OpenGL43;
+        bufferStorage = capabilities.OpenGL44;
 
         // Configuración inicial de OpenGL
         GL11.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
@@ -132,20 +188,138 @@ public class Window {
         GL11.glEnable(GL11.GL_CULL_FACE);
         GL11.glCullFace(GL11.GL_BACK);
         
-        // Enable alpha blending for transparent textures
-        GL11.glEnable(GL11.GL_BLEND);
+        // Blending stays off for opaque geometry; the translucent pass enables it
         GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
         
-        System.out.println("Window created successfully with handle: " + windowHandle);
+        System.out.println("Window created successfully with handle: " + windowHandle
+                + " (OpenGL " + GL11.glGetString(GL11.GL_VERSION) + ")");
     }
 
+    /**
+     * Presents the rendered frame. Events are not polled here: the main thread
+     * pumps them continuously with {@link #waitEvents(double)}.
+     */
     public void update() {
         GLFW.glfwSwapBuffers(windowHandle);
-        GLFW.glfwPollEvents();
-        
-        // Update input states at the end of the frame
-        Keyboard.update();
-        Mouse.update();
+    }
+
+    /**
+     * Waits for OS events and runs their callbacks, which stamp and queue them
+     * as soon as they arrive. Also applies pending requests from the game thread.
+     * Must be called from the main thread.
+     *
+     * @param timeoutSeconds Maximum time to block
+     */
+    public void waitEvents(double timeoutSeconds) {
+        GLFW.glfwWaitEventsTimeout(timeoutSeconds);
+
+        int request = captureRequest;
+        if (request != NO_REQUEST) {
+            captureRequest = NO_REQUEST;
+            boolean capture = request == 1;
+            Mouse.applyCursorMode(capture, windowHandle);
+            // The input state changes in order with the surrounding events
+            inputQueue.offer(InputEvent.CAPTURE, 0, capture, 0, 0, System.nanoTime());
+        }
+    }
+
+    /**
+     * Wakes the main thread if it is blocked in {@link #waitEvents(double)}.
+     * Safe to call from any thread.
+     */
+    public void wakeUp() {
+        GLFW.glfwPostEmptyEvent();
+    }
+
+    /**
+     * Asks the main thread to capture or release the cursor. Safe to call from any thread.
+     */
+    public void requestCursorCapture(boolean capture) {
+        captureRequest = capture ? 1 : 0;
+        wakeUp();
+    }
+
+    /**
+     * Releases the OpenGL context from the calling thread so another thread can make it current.
+     */
+    public void releaseContext() {
+        GLFW.glfwMakeContextCurrent(MemoryUtil.NULL);
+    }
+
+    /**
+     * Makes the OpenGL context current on the calling thread and loads the GL functions for it.
+     */
+    public void makeContextCurrent() {
+        GLFW.glfwMakeContextCurrent(windowHandle);
+        GLFW.glfwSwapInterval(vSync ? 1 : 0);
+        GL.createCapabilities();
+    }
+
+    /**
+     * Checks whether the context supports shader storage buffers (OpenGL 4.3),
+     * which vertex pulling from {@code FaceStorage} needs.
+     */
+    public boolean supportsStorageBuffers() {
+        return storageBuffers;
+    }
+
+    /**
+     * Checks whether the context supports persistently mapped buffers
+     * (OpenGL 4.4), which {@code StagingRing} needs.
+     */
+    public boolean supportsBufferStorage() {
+        return bufferStorage;
+    }
+
+    /**
+     * Gets the refresh rate of the primary monitor, or 60 if it is unknown.
+     */
+    public int getRefreshRate() {
+        return refreshRate;
+    }
+
+    /**
+     * Gets the width of the window's framebuffer in pixels. Safe to call from any thread.
+     */
+    public int getFramebufferWidth() {
+        return framebufferWidth;
+    }
+
+    /**
+     * Gets the height of the window's framebuffer in pixels. Safe to call from any thread.
+     */
+    public int getFramebufferHeight() {
+        return framebufferHeight;
+    }
+
+    /**
+     * Gets the newest cursor X position reported to the window, ahead of the
+     * input queue. Safe to call from any thread.
+     */
+    public double getCursorX() {
+        return cursorX;
+    }
+
+    /**
+     * Gets the newest cursor Y position, see {@link #getCursorX()}.
+     */
+    public double getCursorY() {
+        return cursorY;
+    }
+
+    /**
+     * Gets the queue of timestamped input events produced by this window.
+     */
+    public InputEventQueue getInputQueue() {
+        return inputQueue;
+    }
+
+    /**
+     * Asks the window to close. Safe to call from any thread.
+     */
+    public void requestClose() {
+        GLFW.glfwSetWindowShouldClose(windowHandle, true);
+        wakeUp();
     }
 
     public boolean shouldClose() {
@@ -0,0 +1,55 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+
+/**
+ * The blocks of one chunk, addressed by chunk-local coordinates from 0 to
+ * {@link Chunk#SIZE} - 1. Null is air.
+ */
+interface BlockStorage {
+    Block get(int x, int y, int z);
+
+    void set(int x, int y, int z, Block block);
+
+    /**
+     * Gets the edge length of the largest aligned cube the storage knows to
+     * be all air around an air block: {@link Chunk#SIZE} for an empty chunk,
+     * down to 1 when it cannot tell. Always a power of two.
+     */
+    int getEmptySize(int x, int y, int z);
+
+    /**
+     * Copies a run of blocks along Z, from (x, y, z) to (x, y, z + length - 1),
+     * into consecutive entries of dest.
+     */
+    void copyRow(int x, int y, int z, int length, Block[] dest, int destIndex);
+
+    /**
+     * Shrinks the storage after bulk changes, where the layout allows it.
+     *
+     * @return The storage to use from now on: this one, or a shared one
+     *         holding the same blocks
+     */
+    BlockStorage compact();
+
+    /**
+     * Gets storage that may be changed with {@link #set}: this one, or a
+     * private copy when this one is shared between chunks.
+     */
+    default BlockStorage mutable() {
+        return this;
+    }
+
+    /**
+     * Estimates the memory taken, assuming compressed references, including
+     * any off-heap memory. Blocks themselves are shared per type
+     * ({@link Block#of}), so only the references count.
+     */
+    long estimateBytes();
+
+    /**
+     * Frees memory the garbage collector does not manage. The storage must
+     * not be used afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,265 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+
+import java.util.Arrays;
+
+/**
+ * A cubic section of the world, {@link #SIZE} blocks along each axis.
+ * Chunks are the unit of meshing, so editing a block only rebuilds the mesh
+ * of the chunk that contains it.
+ * <p>
+ * Blocks are kept in the chunk's {@link VoxelStorage}. The chunk counts its
+ * air and opaque blocks as they change, so whether it is all air or all
+ * opaque is known without looking at a single block. Light is one array
+ * per chunk, or a single value while the whole chunk has the same light,
+ * as it does above the terrain and deep inside it.
+ */
+public class Chunk {
+    public static final int SHIFT = 4;
+    public static final int SIZE = 1 << SHIFT;
+    public static final int MASK = SIZE - 1;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+
+    private final int chunkX;
+    private final int chunkY;
+    private final int chunkZ;
+    // Replaced when it is shared and gets changed, or when compacting finds a shared equivalent
+    private BlockStorage blocks;
+    // Blocks that are not air, and blocks that hide the faces next to them
+    private int blockCount;
+    private int opaqueCount;
+    // Sky light in the high nibble, block light in the low nibble, one byte per block;
+    // null while every block has uniformLight
+    private byte[] light;
+    private byte uniformLight;
+
+    /**
+     * Creates an empty chunk with {@link VoxelStorage#DENSE} storage.
+     *
+     * @param chunkX Chunk coordinate along X (block X divided by {@link #SIZE})
+     * @param chunkY Chunk coordinate along Y
+     * @param chunkZ Chunk coordinate along Z
+     */
+    public Chunk(int chunkX, int chunkY, int chunkZ) {
+        this(chunkX, chunkY, chunkZ, VoxelStorage.DENSE);
+    }
+
+    /**
+     * Creates an empty chunk.
+     *
+     * @param chunkX Chunk coordinate along X (block X divided by {@link #SIZE})
+     * @param chunkY Chunk coordinate along Y
+     * @param chunkZ Chunk coordinate along Z
+     * @param storage How to store the blocks
+     */
+    public Chunk(int chunkX, int chunkY, int chunkZ, VoxelStorage storage) {
+        this(chunkX, chunkY, chunkZ, storage.create());
+    }
+
+    Chunk(int chunkX, int chunkY, int chunkZ, BlockStorage blocks) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.chunkZ = chunkZ;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Estimates the memory taken by the chunk, its blocks and its light,
+     * assuming compressed references; off-heap blocks count too. Blocks
+     * themselves are shared per type ({@link Block#of}), so only the
+     * references count.
+     */
+    public long estimateBytes() {
+        // The chunk object: header, seven fields, padding
+        long bytes = 48 + blocks.estimateBytes();
+        if (light != null) {
+            bytes += 16 + light.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Frees the off-heap memory of the chunk's blocks, see {@link World#close()}.
+     */
+    void release() {
+        blocks.release();
+    }
+
+    /**
+     * Gets a block by chunk-local coordinates (0 to {@link #SIZE} - 1).
+     *
+     * @return The block, or null for air
+     */
+    public Block getBlock(int localX, int localY, int localZ) {
+        return blocks.get(localX, localY, localZ);
+    }
+
+    /**
+     * Sets a block by chunk-local coordinates.
+     *
+     * @param block The block, or null for air
+     */
+    public void setBlock(int localX, int localY, int localZ, Block block) {
+        Block old = blocks.get(localX, localY, localZ);
+        if (old == block) {
+            return;
+        }
+        blockCount += (block != null ? 1 : 0) - (old != null ? 1 : 0);
+        opaqueCount += (isOpaque(block) ? 1 : 0) - (isOpaque(old) ? 1 : 0);
+        blocks = blocks.mutable();
+        blocks.set(localX, localY, localZ, block);
+    }
+
+    /**
+     * Checks whether every block of the chunk is air.
+     */
+    public boolean isEmpty() {
+        return blockCount == 0;
+    }
+
+    /**
+     * Checks whether every block of the chunk is opaque, so it hides all
+     * faces of its neighbours that touch it.
+     */
+    public boolean isFull() {
+        return opaqueCount == VOLUME;
+    }
+
+    /**
+     * Gets the edge length of the largest aligned cube known to be all air
+     * around an air block: {@link #SIZE} for an empty chunk, 4 for an empty
+     * brick of {@link VoxelStorage#SPARSE} storage, otherwise 1. Lets rays
+     * skip empty space.
+     */
+    public int getEmptySize(int localX, int localY, int localZ) {
+        return blockCount == 0 ? SIZE : blocks.getEmptySize(localX, localY, localZ);
+    }
+
+    /**
+     * Shrinks the chunk's storage after bulk changes such as generating or
+     * lighting the world: merges uniform parts of {@link VoxelStorage#SPARSE}
+     * storage, down to a storage shared by every chunk of one block, and
+     * drops the light array if all light is the same.
+     */
+    public void compact() {
+        blocks = blocks.compact();
+        byte[] light = this.light;
+        if (light != null) {
+            byte first = light[0];
+            for (int i = 1; i < light.length; i++) {
+                if (light[i] != first) {
+                    return;
+                }
+            }
+            uniformLight = first;
+            this.light = null;
+        }
+    }
+
+    /**
+     * Gets the packed light of a block by chunk-local coordinates: sky light
+     * in bits 4-7, block light in bits 0-3.
+     */
+    public int getLight(int localX, int localY, int localZ) {
+        return readLight(lightIndex(localX, localY, localZ)) & 0xFF;
+    }
+
+    public int getSkyLight(int localX, int localY, int localZ) {
+        return (readLight(lightIndex(localX, localY, localZ)) >> 4) & 0xF;
+    }
+
+    public int getBlockLight(int localX, int localY, int localZ) {
+        return readLight(lightIndex(localX, localY, localZ)) & 0xF;
+    }
+
+    public void setSkyLight(int localX, int localY, int localZ, int level) {
+        int index = lightIndex(localX, localY, localZ);
+        writeLight(index, (byte) ((readLight(index) & 0x0F) | (level << 4)));
+    }
+
+    public void setBlockLight(int localX, int localY, int localZ, int level) {
+        int index = lightIndex(localX, localY, localZ);
+        writeLight(index, (byte) ((readLight(index) & 0xF0) | level));
+    }
+
+    private byte readLight(int index) {
+        byte[] light = this.light;
+        return light != null ? light[index] : uniformLight;
+    }
+
+    private void writeLight(int index, byte value) {
+        byte[] light = this.light;
+        if (light == null) {
+            if (value == uniformLight) {
+                return;
+            }
+            light = new byte[VOLUME];
+            Arrays.fill(light, uniformLight);
+            this.light = light;
+        }
+        light[index] = value;
+    }
+
+    /**
+     * Copies a run of blocks along Z into consecutive entries of dest, see
+     * {@link ChunkNeighborhood}.
+     */
+    void copyBlocks(int localX, int localY, int localZ, int length, Block[] dest, int destIndex) {
+        blocks.copyRow(localX, localY, localZ, length, dest, destIndex);
+    }
+
+    /**
+     * Copies the packed light of a run of blocks along Z into consecutive
+     * entries of dest.
+     */
+    void copyLight(int localX, int localY, int localZ, int length, byte[] dest, int destIndex) {
+        byte[] light = this.light;
+        if (light != null) {
+            System.arraycopy(light, lightIndex(localX, localY, localZ), dest, destIndex, length);
+        } else {
+            Arrays.fill(dest, destIndex, destIndex + length, uniformLight);
+        }
+    }
+
+    private static int lightIndex(int localX, int localY, int localZ) {
+        return (localX << (2 * SHIFT)) | (localY << SHIFT) | localZ;
+    }
+
+    private static boolean isOpaque(Block block) {
+        return block != null && block.isSolid() && !block.getType().isTranslucent();
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkY() {
+        return chunkY;
+    }
+
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    /**
+     * Gets the world X coordinate of this chunk's first block.
+     */
+    public int getOriginX() {
+        return chunkX << SHIFT;
+    }
+
+    /**
+     * Gets the world Y coordinate of this chunk's first block.
+     */
+    public int getOriginY() {
+        return chunkY << SHIFT;
+    }
+
+    /**
+     * Gets the world Z coordinate of this chunk's first block.
+     */
+    public int getOriginZ() {
+        return chunkZ << SHIFT;
+    }
+}
@@ -0,0 +1,241 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a chunk's blocks and light plus a one-block border
+ * taken from its 26 neighbours. That is everything meshing reads: whether a
+ * face on the chunk border is covered, the light a face receives and the
+ * blocks that shade its corners. Meshing the copy needs no locks and never
+ * touches the live world, so it can run on any thread while the world is
+ * being edited.
+ * <p>
+ * Blocks and light are flat arrays indexed [x][y][z] with Z fastest, so
+ * every row taken from a chunk is one array copy, or one fill where the
+ * chunk is uniform. Coordinates are local to the copied section and run
+ * from -1 to its size along each axis. Outside the world there is air, with
+ * full sky light above ground level and darkness below it, as in
+ * {@link World#getLight}.
+ */
+public final class ChunkNeighborhood {
+    private static final byte FULL_SKY = (byte) (LightEngine.MAX_LIGHT << 4);
+
+    private final int chunkIndex;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    // Index steps of one block along X and Y
+    private final int strideX;
+    private final int strideY;
+    // Both null for a section without faces
+    private final Block[] blocks;
+    private final byte[] light;
+
+    private ChunkNeighborhood(int chunkIndex, int sizeX, int sizeY, int sizeZ, int originX, int originY, int originZ,
+                              boolean faces) {
+        this.chunkIndex = chunkIndex;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.strideY = sizeZ + 2;
+        this.strideX = (sizeY + 2) * strideY;
+        int volume = (sizeX + 2) * strideX;
+        this.blocks = faces ? new Block[volume] : null;
+        this.light = faces ? new byte[volume] : null;
+    }
+
+    /**
+     * Copies a chunk and the border around it out of the world. Chunks that
+     * cannot have any faces are not copied at all: those that are all air,
+     * and those that are all opaque with six all-opaque neighbours.
+     * <p>
+     * Must be called on the thread that changes the world, or while nothing
+     * changes it.
+     *
+     * @param world World the chunk belongs to
+     * @param chunkIndex Index of the chunk in the world
+     * @return The copy, see {@link #hasFaces()}
+     */
+    public static ChunkNeighborhood capture(World world, int chunkIndex) {
+        Chunk chunk = world.getChunk(chunkIndex);
+        ChunkNeighborhood neighborhood = new ChunkNeighborhood(chunkIndex, Chunk.SIZE, Chunk.SIZE, Chunk.SIZE,
+                chunk.getOriginX(), chunk.getOriginY(), chunk.getOriginZ(), hasFaces(world, chunk));
+        if (neighborhood.blocks == null) {
+            return neighborhood;
+        }
+        int cx = chunk.getChunkX(), cy = chunk.getChunkY(), cz = chunk.getChunkZ();
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    neighborhood.copy(world.getChunk(cx + dx, cy + dy, cz + dz), dx, dy, dz);
+                }
+            }
+        }
+        return neighborhood;
+    }
+
+    /**
+     * Copies every chunk of the world, see {@link #capture}. Same threading
+     * rule: call it on the thread that changes the world, or while nothing
+     * changes it.
+     *
+     * @param world World to copy
+     * @return One copy per chunk, indexed like the world's chunks
+     */
+    public static ChunkNeighborhood[] captureAll(World world) {
+        ChunkNeighborhood[] neighborhoods = new ChunkNeighborhood[world.getChunkCount()];
+        for (int i = 0; i < neighborhoods.length; i++) {
+            neighborhoods[i] = capture(world, i);
+        }
+        return neighborhoods;
+    }
+
+    /**
+     * Copies a block array that stands alone, such as a test scene: air
+     * around it and full sky light everywhere, as chunk 0 at the world's
+     * origin.
+     *
+     * @param blocks Blocks indexed [x][y][z], null for air
+     */
+    public static ChunkNeighborhood of(Block[][][] blocks) {
+        ChunkNeighborhood neighborhood = new ChunkNeighborhood(0, blocks.length, blocks[0].length, blocks[0][0].length,
+                0, 0, 0, true);
+        Arrays.fill(neighborhood.light, FULL_SKY);
+        for (int x = 0; x < neighborhood.sizeX; x++) {
+            for (int y = 0; y < neighborhood.sizeY; y++) {
+                System.arraycopy(blocks[x][y], 0, neighborhood.blocks, neighborhood.index(x, y, 0), neighborhood.sizeZ);
+            }
+        }
+        return neighborhood;
+    }
+
+    private static boolean hasFaces(World world, Chunk chunk) {
+        if (chunk.isEmpty()) {
+            return false;
+        }
+        if (!chunk.isFull()) {
+            return true;
+        }
+        int x = chunk.getChunkX(), y = chunk.getChunkY(), z = chunk.getChunkZ();
+        return !isFull(world, x - 1, y, z) || !isFull(world, x + 1, y, z) || !isFull(world, x, y - 1, z)
+                || !isFull(world, x, y + 1, z) || !isFull(world, x, y, z - 1) || !isFull(world, x, y, z + 1);
+    }
+
+    // Outside the world counts as open, so the world's outer faces stay
+    private static boolean isFull(World world, int chunkX, int chunkY, int chunkZ) {
+        Chunk chunk = world.getChunk(chunkX, chunkY, chunkZ);
+        return chunk != null && chunk.isFull();
+    }
+
+    /**
+     * Copies the part of a chunk next to the centre one that lies within the
+     * border: its last layer, all of it or its first layer along each axis.
+     *
+     * @param chunk The chunk, or null outside the world
+     */
+    private void copy(Chunk chunk, int dx, int dy, int dz) {
+        int zStart = start(dz);
+        int zLength = end(dz) - zStart;
+        for (int x = start(dx); x < end(dx); x++) {
+            for (int y = start(dy); y < end(dy); y++) {
+                int index = index(dx * Chunk.SIZE + x, dy * Chunk.SIZE + y, dz * Chunk.SIZE + zStart);
+                if (chunk != null) {
+                    chunk.copyBlocks(x, y, zStart, zLength, blocks, index);
+                    chunk.copyLight(x, y, zStart, zLength, light, index);
+                } else if (originY + dy * Chunk.SIZE + y >= 0) {
+                    // The blocks are already air
+                    Arrays.fill(light, index, index + zLength, FULL_SKY);
+                }
+            }
+        }
+    }
+
+    private static int start(int offset) {
+        return offset < 0 ? Chunk.SIZE - 1 : 0;
+    }
+
+    private static int end(int offset) {
+        return offset > 0 ? 1 : Chunk.SIZE;
+    }
+
+    private int index(int x, int y, int z) {
+        return (x + 1) * strideX + (y + 1) * strideY + z + 1;
+    }
+
+    /**
+     * Checks whether the section can have any faces. Without faces nothing
+     * was copied and no block or light can be read.
+     */
+    public boolean hasFaces() {
+        return blocks != null;
+    }
+
+    /**
+     * Gets a block by local coordinates, from -1 to the size along each axis.
+     *
+     * @return The block, or null for air
+     */
+    public Block getBlock(int x, int y, int z) {
+        return blocks[index(x, y, z)];
+    }
+
+    /**
+     * Checks whether the block at local coordinates is solid.
+     */
+    public boolean isSolid(int x, int y, int z) {
+        Block block = blocks[index(x, y, z)];
+        return block != null && block.isSolid();
+    }
+
+    /**
+     * Gets the packed light at local coordinates, see {@link Chunk#getLight}.
+     */
+    public int getLight(int x, int y, int z) {
+        return light[index(x, y, z)] & 0xFF;
+    }
+
+    /**
+     * Gets the index in the world of the copied chunk.
+     */
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    /**
+     * Gets the number of blocks along X, without the border.
+     */
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    /**
+     * Gets the world X coordinate of the section's first block.
+     */
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    public int getOriginZ() {
+        return originZ;
+    }
+}
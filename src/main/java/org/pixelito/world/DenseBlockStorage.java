@@ -0,0 +1,45 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+
+/**
+ * One reference per block in nested arrays, see {@link VoxelStorage#DENSE}.
+ */
+final class DenseBlockStorage implements BlockStorage {
+    private final Block[][][] blocks = new Block[Chunk.SIZE][Chunk.SIZE][Chunk.SIZE];
+
+    @Override
+    public Block get(int x, int y, int z) {
+        return blocks[x][y][z];
+    }
+
+    @Override
+    public void set(int x, int y, int z, Block block) {
+        blocks[x][y][z] = block;
+    }
+
+    @Override
+    public int getEmptySize(int x, int y, int z) {
+        return 1;
+    }
+
+    @Override
+    public void copyRow(int x, int y, int z, int length, Block[] dest, int destIndex) {
+        System.arraycopy(blocks[x][y], z, dest, destIndex, length);
+    }
+
+    @Override
+    public BlockStorage compact() {
+        return this;
+    }
+
+    @Override
+    public long estimateBytes() {
+        // 1 + SIZE + SIZE * SIZE reference arrays of SIZE entries, each with a 16-byte header
+        return 16 + (1 + Chunk.SIZE + Chunk.SIZE * Chunk.SIZE) * (16L + Chunk.SIZE * 4);
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,44 @@
+package org.pixelito.world;
+
+/**
+ * Growable FIFO ring buffer of ints, so breadth-first passes over the world
+ * do not box every queued coordinate. Reused across passes; it only
+ * allocates when it has to grow.
+ */
+final class IntQueue {
+    private int[] data;
+    private int head;
+    private int size;
+
+    IntQueue(int initialCapacity) {
+        data = new int[Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1];
+    }
+
+    void add(int value) {
+        if (size == data.length) {
+            grow();
+        }
+        data[(head + size) & (data.length - 1)] = value;
+        size++;
+    }
+
+    int poll() {
+        int value = data[head];
+        head = (head + 1) & (data.length - 1);
+        size--;
+        return value;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow() {
+        int[] grown = new int[data.length << 1];
+        for (int i = 0; i < size; i++) {
+            grown[i] = data[(head + i) & (data.length - 1)];
+        }
+        data = grown;
+        head = 0;
+    }
+}
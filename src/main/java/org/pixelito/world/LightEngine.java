@@ -0,0 +1,325 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+
+/**
+ * Computes sky light and block light for every voxel of a {@link World}.
+ * <p>
+ * Both channels are 4-bit levels stored next to the chunk blocks. Light
+ * spreads breadth-first through non-solid blocks, losing one level per
+ * step; sky light at full strength also travels straight down without
+ * losing any. The initial state is one flood fill over the whole world.
+ * After that, {@link #onBlockChanged} only touches the voxels whose light
+ * actually changes: a removal pass clears the light that depended on the
+ * edited voxel, then an add pass refills it from the remaining sources.
+ * <p>
+ * Voxels are queued as packed coordinates, so worlds are limited to 2048
+ * blocks along X and Z and 1024 along Y.
+ */
+public class LightEngine {
+    public static final int MAX_LIGHT = 15;
+
+    private static final int SKY = 0;
+    private static final int BLOCK = 1;
+
+    private static final int[][] NEIGHBOURS = {
+            {1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}
+    };
+    private static final int DOWN = 3;
+
+    private final World world;
+    private final IntQueue addQueue = new IntQueue(1024);
+    // Pairs of packed voxel and the light level it had before removal
+    private final IntQueue removeQueue = new IntQueue(1024);
+
+    // Chunks whose meshes need rebuilding because blocks or light they sample changed
+    private final boolean[] dirty;
+    private final int[] dirtyChunks;
+    private int dirtyCount;
+
+    /**
+     * Creates a light engine for a world. Call {@link #initialize()} once the world is filled.
+     */
+    public LightEngine(World world) {
+        if (world.getSizeX() > 2048 || world.getSizeY() > 1024 || world.getSizeZ() > 2048) {
+            throw new IllegalArgumentException("World too large for lighting: "
+                    + world.getSizeX() + "x" + world.getSizeY() + "x" + world.getSizeZ());
+        }
+        this.world = world;
+        this.dirty = new boolean[world.getChunkCount()];
+        this.dirtyChunks = new int[world.getChunkCount()];
+    }
+
+    /**
+     * Lights the whole world from scratch with a flood fill per channel,
+     * then {@link World#compact() compacts} it so chunks lit evenly
+     * throughout keep a single light value.
+     */
+    public void initialize() {
+        int sizeX = world.getSizeX();
+        int sizeY = world.getSizeY();
+        int sizeZ = world.getSizeZ();
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                // Sunlight falls down each column until the first solid block
+                boolean sunlit = true;
+                for (int y = sizeY - 1; y >= 0; y--) {
+                    Block block = world.getBlock(x, y, z);
+                    if (isOpaque(block)) {
+                        sunlit = false;
+                    }
+                    setLight(SKY, x, y, z, sunlit ? MAX_LIGHT : 0);
+                    int emission = emission(block);
+                    setLight(BLOCK, x, y, z, emission);
+                    if (emission > 0) {
+                        addQueue.add(pack(x, y, z));
+                    }
+                }
+            }
+        }
+        propagate(BLOCK);
+
+        // Only sunlit voxels next to shade have anywhere to spread to
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int y = sizeY - 1; y >= 0 && getLight(SKY, x, y, z) == MAX_LIGHT; y--) {
+                    if (hasShadedNeighbour(x, y, z)) {
+                        addQueue.add(pack(x, y, z));
+                    }
+                }
+            }
+        }
+        propagate(SKY);
+        clearDirtyChunks();
+        world.compact();
+    }
+
+    /**
+     * Updates the light around a block that has just been changed in the
+     * world. Only the affected voxels are visited.
+     *
+     * @param x World X coordinate of the changed block
+     * @param y World Y coordinate of the changed block
+     * @param z World Z coordinate of the changed block
+     */
+    public void onBlockChanged(int x, int y, int z) {
+        if (!world.contains(x, y, z)) {
+            return;
+        }
+        markBlockDirty(x, y, z);
+        for (int channel = SKY; channel <= BLOCK; channel++) {
+            // Take away whatever light passed through or came from this voxel,
+            // the removal pass queues the surrounding light to flow back in
+            int level = getLight(channel, x, y, z);
+            setLight(channel, x, y, z, 0);
+            removeQueue.add(pack(x, y, z));
+            removeQueue.add(level);
+            unpropagate(channel);
+            if (channel == SKY && y == world.getSizeY() - 1 && !isOpaque(world.getBlock(x, y, z))) {
+                // Open to the sky above the world
+                setLight(SKY, x, y, z, MAX_LIGHT);
+                addQueue.add(pack(x, y, z));
+            } else if (channel == BLOCK) {
+                int emission = emission(world.getBlock(x, y, z));
+                if (emission > 0) {
+                    setLight(BLOCK, x, y, z, emission);
+                    addQueue.add(pack(x, y, z));
+                }
+            }
+            propagate(channel);
+        }
+    }
+
+    /**
+     * Clears light that depended on the voxels in the removal queue, and
+     * queues the brighter light around them for the add pass.
+     */
+    private void unpropagate(int channel) {
+        while (!removeQueue.isEmpty()) {
+            int packed = removeQueue.poll();
+            int level = removeQueue.poll();
+            int x = unpackX(packed);
+            int y = unpackY(packed);
+            int z = unpackZ(packed);
+            for (int i = 0; i < NEIGHBOURS.length; i++) {
+                int nx = x + NEIGHBOURS[i][0];
+                int ny = y + NEIGHBOURS[i][1];
+                int nz = z + NEIGHBOURS[i][2];
+                if (!world.contains(nx, ny, nz)) {
+                    continue;
+                }
+                int neighbourLevel = getLight(channel, nx, ny, nz);
+                if (neighbourLevel == 0) {
+                    continue;
+                }
+                boolean sunBeam = channel == SKY && i == DOWN && level == MAX_LIGHT;
+                if (neighbourLevel < level || (sunBeam && neighbourLevel == MAX_LIGHT)) {
+                    // Lit by the removed light, clear it and keep going
+                    setLight(channel, nx, ny, nz, 0);
+                    removeQueue.add(pack(nx, ny, nz));
+                    removeQueue.add(neighbourLevel);
+                    int emission = channel == BLOCK ? emission(world.getBlock(nx, ny, nz)) : 0;
+                    if (emission > 0) {
+                        setLight(BLOCK, nx, ny, nz, emission);
+                        addQueue.add(pack(nx, ny, nz));
+                    }
+                } else {
+                    // Lit independently, it refills the cleared area
+                    addQueue.add(pack(nx, ny, nz));
+                }
+            }
+        }
+    }
+
+    /**
+     * Spreads light from the voxels in the add queue.
+     */
+    private void propagate(int channel) {
+        while (!addQueue.isEmpty()) {
+            int packed = addQueue.poll();
+            int x = unpackX(packed);
+            int y = unpackY(packed);
+            int z = unpackZ(packed);
+            int level = getLight(channel, x, y, z);
+            if (level <= 1) {
+                continue;
+            }
+            for (int i = 0; i < NEIGHBOURS.length; i++) {
+                int nx = x + NEIGHBOURS[i][0];
+                int ny = y + NEIGHBOURS[i][1];
+                int nz = z + NEIGHBOURS[i][2];
+                if (!world.contains(nx, ny, nz) || isOpaque(world.getBlock(nx, ny, nz))) {
+                    continue;
+                }
+                int next = channel == SKY && i == DOWN && level == MAX_LIGHT ? MAX_LIGHT : level - 1;
+                if (getLight(channel, nx, ny, nz) < next) {
+                    setLight(channel, nx, ny, nz, next);
+                    addQueue.add(pack(nx, ny, nz));
+                }
+            }
+        }
+    }
+
+    private boolean hasShadedNeighbour(int x, int y, int z) {
+        for (int[] n : NEIGHBOURS) {
+            int nx = x + n[0];
+            int ny = y + n[1];
+            int nz = z + n[2];
+            if (world.contains(nx, ny, nz) && getLight(SKY, nx, ny, nz) < MAX_LIGHT - 1
+                    && !isOpaque(world.getBlock(nx, ny, nz))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getLight(int channel, int x, int y, int z) {
+        Chunk chunk = world.getChunk(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT);
+        int lx = x & Chunk.MASK, ly = y & Chunk.MASK, lz = z & Chunk.MASK;
+        return channel == SKY ? chunk.getSkyLight(lx, ly, lz) : chunk.getBlockLight(lx, ly, lz);
+    }
+
+    private void setLight(int channel, int x, int y, int z, int level) {
+        Chunk chunk = world.getChunk(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT);
+        int lx = x & Chunk.MASK, ly = y & Chunk.MASK, lz = z & Chunk.MASK;
+        if (channel == SKY) {
+            chunk.setSkyLight(lx, ly, lz, level);
+        } else {
+            chunk.setBlockLight(lx, ly, lz, level);
+        }
+        markDirty(x, y, z);
+    }
+
+    /**
+     * Marks the chunk holding a voxel, plus the neighbouring chunks whose
+     * border faces sample that voxel's light.
+     */
+    private void markDirty(int x, int y, int z) {
+        int cx = x >> Chunk.SHIFT, cy = y >> Chunk.SHIFT, cz = z >> Chunk.SHIFT;
+        markChunkDirty(cx, cy, cz);
+        int lx = x & Chunk.MASK, ly = y & Chunk.MASK, lz = z & Chunk.MASK;
+        if (lx == 0) markChunkDirty(cx - 1, cy, cz);
+        if (lx == Chunk.MASK) markChunkDirty(cx + 1, cy, cz);
+        if (ly == 0) markChunkDirty(cx, cy - 1, cz);
+        if (ly == Chunk.MASK) markChunkDirty(cx, cy + 1, cz);
+        if (lz == 0) markChunkDirty(cx, cy, cz - 1);
+        if (lz == Chunk.MASK) markChunkDirty(cx, cy, cz + 1);
+    }
+
+    /**
+     * Marks the chunk holding a changed block, plus every chunk that has the
+     * block in the border its meshes are built with ({@link ChunkNeighborhood}):
+     * up to seven neighbours for a block in a chunk's corner.
+     */
+    private void markBlockDirty(int x, int y, int z) {
+        int cx = x >> Chunk.SHIFT, cy = y >> Chunk.SHIFT, cz = z >> Chunk.SHIFT;
+        int lx = x & Chunk.MASK, ly = y & Chunk.MASK, lz = z & Chunk.MASK;
+        for (int dx = lx == 0 ? -1 : 0; dx <= (lx == Chunk.MASK ? 1 : 0); dx++) {
+            for (int dy = ly == 0 ? -1 : 0; dy <= (ly == Chunk.MASK ? 1 : 0); dy++) {
+                for (int dz = lz == 0 ? -1 : 0; dz <= (lz == Chunk.MASK ? 1 : 0); dz++) {
+                    markChunkDirty(cx + dx, cy + dy, cz + dz);
+                }
+            }
+        }
+    }
+
+    private void markChunkDirty(int cx, int cy, int cz) {
+        if (cx < 0 || cy < 0 || cz < 0
+                || cx >= world.getChunkCountX() || cy >= world.getChunkCountY() || cz >= world.getChunkCountZ()) {
+            return;
+        }
+        int index = world.chunkIndex(cx, cy, cz);
+        if (!dirty[index]) {
+            dirty[index] = true;
+            dirtyChunks[dirtyCount++] = index;
+        }
+    }
+
+    /**
+     * Gets the number of chunks whose blocks or light changed since the last
+     * {@link #clearDirtyChunks()}, counting the neighbours whose meshes see them.
+     */
+    public int getDirtyChunkCount() {
+        return dirtyCount;
+    }
+
+    /**
+     * Gets the index of a chunk whose meshes need rebuilding.
+     *
+     * @param i From 0 to {@link #getDirtyChunkCount()} - 1
+     */
+    public int getDirtyChunk(int i) {
+        return dirtyChunks[i];
+    }
+
+    public void clearDirtyChunks() {
+        for (int i = 0; i < dirtyCount; i++) {
+            dirty[dirtyChunks[i]] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    private static boolean isOpaque(Block block) {
+        return block != null && block.isSolid();
+    }
+
+    private static int emission(Block block) {
+        return block != null ? block.getType().getLightEmission() : 0;
+    }
+
+    private static int pack(int x, int y, int z) {
+        return (x << 21) | (y << 11) | z;
+    }
+
+    private static int unpackX(int packed) {
+        return packed >>> 21;
+    }
+
+    private static int unpackY(int packed) {
+        return (packed >>> 11) & 0x3FF;
+    }
+
+    private static int unpackZ(int packed) {
+        return packed & 0x7FF;
+    }
+}
@@ -0,0 +1,66 @@
+package org.pixelito.world;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The blocks of every chunk of a world in one memory-mapped temporary file,
+ * {@link Chunk#VOLUME} bytes per chunk in chunk index order, for
+ * {@link VoxelStorage#MAPPED}.
+ * <p>
+ * The operating system pages the file in as chunks are read and writes cold
+ * pages back to disk under memory pressure, so a world can be larger than
+ * the memory it is given. The file starts sparse and reads as zeros, which
+ * is air. It is deleted as soon as it is mapped; the mappings keep its
+ * space until they are dropped by {@link #close()} and collected.
+ */
+final class MappedVoxelFile {
+    // One mapping covers 1 GB of chunks, well under the 2 GB a buffer can address
+    private static final int CHUNKS_PER_SEGMENT = 1 << 18;
+
+    private MappedByteBuffer[] segments;
+
+    /**
+     * Creates and maps the file.
+     *
+     * @param chunkCount Chunks to make room for
+     * @throws IOException If the temporary file cannot be created or mapped
+     */
+    MappedVoxelFile(int chunkCount) throws IOException {
+        Path path = Files.createTempFile("pixelito-voxels", ".bin");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            segments = new MappedByteBuffer[(chunkCount + CHUNKS_PER_SEGMENT - 1) / CHUNKS_PER_SEGMENT];
+            for (int i = 0; i < segments.length; i++) {
+                long chunks = Math.min(CHUNKS_PER_SEGMENT, chunkCount - (long) i * CHUNKS_PER_SEGMENT);
+                // Mapping past the end grows the file
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        (long) i * CHUNKS_PER_SEGMENT * Chunk.VOLUME, chunks * Chunk.VOLUME);
+            }
+        }
+    }
+
+    /**
+     * Gets the address of a chunk's bytes.
+     */
+    long address(int chunkIndex) {
+        return MemoryUtil.memAddress(segments[chunkIndex / CHUNKS_PER_SEGMENT])
+                + (long) (chunkIndex % CHUNKS_PER_SEGMENT) * Chunk.VOLUME;
+    }
+
+    /**
+     * Drops the mappings. Java cannot unmap a file explicitly, so the
+     * address space and the file's disk space are given back once the
+     * garbage collector finds the buffers unreachable. No address from
+     * {@link #address} may be used afterwards.
+     */
+    void close() {
+        segments = null;
+    }
+}
@@ -0,0 +1,96 @@
+package org.pixelito.world;
+
+import org.lwjgl.system.MemoryUtil;
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+
+/**
+ * One byte per block outside the Java heap, see {@link VoxelStorage#OFF_HEAP}
+ * and {@link VoxelStorage#MAPPED}.
+ * <p>
+ * The byte is 0 for air and the block type's ordinal plus one otherwise,
+ * indexed [x][y][z] with Z fastest, so a row is consecutive bytes. Reading
+ * turns the byte back into the type's shared {@link Block#of} instance, so
+ * the garbage collector never sees the blocks at all.
+ * <p>
+ * Off-heap memory has no bounds checks: the storage must not be used after
+ * {@link #release()}.
+ */
+final class NativeBlockStorage implements BlockStorage {
+    // The block stored as each byte value
+    private static final Block[] BLOCKS = new Block[BlockType.values().length + 1];
+    static {
+        for (BlockType type : BlockType.values()) {
+            BLOCKS[type.ordinal() + 1] = Block.of(type);
+        }
+    }
+
+    private long address;
+    // Whether the storage allocated its memory itself, rather than being given part of a mapped file
+    private final boolean owned;
+
+    /**
+     * Allocates zeroed memory of its own, freed by {@link #release()}.
+     */
+    NativeBlockStorage() {
+        this.address = MemoryUtil.nmemCallocChecked(1, Chunk.VOLUME);
+        this.owned = true;
+    }
+
+    /**
+     * Uses memory owned by someone else, such as a chunk's slot of a
+     * {@link MappedVoxelFile}.
+     *
+     * @param address First of {@link Chunk#VOLUME} zeroed bytes
+     */
+    NativeBlockStorage(long address) {
+        this.address = address;
+        this.owned = false;
+    }
+
+    @Override
+    public Block get(int x, int y, int z) {
+        return BLOCKS[MemoryUtil.memGetByte(address + index(x, y, z)) & 0xFF];
+    }
+
+    @Override
+    public void set(int x, int y, int z, Block block) {
+        MemoryUtil.memPutByte(address + index(x, y, z), (byte) (block == null ? 0 : block.getType().ordinal() + 1));
+    }
+
+    @Override
+    public int getEmptySize(int x, int y, int z) {
+        return 1;
+    }
+
+    @Override
+    public void copyRow(int x, int y, int z, int length, Block[] dest, int destIndex) {
+        long row = address + index(x, y, z);
+        for (int i = 0; i < length; i++) {
+            dest[destIndex + i] = BLOCKS[MemoryUtil.memGetByte(row + i) & 0xFF];
+        }
+    }
+
+    @Override
+    public BlockStorage compact() {
+        return this;
+    }
+
+    @Override
+    public long estimateBytes() {
+        // The storage object itself, plus the block bytes wherever they are
+        return 24 + Chunk.VOLUME;
+    }
+
+    @Override
+    public void release() {
+        if (owned && address != 0) {
+            MemoryUtil.nmemFree(address);
+        }
+        address = 0;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (x << (2 * Chunk.SHIFT)) | (y << Chunk.SHIFT) | z;
+    }
+}
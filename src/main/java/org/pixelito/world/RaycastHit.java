@@ -0,0 +1,39 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+
+/**
+ * Result of a {@link VoxelRaycast}. Mutable so a single instance can be
+ * reused for every cast.
+ */
+public class RaycastHit {
+    // Face indices, in the same order the meshers use
+    public static final int FACE_NONE = -1;
+    public static final int FACE_FRONT = 0;  // +Z
+    public static final int FACE_BACK = 1;   // -Z
+    public static final int FACE_LEFT = 2;   // -X
+    public static final int FACE_RIGHT = 3;  // +X
+    public static final int FACE_TOP = 4;    // +Y
+    public static final int FACE_BOTTOM = 5; // -Y
+
+    /** Whether the ray hit a solid block */
+    public boolean hit;
+    /** World coordinates of the hit block */
+    public int x, y, z;
+    /** Face of the hit block the ray entered through, FACE_NONE if it started inside it */
+    public int face = FACE_NONE;
+    /** Outward normal of the hit face, zero if it started inside the block */
+    public int normalX, normalY, normalZ;
+    /** Distance from the ray origin to the hit face */
+    public float distance;
+    /** The block that was hit */
+    public Block block;
+
+    void reset() {
+        hit = false;
+        face = FACE_NONE;
+        normalX = normalY = normalZ = 0;
+        distance = 0.0f;
+        block = null;
+    }
+}
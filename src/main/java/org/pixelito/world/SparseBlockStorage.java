@@ -0,0 +1,224 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+
+import java.util.Arrays;
+
+/**
+ * A chunk's blocks as a two-level 64-tree, see {@link VoxelStorage#SPARSE}.
+ * <p>
+ * The chunk is split into 4x4x4 bricks of 4x4x4 blocks. A chunk that is
+ * all one block, typically all air or all stone, is just that block, and
+ * once compacted it uses a read-only storage shared by all such chunks, so
+ * it costs no memory of its own. Any
+ * other chunk has an array of 64 bricks, where a brick that is all one
+ * block is a shared one-element array and only the others have 64
+ * entries of their own. Reading a block is two array lookups either way.
+ * <p>
+ * Changing a block splits what it lands in as needed, starting with a
+ * private copy of a shared storage ({@link #mutable()}); merging back only
+ * happens in {@link #compact()}, since checking a whole brick on every
+ * change would slow down filling a world.
+ */
+final class SparseBlockStorage implements BlockStorage {
+    private static final int BRICK_SHIFT = 2;
+    private static final int BRICK_SIZE = 1 << BRICK_SHIFT;
+    private static final int BRICK_MASK = BRICK_SIZE - 1;
+    private static final int BRICK_VOLUME = BRICK_SIZE * BRICK_SIZE * BRICK_SIZE;
+    // Bricks along each axis of the chunk
+    private static final int BRICKS_SHIFT = Chunk.SHIFT - BRICK_SHIFT;
+    private static final int BRICK_COUNT = 1 << (3 * BRICKS_SHIFT);
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    // Uniform bricks of the shared blocks, never written; index 0 is air
+    private static final Block[][] SHARED_BRICKS = new Block[BlockType.values().length + 1][];
+    static {
+        SHARED_BRICKS[0] = new Block[1];
+        for (BlockType type : BlockType.values()) {
+            SHARED_BRICKS[type.ordinal() + 1] = new Block[] {Block.of(type)};
+        }
+    }
+
+    // Read-only storages of uniform chunks of the shared blocks; index 0 is air
+    private static final SparseBlockStorage[] SHARED_STORAGES = new SparseBlockStorage[SHARED_BRICKS.length];
+    static {
+        for (int i = 0; i < SHARED_STORAGES.length; i++) {
+            SHARED_STORAGES[i] = new SparseBlockStorage(SHARED_BRICKS[i][0], true);
+        }
+    }
+
+    // The whole chunk's block while bricks is null
+    private Block uniform;
+    private Block[][] bricks;
+    // Shared storages never change, chunks take a copy first
+    private final boolean shared;
+
+    private SparseBlockStorage(Block uniform, boolean shared) {
+        this.uniform = uniform;
+        this.shared = shared;
+    }
+
+    /**
+     * Gets the shared storage of an all-air chunk.
+     */
+    static SparseBlockStorage empty() {
+        return SHARED_STORAGES[0];
+    }
+
+    @Override
+    public Block get(int x, int y, int z) {
+        Block[][] bricks = this.bricks;
+        if (bricks == null) {
+            return uniform;
+        }
+        Block[] brick = bricks[brickIndex(x, y, z)];
+        return brick.length == 1 ? brick[0] : brick[cellIndex(x, y, z)];
+    }
+
+    @Override
+    public BlockStorage mutable() {
+        return shared ? new SparseBlockStorage(uniform, false) : this;
+    }
+
+    @Override
+    public void set(int x, int y, int z, Block block) {
+        if (shared) {
+            throw new IllegalStateException("Shared block storage cannot be changed");
+        }
+        Block[][] bricks = this.bricks;
+        if (bricks == null) {
+            if (block == uniform) {
+                return;
+            }
+            bricks = new Block[BRICK_COUNT][];
+            Arrays.fill(bricks, uniformBrick(uniform));
+            this.bricks = bricks;
+        }
+        int index = brickIndex(x, y, z);
+        Block[] brick = bricks[index];
+        if (brick.length == 1) {
+            if (brick[0] == block) {
+                return;
+            }
+            Block[] split = new Block[BRICK_VOLUME];
+            Arrays.fill(split, brick[0]);
+            bricks[index] = split;
+            brick = split;
+        }
+        brick[cellIndex(x, y, z)] = block;
+    }
+
+    @Override
+    public int getEmptySize(int x, int y, int z) {
+        Block[][] bricks = this.bricks;
+        if (bricks == null) {
+            return uniform == null ? Chunk.SIZE : 1;
+        }
+        Block[] brick = bricks[brickIndex(x, y, z)];
+        return brick.length == 1 && brick[0] == null ? BRICK_SIZE : 1;
+    }
+
+    @Override
+    public void copyRow(int x, int y, int z, int length, Block[] dest, int destIndex) {
+        Block[][] bricks = this.bricks;
+        if (bricks == null) {
+            Arrays.fill(dest, destIndex, destIndex + length, uniform);
+            return;
+        }
+        // Z is the lowest index within a brick, so each brick's part of the row is contiguous
+        int end = z + length;
+        while (z < end) {
+            int count = Math.min(end, (z | BRICK_MASK) + 1) - z;
+            Block[] brick = bricks[brickIndex(x, y, z)];
+            if (brick.length == 1) {
+                Arrays.fill(dest, destIndex, destIndex + count, brick[0]);
+            } else {
+                System.arraycopy(brick, cellIndex(x, y, z), dest, destIndex, count);
+            }
+            z += count;
+            destIndex += count;
+        }
+    }
+
+    @Override
+    public BlockStorage compact() {
+        Block[][] bricks = this.bricks;
+        if (bricks == null) {
+            return shareable(uniform);
+        }
+        boolean uniformChunk = true;
+        for (int i = 0; i < BRICK_COUNT; i++) {
+            Block[] brick = bricks[i];
+            if (brick.length != 1 && isUniform(brick)) {
+                brick = uniformBrick(brick[0]);
+                bricks[i] = brick;
+            }
+            uniformChunk &= brick.length == 1 && brick[0] == bricks[0][0];
+        }
+        if (uniformChunk) {
+            // Readers that still see the bricks find the same block there
+            uniform = bricks[0][0];
+            this.bricks = null;
+            return shareable(uniform);
+        }
+        return this;
+    }
+
+    // The shared storage for a uniform chunk of the block, or this one for a block of its own
+    private BlockStorage shareable(Block block) {
+        SparseBlockStorage shared = SHARED_STORAGES[block == null ? 0 : block.getType().ordinal() + 1];
+        return shared.uniform == block ? shared : this;
+    }
+
+    @Override
+    public long estimateBytes() {
+        if (shared) {
+            // Belongs to no chunk in particular
+            return 0;
+        }
+        // The storage object itself: header, two references and a flag
+        long bytes = 24;
+        Block[][] bricks = this.bricks;
+        if (bricks != null) {
+            bytes += ARRAY_HEADER_BYTES + BRICK_COUNT * 4L;
+            for (Block[] brick : bricks) {
+                if (brick.length != 1) {
+                    bytes += ARRAY_HEADER_BYTES + BRICK_VOLUME * 4L;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void release() {
+    }
+
+    private static boolean isUniform(Block[] brick) {
+        Block first = brick[0];
+        for (int i = 1; i < brick.length; i++) {
+            if (brick[i] != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A one-element brick of the block, shared for the blocks from Block.of
+    private static Block[] uniformBrick(Block block) {
+        if (block == null) {
+            return SHARED_BRICKS[0];
+        }
+        Block[] shared = SHARED_BRICKS[block.getType().ordinal() + 1];
+        return shared[0] == block ? shared : new Block[] {block};
+    }
+
+    private static int brickIndex(int x, int y, int z) {
+        return ((x >> BRICK_SHIFT) << (2 * BRICKS_SHIFT)) | ((y >> BRICK_SHIFT) << BRICKS_SHIFT) | (z >> BRICK_SHIFT);
+    }
+
+    private static int cellIndex(int x, int y, int z) {
+        return ((x & BRICK_MASK) << (2 * BRICK_SHIFT)) | ((y & BRICK_MASK) << BRICK_SHIFT) | (z & BRICK_MASK);
+    }
+}
@@ -0,0 +1,166 @@
+package org.pixelito.world;
+
+import org.joml.Vector3fc;
+import org.pixelito.block.Block;
+
+/**
+ * Voxel raycasting with the Amanatides-Woo grid traversal (3D DDA).
+ * <p>
+ * The ray visits exactly the voxels it passes through, in order, with a
+ * couple of additions and comparisons per voxel, so the cost grows with the
+ * reach and not with the world size. Blocks are read straight from chunk
+ * storage; the chunk is only looked up again when the ray crosses into a
+ * new one. Where the chunk knows a whole aligned cube around the ray to be
+ * air ({@link Chunk#getEmptySize}), the ray crosses it in one go without
+ * reading the blocks inside. Casting never allocates.
+ */
+public final class VoxelRaycast {
+
+    private VoxelRaycast() {
+    }
+
+    /**
+     * Finds the first solid block along a ray.
+     *
+     * @param world World to cast against
+     * @param origin Ray origin in world coordinates
+     * @param direction Ray direction, need not be normalized
+     * @param maxDistance Maximum distance to search, in blocks
+     * @param hit Receives the result
+     * @return true if a solid block was hit within maxDistance
+     */
+    public static boolean cast(World world, Vector3fc origin, Vector3fc direction, float maxDistance, RaycastHit hit) {
+        hit.reset();
+
+        float dx = direction.x();
+        float dy = direction.y();
+        float dz = direction.z();
+        float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0.0f) {
+            return false;
+        }
+        // With a unit direction the traversal parameter t is the distance travelled
+        dx /= length;
+        dy /= length;
+        dz /= length;
+
+        float ox = origin.x();
+        float oy = origin.y();
+        float oz = origin.z();
+        int x = (int) Math.floor(ox);
+        int y = (int) Math.floor(oy);
+        int z = (int) Math.floor(oz);
+
+        int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        int stepZ = dz > 0 ? 1 : (dz < 0 ? -1 : 0);
+
+        // Distance along the ray between two voxel boundaries on each axis
+        float deltaX = stepX != 0 ? Math.abs(1.0f / dx) : Float.POSITIVE_INFINITY;
+        float deltaY = stepY != 0 ? Math.abs(1.0f / dy) : Float.POSITIVE_INFINITY;
+        float deltaZ = stepZ != 0 ? Math.abs(1.0f / dz) : Float.POSITIVE_INFINITY;
+
+        // Distance along the ray to the first voxel boundary on each axis
+        float nextX = stepX > 0 ? (x + 1 - ox) * deltaX : (stepX < 0 ? (ox - x) * deltaX : Float.POSITIVE_INFINITY);
+        float nextY = stepY > 0 ? (y + 1 - oy) * deltaY : (stepY < 0 ? (oy - y) * deltaY : Float.POSITIVE_INFINITY);
+        float nextZ = stepZ > 0 ? (z + 1 - oz) * deltaZ : (stepZ < 0 ? (oz - z) * deltaZ : Float.POSITIVE_INFINITY);
+
+        int sizeX = world.getSizeX();
+        int sizeY = world.getSizeY();
+        int sizeZ = world.getSizeZ();
+
+        Chunk chunk = null;
+        int chunkX = Integer.MIN_VALUE, chunkY = Integer.MIN_VALUE, chunkZ = Integer.MIN_VALUE;
+        float distance = 0.0f;
+        int face = RaycastHit.FACE_NONE;
+
+        while (distance <= maxDistance) {
+            if (x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ) {
+                int cx = x >> Chunk.SHIFT;
+                int cy = y >> Chunk.SHIFT;
+                int cz = z >> Chunk.SHIFT;
+                if (cx != chunkX || cy != chunkY || cz != chunkZ) {
+                    chunk = world.getChunk(cx, cy, cz);
+                    chunkX = cx;
+                    chunkY = cy;
+                    chunkZ = cz;
+                }
+                Block block = chunk.getBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+                if (block != null && block.isSolid()) {
+                    hit.hit = true;
+                    hit.x = x;
+                    hit.y = y;
+                    hit.z = z;
+                    hit.face = face;
+                    hit.distance = distance;
+                    hit.block = block;
+                    setNormal(hit, face);
+                    return true;
+                }
+                int size = block == null ? chunk.getEmptySize(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK) : 1;
+                if (size > 1) {
+                    // Move to the last voxel of the empty cube on the ray; the step below leaves the cube
+                    int mask = size - 1;
+                    int lastX = stepX > 0 ? x | mask : (stepX < 0 ? x & ~mask : x);
+                    int lastY = stepY > 0 ? y | mask : (stepY < 0 ? y & ~mask : y);
+                    int lastZ = stepZ > 0 ? z | mask : (stepZ < 0 ? z & ~mask : z);
+                    float exit = Math.min(boundary(nextX, deltaX, Math.abs(lastX - x)),
+                            Math.min(boundary(nextY, deltaY, Math.abs(lastY - y)), boundary(nextZ, deltaZ, Math.abs(lastZ - z))));
+                    while (nextX < exit && x != lastX) {
+                        x += stepX;
+                        nextX += deltaX;
+                    }
+                    while (nextY < exit && y != lastY) {
+                        y += stepY;
+                        nextY += deltaY;
+                    }
+                    while (nextZ < exit && z != lastZ) {
+                        z += stepZ;
+                        nextZ += deltaZ;
+                    }
+                }
+            } else if ((x < 0 && stepX <= 0) || (x >= sizeX && stepX >= 0)
+                    || (y < 0 && stepY <= 0) || (y >= sizeY && stepY >= 0)
+                    || (z < 0 && stepZ <= 0) || (z >= sizeZ && stepZ >= 0)) {
+                // Outside the world and moving away from it, nothing left to hit
+                return false;
+            }
+
+            // Step into the neighbouring voxel whose boundary is closest
+            if (nextX < nextY && nextX < nextZ) {
+                x += stepX;
+                distance = nextX;
+                nextX += deltaX;
+                face = stepX > 0 ? RaycastHit.FACE_LEFT : RaycastHit.FACE_RIGHT;
+            } else if (nextY < nextZ) {
+                y += stepY;
+                distance = nextY;
+                nextY += deltaY;
+                face = stepY > 0 ? RaycastHit.FACE_BOTTOM : RaycastHit.FACE_TOP;
+            } else {
+                z += stepZ;
+                distance = nextZ;
+                nextZ += deltaZ;
+                face = stepZ > 0 ? RaycastHit.FACE_BACK : RaycastHit.FACE_FRONT;
+            }
+        }
+        return false;
+    }
+
+    // Distance to the voxel boundary the given number of boundaries after next; axes the ray does not move along stay infinite
+    private static float boundary(float next, float delta, int count) {
+        return count == 0 ? next : next + count * delta;
+    }
+
+    private static void setNormal(RaycastHit hit, int face) {
+        switch (face) {
+            case RaycastHit.FACE_FRONT -> hit.normalZ = 1;
+            case RaycastHit.FACE_BACK -> hit.normalZ = -1;
+            case RaycastHit.FACE_LEFT -> hit.normalX = -1;
+            case RaycastHit.FACE_RIGHT -> hit.normalX = 1;
+            case RaycastHit.FACE_TOP -> hit.normalY = 1;
+            case RaycastHit.FACE_BOTTOM -> hit.normalY = -1;
+            default -> { }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.pixelito.world;
+
+/**
+ * How a {@link Chunk} stores its blocks.
+ */
+public enum VoxelStorage {
+    /** One reference per block in nested arrays; fastest to read, same size whatever the chunk holds */
+    DENSE("dense"),
+    /** 64-tree of 4x4x4 bricks; uniform bricks are a single block reference and uniform chunks share one storage */
+    SPARSE("sparse"),
+    /** One byte per block in native memory allocated per chunk and freed with the world; nothing for the GC to trace */
+    OFF_HEAP("offheap"),
+    /** Like {@link #OFF_HEAP}, but in a memory-mapped temporary file the OS can page out, for worlds larger than memory */
+    MAPPED("mapped");
+
+    private final String id;
+
+    VoxelStorage(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the name used on the command line and in reports.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Creates the storage for one empty chunk.
+     *
+     * @throws IllegalStateException For {@link #MAPPED}, whose chunks are slots of their world's file
+     */
+    BlockStorage create() {
+        return switch (this) {
+            case DENSE -> new DenseBlockStorage();
+            case SPARSE -> SparseBlockStorage.empty();
+            case OFF_HEAP -> new NativeBlockStorage();
+            case MAPPED -> throw new IllegalStateException("Mapped chunks belong to a world's file");
+        };
+    }
+
+    /**
+     * Finds a storage by its name.
+     *
+     * @throws IllegalArgumentException If no storage has that name
+     */
+    public static VoxelStorage fromId(String id) {
+        for (VoxelStorage storage : values()) {
+            if (storage.id.equals(id)) {
+                return storage;
+            }
+        }
+        throw new IllegalArgumentException("Unknown voxel storage: " + id);
+    }
+}
@@ -0,0 +1,225 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A fixed-size block world stored as a grid of {@link Chunk}s.
+ * <p>
+ * Block coordinates run from 0 to the world size along each axis. Sizes need
+ * not be multiples of {@link Chunk#SIZE}; the parts of edge chunks outside the
+ * world simply stay empty.
+ */
+public class World {
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int chunksX;
+    private final int chunksY;
+    private final int chunksZ;
+    private final Chunk[] chunks;
+    private final VoxelStorage storage;
+    // The chunks' blocks with MAPPED storage, null otherwise
+    private MappedVoxelFile mappedFile;
+
+    /**
+     * Creates an empty world with {@link VoxelStorage#DENSE} storage.
+     *
+     * @param sizeX World width in blocks
+     * @param sizeY World height in blocks
+     * @param sizeZ World depth in blocks
+     */
+    public World(int sizeX, int sizeY, int sizeZ) {
+        this(sizeX, sizeY, sizeZ, VoxelStorage.DENSE);
+    }
+
+    /**
+     * Creates an empty world.
+     *
+     * @param sizeX World width in blocks
+     * @param sizeY World height in blocks
+     * @param sizeZ World depth in blocks
+     * @param storage How the chunks store their blocks
+     * @throws UncheckedIOException If the file for {@link VoxelStorage#MAPPED} storage cannot be created
+     */
+    public World(int sizeX, int sizeY, int sizeZ, VoxelStorage storage) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.chunksX = (sizeX + Chunk.MASK) >> Chunk.SHIFT;
+        this.chunksY = (sizeY + Chunk.MASK) >> Chunk.SHIFT;
+        this.chunksZ = (sizeZ + Chunk.MASK) >> Chunk.SHIFT;
+        this.chunks = new Chunk[chunksX * chunksY * chunksZ];
+        this.storage = storage;
+        if (storage == VoxelStorage.MAPPED) {
+            try {
+                mappedFile = new MappedVoxelFile(chunks.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map the voxel file", e);
+            }
+        }
+        for (int cx = 0; cx < chunksX; cx++) {
+            for (int cy = 0; cy < chunksY; cy++) {
+                for (int cz = 0; cz < chunksZ; cz++) {
+                    int index = chunkIndex(cx, cy, cz);
+                    chunks[index] = mappedFile != null
+                            ? new Chunk(cx, cy, cz, new NativeBlockStorage(mappedFile.address(index)))
+                            : new Chunk(cx, cy, cz, storage);
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees the memory of the chunks' blocks that lives outside the heap,
+     * with {@link VoxelStorage#OFF_HEAP} and {@link VoxelStorage#MAPPED}
+     * storage. Nothing may read or change the world afterwards; off-heap
+     * reads are not checked, so a stray one can crash the JVM. Heap storage
+     * is left to the garbage collector.
+     */
+    public void close() {
+        for (Chunk chunk : chunks) {
+            chunk.release();
+        }
+        if (mappedFile != null) {
+            mappedFile.close();
+            mappedFile = null;
+        }
+    }
+
+    /**
+     * Checks whether block coordinates are inside the world.
+     */
+    public boolean contains(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+    }
+
+    /**
+     * Gets a block by world coordinates.
+     *
+     * @return The block, or null for air and for coordinates outside the world
+     */
+    public Block getBlock(int x, int y, int z) {
+        if (!contains(x, y, z)) {
+            return null;
+        }
+        return chunks[chunkIndex(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT)]
+                .getBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+    }
+
+    /**
+     * Checks whether the block at world coordinates is solid. Outside the world everything is air.
+     */
+    public boolean isSolid(int x, int y, int z) {
+        Block block = getBlock(x, y, z);
+        return block != null && block.isSolid();
+    }
+
+    /**
+     * Sets a block by world coordinates.
+     *
+     * @param block The block, or null for air
+     * @return Index of the chunk that changed, or -1 if the coordinates are outside the world
+     */
+    public int setBlock(int x, int y, int z, Block block) {
+        if (!contains(x, y, z)) {
+            return -1;
+        }
+        int index = chunkIndex(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT);
+        chunks[index].setBlock(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK, block);
+        return index;
+    }
+
+    /**
+     * Gets the packed light at world coordinates, see {@link Chunk#getLight}.
+     * Outside the world there is full sky light above ground level and darkness below it.
+     */
+    public int getLight(int x, int y, int z) {
+        if (!contains(x, y, z)) {
+            return y >= 0 ? LightEngine.MAX_LIGHT << 4 : 0;
+        }
+        return chunks[chunkIndex(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT)]
+                .getLight(x & Chunk.MASK, y & Chunk.MASK, z & Chunk.MASK);
+    }
+
+    /**
+     * Gets a chunk by chunk coordinates.
+     *
+     * @return The chunk, or null if the coordinates are outside the world
+     */
+    public Chunk getChunk(int chunkX, int chunkY, int chunkZ) {
+        if (chunkX < 0 || chunkY < 0 || chunkZ < 0 || chunkX >= chunksX || chunkY >= chunksY || chunkZ >= chunksZ) {
+            return null;
+        }
+        return chunks[chunkIndex(chunkX, chunkY, chunkZ)];
+    }
+
+    /**
+     * Gets a chunk by its index, from 0 to {@link #getChunkCount()} - 1.
+     */
+    public Chunk getChunk(int index) {
+        return chunks[index];
+    }
+
+    /**
+     * Estimates the memory taken by all chunks, see {@link Chunk#estimateBytes()}.
+     */
+    public long estimateBytes() {
+        long total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.estimateBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Shrinks every chunk after bulk changes, see {@link Chunk#compact()}.
+     */
+    public void compact() {
+        for (Chunk chunk : chunks) {
+            chunk.compact();
+        }
+    }
+
+    public VoxelStorage getStorage() {
+        return storage;
+    }
+
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * Gets the index of a chunk, as used by {@link #getChunk(int)}, from
+     * chunk coordinates inside the world.
+     */
+    public int chunkIndex(int chunkX, int chunkY, int chunkZ) {
+        return (chunkX * chunksY + chunkY) * chunksZ + chunkZ;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    public int getChunkCountX() {
+        return chunksX;
+    }
+
+    public int getChunkCountY() {
+        return chunksY;
+    }
+
+    public int getChunkCountZ() {
+        return chunksZ;
+    }
+}
@@ -0,0 +1,72 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+
+/**
+ * Generates the test terrain. Shared by the game and the world server so
+ * both build the same world from the same seed.
+ */
+public class WorldGenerator {
+    private WorldGenerator() {
+    }
+
+    /**
+     * Creates a test world with some interesting features.
+     * The same seed always produces the same world; seed 0 is the default world.
+     *
+     * @param width World width in blocks
+     * @param height World height in blocks
+     * @param depth World depth in blocks
+     * @param seed Shifts the terrain pattern
+     * @return The generated world, without light
+     */
+    public static World createTestWorld(int width, int height, int depth, long seed) {
+        return createTestWorld(width, height, depth, seed, VoxelStorage.DENSE);
+    }
+
+    /**
+     * Creates the test world with the given block storage.
+     *
+     * @param storage How the chunks store their blocks
+     * @see #createTestWorld(int, int, int, long)
+     */
+    public static World createTestWorld(int width, int height, int depth, long seed, VoxelStorage storage) {
+        World world = new World(width, height, depth, storage);
+
+        // The seed shifts the wave pattern, the amplitude grows with the world height
+        double phaseX = (seed % 1000) * 0.37;
+        double phaseZ = ((seed / 1000) % 1000) * 0.53;
+        int baseHeight = height / 4;
+        int waterLevel = baseHeight;
+        double amplitude = 1.5 * height / 8.0;
+        
+        // Create terrain with some height variation
+        for (int x = 0; x < width; x++) {
+            for (int z = 0; z < depth; z++) {
+                // Generate terrain height using a simple sine wave pattern
+                int terrainHeight = baseHeight + (int)(Math.sin(x * 0.3 + phaseX) * amplitude
+                        + Math.cos(z * 0.3 + phaseZ) * amplitude);
+                
+                // Fill blocks below terrain height
+                for (int y = 0; y < height; y++) {
+                    if (y < terrainHeight - 1) {
+                        world.setBlock(x, y, z, Block.of(BlockType.STONE));
+                    } else if (y < terrainHeight) {
+                        world.setBlock(x, y, z, Block.of(BlockType.DIRT));
+                    } else if (y == terrainHeight) {
+                        world.setBlock(x, y, z, Block.of(BlockType.GRASS));
+                    } else if (y <= waterLevel) {
+                        // Valleys below the base height fill with water
+                        world.setBlock(x, y, z, Block.of(BlockType.WATER));
+                    } else {
+                        // Air (null or transparent)
+                    }
+                }
+            }
+        }
+
+        world.compact();
+        return world;
+    }
+}
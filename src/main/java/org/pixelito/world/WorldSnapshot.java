@@ -0,0 +1,240 @@
+package org.pixelito.world;
+
+import org.pixelito.block.Block;
+import org.pixelito.block.BlockType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Saves and loads whole worlds as compact binary snapshots, for sharing test
+ * worlds and benchmark fixtures. Only blocks are stored; light is cheaper to
+ * recompute than to load.
+ * <p>
+ * Layout, little-endian:
+ * <pre>
+ * int magic "PXWS", int version, int sizeX, int sizeY, int sizeZ, int chunkCount
+ * per chunk, in {@link World} index order:
+ *     byte paletteSize, paletteSize bytes of {@link BlockType} ordinals
+ *     short runCount, runCount runs of (byte palette index, short length - 1)
+ * </pre>
+ * Runs go through a chunk layer by layer (y, then x, then z), so the
+ * horizontal layers of terrain collapse into a few runs. Air is stored as
+ * {@link BlockType#AIR}.
+ * <p>
+ * Both directions go through a {@link FileChannel} with direct buffers and
+ * create no objects per block: loading uses the shared {@link Block#of}
+ * instances.
+ */
+public class WorldSnapshot {
+    private static final int MAGIC = 0x53575850; // "PXWS" in little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    /** Largest encoding of one chunk: a full palette and a run per block */
+    public static final int MAX_CHUNK_BYTES = 1 + 255 + Short.BYTES + Chunk.SIZE * Chunk.SIZE * Chunk.SIZE * 3;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    private static final BlockType[] TYPES = BlockType.values();
+
+    private WorldSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a world's blocks.
+     *
+     * @param world World to save
+     * @param path File to write, replaced if it exists
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(World world, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ChunkEncoder encoder = new ChunkEncoder();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION)
+                    .putInt(world.getSizeX()).putInt(world.getSizeY()).putInt(world.getSizeZ())
+                    .putInt(world.getChunkCount());
+            for (int i = 0; i < world.getChunkCount(); i++) {
+                if (buffer.remaining() < MAX_CHUNK_BYTES) {
+                    flush(channel, buffer);
+                }
+                encoder.encode(world.getChunk(i), buffer);
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Encodes one chunk's blocks in the snapshot's per-chunk format, e.g. to
+     * send it over the network.
+     *
+     * @param chunk Chunk to encode
+     * @param buffer Little-endian buffer with at least {@link #MAX_CHUNK_BYTES} remaining
+     */
+    public static void encodeChunk(Chunk chunk, ByteBuffer buffer) {
+        new ChunkEncoder().encode(chunk, buffer);
+    }
+
+    /**
+     * Decodes one chunk written by {@link #encodeChunk}.
+     *
+     * @param buffer Little-endian buffer positioned at the chunk's data
+     * @param chunk Chunk to fill; must still be empty
+     * @throws IOException If the data is not a valid chunk
+     */
+    public static void decodeChunk(ByteBuffer buffer, Chunk chunk) throws IOException {
+        try {
+            readChunk(buffer, chunk, new Block[256]);
+            chunk.compact();
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Corrupt chunk data", e);
+        }
+    }
+
+    // Run lengths and palette indices of the chunk being written, reused across chunks
+    private static class ChunkEncoder {
+        private final int[] runTypes = new int[Chunk.SIZE * Chunk.SIZE * Chunk.SIZE];
+        private final int[] runLengths = new int[runTypes.length];
+        private final int[] paletteIndex = new int[TYPES.length];
+
+        void encode(Chunk chunk, ByteBuffer buffer) {
+            // Collect the runs, then the palette in order of first use
+            int runs = 0;
+            int current = -1;
+            for (int y = 0; y < Chunk.SIZE; y++) {
+                for (int x = 0; x < Chunk.SIZE; x++) {
+                    for (int z = 0; z < Chunk.SIZE; z++) {
+                        Block block = chunk.getBlock(x, y, z);
+                        int type = block != null ? block.getType().ordinal() : BlockType.AIR.ordinal();
+                        if (type == current) {
+                            runLengths[runs - 1]++;
+                        } else {
+                            runTypes[runs] = type;
+                            runLengths[runs] = 1;
+                            runs++;
+                            current = type;
+                        }
+                    }
+                }
+            }
+            Arrays.fill(paletteIndex, -1);
+            int paletteStart = buffer.position();
+            buffer.put((byte) 0);
+            int paletteSize = 0;
+            for (int run = 0; run < runs; run++) {
+                if (paletteIndex[runTypes[run]] < 0) {
+                    paletteIndex[runTypes[run]] = paletteSize++;
+                    buffer.put((byte) runTypes[run]);
+                }
+            }
+            buffer.put(paletteStart, (byte) paletteSize);
+            buffer.putShort((short) runs);
+            for (int run = 0; run < runs; run++) {
+                buffer.put((byte) paletteIndex[runTypes[run]]);
+                buffer.putShort((short) (runLengths[run] - 1));
+            }
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Loads a world from a snapshot. Light is left dark; run the light
+     * engine's initial pass afterwards.
+     *
+     * @param path File to read
+     * @return The loaded world
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    public static World read(Path path) throws IOException {
+        return read(path, VoxelStorage.DENSE);
+    }
+
+    /**
+     * Loads a world from a snapshot into the given block storage.
+     *
+     * @param storage How the chunks store their blocks
+     * @see #read(Path)
+     */
+    public static World read(Path path, VoxelStorage storage) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a world snapshot: " + path);
+            }
+            // Mapped buffers are direct; the file is read straight from the page cache
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a world snapshot: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported world snapshot version " + version + ": " + path);
+            }
+            World world = new World(buffer.getInt(), buffer.getInt(), buffer.getInt(), storage);
+            try {
+                int chunkCount = buffer.getInt();
+                if (chunkCount != world.getChunkCount()) {
+                    throw new IOException("World snapshot has " + chunkCount + " chunks, expected "
+                            + world.getChunkCount() + ": " + path);
+                }
+
+                Block[] palette = new Block[256];
+                for (int i = 0; i < chunkCount; i++) {
+                    readChunk(buffer, world.getChunk(i), palette);
+                }
+            } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+                world.close();
+                throw new IOException("Corrupt world snapshot: " + path, e);
+            } catch (IOException e) {
+                world.close();
+                throw e;
+            }
+            world.compact();
+            return world;
+        }
+    }
+
+    // Fills a chunk that is still empty
+    private static void readChunk(ByteBuffer buffer, Chunk chunk, Block[] palette) throws IOException {
+        int paletteSize = buffer.get() & 0xFF;
+        for (int i = 0; i < paletteSize; i++) {
+            BlockType type = TYPES[buffer.get() & 0xFF];
+            palette[i] = type == BlockType.AIR ? null : Block.of(type);
+        }
+        int runs = buffer.getShort() & 0xFFFF;
+        int index = 0;
+        for (int run = 0; run < runs; run++) {
+            Block block = palette[buffer.get() & 0xFF];
+            int end = index + (buffer.getShort() & 0xFFFF) + 1;
+            if (end > Chunk.SIZE * Chunk.SIZE * Chunk.SIZE) {
+                throw new IOException("Run overflows its chunk");
+            }
+            if (block == null) {
+                // The chunk is new, so it is air already
+                index = end;
+                continue;
+            }
+            // index = (y * SIZE + x) * SIZE + z, matching the order write uses
+            for (; index < end; index++) {
+                chunk.setBlock((index >> Chunk.SHIFT) & Chunk.MASK, index >> (2 * Chunk.SHIFT), index & Chunk.MASK, block);
+            }
+        }
+        if (index != Chunk.SIZE * Chunk.SIZE * Chunk.SIZE) {
+            throw new IOException("Runs do not cover their chunk");
+        }
+    }
+}
@@ -1,9 +1,13 @@
 #version 330 core
 
 in vec2 fragTexCoord;
+in vec2 fragLight;
+in float fragOcclusion;
 
 uniform sampler2D textureSampler;
 uniform bool useTexture = false;
+uniform float daylight = 1.0; // Sky brightness, 0 at night
+uniform bool translucent = false; // Set while drawing water and leaves
 
 out vec4 fragColor;
 
@@ -15,8 +19,17 @@ void main() {
         if (fragColor.a < 0.1) {
             discard;
         }
+    } else if (translucent) {
+        fragColor = vec4(0.2, 0.4, 0.8, 0.6); // azul tipo agua
     } else {
         // Fallback to a color based on texture coordinates
         fragColor = vec4(0.6, 0.4, 0.2, 1.0); // marrón tipo dirt
     }
+
+    // Each light level is 80% as bright as the one above it
+    float level = max(fragLight.x * daylight, fragLight.y) * 15.0;
+    fragColor.rgb *= max(pow(0.8, 15.0 - level), 0.05);
+
+    // Corners enclosed by blocks get less ambient light
+    fragColor.rgb *= mix(0.4, 1.0, fragOcclusion);
 }
\ No newline at end of file
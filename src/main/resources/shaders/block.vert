@@ -1,15 +1,25 @@
 #version 330 core
 
-layout(location = 0) in vec3 position;
+layout(location = 0) in vec3 position; // Whole blocks within the chunk
 layout(location = 1) in vec2 texCoord;
+layout(location = 2) in vec2 light; // Sky light, block light (0-1)
+layout(location = 3) in float occlusion; // Ambient occlusion (0 enclosed corner, 1 open)
 
 uniform mat4 projection;
-uniform mat4 view;
-uniform mat4 model;
+uniform mat4 view; // Rotation only, the camera is at the origin
+uniform ivec3 cameraBlock; // Block the camera is in
+uniform vec3 cameraFraction; // Camera position within that block
+uniform ivec3 chunkOrigin;
 
 out vec2 fragTexCoord;
+out vec2 fragLight;
+out float fragOcclusion;
 
 void main() {
-    gl_Position = projection * view * model * vec4(position, 1.0);
+    // The chunk's offset from the camera is exact integer math; only what is near the camera needs fractions
+    vec3 relative = position + vec3(chunkOrigin - cameraBlock) - cameraFraction;
+    gl_Position = projection * view * vec4(relative, 1.0);
     fragTexCoord = texCoord;
+    fragLight = light;
+    fragOcclusion = occlusion;
 }
\ No newline at end of file
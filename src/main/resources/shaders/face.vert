@@ -0,0 +1,67 @@
+#version 330 core
+
+// One visible face per instance, packed as described in FaceBuffer
+layout(location = 0) in uvec2 face;
+
+uniform mat4 projection;
+uniform mat4 view; // Rotation only, the camera is at the origin
+uniform ivec3 cameraBlock; // Block the camera is in
+uniform vec3 cameraFraction; // Camera position within that block
+uniform ivec3 chunkOrigin;
+
+out vec2 fragTexCoord;
+out vec2 fragLight;
+out float fragOcclusion;
+
+// Unit corners of each face, in the order of VoxelMesher.FACE_VERTICES
+const vec3 CORNERS[24] = vec3[](
+    // FRONT
+    vec3(0, 0, 1), vec3(1, 0, 1), vec3(1, 1, 1), vec3(0, 1, 1),
+    // BACK
+    vec3(1, 0, 0), vec3(0, 0, 0), vec3(0, 1, 0), vec3(1, 1, 0),
+    // LEFT
+    vec3(0, 0, 0), vec3(0, 0, 1), vec3(0, 1, 1), vec3(0, 1, 0),
+    // RIGHT
+    vec3(1, 0, 1), vec3(1, 0, 0), vec3(1, 1, 0), vec3(1, 1, 1),
+    // TOP
+    vec3(0, 1, 1), vec3(1, 1, 1), vec3(1, 1, 0), vec3(0, 1, 0),
+    // BOTTOM
+    vec3(0, 0, 0), vec3(1, 0, 0), vec3(1, 0, 1), vec3(0, 0, 1)
+);
+
+// Axes a face's width and height run along (GreedyMesher.FACE_ADJACENTS)
+const vec3 AXIS_U[6] = vec3[](vec3(1, 0, 0), vec3(1, 0, 0), vec3(0, 0, 1), vec3(0, 0, 1), vec3(1, 0, 0), vec3(1, 0, 0));
+const vec3 AXIS_V[6] = vec3[](vec3(0, 1, 0), vec3(0, 1, 0), vec3(0, 1, 0), vec3(0, 1, 0), vec3(0, 0, 1), vec3(0, 0, 1));
+
+// Corner of each strip vertex; both triangles share the 0-2 diagonal and keep the face's winding
+const int STRIP[4] = int[](1, 2, 0, 3);
+
+void main() {
+    uint info = face.y;
+    int side = int(info & 7u);
+    vec2 size = vec2(float(((info >> 3) & 15u) + 1u), float(((info >> 7) & 15u) + 1u));
+    uint ao = (info >> 23) & 255u;
+
+    // Split along the 1-3 diagonal when that shades the corners more evenly, like VoxelMesher.isFlipped
+    uint ao0 = ao & 3u, ao1 = (ao >> 2) & 3u, ao2 = (ao >> 4) & 3u, ao3 = (ao >> 6) & 3u;
+    int flip = ao0 + ao2 < ao1 + ao3 ? 1 : 0;
+    int corner = (STRIP[gl_VertexID] + flip) & 3;
+
+    // Stretch the unit corner along the face's axes; one block along the normal
+    vec3 axisU = AXIS_U[side];
+    vec3 axisV = AXIS_V[side];
+    vec3 scale = axisU * size.x + axisV * size.y + (vec3(1.0) - axisU - axisV);
+    vec3 block = vec3(float(face.x & 15u), float((face.x >> 4) & 15u), float((face.x >> 8) & 15u));
+    vec3 position = block + CORNERS[side * 4 + corner] * scale;
+    // The chunk's offset from the camera is exact integer math; only what is near the camera needs fractions
+    vec3 relative = position + vec3(chunkOrigin - cameraBlock) - cameraFraction;
+    gl_Position = projection * view * vec4(relative, 1.0);
+
+    // Corners 1 and 2 are on the far edge horizontally, corners 0 and 1 on the far edge vertically
+    vec2 cell = vec2(float((info >> 11) & 3u), float((info >> 13) & 3u)) * 0.25;
+    vec2 edge = vec2(corner == 1 || corner == 2 ? 1.0 : 0.0, corner < 2 ? 1.0 : 0.0);
+    fragTexCoord = cell + edge * size * 0.25;
+
+    fragLight = vec2(float((info >> 19) & 15u), float((info >> 15) & 15u)) / 15.0;
+    fragOcclusion = float((ao >> (corner * 2)) & 3u) / 3.0;
+}
@@ -0,0 +1,44 @@
+package org.pixelito.camera;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.pixelito.input.KeyCode;
+import org.pixelito.input.Keyboard;
+import org.pixelito.input.Mouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CameraTest {
+    private static final int CALLS = 100_000;
+
+    @AfterEach
+    void releaseInput() {
+        Keyboard.setKey(KeyCode.W, false);
+        Keyboard.setKey(KeyCode.D, false);
+        Mouse.setCapturedState(false);
+        Mouse.init(0, 0);
+    }
+
+    @Test
+    void updateDoesNotAllocate() {
+        long bytes = CameraAllocations.measure(CALLS);
+        assumeTrue(bytes >= 0, "JVM cannot measure thread allocations");
+
+        assertEquals(0, bytes, "Bytes allocated by " + CALLS + " camera updates and view matrix rebuilds");
+    }
+
+    @Test
+    void capturedMouseTurnsTheCamera() {
+        Camera camera = new Camera();
+        float yaw = camera.getYaw();
+        float pitch = camera.getPitch();
+        Mouse.setCapturedState(true);
+        Mouse.setPosition(0, 0);
+        Mouse.setPosition(1, 1);
+        camera.update(1.0f / 60.0f);
+
+        assertEquals(yaw + camera.getMouseSensitivity(), camera.getYaw(), 1e-6f);
+        assertEquals(pitch - camera.getMouseSensitivity(), camera.getPitch(), 1e-6f);
+    }
+}